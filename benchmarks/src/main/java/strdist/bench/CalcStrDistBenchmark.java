@@ -0,0 +1,76 @@
+package strdist.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StrDist.calcStrDist for every combination of borders and flags, over corpora of several scripts and sizes.
+ * All params together make hundreds of runs; narrow them with -p, e.g.
+ * -p shape=50x10000 -p left=WORD -p right=WORD
+ * "prepared" measures the same search with CompiledPattern and IndexedText built in advance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class CalcStrDistBenchmark {
+    @Param({"WHOLE_TEXT", "ROW", "WORD", "ANYWHERE"})
+    public String left;
+    @Param({"WHOLE_TEXT", "ROW", "WORD", "ANYWHERE"})
+    public String right;
+    @Param({"false", "true"})
+    public boolean doRestoreWay;
+    @Param({"false", "true"})
+    public boolean doSubtractIfLongSameSeq;
+    @Param({"LATIN", "CYRILLIC", "HOMOGLYPH"})
+    public Corpus.Script script;
+    @Param({"TYPOS"})
+    public Corpus.Match match;
+    /**
+     * Lengths of pattern and text (@see Corpus#of)
+     */
+    @Param({"20x100", "50x10000", "200x10000", "50x300000"})
+    public String shape;
+
+    private String subStr;
+    private String superStr;
+    private Object leftBorder;
+    private Object rightBorder;
+    private Object pattern;
+    private Object text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Corpus corpus = Corpus.of(script, match, shape);
+        subStr = corpus.pattern;
+        superStr = corpus.text;
+        leftBorder = Lib.border(left);
+        rightBorder = Lib.border(right);
+        pattern = Lib.compile(subStr);
+        text = Lib.indexText(superStr);
+    }
+
+    @Benchmark
+    public Object calcStrDist() throws Throwable {
+        return (Object) Lib.CALC_STR_DIST.invokeExact(subStr, superStr, leftBorder, rightBorder, doRestoreWay, doSubtractIfLongSameSeq);
+    }
+
+    @Benchmark
+    public Object calcStrDistPrepared() throws Throwable {
+        return (Object) Lib.CALC_STR_DIST_PREPARED.invokeExact(pattern, text, leftBorder, rightBorder, doRestoreWay, doSubtractIfLongSameSeq);
+    }
+}
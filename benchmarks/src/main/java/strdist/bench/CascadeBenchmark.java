@@ -0,0 +1,75 @@
+package strdist.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cascade of StrDist.getBestMatch___ (as is, upper-cased, with subtracting) against the fused one of getBestMatchFused,
+ * for borders of getBestMatchWhole, getBestMatchRow, getBestMatchWordRow, getBestMatchWord and getBestMatchAnywhere.
+ * Match matters most here: EXACT is found without DP, TYPOS stops after the first step, ABSENT goes through all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class CascadeBenchmark {
+    private static final MethodType GET_BEST_MATCH = MethodType.methodType(Lib.DIST_RES_INFO,
+            String.class, String.class, Lib.SEARCH_BORDER, Lib.SEARCH_BORDER, boolean.class);
+    private static final MethodHandle GET_BEST_MATCH___ = Lib.find("getBestMatch___", GET_BEST_MATCH);
+    private static final MethodHandle GET_BEST_MATCH_FUSED = Lib.find("getBestMatchFused", GET_BEST_MATCH);
+
+    /**
+     * Left and right borders, joined by '-'
+     */
+    @Param({"WHOLE_TEXT-WHOLE_TEXT", "ROW-ROW", "WORD-ROW", "WORD-WORD", "ANYWHERE-ANYWHERE"})
+    public String borders;
+    @Param({"false", "true"})
+    public boolean doRestoreWay;
+    @Param({"LATIN", "CYRILLIC", "HOMOGLYPH"})
+    public Corpus.Script script;
+    @Param({"EXACT", "TYPOS", "ABSENT"})
+    public Corpus.Match match;
+    @Param({"20x100", "50x10000", "200x10000", "50x300000"})
+    public String shape;
+
+    private String subStr;
+    private String superStr;
+    private Object left;
+    private Object right;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Corpus corpus = Corpus.of(script, match, shape);
+        subStr = corpus.pattern;
+        superStr = corpus.text;
+        int dash = borders.indexOf('-');
+        left = Lib.border(borders.substring(0, dash));
+        right = Lib.border(borders.substring(dash + 1));
+    }
+
+    @Benchmark
+    public Object getBestMatch___() throws Throwable {
+        return (Object) GET_BEST_MATCH___.invokeExact(subStr, superStr, left, right, doRestoreWay);
+    }
+
+    @Benchmark
+    public Object getBestMatchFused() throws Throwable {
+        return (Object) GET_BEST_MATCH_FUSED.invokeExact(subStr, superStr, left, right, doRestoreWay);
+    }
+}
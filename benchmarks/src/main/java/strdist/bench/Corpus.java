@@ -0,0 +1,157 @@
+package strdist.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic texts and patterns for benchmarks: sentences of words with dots, quotes and line breaks,
+ * so that borders of words and rows occur as in real texts.
+ * Pattern is a run of whole words cut from the middle of the text, then changed according to Match.
+ * Public only because code generated by JMH (in a subpackage) refers to Script and Match of @Param fields.
+ */
+public final class Corpus {
+    public enum Script {
+        LATIN,
+        CYRILLIC,
+        /**
+         * Words of both scripts, and chars of text (not of pattern) randomly replaced by their look-alikes of other script
+         */
+        HOMOGLYPH
+    }
+
+    public enum Match {
+        /**
+         * Pattern occurs in text as it is (for HOMOGLYPH, up to look-alikes)
+         */
+        EXACT,
+        /**
+         * About one typo (replaced, lost or extra char) per 12 chars of pattern
+         */
+        TYPOS,
+        /**
+         * Pattern is cut from another text, so it has no good match
+         */
+        ABSENT
+    }
+
+    private static final String[] LATIN_WORDS = {
+            "the", "distance", "between", "strings", "is", "measured", "by", "edits", "of", "chars", "which", "turn",
+            "one", "into", "another", "search", "finds", "best", "match", "pattern", "inside", "text", "row", "word",
+            "border", "quote", "space", "cost", "insert", "delete", "replace", "similar", "letters", "cheap", "expensive",
+            "table", "column", "matrix", "restore", "way", "show", "diff", "green", "orange", "red", "paper", "author",
+            "student", "teacher", "answer", "question", "program", "source", "code", "check", "plagiarism", "copy"
+    };
+    private static final String[] CYRILLIC_WORDS = {
+            "відстань", "між", "рядками", "вимірюється", "кількістю", "правок", "символів", "які", "перетворюють",
+            "один", "на", "інший", "пошук", "знаходить", "найкращий", "збіг", "зразка", "всередині", "тексту", "рядок",
+            "слово", "межа", "лапки", "пробіл", "ціна", "вставка", "видалення", "заміна", "схожі", "літери", "дешево",
+            "дорого", "таблиця", "стовпчик", "матриця", "відновити", "шлях", "показати", "різницю", "зелений",
+            "помаранчевий", "червоний", "стаття", "автор", "студент", "викладач", "відповідь", "питання", "програма",
+            "джерело", "код", "перевірка", "плагіат", "копія", "ґанок", "їжак", "єнот", "йорж"
+    };
+    /**
+     * Pairs of look-alikes, Latin then Cyrillic (as in StrDistEngine)
+     */
+    private static final String LOOKALIKES = "AАBВCСEЕHНIІKКMМOОPРTТXХaаcсeеiіoоpрxхyу";
+
+    final String text;
+    final String pattern;
+
+    private Corpus(String text, String pattern) {
+        this.text = text;
+        this.pattern = pattern;
+    }
+
+    /**
+     * @param shape lengths of pattern and text as "PATTERNxTEXT", e.g. "50x10000"
+     */
+    static Corpus of(Script script, Match match, String shape) {
+        int x = shape.indexOf('x');
+        int patternLength = Integer.parseInt(shape.substring(0, x));
+        int textLength = Integer.parseInt(shape.substring(x + 1));
+        if (patternLength > textLength) {
+            throw new IllegalArgumentException("Pattern is longer than text: " + shape);
+        }
+        SplittableRandom rnd = new SplittableRandom(20240101L + script.ordinal());
+        String clean = text(rnd, script, textLength);
+        String source = match == Match.ABSENT ? text(new SplittableRandom(~rnd.nextLong()), script, textLength) : clean;
+        String pattern = cut(source, patternLength);
+        if (match == Match.TYPOS) {
+            pattern = typos(rnd, pattern);
+        }
+        String text = script == Script.HOMOGLYPH ? swapLookalikes(rnd, clean) : clean;
+        return new Corpus(text, pattern);
+    }
+
+    private static String text(SplittableRandom rnd, Script script, int length) {
+        StringBuilder sb = new StringBuilder(length + 100);
+        while (sb.length() < length) {
+            int words = 5 + rnd.nextInt(8);
+            boolean quoted = rnd.nextInt(6) == 0;
+            if (quoted) {
+                sb.append('«');
+            }
+            for (int w = 0; w < words; w++) {
+                String word = word(rnd, script);
+                if (w == 0) {
+                    word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                } else {
+                    sb.append(rnd.nextInt(10) == 0 ? ", " : " ");
+                }
+                sb.append(word);
+            }
+            if (quoted) {
+                sb.append('»');
+            }
+            sb.append('.');
+            sb.append(rnd.nextInt(3) == 0 ? '\n' : ' ');
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    private static String word(SplittableRandom rnd, Script script) {
+        boolean latin = script == Script.LATIN || script == Script.HOMOGLYPH && rnd.nextBoolean();
+        String[] words = latin ? LATIN_WORDS : CYRILLIC_WORDS;
+        return words[rnd.nextInt(words.length)];
+    }
+
+    /**
+     * @return run of whole words of about given length from the middle of text
+     */
+    private static String cut(String text, int length) {
+        int start = (text.length() - length) / 2;
+        while (start > 0 && !Character.isWhitespace(text.charAt(start - 1))) {
+            start--;
+        }
+        int end = Math.min(start + length, text.length());
+        int wordEnd = end;
+        while (wordEnd > start && wordEnd < text.length() && !Character.isWhitespace(text.charAt(wordEnd))) {
+            wordEnd--;
+        }
+        return text.substring(start, wordEnd > start ? wordEnd : end).strip();
+    }
+
+    private static String typos(SplittableRandom rnd, String s) {
+        StringBuilder sb = new StringBuilder(s);
+        for (int t = Math.max(1, s.length() / 12); t > 0 && sb.length() > 1; t--) {
+            int pos = rnd.nextInt(sb.length());
+            switch (rnd.nextInt(3)) {
+                case 0 -> sb.setCharAt(pos, s.charAt(rnd.nextInt(s.length())));
+                case 1 -> sb.deleteCharAt(pos);
+                default -> sb.insert(pos, s.charAt(rnd.nextInt(s.length())));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String swapLookalikes(SplittableRandom rnd, String s) {
+        char[] chars = s.toCharArray();
+        for (int k = 0; k < chars.length; k++) {
+            int at = LOOKALIKES.indexOf(chars[k]);
+            if (at >= 0 && rnd.nextInt(4) == 0) {
+                chars[k] = LOOKALIKES.charAt(at ^ 1);
+            }
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,98 @@
+package strdist.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Access to StrDist: its classes are in the default package, which can't be imported from a named one,
+ * and JMH doesn't allow benchmarks in the default package.
+ * Handles are static final and typed exactly, so JIT inlines invokeExact as a direct call.
+ * Params and results of StrDist's own classes (SearchBorder, DistResInfo etc.) are passed as Object,
+ * which is enough to feed results to JMH's Blackhole.
+ */
+final class Lib {
+    static final Class<?> STR_DIST = load("StrDist");
+    static final Class<?> SEARCH_BORDER = load("StrDist$SearchBorder");
+    static final Class<?> DIST_RES_INFO = load("StrDist$DistResInfo");
+    static final Class<?> COMPILED_PATTERN = load("CompiledPattern");
+    static final Class<?> INDEXED_TEXT = load("IndexedText");
+
+    /**
+     * (String subStr, String superStr, Object left, Object right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) -> Object
+     */
+    static final MethodHandle CALC_STR_DIST = find("calcStrDist",
+            MethodType.methodType(DIST_RES_INFO, String.class, String.class, SEARCH_BORDER, SEARCH_BORDER, boolean.class, boolean.class));
+    /**
+     * The same as CALC_STR_DIST, but over CompiledPattern and IndexedText (passed as Object)
+     */
+    static final MethodHandle CALC_STR_DIST_PREPARED = find("calcStrDist",
+            MethodType.methodType(DIST_RES_INFO, COMPILED_PATTERN, INDEXED_TEXT, SEARCH_BORDER, SEARCH_BORDER, boolean.class, boolean.class));
+    static final MethodHandle COMPILE = find("compile", MethodType.methodType(COMPILED_PATTERN, String.class));
+    static final MethodHandle INDEX_TEXT = find("indexText", MethodType.methodType(INDEXED_TEXT, String.class));
+
+    private Lib() {
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("StrDist isn't on classpath", e);
+        }
+    }
+
+    /**
+     * @return static method of StrDist with params and result of StrDist's own classes seen as Object
+     */
+    static MethodHandle find(String name, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().findStatic(STR_DIST, name, type).asType(hideLibTypes(type));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No StrDist." + name + type, e);
+        }
+    }
+
+    private static MethodType hideLibTypes(MethodType type) {
+        MethodType res = type.changeReturnType(hideLibType(type.returnType()));
+        for (int k = 0; k < type.parameterCount(); k++) {
+            res = res.changeParameterType(k, hideLibType(type.parameterType(k)));
+        }
+        return res;
+    }
+
+    /**
+     * @return Object for classes of StrDist, which aren't loaded by bootstrap loader as String or primitives are
+     */
+    private static Class<?> hideLibType(Class<?> c) {
+        return c.isPrimitive() || c.getClassLoader() == null ? c : Object.class;
+    }
+
+    /**
+     * @return constant of StrDist.SearchBorder by its name
+     */
+    static Object border(String name) {
+        for (Object b : SEARCH_BORDER.getEnumConstants()) {
+            if (((Enum<?>) b).name().equals(name)) {
+                return b;
+            }
+        }
+        throw new IllegalArgumentException("No SearchBorder " + name);
+    }
+
+    static Object compile(String subStr) {
+        try {
+            return (Object) COMPILE.invokeExact(subStr);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Object indexText(String superStr) {
+        try {
+            return (Object) INDEX_TEXT.invokeExact(superStr);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
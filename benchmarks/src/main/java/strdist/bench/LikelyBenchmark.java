@@ -0,0 +1,56 @@
+package strdist.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Predicates StrDist.likely* and StrDist.highlyLikely*, each of them being the whole cascade followed by threshold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class LikelyBenchmark {
+    @Param({"likelyContains", "likelyContainsRows", "likelyContainsWords", "likelyMatches",
+            "highlyLikelyContains", "highlyLikelyContainsRows", "highlyLikelyContainsWords", "highlyLikelyMatches"})
+    public String predicate;
+    @Param({"LATIN", "CYRILLIC", "HOMOGLYPH"})
+    public Corpus.Script script;
+    @Param({"EXACT", "TYPOS", "ABSENT"})
+    public Corpus.Match match;
+    @Param({"20x100", "50x10000", "200x10000", "50x300000"})
+    public String shape;
+
+    private String subStr;
+    private String superStr;
+    private MethodHandle handle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Corpus corpus = Corpus.of(script, match, shape);
+        subStr = corpus.pattern;
+        superStr = corpus.text;
+        handle = Lib.find(predicate, MethodType.methodType(boolean.class, String.class, String.class));
+    }
+
+    @Benchmark
+    public boolean likely() throws Throwable {
+        return (boolean) handle.invokeExact(subStr, superStr);
+    }
+}
@@ -0,0 +1,237 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * DpKernel on Vector API (jdk.incubator.vector): the table is calculated by anti-diagonals,
+ * because all cells of anti-diagonal d = i + j depend only on previous anti-diagonals
+ * (INS and DEL on d-1, REPLACE_OR_COPY on d-2, SWAP on d-4, SWAP_THREE on d-6),
+ * so they are calculated several at once, one lane per row.
+ * <p>
+ * Arithmetic and order of comparisons are the same as in ColumnDp#nextColumn, conditions are turned into masks,
+ * so values and choices are exactly the same. Parts which are not data-parallel are scalar:
+ * costs of pairs of chars (CharDistTable lookups) and, with doSubtractIfLongSameSeq, runs (@see ColumnDp#updateRun).
+ * <p>
+ * Anti-diagonal buffers are indexed by row and padded by PAD before row 0 and by one vector after row n,
+ * so lanes past the ends of anti-diagonal read and write padding or cells which are overwritten afterwards;
+ * their results are never used.
+ */
+final class VectorDpKernel implements DpKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    /**
+     * Cell may read cells up to 3 rows above (SWAP_THREE)
+     */
+    private static final int PAD = 3;
+    /**
+     * Number of kept anti-diagonals of values (d..d-6), of costs of pairs (d..d-4) and of runs (d..d-2)
+     */
+    private static final int VALUE_DIAGS = 7;
+    private static final int PAIR_DIAGS = 5;
+    private static final int RUN_DIAGS = 3;
+
+    private static final int[] IOTA = new int[LANES];
+
+    static {
+        for (int k = 0; k < LANES; k++) {
+            IOTA[k] = k;
+        }
+    }
+
+    VectorDpKernel() {
+        if (LANES < 4) {
+            throw new UnsupportedOperationException("vectors of " + LANES + " ints are too short");
+        }
+    }
+
+    @Override
+    public int minLength() {
+        return 4 * LANES;
+    }
+
+    @Override
+    public void calc(CharDistTable charsDist, String subStr, String superStr, int[] trivDelCosts, int[] costDelTwo,
+                     int[] trivInsCosts, int[] costInsTwo, boolean[] stopHere, boolean doSubtractIfLongSameSeq,
+                     int[] lastRow, byte[] choices) {
+        char[] sub = subStr.toCharArray();
+        char[] sup = superStr.toCharArray();
+        int n = sub.length;
+        int m = sup.length;
+        int len = PAD + n + 1 + LANES;
+
+        // costs along anti-diagonal: of deleting are indexed by row, of inserting by (m - column), i.e. reversed
+        int[] delCosts = new int[n + LANES];
+        int[] delTwoCosts = new int[n + LANES];
+        System.arraycopy(trivDelCosts, 0, delCosts, 0, n);
+        System.arraycopy(costDelTwo, 0, delTwoCosts, 0, n);
+        int[] insCostsRev = new int[m + LANES];
+        int[] insTwoCostsRev = new int[m + LANES];
+        for (int j = 1; j <= m; j++) {
+            insCostsRev[m - j] = trivInsCosts[j - 1];
+            insTwoCostsRev[m - j] = costInsTwo[j - 1];
+        }
+
+        int[][] values = new int[VALUE_DIAGS][len];
+        int[][] pairs = new int[PAIR_DIAGS][len];
+        int[][] edits = new int[2][len];
+        int[] replCosts = (doSubtractIfLongSameSeq ? new int[len] : null);
+        int[][] runs = (doSubtractIfLongSameSeq ? new int[RUN_DIAGS][(n + 1) * ColumnDp.RUN_STRIDE] : null);
+
+        IntVector iota = IntVector.fromArray(SPECIES, IOTA, 0);
+        IntVector ins = IntVector.broadcast(SPECIES, ColumnDp.INS);
+        IntVector del = IntVector.broadcast(SPECIES, ColumnDp.DEL);
+        IntVector replace = IntVector.broadcast(SPECIES, ColumnDp.REPLACE_OR_COPY);
+        IntVector swap = IntVector.broadcast(SPECIES, ColumnDp.SWAP);
+        IntVector swapThree = IntVector.broadcast(SPECIES, ColumnDp.SWAP_THREE);
+
+        int top = 0;
+        for (int d = 0; d <= n + m; d++) {
+            int[] v0 = values[d % VALUE_DIAGS];
+            int[] v1 = values[(d + VALUE_DIAGS - 1) % VALUE_DIAGS];
+            int[] v2 = values[(d + VALUE_DIAGS - 2) % VALUE_DIAGS];
+            int[] v4 = values[(d + VALUE_DIAGS - 4) % VALUE_DIAGS];
+            int[] v6 = values[(d + VALUE_DIAGS - 6) % VALUE_DIAGS];
+            int[] p0 = pairs[d % PAIR_DIAGS];
+            int[] p1 = pairs[(d + PAIR_DIAGS - 1) % PAIR_DIAGS];
+            int[] p2 = pairs[(d + PAIR_DIAGS - 2) % PAIR_DIAGS];
+            int[] p3 = pairs[(d + PAIR_DIAGS - 3) % PAIR_DIAGS];
+            int[] p4 = pairs[(d + PAIR_DIAGS - 4) % PAIR_DIAGS];
+            int[] e0 = edits[d & 1];
+            int[] e1 = edits[(d + 1) & 1];
+            int[] r0 = (runs == null ? null : runs[d % RUN_DIAGS]);
+            int[] r2 = (runs == null ? null : runs[(d + RUN_DIAGS - 2) % RUN_DIAGS]);
+
+            // inner cells (i, d - i) with i >= 1 and column >= 1
+            int lo = Math.max(1, d - m);
+            int hi = Math.min(n, d - 1);
+            for (int i = lo; i <= hi; i++) {
+                p0[PAD + i] = charsDist.dist(sub[i - 1], sup[d - i - 1]);
+            }
+            int[] repl = p0;
+            if (runs != null) {
+                repl = replCosts;
+                for (int i = lo; i <= hi; i++) {
+                    int replCost = p0[PAD + i];
+                    if (replCost <= 3 && i > 1 && d - i > 1) {
+                        int numExtraSimilar = 2 + ColumnDp.longSameSeqLength(r2, i - 1, i - 1, ColumnDp.LONG_SEQ_BUDGET - replCost);
+                        if (numExtraSimilar > 2) {
+                            replCost -= 1;
+                            if (numExtraSimilar > 8) {
+                                replCost -= (int) Math.sqrt(Math.sqrt(numExtraSimilar / 8));
+                            }
+                        }
+                    }
+                    replCosts[PAD + i] = replCost;
+                }
+            }
+            for (int i = lo; i <= hi; i += LANES) {
+                int at = PAD + i;
+                IntVector row = iota.add(i);
+                IntVector col = row.neg().add(d);
+
+                IntVector insCost = IntVector.fromArray(SPECIES, insCostsRev, m - d + i);
+                IntVector insCheaper = insCost.min(IntVector.fromArray(SPECIES, insTwoCostsRev, m - d + i));
+                IntVector minDist = IntVector.fromArray(SPECIES, v1, at)
+                        .add(insCheaper.blend(insCost, IntVector.fromArray(SPECIES, e1, at).eq(del)));
+                IntVector minEdit = ins;
+
+                IntVector delCost = IntVector.fromArray(SPECIES, delCosts, i - 1);
+                IntVector delTwoCost = IntVector.fromArray(SPECIES, delTwoCosts, i - 1);
+                IntVector costDel = delCost.blend(delTwoCost,
+                        IntVector.fromArray(SPECIES, e1, at - 1).compare(VectorOperators.NE, ins).and(delTwoCost.lt(delCost)));
+                IntVector distDel = IntVector.fromArray(SPECIES, v1, at - 1).add(costDel);
+                VectorMask<Integer> better = distDel.lt(minDist);
+                minDist = minDist.blend(distDel, better);
+                minEdit = minEdit.blend(del, better);
+
+                IntVector replCost = IntVector.fromArray(SPECIES, repl, at);
+                IntVector distReplace = IntVector.fromArray(SPECIES, v2, at - 1).add(replCost);
+                better = distReplace.compare(VectorOperators.LE, minDist);
+                minDist = minDist.blend(distReplace, better);
+                minEdit = minEdit.blend(replace, better);
+
+                IntVector back2 = IntVector.fromArray(SPECIES, v4, at - 2);
+                IntVector pairUpLeft = IntVector.fromArray(SPECIES, p2, at - 1);
+                IntVector pairLeft = IntVector.fromArray(SPECIES, p1, at);
+                IntVector pairUp = IntVector.fromArray(SPECIES, p1, at - 1);
+                IntVector commonOrderCost = replCost.add(pairUpLeft);
+                IntVector swappedOrderCost = pairLeft.add(pairUp);
+                VectorMask<Integer> swapped = row.compare(VectorOperators.GT, 1).and(col.compare(VectorOperators.GT, 1))
+                        .and(back2.lt(minDist)).and(swappedOrderCost.lt(commonOrderCost));
+                if (swapped.anyTrue()) {
+                    // both costs are non-negative in lanes where swapped is set, so shift is the same as division
+                    IntVector distForSwapped = back2.add(swappedOrderCost.add(commonOrderCost).lanewise(VectorOperators.ASHR, 1));
+                    better = swapped.and(distForSwapped.lt(minDist));
+                    minDist = minDist.blend(distForSwapped, better);
+                    minEdit = minEdit.blend(swap, better);
+
+                    IntVector back3 = IntVector.fromArray(SPECIES, v6, at - 3);
+                    VectorMask<Integer> three = swapped.and(row.compare(VectorOperators.GT, 2)).and(col.compare(VectorOperators.GT, 2))
+                            .and(back3.lt(minDist));
+                    if (three.anyTrue()) {
+                        commonOrderCost = commonOrderCost.add(IntVector.fromArray(SPECIES, p4, at - 2));
+                        IntVector swappedOrderCostTwo = IntVector.fromArray(SPECIES, p2, at)
+                                .add(pairUp).add(IntVector.fromArray(SPECIES, p3, at - 2));
+                        IntVector swappedOrderCostThree = IntVector.fromArray(SPECIES, p2, at - 2)
+                                .add(pairLeft).add(IntVector.fromArray(SPECIES, p3, at - 1));
+                        swappedOrderCost = swappedOrderCostTwo.min(swappedOrderCostThree);
+                        three = three.and(swappedOrderCost.lt(commonOrderCost));
+                        distForSwapped = back3.add(divideByThree(swappedOrderCost.add(commonOrderCost.lanewise(VectorOperators.LSHL, 1))));
+                        better = three.and(distForSwapped.lt(minDist));
+                        minDist = minDist.blend(distForSwapped, better);
+                        minEdit = minEdit.blend(swapThree, better);
+                    }
+                }
+                minDist.intoArray(v0, at);
+                minEdit.intoArray(e0, at);
+            }
+
+            // border cells, after inner ones, because last vector may overwrite cell (d, 0)
+            if (d <= m) {
+                if (d == 0 || stopHere[d]) {
+                    top = 0;
+                    e0[PAD] = ColumnDp.STOP_HERE;
+                } else {
+                    top += trivInsCosts[d - 1];
+                    e0[PAD] = ColumnDp.INS;
+                }
+                v0[PAD] = top;
+                if (r0 != null) {
+                    r0[0] = 1;
+                    r0[1] = 0;
+                }
+            }
+            if (d >= 1 && d <= n) {
+                v0[PAD + d] = v1[PAD + d - 1] + trivDelCosts[d - 1];
+                e0[PAD + d] = ColumnDp.DEL;
+                if (r0 != null) {
+                    r0[d * ColumnDp.RUN_STRIDE] = d + 1;
+                    r0[d * ColumnDp.RUN_STRIDE + 1] = 0;
+                }
+            }
+
+            if (r0 != null) {
+                for (int i = lo; i <= hi; i++) {
+                    int cost = p2[PAD + i - 1];
+                    ColumnDp.updateRun(r0, r2, i, i, e0[PAD + i] == ColumnDp.REPLACE_OR_COPY && i > 1 && d - i > 1 && cost <= 3, cost);
+                }
+            }
+            if (d >= n) {
+                lastRow[d - n] = v0[PAD + n];
+            }
+            if (choices != null) {
+                for (int i = Math.max(0, d - m); i <= Math.min(n, d - 1); i++) {
+                    choices[(d - i - 1) * (n + 1) + i] = (byte) e0[PAD + i];
+                }
+            }
+        }
+    }
+
+    /**
+     * x / 3 for 0 <= x < 2^15 (sums of a few costs of pairs of chars are far below it)
+     */
+    private static IntVector divideByThree(IntVector x) {
+        return x.mul(21846).lanewise(VectorOperators.LSHR, 16);
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+/**
+ * Stores characters treated as "matched": for each index in substring, corresponding index in superstring,
+ * or -1 when the char is not matched. Used indices of both are ordered strictly ascending.
+ * Kept as plain int[], so restoring and rendering the way doesn't box anything.
+ */
+final class Alignment {
+    private final int[] subToSuper;
+    /**
+     * Number of matched chars
+     */
+    private final int size;
+    /**
+     * The first and the last matched indices in substring, -1 when nothing is matched
+     */
+    private final int first;
+    private final int last;
+
+    /**
+     * @param subToSuper index in superstring for each index in substring, or -1; it's not copied
+     */
+    Alignment(int[] subToSuper) {
+        this.subToSuper = subToSuper;
+        int cnt = 0;
+        int f = -1;
+        int l = -1;
+        for (int i = 0; i < subToSuper.length; i++) {
+            if (subToSuper[i] >= 0) {
+                cnt++;
+                if (f < 0) {
+                    f = i;
+                }
+                l = i;
+            }
+        }
+        this.size = cnt;
+        this.first = f;
+        this.last = l;
+    }
+
+    /**
+     * @return array for substring of length n with nothing matched yet (to be filled by ColumnDp#traceBack)
+     */
+    static int[] unmatched(int n) {
+        int[] res = new int[n];
+        Arrays.fill(res, -1);
+        return res;
+    }
+
+    /**
+     * @return alignment of substring of length n occurring exactly at start
+     */
+    static Alignment exact(int n, int start) {
+        int[] res = new int[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = i + start;
+        }
+        return new Alignment(res);
+    }
+
+    /**
+     * @return length of substring
+     */
+    int length() {
+        return subToSuper.length;
+    }
+
+    /**
+     * @return number of matched chars
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return index in superstring matched with index i of substring, or -1 (also when i is out of substring)
+     */
+    int superOf(int i) {
+        return 0 <= i && i < subToSuper.length ? subToSuper[i] : -1;
+    }
+
+    boolean isMatched(int i) {
+        return superOf(i) >= 0;
+    }
+
+    /**
+     * @return the first matched index in superstring, or -1 when nothing is matched
+     */
+    int minInSuper() {
+        return first < 0 ? -1 : subToSuper[first];
+    }
+
+    /**
+     * @return the last matched index in superstring, or -1 when nothing is matched
+     */
+    int maxInSuper() {
+        return last < 0 ? -1 : subToSuper[last];
+    }
+
+    /**
+     * @return index in superstring of the last matched char before index i of substring, or -1
+     */
+    int lowerSuper(int i) {
+        for (int k = Math.min(i, subToSuper.length) - 1; k >= first && k >= 0; k--) {
+            if (subToSuper[k] >= 0) {
+                return subToSuper[k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index in superstring of the first matched char at or after index i of substring, or -1
+     */
+    int ceilingSuper(int i) {
+        for (int k = Math.max(i, 0); k <= last; k++) {
+            if (subToSuper[k] >= 0) {
+                return subToSuper[k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return copy of index in superstring for each index in substring, or -1
+     */
+    int[] toArray() {
+        return subToSuper.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Alignment && Arrays.equals(subToSuper, ((Alignment) o).subToSuper);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(subToSuper);
+    }
+
+    /**
+     * @return matched pairs as {i=j, ...}, as map of them would show
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < subToSuper.length; i++) {
+            if (subToSuper[i] >= 0) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(i).append('=').append(subToSuper[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,392 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Searches every pattern in every text (cross product) on ForkJoinPool, returning either full matrix of results
+ * or top-k texts for each pattern.
+ * Patterns are compiled and texts are indexed once (@see CompiledPattern, IndexedText),
+ * and each worker thread reuses its own buffers for DP.
+ * <p>
+ * Instance keeps settings and state of one run: it may be used for several runs one after another, but not concurrently.
+ * Settings must be set before run; cancel() may be called from any thread.
+ * Cancellation is cleared only when a run finishes (normally or by exception), so cancel() which comes before a run starts
+ * or while it's starting is not lost: that run throws CancellationException, and the next one runs as usual.
+ */
+public final class BatchSearch {
+    /**
+     * What is calculated for each pair of pattern and text
+     */
+    public enum Kind {
+        /**
+         * StrDistEngine#getBestMatch___ (doSubtractIfLongSameSeq and maxDist are ignored)
+         */
+        BEST_MATCH,
+        /**
+         * StrDistEngine#getBestMatchFused, the same results as BEST_MATCH (doSubtractIfLongSameSeq and maxDist are ignored)
+         */
+        BEST_MATCH_FUSED,
+        /**
+         * StrDistEngine#calcStrDist (maxDist is ignored)
+         */
+        DIST,
+        /**
+         * StrDistEngine#calcStrDistBounded (doRestoreWay is ignored)
+         */
+        DIST_BOUNDED
+    }
+
+    /**
+     * Receives progress of run; called from worker threads, so it must be thread-safe
+     */
+    public interface ProgressListener {
+        /**
+         * @param donePairs  number of pairs (pattern, text) already processed
+         * @param totalPairs number of pairs in the run
+         */
+        void onProgress(long donePairs, long totalPairs);
+    }
+
+    /**
+     * One of top-k texts found for pattern
+     */
+    public static final class Hit {
+        /**
+         * Index of the text in collection of texts passed to topK
+         */
+        public final int textIndex;
+        public final StrDist.DistResInfo result;
+
+        Hit(int textIndex, StrDist.DistResInfo result) {
+            this.textIndex = textIndex;
+            this.result = result;
+        }
+
+        @Override
+        public String toString() {
+            return "Hit{textIndex=" + textIndex + ", dist=" + result.dist + '}';
+        }
+    }
+
+    /**
+     * Pairs which are processed as one task
+     */
+    private static final int LEAF_PAIRS = 16;
+    /**
+     * Progress is reported at least after this number of pairs (and at the end)
+     */
+    private static final int PROGRESS_STEP = 256;
+
+    private final StrDistEngine engine;
+    private final StrDist.SearchBorder left;
+    private final StrDist.SearchBorder right;
+    private Kind kind = Kind.BEST_MATCH;
+    private boolean doRestoreWay = false;
+    private boolean doSubtractIfLongSameSeq = false;
+    private int maxDist = 30;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private ProgressListener progressListener;
+    private volatile boolean cancelled;
+
+    public BatchSearch(StrDistEngine engine, StrDist.SearchBorder left, StrDist.SearchBorder right) {
+        this.engine = engine;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Batch over engine with default cost rules (@see StrDistEngine#getDefault)
+     */
+    public BatchSearch(StrDist.SearchBorder left, StrDist.SearchBorder right) {
+        this(StrDistEngine.getDefault(), left, right);
+    }
+
+    /**
+     * @param kind what is calculated for each pair; BEST_MATCH by default
+     */
+    public BatchSearch setKind(Kind kind) {
+        this.kind = kind;
+        return this;
+    }
+
+    /**
+     * @param doRestoreWay false by default; true makes results much heavier
+     */
+    public BatchSearch setDoRestoreWay(boolean doRestoreWay) {
+        this.doRestoreWay = doRestoreWay;
+        return this;
+    }
+
+    public BatchSearch setDoSubtractIfLongSameSeq(boolean doSubtractIfLongSameSeq) {
+        this.doSubtractIfLongSameSeq = doSubtractIfLongSameSeq;
+        return this;
+    }
+
+    /**
+     * @param maxDist for Kind.DIST_BOUNDED; 30 (MatchLevel.MEDIUM) by default
+     */
+    public BatchSearch setMaxDist(int maxDist) {
+        this.maxDist = maxDist;
+        return this;
+    }
+
+    /**
+     * @param pool where the run is executed; common pool by default
+     */
+    public BatchSearch setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    public BatchSearch setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * Asks current run (or the next one, if no run is going) to stop as soon as possible; the run then throws CancellationException.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return whether cancel() was called and the run which it stops hasn't finished yet
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return results[p][t] for p-th pattern and t-th text (in iteration order of the collections)
+     * @throws CancellationException when cancel() was called before the run finished
+     */
+    public StrDist.DistResInfo[][] matrix(Collection<String> patterns, Collection<String> texts) {
+        try {
+            CompiledPattern[] compiled = compileAll(patterns);
+            IndexedText[] indexed = indexAll(texts);
+            StrDist.DistResInfo[][] results = new StrDist.DistResInfo[compiled.length][indexed.length];
+            run(compiled, indexed, (p, t, res) -> results[p][t] = res, null);
+            return results;
+        } finally {
+            cancelled = false;
+        }
+    }
+
+    /**
+     * @return for each pattern (in iteration order), at most k best texts ordered by dist (ties by index of text)
+     * @throws CancellationException when cancel() was called before the run finished
+     */
+    public List<List<Hit>> topK(Collection<String> patterns, Collection<String> texts, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k (" + k + ") should be positive");
+        }
+        try {
+            CompiledPattern[] compiled = compileAll(patterns);
+            IndexedText[] indexed = indexAll(texts);
+            TopK[] tops = new TopK[compiled.length];
+            for (int p = 0; p < tops.length; p++) {
+                tops[p] = new TopK(k);
+            }
+            run(compiled, indexed, null, tops);
+            List<List<Hit>> res = new ArrayList<>(tops.length);
+            for (TopK top : tops) {
+                res.add(top.toList());
+            }
+            return res;
+        } finally {
+            cancelled = false;
+        }
+    }
+
+    private interface PairConsumer {
+        void accept(int patternIdx, int textIdx, StrDist.DistResInfo res);
+    }
+
+    private CompiledPattern[] compileAll(Collection<String> patterns) {
+        String[] src = patterns.toArray(new String[0]);
+        CompiledPattern[] res = new CompiledPattern[src.length];
+        forEach(src.length, 1, i -> res[i] = engine.compile(src[i]));
+        return res;
+    }
+
+    private IndexedText[] indexAll(Collection<String> texts) {
+        String[] src = texts.toArray(new String[0]);
+        IndexedText[] res = new IndexedText[src.length];
+        forEach(src.length, 1, i -> res[i] = engine.indexText(src[i]));
+        return res;
+    }
+
+    /**
+     * Processes all pairs, passing results either to consumer or to tops
+     */
+    private void run(CompiledPattern[] patterns, IndexedText[] texts, PairConsumer consumer, TopK[] tops) {
+        int textCnt = texts.length;
+        long total = (long) patterns.length * textCnt;
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many pairs: " + total);
+        }
+        // buffers of each worker thread, dropped together with this map after the run
+        ConcurrentHashMap<Thread, StrDistEngine.Scratch> scratches = new ConcurrentHashMap<>();
+        AtomicLong done = new AtomicLong();
+        long[] reported = {0};
+        forEachRange((int) total, LEAF_PAIRS, (from, to) -> {
+            StrDistEngine.Scratch scratch = scratches.computeIfAbsent(Thread.currentThread(), key -> new StrDistEngine.Scratch());
+            TopK local = null;
+            int localPattern = -1;
+            for (int pair = from; pair < to && !cancelled; pair++) {
+                int p = pair / textCnt;
+                int t = pair % textCnt;
+                StrDist.DistResInfo res = search(patterns[p], texts[t], scratch);
+                if (consumer != null) {
+                    consumer.accept(p, t, res);
+                } else {
+                    if (p != localPattern) {
+                        if (local != null) {
+                            tops[localPattern].mergeFrom(local);
+                        }
+                        local = new TopK(tops[p].k);
+                        localPattern = p;
+                    }
+                    local.offer(t, res);
+                }
+            }
+            if (local != null) {
+                tops[localPattern].mergeFrom(local);
+            }
+            long cur = done.addAndGet(to - from);
+            if (progressListener != null) {
+                // under lock, so that reported numbers only grow and the final one is never lost
+                synchronized (reported) {
+                    if (cur > reported[0] && (cur - reported[0] >= PROGRESS_STEP || cur == total)) {
+                        reported[0] = cur;
+                        progressListener.onProgress(cur, total);
+                    }
+                }
+            }
+        });
+    }
+
+    private StrDist.DistResInfo search(CompiledPattern pattern, IndexedText text, StrDistEngine.Scratch scratch) {
+        return switch (kind) {
+            case BEST_MATCH -> engine.getBestMatch___(pattern, text, left, right, doRestoreWay, scratch);
+            case BEST_MATCH_FUSED -> engine.getBestMatchFused(pattern, text, left, right, doRestoreWay, scratch);
+            case DIST -> engine.calcStrDist(pattern, text, left, right, doRestoreWay, doSubtractIfLongSameSeq, ColumnDp.UNBOUNDED, scratch);
+            case DIST_BOUNDED -> engine.calcStrDistBounded(pattern, text, left, right, doSubtractIfLongSameSeq, maxDist, scratch);
+        };
+    }
+
+    private interface RangeConsumer {
+        void accept(int from, int to);
+    }
+
+    private void forEach(int count, int leafSize, IntConsumer action) {
+        forEachRange(count, leafSize, (from, to) -> {
+            for (int i = from; i < to && !cancelled; i++) {
+                action.accept(i);
+            }
+        });
+    }
+
+    /**
+     * Splits [0, count) into ranges of at most leafSize and runs them on the pool
+     *
+     * @throws CancellationException when cancelled
+     */
+    private void forEachRange(int count, int leafSize, RangeConsumer action) {
+        if (count > 0) {
+            pool.invoke(new RangeTask(0, count, leafSize, action));
+        }
+        if (cancelled) {
+            throw new CancellationException("batch search was cancelled");
+        }
+    }
+
+    private final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final RangeConsumer action;
+
+        RangeTask(int from, int to, int leafSize, RangeConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+            if (to - from <= leafSize) {
+                action.accept(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, leafSize, action), new RangeTask(mid, to, leafSize, action));
+        }
+    }
+
+    /**
+     * k best results for one pattern; merging is synchronized, offering is not (used only by local instances)
+     */
+    private static final class TopK {
+        final int k;
+        private Hit[] hits;
+        private int size;
+
+        TopK(int k) {
+            this.k = k;
+            this.hits = new Hit[Math.min(k, 16)];
+        }
+
+        private static boolean better(Hit a, Hit b) {
+            return a.result.dist < b.result.dist || a.result.dist == b.result.dist && a.textIndex < b.textIndex;
+        }
+
+        /**
+         * Keeps hits sorted; k is usually small, so insertion is cheaper than heap
+         */
+        void offer(int textIndex, StrDist.DistResInfo res) {
+            Hit hit = new Hit(textIndex, res);
+            if (size == k && !better(hit, hits[size - 1])) {
+                return;
+            }
+            if (size < k) {
+                if (size == hits.length) {
+                    hits = Arrays.copyOf(hits, Math.min(k, 2 * size));
+                }
+                size++;
+            }
+            int i = size - 1;
+            while (i > 0 && better(hit, hits[i - 1])) {
+                hits[i] = hits[i - 1];
+                i--;
+            }
+            hits[i] = hit;
+        }
+
+        synchronized void mergeFrom(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                Hit hit = other.hits[i];
+                offer(hit.textIndex, hit.result);
+            }
+        }
+
+        synchronized List<Hit> toList() {
+            return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(hits).subList(0, size)));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Classes of chars used for borders of words and rows, looked up by one table over the BMP
+ * instead of scanning StrDist.SPACES, StrDist.LINE_BREAKS etc. with indexOf.
+ * Masks are unions of flags, and is(c, mask) tells whether c belongs to any class of mask.
+ */
+final class CharClass {
+    static final int SPACE = 1;
+    static final int LINE_BREAK = 1 << 1;
+    static final int QUOTE_OPEN = 1 << 2;
+    static final int QUOTE_CLOSE = 1 << 3;
+    static final int DOT = 1 << 4;
+    /**
+     * '_' and '\t', which are not spaces, but are skipped near borders as spaces are
+     */
+    static final int UNDERSCORE_OR_TAB = 1 << 5;
+
+    /**
+     * Word may begin just after such char
+     */
+    static final int WORD_OPENER = SPACE | LINE_BREAK | QUOTE_OPEN;
+    /**
+     * Word may end just before such char
+     */
+    static final int WORD_CLOSER = SPACE | LINE_BREAK | QUOTE_CLOSE;
+    /**
+     * Chars which may precede match at begin of row or word ("_\t" + SPACES + QUOTES_OPEN + DOTS)
+     */
+    static final int CAN_SKIP_AT_ROW_BEGIN = UNDERSCORE_OR_TAB | SPACE | QUOTE_OPEN | DOT;
+    /**
+     * Chars skipped before match when its diff is shown ("_\t" + SPACES + DOTS + QUOTES_OPEN)
+     */
+    static final int SPACES_EXTENDED_BEGIN = UNDERSCORE_OR_TAB | SPACE | DOT | QUOTE_OPEN;
+    /**
+     * Chars which may follow match at end of row ("_\t" + SPACES + DOTS + QUOTES_CLOSE)
+     */
+    static final int SPACES_EXTENDED_END = UNDERSCORE_OR_TAB | SPACE | DOT | QUOTE_CLOSE;
+    /**
+     * All chars which matter for borders
+     */
+    static final int BORDER = UNDERSCORE_OR_TAB | SPACE | LINE_BREAK | QUOTE_OPEN | QUOTE_CLOSE | DOT;
+
+    private static final byte[] FLAGS = initFlags();
+
+    private CharClass() {
+    }
+
+    private static byte[] initFlags() {
+        byte[] flags = new byte[0x10000];
+        mark(flags, StrDist.SPACES, SPACE);
+        mark(flags, StrDist.LINE_BREAKS, LINE_BREAK);
+        mark(flags, StrDist.QUOTES_OPEN, QUOTE_OPEN);
+        mark(flags, StrDist.QUOTES_CLOSE, QUOTE_CLOSE);
+        mark(flags, StrDist.DOTS, DOT);
+        mark(flags, "_\t", UNDERSCORE_OR_TAB);
+        return flags;
+    }
+
+    private static void mark(byte[] flags, String chars, int flag) {
+        for (int k = 0; k < chars.length(); k++) {
+            flags[chars.charAt(k)] |= (byte) flag;
+        }
+    }
+
+    /**
+     * @return whether c belongs to any of classes of mask
+     */
+    static boolean is(char c, int mask) {
+        return (FLAGS[c] & mask) != 0;
+    }
+}
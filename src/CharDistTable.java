@@ -0,0 +1,104 @@
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Primitive lookup table for distances between chars (@see StrDist#getCharsDist).
+ * Only chars which belong to at least one class of similar chars ("special" chars) get own index;
+ * indices are found via two-level page table over BMP, distances between special chars are stored in dense byte matrix.
+ * All other pairs differ only by case or are completely different, so they need no table at all.
+ * Lookups neither allocate nor hash.
+ */
+final class CharDistTable {
+    /**
+     * pages[c >>> 8][c & 0xFF] is (index of special char c) + 1, or 0 for not-special c; null page means no special chars in it
+     */
+    private final short[][] pages = new short[256][];
+    /**
+     * Special chars in order of their indices
+     */
+    private final char[] specials;
+    /**
+     * Number of special chars
+     */
+    private final int size;
+    /**
+     * Distances between special chars, row-major size x size
+     */
+    private final byte[] dists;
+
+    /**
+     * @param charToClasses indices of classes of similar chars which contain the char
+     * @param classDists    classDists[k] is distance between chars of k-th class
+     */
+    CharDistTable(Map<Character, Set<Integer>> charToClasses, int[] classDists) {
+        specials = new char[charToClasses.size()];
+        int cnt = 0;
+        for (char c : charToClasses.keySet()) {
+            specials[cnt++] = c;
+            if (pages[c >>> 8] == null)
+                pages[c >>> 8] = new short[256];
+            pages[c >>> 8][c & 0xFF] = (short) cnt;
+        }
+        size = cnt;
+        dists = new byte[size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                dists[i * size + j] = (byte) calcDist(specials[i], specials[j], charToClasses, classDists);
+            }
+        }
+    }
+
+    /**
+     * Straightforward (and slow) calculation of distance, used only to fill the table.
+     */
+    private static int calcDist(char c1, char c2, Map<Character, Set<Integer>> charToClasses, int[] classDists) {
+        if (c1 == c2)
+            return 0;
+        if (charToClasses.containsKey(c1) && charToClasses.containsKey(c2)) {
+            int res = StrDist.COMMON_DIFF;
+            for (int i : charToClasses.get(c1)) {
+                if (charToClasses.get(c2).contains(i)) {
+                    res = Math.min(res, classDists[i]);
+                }
+            }
+            char c1Upper = Character.toUpperCase(c1);
+            char c2Upper = Character.toUpperCase(c2);
+            if (c1Upper != c1 || c2Upper != c2) {
+                int diffUpCased = calcDist(c1Upper, c2Upper, charToClasses, classDists);
+                if (diffUpCased < res)
+                    res = (res + diffUpCased) / 2;
+            }
+            return res;
+        }
+        return Character.toUpperCase(c1) == Character.toUpperCase(c2) ? StrDist.COMMON_DIFF / 2 : StrDist.COMMON_DIFF;
+    }
+
+    private int indexOf(char c) {
+        short[] page = pages[c >>> 8];
+        return page == null ? 0 : page[c & 0xFF];
+    }
+
+    /**
+     * @return all special chars (the only ones which may be similar to chars other than own case variants)
+     */
+    char[] getSpecials() {
+        return specials.clone();
+    }
+
+    boolean isSpecial(char c) {
+        return indexOf(c) != 0;
+    }
+
+    /**
+     * The same as StrDist.getCharsDist, but without any boxing and hashing
+     */
+    int dist(char c1, char c2) {
+        if (c1 == c2)
+            return 0;
+        int i1 = indexOf(c1);
+        int i2 = indexOf(c2);
+        if (i1 != 0 && i2 != 0)
+            return dists[(i1 - 1) * size + (i2 - 1)];
+        return Character.toUpperCase(c1) == Character.toUpperCase(c2) ? StrDist.COMMON_DIFF / 2 : StrDist.COMMON_DIFF;
+    }
+}
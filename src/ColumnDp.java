@@ -0,0 +1,472 @@
+import java.util.Arrays;
+
+/**
+ * Generalized-Levenshtein DP table of StrDistEngine#calcStrDist, calculated column by column
+ * (column j corresponds to first j chars of superStr, row i to first i chars of subStr).
+ * Keeps only the last four columns, so memory depends on subStr length only.
+ * Values and choices are exactly the same as in full table.
+ * <p>
+ * Lookback of doSubtractIfLongSameSeq (which may go arbitrarily far along diagonal) is replaced by "runs":
+ * for each cell, the run describes chain of preceding diagonal cells which are usable by that lookback.
+ * <p>
+ * When maxDist is given, cells which provably can't lead to distance below maxDist ("dead" cells) are skipped
+ * (Ukkonen's cutoff): each column is calculated only down to the first dead row which can't be reached
+ * from the last live cells of previous columns, all rows below it are treated as INF.
+ * Values of live cells (and so distances below maxDist) are exactly the same as without bound.
+ */
+final class ColumnDp {
+    static final byte REPLACE_OR_COPY = (byte) StrDist.KindOfEdit.REPLACE_OR_COPY.ordinal();
+    static final byte DEL = (byte) StrDist.KindOfEdit.DEL.ordinal();
+    static final byte INS = (byte) StrDist.KindOfEdit.INS.ordinal();
+    static final byte SWAP = (byte) StrDist.KindOfEdit.SWAP.ordinal();
+    static final byte SWAP_THREE = (byte) StrDist.KindOfEdit.SWAP_THREE.ordinal();
+    static final byte STOP_HERE = (byte) StrDist.KindOfEdit.STOP_HERE.ordinal();
+
+    /**
+     * Max sum of costs of similar (but not same) chars still treated as "long same sequence"
+     */
+    static final int LONG_SEQ_BUDGET = StrDist.COMMON_DIFF / 2;
+    /**
+     * Run is stored as [index of its first row, number of entries, entries...];
+     * entry is (row << 2 | cost) for each non-zero cost in the run, nearest first.
+     * Costs are in 1..3 and budget is LONG_SEQ_BUDGET, so more than LONG_SEQ_BUDGET + 1 entries are never needed.
+     */
+    static final int RUN_STRIDE = LONG_SEQ_BUDGET + 3;
+    /**
+     * maxDist meaning "no bound"
+     */
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+    /**
+     * Value of skipped (dead) cells; large enough to be never chosen, small enough to never overflow
+     */
+    static final int INF = Integer.MAX_VALUE / 4;
+
+    private final CharDistTable charsDist;
+    private final char[] sub;
+    private final int[] trivDelCosts;
+    private final int[] costDelTwo;
+    private final boolean doSubtractIfLongSameSeq;
+    private final int n;
+    private final boolean bounded;
+    /**
+     * Cell of row i is dead when its value is not less than deadFrom[i]; null when not bounded.
+     * Steps of path never cost less than -maxDiscount (only REPLACE_OR_COPY with doSubtractIfLongSameSeq can be negative),
+     * so cell (i, j) can lead to distance below maxDist only if its value is below maxDist + (n - i) * maxDiscount.
+     */
+    private final int[] deadFrom;
+
+    /**
+     * Index of current column
+     */
+    private int j;
+    /**
+     * dp values of current column and three previous ones
+     */
+    private int[] dp0, dp1, dp2, dp3;
+    /**
+     * Costs of replacing sub[i-1] with corresponding char of superStr, for current column and two previous ones
+     */
+    private int[] pair0, pair1, pair2;
+    private byte[] choiceCur, choicePrev;
+    private int[] runCur, runPrev;
+    /**
+     * Last calculated row of current column and three previous ones (rows below are INF), used only when bounded
+     */
+    private int ext0, ext1, ext2, ext3;
+    /**
+     * Last live row of current column and three previous ones, or -1 when column has no live cells; used only when bounded
+     */
+    private int live0, live1 = -1, live2 = -1, live3 = -1;
+
+    ColumnDp(CharDistTable charsDist, String subStr, int[] trivDelCosts, int[] costDelTwo, boolean doSubtractIfLongSameSeq) {
+        this(charsDist, subStr, trivDelCosts, costDelTwo, doSubtractIfLongSameSeq, UNBOUNDED);
+    }
+
+    /**
+     * @param maxDist only distances below it are needed, or UNBOUNDED
+     */
+    ColumnDp(CharDistTable charsDist, String subStr, int[] trivDelCosts, int[] costDelTwo, boolean doSubtractIfLongSameSeq, int maxDist) {
+        this.charsDist = charsDist;
+        this.sub = subStr.toCharArray();
+        this.trivDelCosts = trivDelCosts;
+        this.costDelTwo = costDelTwo;
+        this.doSubtractIfLongSameSeq = doSubtractIfLongSameSeq;
+        this.n = sub.length;
+        dp0 = new int[n + 1];
+        dp1 = new int[n + 1];
+        dp2 = new int[n + 1];
+        dp3 = new int[n + 1];
+        pair0 = new int[n + 1];
+        pair1 = new int[n + 1];
+        pair2 = new int[n + 1];
+        choiceCur = new byte[n + 1];
+        choicePrev = new byte[n + 1];
+        if (doSubtractIfLongSameSeq) {
+            runCur = new int[(n + 1) * RUN_STRIDE];
+            runPrev = new int[(n + 1) * RUN_STRIDE];
+        }
+        bounded = (maxDist != UNBOUNDED);
+        if (bounded) {
+            int maxDiscount = maxDiscount(n, doSubtractIfLongSameSeq);
+            deadFrom = new int[n + 1];
+            for (int i = 0; i <= n; i++) {
+                deadFrom[i] = (int) Math.min(INF, maxDist + (long) (n - i) * maxDiscount);
+            }
+            Arrays.fill(dp1, INF);
+            Arrays.fill(dp2, INF);
+            Arrays.fill(dp3, INF);
+        } else {
+            deadFrom = null;
+        }
+        j = 0;
+        choiceCur[0] = STOP_HERE;
+        ext0 = n;
+        live0 = n;
+        for (int i = 1; i <= n; i++) {
+            dp0[i] = dp0[i - 1] + trivDelCosts[i - 1];
+            choiceCur[i] = DEL;
+            if (bounded && dp0[i] >= deadFrom[i] && ext0 == n) {
+                ext0 = i;
+                live0 = i - 1;
+            }
+        }
+        if (bounded) {
+            for (int i = ext0 + 1; i <= n; i++) {
+                dp0[i] = INF;
+            }
+            if (dp0[0] >= deadFrom[0]) {
+                live0 = -1;
+            }
+        }
+        if (doSubtractIfLongSameSeq) {
+            for (int i = 0; i <= n; i++) {
+                runCur[i * RUN_STRIDE] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Max amount by which doSubtractIfLongSameSeq may reduce cost of one REPLACE_OR_COPY step
+     * (so cost of any step is at least -maxDiscount)
+     */
+    static int maxDiscount(int n, boolean doSubtractIfLongSameSeq) {
+        return doSubtractIfLongSameSeq ? 1 + (int) Math.sqrt(Math.sqrt(n / 8)) : 0;
+    }
+
+    /**
+     * Calculates next column.
+     *
+     * @param c          next char of superStr
+     * @param insCost    cost of inserting c
+     * @param insTwoCost cost of inserting c just after previous char of superStr (when it's cheaper than insCost)
+     * @param stopHere   whether match may begin just before c (STOP_HERE in top row)
+     * @return value in bottom row of the new column
+     */
+    int nextColumn(char c, int insCost, int insTwoCost, boolean stopHere) {
+        int[] t = dp3;
+        dp3 = dp2;
+        dp2 = dp1;
+        dp1 = dp0;
+        dp0 = t;
+        t = pair2;
+        pair2 = pair1;
+        pair1 = pair0;
+        pair0 = t;
+        byte[] tc = choicePrev;
+        choicePrev = choiceCur;
+        choiceCur = tc;
+        if (doSubtractIfLongSameSeq) {
+            t = runPrev;
+            runPrev = runCur;
+            runCur = t;
+            runCur[0] = 1;
+            runCur[1] = 0;
+        }
+        int oldExt = ext3;
+        ext3 = ext2;
+        ext2 = ext1;
+        ext1 = ext0;
+        live3 = live2;
+        live2 = live1;
+        live1 = live0;
+        if (j < Integer.MAX_VALUE) {
+            // only j > 2 matters for long texts, so it saturates instead of overflowing on streams (@see StreamSearch)
+            j++;
+        }
+
+        if (stopHere) {
+            dp0[0] = 0;
+            choiceCur[0] = STOP_HERE;
+        } else {
+            dp0[0] = dp1[0] + insCost;
+            choiceCur[0] = INS;
+        }
+        int costInsCheaper = (insTwoCost < insCost ? insTwoCost : insCost);
+        int reach = n;
+        if (bounded) {
+            reach = Math.min(n, Math.max(live1 + 1, Math.max(live2 + 2, live3 + 3)));
+            live0 = (dp0[0] < deadFrom[0] ? 0 : -1);
+        }
+        ext0 = n;
+
+        for (int i = 1; i <= n; i++) {
+            int pairCost = charsDist.dist(sub[i - 1], c);
+            pair0[i] = pairCost;
+
+            int minDist = dp1[i] + (choicePrev[i] != DEL ? costInsCheaper : insCost);
+            byte minEdit = INS;
+
+            int costDel = trivDelCosts[i - 1];
+            if (choiceCur[i - 1] != INS && costDelTwo[i - 1] < costDel) {
+                costDel = costDelTwo[i - 1];
+            }
+            int distDel = dp0[i - 1] + costDel;
+            if (distDel < minDist) {
+                minDist = distDel;
+                minEdit = DEL;
+            }
+
+            int replCost = pairCost;
+            if (doSubtractIfLongSameSeq && replCost <= 3 && i > 1 && j > 1) {
+                int numExtraSimilar = 2 + longSameSeqLength(runPrev, i - 1, LONG_SEQ_BUDGET - replCost);
+                if (numExtraSimilar > 2) {
+                    replCost -= 1;
+                    if (numExtraSimilar > 8) {
+                        replCost -= (int) Math.sqrt(Math.sqrt(numExtraSimilar / 8));
+                    }
+                }
+            }
+            int distReplace = dp1[i - 1] + replCost;
+            if (distReplace <= minDist) {
+                minDist = distReplace;
+                minEdit = REPLACE_OR_COPY;
+            }
+            if (i > 1 && j > 1 && dp2[i - 2] < minDist) {
+                int commonOrderCost = replCost + pair1[i - 1];
+                int swappedOrderCost = pair1[i] + pair0[i - 1];
+                if (swappedOrderCost < commonOrderCost) {
+                    int distForSwapped = dp2[i - 2] + (swappedOrderCost + commonOrderCost) / 2;
+                    if (distForSwapped < minDist) {
+                        minDist = distForSwapped;
+                        minEdit = SWAP;
+                    }
+                    if (i > 2 && j > 2 && dp3[i - 3] < minDist) {
+                        commonOrderCost += pair2[i - 2];
+                        int swappedOrderCostTwo = pair2[i] + pair0[i - 1] + pair1[i - 2];
+                        int swappedOrderCostThree = pair0[i - 2] + pair1[i] + pair2[i - 1];
+                        swappedOrderCost = Math.min(swappedOrderCostTwo, swappedOrderCostThree);
+                        if (swappedOrderCost < commonOrderCost) {
+                            distForSwapped = dp3[i - 3] + (swappedOrderCost + 2 * commonOrderCost) / 3;
+                            if (distForSwapped < minDist) {
+                                minDist = distForSwapped;
+                                minEdit = SWAP_THREE;
+                            }
+                        }
+                    }
+                }
+            }
+            dp0[i] = minDist;
+            choiceCur[i] = minEdit;
+            if (doSubtractIfLongSameSeq) {
+                updateRun(runCur, runPrev, i, minEdit == REPLACE_OR_COPY && i > 1 && j > 1 && pair1[i - 1] <= 3, pair1[i - 1]);
+            }
+            if (bounded) {
+                if (minDist < deadFrom[i]) {
+                    live0 = i;
+                } else if (i >= reach) {
+                    // all rows below can be reached only by DEL from this dead cell
+                    ext0 = i;
+                    break;
+                }
+            }
+        }
+        if (ext0 < n) {
+            // pair costs of two more rows may be needed by swaps of next columns
+            for (int i = ext0 + 1; i <= n && i <= ext0 + 2; i++) {
+                pair0[i] = charsDist.dist(sub[i - 1], c);
+            }
+            for (int i = ext0 + 1; i <= oldExt; i++) {
+                dp0[i] = INF;
+            }
+        }
+        return dp0[n];
+    }
+
+    /**
+     * @return false when bounded and every cell of current column is dead,
+     * so nothing below maxDist can be found unless top row becomes 0 (STOP_HERE) again
+     */
+    boolean hasLiveCells() {
+        return live0 >= 0;
+    }
+
+    /**
+     * Number of consecutive usable cells along diagonal, starting from (row, j-1) and going up-left,
+     * such that sum of their costs doesn't exceed budget.
+     * It's the same as (numExtraSimilar - 2) in lookback of full-table calculation.
+     *
+     * @param runPrev runs of previous column
+     */
+    static int longSameSeqLength(int[] runPrev, int row, int budget) {
+        return longSameSeqLength(runPrev, row, row, budget);
+    }
+
+    /**
+     * The same, when run of the row is stored at given slot of runPrev (i.e. runs of only some rows are kept)
+     */
+    static int longSameSeqLength(int[] runPrev, int slot, int row, int budget) {
+        int base = slot * RUN_STRIDE;
+        int cnt = runPrev[base + 1];
+        int sum = 0;
+        for (int k = 0; k < cnt; k++) {
+            int entry = runPrev[base + 2 + k];
+            sum += entry & 3;
+            if (sum > budget) {
+                return row - (entry >> 2);
+            }
+        }
+        return row - runPrev[base] + 1;
+    }
+
+    /**
+     * Cell (i, j) is usable for lookback when it was reached by REPLACE_OR_COPY
+     * and chars of cell (i-1, j-1) are the same or similar enough; its cost is cost of these chars.
+     *
+     * @param runCur  runs of current column, run of row i is written
+     * @param runPrev runs of previous column
+     * @param cost    cost of chars of cell (i-1, j-1)
+     */
+    static void updateRun(int[] runCur, int[] runPrev, int i, boolean usable, int cost) {
+        updateRun(runCur, runPrev, i, i, usable, cost);
+    }
+
+    /**
+     * The same, when runs of rows i-1 and i are stored at slots (slot - 1) and slot
+     */
+    static void updateRun(int[] runCur, int[] runPrev, int slot, int i, boolean usable, int cost) {
+        int base = slot * RUN_STRIDE;
+        if (!usable) {
+            runCur[base] = i + 1;
+            runCur[base + 1] = 0;
+            return;
+        }
+        int prevBase = (slot - 1) * RUN_STRIDE;
+        runCur[base] = runPrev[prevBase];
+        int cnt = 0;
+        int sum = 0;
+        if (cost > 0) {
+            runCur[base + 2] = i << 2 | cost;
+            cnt = 1;
+            sum = cost;
+        }
+        int prevCnt = runPrev[prevBase + 1];
+        for (int k = 0; k < prevCnt && sum <= LONG_SEQ_BUDGET; k++) {
+            int entry = runPrev[prevBase + 2 + k];
+            runCur[base + 2 + cnt] = entry;
+            cnt++;
+            sum += entry & 3;
+        }
+        runCur[base + 1] = cnt;
+    }
+
+    /**
+     * Everything needed to continue calculation from some column (@see #save, #restore)
+     */
+    static final class State {
+        private final int j, ext0, ext1, ext2, live0, live1, live2;
+        private final int[] dp0, dp1, dp2, pair0, pair1, run;
+        private final byte[] choices;
+
+        private State(ColumnDp src) {
+            j = src.j;
+            ext0 = src.ext0;
+            ext1 = src.ext1;
+            ext2 = src.ext2;
+            live0 = src.live0;
+            live1 = src.live1;
+            live2 = src.live2;
+            dp0 = src.dp0.clone();
+            dp1 = src.dp1.clone();
+            dp2 = src.dp2.clone();
+            pair0 = src.pair0.clone();
+            pair1 = src.pair1.clone();
+            choices = src.choiceCur.clone();
+            run = (src.runCur == null ? null : src.runCur.clone());
+        }
+    }
+
+    State save() {
+        return new State(this);
+    }
+
+    void restore(State s) {
+        j = s.j;
+        ext0 = s.ext0;
+        ext1 = s.ext1;
+        ext2 = s.ext2;
+        ext3 = n;
+        live0 = s.live0;
+        live1 = s.live1;
+        live2 = s.live2;
+        System.arraycopy(s.dp0, 0, dp0, 0, n + 1);
+        System.arraycopy(s.dp1, 0, dp1, 0, n + 1);
+        System.arraycopy(s.dp2, 0, dp2, 0, n + 1);
+        System.arraycopy(s.pair0, 0, pair0, 0, n + 1);
+        System.arraycopy(s.pair1, 0, pair1, 0, n + 1);
+        System.arraycopy(s.choices, 0, choiceCur, 0, n + 1);
+        if (s.run != null) {
+            System.arraycopy(s.run, 0, runCur, 0, s.run.length);
+        }
+    }
+
+    /**
+     * Restores path from cell (endRow, endCol) back to column a or top row, using choices stored by columns:
+     * choices of column j (a < j <= endCol) are at [(j - a - 1) * (subStr.length() + 1), (j - a) * (subStr.length() + 1)).
+     * Indices of same chars on the path are put to subToSuper (@see Alignment).
+     */
+    static void traceBack(byte[] table, int a, int endRow, int endCol, String subStr, String superStr,
+                          int[] subToSuper) {
+        int stride = subStr.length() + 1;
+        int iii = endRow;
+        int jjj = endCol;
+        while (iii > 0 && jjj > a) {
+            byte choice = table[(jjj - a - 1) * stride + iii];
+            if (choice == REPLACE_OR_COPY) {
+                if (subStr.charAt(iii - 1) == superStr.charAt(jjj - 1)) {
+                    subToSuper[iii - 1] = jjj - 1;
+                }
+                iii--;
+                jjj--;
+            } else if (choice == DEL) {
+                iii--;
+            } else if (choice == INS) {
+                jjj--;
+            } else if (choice == SWAP) {
+                iii -= 2;
+                jjj -= 2;
+            } else {
+                iii -= 3;
+                jjj -= 3;
+            }
+        }
+    }
+
+    int column() {
+        return j;
+    }
+
+    int[] values() {
+        return dp0;
+    }
+
+    /**
+     * @return last row of current column which was calculated; rows below are INF and their choices are stale (only when bounded)
+     */
+    int lastCalculatedRow() {
+        return ext0;
+    }
+
+    byte[] choices() {
+        return choiceCur;
+    }
+}
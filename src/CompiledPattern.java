@@ -0,0 +1,100 @@
+import java.util.Locale;
+
+/**
+ * Pattern (subStr) prepared once for searching in many texts: trimmed string, costs of deleting its chars,
+ * and the same for its upper-case variant used by getBestMatch___.
+ * Built by StrDistEngine#compile and accepted by the same engine wherever subStr is; immutable, so may be shared between threads.
+ */
+public final class CompiledPattern {
+    final StrDistEngine engine;
+    /**
+     * subStr as it was passed to compile
+     */
+    final String original;
+    /**
+     * Trimmed subStr, or null when original is null or blank
+     */
+    final String subStr;
+    final int[] trivDelCosts;
+    final int[] costDelTwo;
+    private final CompiledPattern upperCase;
+    /**
+     * Searchers of exact occurrences (@see ExactSearch), built on first use
+     */
+    private volatile ExactSearch exactSearch;
+    private volatile ExactSearch upperCaseSearch;
+    private volatile ExactSearch homoglyphSearch;
+
+    CompiledPattern(StrDistEngine engine, String original) {
+        this.engine = engine;
+        this.original = original;
+        if (original == null || original.isBlank()) {
+            subStr = null;
+            trivDelCosts = null;
+            costDelTwo = null;
+            upperCase = this;
+        } else {
+            subStr = original.trim();
+            trivDelCosts = engine.calcTrivCosts(subStr);
+            costDelTwo = engine.calcCostDelTwo(subStr, trivDelCosts);
+            String upper = original.toUpperCase(Locale.ROOT);
+            upperCase = original.equals(upper) ? this : new CompiledPattern(engine, upper);
+        }
+    }
+
+    /**
+     * @return subStr as it was passed to compile
+     */
+    public String getSubStr() {
+        return original;
+    }
+
+    boolean isBlank() {
+        return subStr == null;
+    }
+
+    /**
+     * @return the same pattern upper-cased with Locale.ROOT, or this when it has no lower-case chars
+     */
+    CompiledPattern upperCase() {
+        return upperCase;
+    }
+
+    /**
+     * @return searcher of subStr as it is
+     */
+    ExactSearch exactSearch() {
+        ExactSearch res = exactSearch;
+        if (res == null) {
+            res = new ExactSearch(subStr, null, false);
+            exactSearch = res;
+        }
+        return res;
+    }
+
+    /**
+     * @param upperCase table upper-casing chars of text (@see StrDistEngine.UpperCaseHolder)
+     * @return searcher of subStr (already upper-cased) in text upper-cased char by char
+     */
+    ExactSearch upperCaseSearch(char[] upperCase) {
+        ExactSearch res = upperCaseSearch;
+        if (res == null) {
+            res = new ExactSearch(subStr, upperCase, false);
+            upperCaseSearch = res;
+        }
+        return res;
+    }
+
+    /**
+     * @param homoglyphs table normalizing chars (@see StrDistEngine#normalizeHomoglyphs)
+     * @return searcher of subStr in text, both with homoglyphs normalized
+     */
+    ExactSearch homoglyphSearch(char[] homoglyphs) {
+        ExactSearch res = homoglyphSearch;
+        if (res == null) {
+            res = new ExactSearch(subStr, homoglyphs, true);
+            homoglyphSearch = res;
+        }
+        return res;
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+
+/**
+ * Format of diff rendered by StrDist.DistResInfo#renderDiff.
+ * Diff is passed as calls of begin, span for each part of match (in order), and end.
+ * Texts of spans are ranges of subStr or superStr, which formats append as they are, without copying.
+ * Formats are stateless, so they can be shared between threads.
+ */
+public interface DiffFormat {
+    /**
+     * html, as it was always built for DistResInfo (@see StrDist.DistResInfo#getDiffAsHtml)
+     */
+    DiffFormat HTML = new DiffFormats.Html("html", "");
+    /**
+     * Plain text: skipped chars of subStr as [-...-], inserted chars of superStr as {+...+}
+     */
+    DiffFormat TEXT = new DiffFormats.Text("", "", "[-", "-]", "{+", "+}");
+    /**
+     * Text for terminal, colored by ANSI escapes as styles of html: good green bold, skip yellow underlined, ins red crossed out
+     */
+    DiffFormat ANSI = new DiffFormats.Text("\u001B[1;32m", "\u001B[0m", "\u001B[4;33m", "\u001B[0m", "\u001B[9;31m", "\u001B[0m");
+    /**
+     * JSON object: {"kind": ..., "spans": [{"type": ..., "text": ...}, ...], "dist": ..., "distText": ..., "comment": ...}
+     */
+    DiffFormat JSON = new DiffFormats.Json();
+
+    /**
+     * How diff was found
+     */
+    enum Kind {
+        /**
+         * Way is restored, spans follow subStr
+         */
+        ALIGNED,
+        /**
+         * Way is restored, but no char is matched: the whole superStr is INS, then the whole subStr is SKIP
+         */
+        UNALIGNED,
+        /**
+         * Found trivially, the only span is the whole subStr as GOOD
+         */
+        TRIVIAL,
+        /**
+         * Way is not restored, there are no spans
+         */
+        NOT_RESTORED
+    }
+
+    enum Span {
+        /**
+         * Chars of subStr matched by the same chars of superStr
+         */
+        GOOD,
+        /**
+         * Chars of subStr not found in superStr
+         */
+        SKIP,
+        /**
+         * Chars of superStr inserted into match
+         */
+        INS
+    }
+
+    /**
+     * @param tag       tag used instead of &lt;html&gt; (e.g. "td" to put diff into a table)
+     * @param distNote  text put before "dist =" (e.g. time of search)
+     * @return html format, the same as HTML but for these
+     */
+    static DiffFormat html(String tag, String distNote) {
+        return new DiffFormats.Html(tag, distNote);
+    }
+
+    void begin(Appendable out, Kind kind) throws IOException;
+
+    /**
+     * @param index number of span in this diff, from 0
+     * @param s     subStr or superStr
+     * @param start index of the first char of span in s
+     * @param end   index just after the last char of span in s
+     */
+    void span(Appendable out, Kind kind, Span span, int index, CharSequence s, int start, int end) throws IOException;
+
+    /**
+     * @param dist     found distance
+     * @param distText dist as it's shown, with penalties added to it (e.g. "1.6 + 0.3")
+     * @param comment  comment of trivial match (may contain html), or null
+     */
+    void end(Appendable out, Kind kind, int dist, String distText, String comment) throws IOException;
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Implementations of DiffFormat (@see DiffFormat#HTML, DiffFormat#TEXT, DiffFormat#ANSI, DiffFormat#JSON)
+ */
+final class DiffFormats {
+    private DiffFormats() {
+    }
+
+    private static String stripTags(String comment) {
+        return comment.replaceAll("<[^>]*>", "");
+    }
+
+    private static boolean hasComment(String comment) {
+        return comment != null && !comment.isBlank();
+    }
+
+    static final class Html implements DiffFormat {
+        private final String tag;
+        private final String distNote;
+
+        Html(String tag, String distNote) {
+            this.tag = tag;
+            this.distNote = distNote;
+        }
+
+        private static String cssClass(Span span) {
+            return span.name().toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        public void begin(Appendable out, Kind kind) throws IOException {
+            switch (kind) {
+                case ALIGNED -> out.append('<').append(tag).append(">\n<p>\n");
+                case UNALIGNED, TRIVIAL -> out.append('<').append(tag).append(">\n");
+                case NOT_RESTORED -> out.append("cmp not restored because you didn't pass such option");
+            }
+        }
+
+        @Override
+        public void span(Appendable out, Kind kind, Span span, int index, CharSequence s, int start, int end) throws IOException {
+            switch (kind) {
+                case ALIGNED -> out.append("<span class=\"").append(cssClass(span)).append("\">")
+                        .append(s, start, end).append("</span>");
+                // html always showed superStr as "skip" and subStr as "ins" here
+                case UNALIGNED -> out.append("<span class=\"").append(span == Span.INS ? "skip" : "ins").append("\">")
+                        .append(s, start, end).append("</span>\n");
+                case TRIVIAL -> out.append("<span class=\"").append(cssClass(span)).append("\">\n")
+                        .append(s, start, end).append("\n</span>\n");
+                case NOT_RESTORED -> {
+                }
+            }
+        }
+
+        @Override
+        public void end(Appendable out, Kind kind, int dist, String distText, String comment) throws IOException {
+            switch (kind) {
+                case ALIGNED -> out.append("\n</p>\n(").append(distNote).append("dist = ").append(distText)
+                        .append(")\n</").append(tag).append(">\n");
+                case UNALIGNED -> out.append('(').append(distNote).append("dist = ").append(distText)
+                        .append("(?))</").append(tag).append('>');
+                case TRIVIAL -> out.append('(').append(distNote).append("dist = ").append(distText).append(", found trivially")
+                        .append(hasComment(comment) ? " &mdash; " + comment : "")
+                        .append(")\n</").append(tag).append('>');
+                case NOT_RESTORED -> {
+                }
+            }
+        }
+    }
+
+    static final class Text implements DiffFormat {
+        private final String goodOpen;
+        private final String goodClose;
+        private final String skipOpen;
+        private final String skipClose;
+        private final String insOpen;
+        private final String insClose;
+
+        Text(String goodOpen, String goodClose, String skipOpen, String skipClose, String insOpen, String insClose) {
+            this.goodOpen = goodOpen;
+            this.goodClose = goodClose;
+            this.skipOpen = skipOpen;
+            this.skipClose = skipClose;
+            this.insOpen = insOpen;
+            this.insClose = insClose;
+        }
+
+        @Override
+        public void begin(Appendable out, Kind kind) {
+        }
+
+        @Override
+        public void span(Appendable out, Kind kind, Span span, int index, CharSequence s, int start, int end) throws IOException {
+            switch (span) {
+                case GOOD -> out.append(goodOpen).append(s, start, end).append(goodClose);
+                case SKIP -> out.append(skipOpen).append(s, start, end).append(skipClose);
+                case INS -> out.append(insOpen).append(s, start, end).append(insClose);
+            }
+        }
+
+        @Override
+        public void end(Appendable out, Kind kind, int dist, String distText, String comment) throws IOException {
+            switch (kind) {
+                case ALIGNED -> out.append(" (dist = ").append(distText).append(')');
+                case UNALIGNED -> out.append(" (dist = ").append(distText).append("(?))");
+                case TRIVIAL -> out.append(" (dist = ").append(distText).append(", found trivially")
+                        .append(hasComment(comment) ? " — " + stripTags(comment) : "").append(')');
+                case NOT_RESTORED -> out.append("(dist = ").append(distText).append(", way not restored)");
+            }
+        }
+    }
+
+    static final class Json implements DiffFormat {
+        private static void appendString(Appendable out, CharSequence s, int start, int end) throws IOException {
+            out.append('"');
+            for (int k = start; k < end; k++) {
+                char c = s.charAt(k);
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (c < ' ') {
+                            out.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.append(c);
+                        }
+                    }
+                }
+            }
+            out.append('"');
+        }
+
+        @Override
+        public void begin(Appendable out, Kind kind) throws IOException {
+            out.append("{\"kind\":\"").append(kind.name().toLowerCase(Locale.ROOT)).append("\",\"spans\":[");
+        }
+
+        @Override
+        public void span(Appendable out, Kind kind, Span span, int index, CharSequence s, int start, int end) throws IOException {
+            if (index > 0) {
+                out.append(',');
+            }
+            out.append("{\"type\":\"").append(span.name().toLowerCase(Locale.ROOT)).append("\",\"text\":");
+            appendString(out, s, start, end);
+            out.append('}');
+        }
+
+        @Override
+        public void end(Appendable out, Kind kind, int dist, String distText, String comment) throws IOException {
+            out.append("],\"dist\":").append(Integer.toString(dist)).append(",\"distText\":");
+            appendString(out, distText, 0, distText.length());
+            if (hasComment(comment)) {
+                String text = stripTags(comment);
+                out.append(",\"comment\":");
+                appendString(out, text, 0, text.length());
+            }
+            out.append('}');
+        }
+    }
+}
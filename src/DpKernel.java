@@ -0,0 +1,38 @@
+/**
+ * Alternative implementation of the whole generalized-Levenshtein DP table (not bounded),
+ * with values and choices exactly the same as of ColumnDp.
+ * <p>
+ * The only implementation is VectorDpKernel (in src-vector, built with --add-modules jdk.incubator.vector):
+ * it's loaded at runtime, so main sources don't depend on incubator module,
+ * and without the module (or without the class) ColumnDp is used as before.
+ */
+interface DpKernel {
+    /**
+     * Vectorized kernel, or null when it isn't available in this JVM
+     */
+    DpKernel VECTORIZED = loadVectorized();
+
+    /**
+     * @return min length of both strings for which this kernel is faster than ColumnDp
+     */
+    int minLength();
+
+    /**
+     * Calculates the table for subStr (rows) and superStr (columns); arguments are the same as of WavefrontDp.
+     *
+     * @param lastRow receives values of the last row, superStr.length() + 1 of them
+     * @param choices receives choices of columns 1..superStr.length() laid out as for ColumnDp#traceBack, or null when not needed
+     */
+    void calc(CharDistTable charsDist, String subStr, String superStr, int[] trivDelCosts, int[] costDelTwo,
+              int[] trivInsCosts, int[] costInsTwo, boolean[] stopHere, boolean doSubtractIfLongSameSeq,
+              int[] lastRow, byte[] choices);
+
+    private static DpKernel loadVectorized() {
+        try {
+            return (DpKernel) Class.forName("VectorDpKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // class isn't built, module jdk.incubator.vector isn't added, or vectors are too short to be useful
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/**
+ * Exact search of a pattern, optionally with chars of text (and of pattern) folded by table,
+ * e.g. upper-cased or with homoglyphs normalized; folded search is Horspool's algorithm over folded chars,
+ * so text is never copied and nothing is allocated while searching.
+ * Shifts are kept by low byte of folded char: chars with the same low byte share the smallest of their shifts, which is still safe.
+ * Without folding, String.indexOf is used: it's intrinsic of JVM, vectorized, and faster than Horspool's loop in Java.
+ * Immutable, so may be shared between threads (@see CompiledPattern).
+ */
+final class ExactSearch {
+    /**
+     * Pattern as it is, used without folding
+     */
+    private final String patternString;
+    /**
+     * Folded pattern and shifts of Horspool's algorithm (only with fold)
+     */
+    private final char[] pattern;
+    private final int[] shift;
+    /**
+     * Folded char for each char of text, or null to compare chars as they are
+     */
+    private final char[] fold;
+
+    /**
+     * @param fold        table folding chars of text, or null
+     * @param foldPattern whether chars of pattern are folded by the same table (otherwise pattern is already folded)
+     */
+    ExactSearch(String pattern, char[] fold, boolean foldPattern) {
+        this.patternString = pattern;
+        this.fold = fold;
+        if (fold == null) {
+            this.pattern = null;
+            this.shift = null;
+            return;
+        }
+        int n = pattern.length();
+        this.pattern = new char[n];
+        for (int k = 0; k < n; k++) {
+            char c = pattern.charAt(k);
+            this.pattern[k] = (foldPattern ? fold[c] : c);
+        }
+        this.shift = new int[256];
+        Arrays.fill(shift, n);
+        for (int k = 0; k < n - 1; k++) {
+            shift[this.pattern[k] & 0xFF] = n - 1 - k;
+        }
+    }
+
+    int length() {
+        return patternString.length();
+    }
+
+    /**
+     * @return the first index not less than from where (folded) text equals pattern, or -1
+     */
+    int indexOf(String text, int from) {
+        if (fold == null) {
+            return text.indexOf(patternString, from);
+        }
+        int n = pattern.length;
+        int m = text.length();
+        char last = pattern[n - 1];
+        for (int pos = Math.max(from, 0); pos <= m - n; ) {
+            char c = text.charAt(pos + n - 1);
+            c = fold[c];
+            if (c == last) {
+                int k = n - 2;
+                while (k >= 0 && fold[text.charAt(pos + k)] == pattern[k]) {
+                    k--;
+                }
+                if (k < 0) {
+                    return pos;
+                }
+            }
+            pos += shift[c & 0xFF];
+        }
+        return -1;
+    }
+}
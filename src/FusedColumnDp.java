@@ -0,0 +1,237 @@
+/**
+ * Several lanes of generalized-Levenshtein DP (@see ColumnDp) over the same pair of strings, calculated in one sweep:
+ * every cell keeps value and choice of each lane, so each char of superStr is read, and costs of pairs of chars are looked up,
+ * once for all lanes which compare the same chars.
+ * Lanes are variants of getBestMatch___ cascade (@see StrDistEngine#getBestMatchFused):
+ * PLAIN (as is), SUBTRACT (with doSubtractIfLongSameSeq) and, optionally, UPPER_CASE (both strings upper-cased;
+ * pattern is taken upper-cased from CompiledPattern, chars of superStr are passed already upper-cased by caller).
+ * Not bounded; values are exactly the same as of separate ColumnDp for each lane.
+ */
+final class FusedColumnDp {
+    static final int PLAIN = 0;
+    static final int SUBTRACT = 1;
+    static final int UPPER_CASE = 2;
+
+    private final CharDistTable charsDist;
+    /**
+     * Number of lanes: 2 (PLAIN and SUBTRACT) or 3 (also UPPER_CASE)
+     */
+    private final int lanes;
+    private final int n;
+    private final char[] sub;
+    private final char[] subUpper;
+    private final int[] trivDelCosts;
+    private final int[] costDelTwo;
+    private final int[] trivDelCostsUpper;
+    private final int[] costDelTwoUpper;
+
+    /**
+     * Index of current column
+     */
+    private int j;
+    /**
+     * dp values of current column and three previous ones; value of lane k in row i is at [i * lanes + k]
+     */
+    private int[] dp0, dp1, dp2, dp3;
+    /**
+     * Choices of current and previous column, laid out as dp values
+     */
+    private byte[] choiceCur, choicePrev;
+    /**
+     * Costs of replacing sub[i-1] with corresponding char of superStr, for current column and two previous ones
+     * (shared by PLAIN and SUBTRACT)
+     */
+    private int[] pair0, pair1, pair2;
+    /**
+     * The same for subUpper and upper-cased chars of superStr (UPPER_CASE lane)
+     */
+    private int[] pairUpper0, pairUpper1, pairUpper2;
+    /**
+     * Runs of SUBTRACT lane (@see ColumnDp#updateRun)
+     */
+    private int[] runCur, runPrev;
+
+    /**
+     * @param upperCase pattern.upperCase() of the same length, or null when UPPER_CASE lane is not needed
+     */
+    FusedColumnDp(CharDistTable charsDist, CompiledPattern pattern, CompiledPattern upperCase) {
+        this.charsDist = charsDist;
+        this.lanes = (upperCase == null ? 2 : 3);
+        this.sub = pattern.subStr.toCharArray();
+        this.n = sub.length;
+        this.trivDelCosts = pattern.trivDelCosts;
+        this.costDelTwo = pattern.costDelTwo;
+        if (upperCase != null) {
+            subUpper = upperCase.subStr.toCharArray();
+            trivDelCostsUpper = upperCase.trivDelCosts;
+            costDelTwoUpper = upperCase.costDelTwo;
+            pairUpper0 = new int[n + 1];
+            pairUpper1 = new int[n + 1];
+            pairUpper2 = new int[n + 1];
+        } else {
+            subUpper = null;
+            trivDelCostsUpper = null;
+            costDelTwoUpper = null;
+        }
+        int cells = (n + 1) * lanes;
+        dp0 = new int[cells];
+        dp1 = new int[cells];
+        dp2 = new int[cells];
+        dp3 = new int[cells];
+        choiceCur = new byte[cells];
+        choicePrev = new byte[cells];
+        pair0 = new int[n + 1];
+        pair1 = new int[n + 1];
+        pair2 = new int[n + 1];
+        runCur = new int[(n + 1) * ColumnDp.RUN_STRIDE];
+        runPrev = new int[(n + 1) * ColumnDp.RUN_STRIDE];
+
+        j = 0;
+        for (int k = 0; k < lanes; k++) {
+            int[] delCosts = (k == UPPER_CASE ? trivDelCostsUpper : trivDelCosts);
+            choiceCur[k] = ColumnDp.STOP_HERE;
+            for (int i = 1; i <= n; i++) {
+                dp0[i * lanes + k] = dp0[(i - 1) * lanes + k] + delCosts[i - 1];
+                choiceCur[i * lanes + k] = ColumnDp.DEL;
+            }
+        }
+        for (int i = 0; i <= n; i++) {
+            runCur[i * ColumnDp.RUN_STRIDE] = i + 1;
+        }
+    }
+
+    /**
+     * Calculates next column of all lanes.
+     *
+     * @param c               next char of superStr
+     * @param insCost         cost of inserting c
+     * @param insTwoCost      cost of inserting c just after previous char of superStr (when it's cheaper than insCost)
+     * @param cUpper          c upper-cased (ignored without UPPER_CASE lane)
+     * @param insCostUpper    cost of inserting cUpper
+     * @param insTwoCostUpper cost of inserting cUpper just after previous char of superStr upper-cased
+     * @param stopHere        whether match may begin just before c (STOP_HERE in top row)
+     */
+    void nextColumn(char c, int insCost, int insTwoCost, char cUpper, int insCostUpper, int insTwoCostUpper, boolean stopHere) {
+        int[] t = dp3;
+        dp3 = dp2;
+        dp2 = dp1;
+        dp1 = dp0;
+        dp0 = t;
+        t = pair2;
+        pair2 = pair1;
+        pair1 = pair0;
+        pair0 = t;
+        if (pairUpper0 != null) {
+            t = pairUpper2;
+            pairUpper2 = pairUpper1;
+            pairUpper1 = pairUpper0;
+            pairUpper0 = t;
+        }
+        byte[] tc = choicePrev;
+        choicePrev = choiceCur;
+        choiceCur = tc;
+        t = runPrev;
+        runPrev = runCur;
+        runCur = t;
+        runCur[0] = 1;
+        runCur[1] = 0;
+        j++;
+
+        for (int k = 0; k < lanes; k++) {
+            if (stopHere) {
+                dp0[k] = 0;
+                choiceCur[k] = ColumnDp.STOP_HERE;
+            } else {
+                dp0[k] = dp1[k] + (k == UPPER_CASE ? insCostUpper : insCost);
+                choiceCur[k] = ColumnDp.INS;
+            }
+        }
+        int costInsCheaper = Math.min(insTwoCost, insCost);
+        int costInsCheaperUpper = Math.min(insTwoCostUpper, insCostUpper);
+
+        for (int i = 1; i <= n; i++) {
+            pair0[i] = charsDist.dist(sub[i - 1], c);
+            calcCell(PLAIN, i, pair0, pair1, pair2, insCost, costInsCheaper, trivDelCosts, costDelTwo);
+            calcCell(SUBTRACT, i, pair0, pair1, pair2, insCost, costInsCheaper, trivDelCosts, costDelTwo);
+            if (lanes > UPPER_CASE) {
+                pairUpper0[i] = charsDist.dist(subUpper[i - 1], cUpper);
+                calcCell(UPPER_CASE, i, pairUpper0, pairUpper1, pairUpper2, insCostUpper, costInsCheaperUpper,
+                        trivDelCostsUpper, costDelTwoUpper);
+            }
+        }
+    }
+
+    /**
+     * The same as body of row loop of ColumnDp#nextColumn (when not bounded), for one lane.
+     */
+    private void calcCell(int lane, int i, int[] p0, int[] p1, int[] p2, int insCost, int costInsCheaper,
+                          int[] delCosts, int[] delTwoCosts) {
+        int cell = i * lanes + lane;
+        int up = cell - lanes;
+
+        int minDist = dp1[cell] + (choicePrev[cell] != ColumnDp.DEL ? costInsCheaper : insCost);
+        byte minEdit = ColumnDp.INS;
+
+        int costDel = delCosts[i - 1];
+        if (choiceCur[up] != ColumnDp.INS && delTwoCosts[i - 1] < costDel) {
+            costDel = delTwoCosts[i - 1];
+        }
+        int distDel = dp0[up] + costDel;
+        if (distDel < minDist) {
+            minDist = distDel;
+            minEdit = ColumnDp.DEL;
+        }
+
+        int replCost = p0[i];
+        if (lane == SUBTRACT && replCost <= 3 && i > 1 && j > 1) {
+            int numExtraSimilar = 2 + ColumnDp.longSameSeqLength(runPrev, i - 1, ColumnDp.LONG_SEQ_BUDGET - replCost);
+            if (numExtraSimilar > 2) {
+                replCost -= 1;
+                if (numExtraSimilar > 8) {
+                    replCost -= (int) Math.sqrt(Math.sqrt(numExtraSimilar / 8));
+                }
+            }
+        }
+        int distReplace = dp1[up] + replCost;
+        if (distReplace <= minDist) {
+            minDist = distReplace;
+            minEdit = ColumnDp.REPLACE_OR_COPY;
+        }
+        if (i > 1 && j > 1 && dp2[up - lanes] < minDist) {
+            int commonOrderCost = replCost + p1[i - 1];
+            int swappedOrderCost = p1[i] + p0[i - 1];
+            if (swappedOrderCost < commonOrderCost) {
+                int distForSwapped = dp2[up - lanes] + (swappedOrderCost + commonOrderCost) / 2;
+                if (distForSwapped < minDist) {
+                    minDist = distForSwapped;
+                    minEdit = ColumnDp.SWAP;
+                }
+                if (i > 2 && j > 2 && dp3[up - 2 * lanes] < minDist) {
+                    commonOrderCost += p2[i - 2];
+                    int swappedOrderCostTwo = p2[i] + p0[i - 1] + p1[i - 2];
+                    int swappedOrderCostThree = p0[i - 2] + p1[i] + p2[i - 1];
+                    swappedOrderCost = Math.min(swappedOrderCostTwo, swappedOrderCostThree);
+                    if (swappedOrderCost < commonOrderCost) {
+                        distForSwapped = dp3[up - 2 * lanes] + (swappedOrderCost + 2 * commonOrderCost) / 3;
+                        if (distForSwapped < minDist) {
+                            minDist = distForSwapped;
+                            minEdit = ColumnDp.SWAP_THREE;
+                        }
+                    }
+                }
+            }
+        }
+        dp0[cell] = minDist;
+        choiceCur[cell] = minEdit;
+        if (lane == SUBTRACT) {
+            ColumnDp.updateRun(runCur, runPrev, i, minEdit == ColumnDp.REPLACE_OR_COPY && i > 1 && j > 1 && p1[i - 1] <= 3, p1[i - 1]);
+        }
+    }
+
+    /**
+     * @return value in bottom row of current column for given lane
+     */
+    int value(int lane) {
+        return dp0[n * lanes + lane];
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Text (superStr) prepared once for searching many patterns in it: trimmed string, costs of inserting its chars,
+ * bitsets of word and row boundaries, and (lazily) flags where match may begin for each left border
+ * and the upper-case variant used by getBestMatch___.
+ * Built by StrDistEngine#indexText and accepted by the same engine wherever superStr is; may be shared between threads.
+ */
+public final class IndexedText {
+    final StrDistEngine engine;
+    /**
+     * superStr as it was passed to indexText
+     */
+    final String original;
+    /**
+     * Trimmed superStr (empty when original is null)
+     */
+    final String superStr;
+    private final boolean blank;
+    final int[] trivInsCosts;
+    final int[] costInsTwo;
+    /**
+     * Bit i is set when char i is line break
+     */
+    private final long[] lineBreaks;
+    /**
+     * Bit i is set when word may begin just after char i (space, line break or opening quote)
+     */
+    private final long[] wordOpeners;
+    /**
+     * Bit i is set when word may end just before char i (space, line break or closing quote)
+     */
+    private final long[] wordClosers;
+    /**
+     * Lazily built results of calcStopHere, indexed by ordinal of left border
+     */
+    private final AtomicReferenceArray<boolean[]> stopHere = new AtomicReferenceArray<>(StrDist.SearchBorder.values().length);
+    private volatile IndexedText upperCase;
+
+    IndexedText(StrDistEngine engine, String original) {
+        this.engine = engine;
+        this.original = original;
+        this.superStr = (original == null ? "" : original.trim());
+        this.blank = (original == null || original.isBlank());
+        int m = superStr.length();
+        trivInsCosts = engine.calcTrivCosts(superStr);
+        costInsTwo = (m == 0 ? new int[0] : engine.calcCostInsTwo(superStr, trivInsCosts));
+        lineBreaks = new long[(m + 63) >>> 6];
+        wordOpeners = new long[lineBreaks.length];
+        wordClosers = new long[lineBreaks.length];
+        for (int i = 0; i < m; i++) {
+            char c = superStr.charAt(i);
+            if (CharClass.is(c, CharClass.LINE_BREAK)) {
+                lineBreaks[i >>> 6] |= 1L << i;
+            }
+            if (CharClass.is(c, CharClass.WORD_OPENER)) {
+                wordOpeners[i >>> 6] |= 1L << i;
+            }
+            if (CharClass.is(c, CharClass.WORD_CLOSER)) {
+                wordClosers[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * @return superStr as it was passed to indexText
+     */
+    public String getSuperStr() {
+        return original;
+    }
+
+    boolean isBlank() {
+        return blank;
+    }
+
+    int length() {
+        return superStr.length();
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & 1L << i) != 0;
+    }
+
+    /**
+     * The same as StrDist.isWordBegin(superStr, idx)
+     */
+    boolean isWordBegin(int idx) {
+        return idx <= 0 || idx < superStr.length() && get(wordOpeners, idx - 1);
+    }
+
+    /**
+     * The same as StrDist.isWordEnd(superStr, idx)
+     */
+    boolean isWordEnd(int idx) {
+        return isJustAfterWordEnd(idx + 1);
+    }
+
+    /**
+     * The same as StrDist.isJustAfterWordEnd(superStr, idx)
+     */
+    boolean isJustAfterWordEnd(int idx) {
+        return idx >= superStr.length() || idx >= 0 && get(wordClosers, idx);
+    }
+
+    /**
+     * The same as StrDist.isRowBegin(superStr, idx)
+     */
+    boolean isRowBegin(int idx) {
+        return idx <= 0 || idx < superStr.length() && get(lineBreaks, idx - 1);
+    }
+
+    /**
+     * The same as StrDist.isRowEnd(superStr, idx)
+     */
+    boolean isRowEnd(int idx) {
+        return isLineBreak(idx + 1);
+    }
+
+    /**
+     * The same as StrDist.isLineBreak(superStr, idx)
+     */
+    boolean isLineBreak(int idx) {
+        return idx >= superStr.length() || idx >= 0 && get(lineBreaks, idx);
+    }
+
+    /**
+     * Whether match may begin at each position of superStr (i.e. STOP_HERE is used in top row of DP table).
+     * Built on first use for each left border and kept.
+     *
+     * @return array of superStr.length() + 1 flags; [0] is never used; MUST NOT be modified
+     */
+    boolean[] stopHere(StrDist.SearchBorder left) {
+        boolean[] res = stopHere.get(left.ordinal());
+        if (res == null) {
+            res = calcStopHere(left);
+            stopHere.set(left.ordinal(), res);
+        }
+        return res;
+    }
+
+    private boolean[] calcStopHere(StrDist.SearchBorder left) {
+        boolean[] stopHere = new boolean[superStr.length() + 1];
+        boolean allSpacesSinceRowBegin = true;
+        boolean allSpacesSinceWordBegin = true;
+        for (int j = 1; j <= superStr.length(); j++) {
+            boolean canSkip = j > 1 && CharClass.is(superStr.charAt(j-1), CharClass.CAN_SKIP_AT_ROW_BEGIN);
+            if (isLineBreak(j-1))
+                allSpacesSinceRowBegin = true;
+            else if (j > 1 && !canSkip) {
+                allSpacesSinceRowBegin = false;
+            }
+            if (isWordBegin(j))
+                allSpacesSinceWordBegin = true;
+            else if (j > 1 && !canSkip) {
+                allSpacesSinceWordBegin = false;
+            }
+
+            stopHere[j] = left == StrDist.SearchBorder.ANYWHERE ||
+                    left == StrDist.SearchBorder.WORD && (isWordBegin(j) || allSpacesSinceWordBegin) ||
+                    left == StrDist.SearchBorder.ROW && (isRowBegin(j) || allSpacesSinceRowBegin);
+        }
+        return stopHere;
+    }
+
+    /**
+     * @return the same text upper-cased with Locale.ROOT (built on first use), or this when it has no lower-case chars
+     */
+    IndexedText upperCase() {
+        IndexedText res = upperCase;
+        if (res == null) {
+            String upper = (original == null ? null : original.toUpperCase(Locale.ROOT));
+            res = (original == null || original.equals(upper) ? this : new IndexedText(engine, upper));
+            upperCase = res;
+        }
+        return res;
+    }
+}
@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+/**
+ * Restores the same alignment (commonSubToSuper) as full-table calcStrDist does,
+ * but without keeping the whole table of choices, so it's usable for long texts.
+ * <p>
+ * Like Hirschberg's algorithm, it's divide-and-conquer over columns of DP table.
+ * Unlike Hirschberg's algorithm, DP is never run backwards (generalized costs, INS/DEL chaining
+ * and lookback of doSubtractIfLongSameSeq are not symmetric). Instead, columns range is split into segments,
+ * and during forward pass each cell remembers where its optimal path crossed lower border of cell's segment.
+ * So one pass finds all crossing points of the path, then the second pass goes over the segments again from the left,
+ * and each segment the path goes through is solved separately, starting from state of ColumnDp at its begin;
+ * small enough segments are solved with plain table of choices.
+ * <p>
+ * States of ColumnDp (about 6 ints per row of pattern) aren't kept for all borders: the second pass saves only the state
+ * where the sweep resumes after the segment is solved, so one state is kept per level of recursion.
+ * Crossing pointers of borders (3 columns of ints per border) are dropped once the path is followed through them,
+ * before any segment is solved, so only the level which is being swept keeps them.
+ * Memory is O(subStr.length() * (depth + 3 * MAX_SEGMENTS) + superStr.length() + LEAF_CELLS),
+ * time is O(subStr.length() * superStr.length() * depth), where depth is logarithm of superStr.length() / leaf width
+ * by base MAX_SEGMENTS, leaf width being LEAF_CELLS / (subStr.length() + 1) columns.
+ * E.g. for 10^6 x 10^6 chars depth is 5: about 150 MB of states, 180 MB of pointers, 8 MB of last row and 4 MB of leaf table.
+ */
+final class LinearSpaceAlignment {
+    /**
+     * Segments not larger than this (in cells) are solved with plain table of choices
+     */
+    private static final int LEAF_CELLS = 1 << 22;
+    private static final int MAX_SEGMENTS = 16;
+
+    private final ColumnDp columns;
+    private final String subStr;
+    private final IndexedText text;
+    private final String superStr;
+    private final int[] trivInsCosts;
+    private final int[] costInsTwo;
+    private final boolean[] stopHere;
+    private final int n;
+    private final int[] subToSuper;
+
+    /**
+     * Crossing pointers of current column and three previous ones.
+     * Pointer is (row << 2 | (border - col)) for cell (row, col) of path which is the last one with col <= border,
+     * or -1 when path ends in top row before crossing the border.
+     */
+    private int[] ptr0, ptr1, ptr2, ptr3;
+
+    LinearSpaceAlignment(CharDistTable charsDist, String subStr, IndexedText text,
+                         int[] trivDelCosts, int[] costDelTwo,
+                         boolean[] stopHere, boolean doSubtractIfLongSameSeq) {
+        this.columns = new ColumnDp(charsDist, subStr, trivDelCosts, costDelTwo, doSubtractIfLongSameSeq);
+        this.subStr = subStr;
+        this.text = text;
+        this.superStr = text.superStr;
+        this.trivInsCosts = text.trivInsCosts;
+        this.costInsTwo = text.costInsTwo;
+        this.stopHere = stopHere;
+        this.n = subStr.length();
+        this.subToSuper = Alignment.unmatched(n);
+        ptr0 = new int[n + 1];
+        ptr1 = new int[n + 1];
+        ptr2 = new int[n + 1];
+        ptr3 = new int[n + 1];
+    }
+
+    /**
+     * The same as full-table calcStrDist with doRestoreWay == true (after trivial search failed).
+     */
+    StrDist.DistResInfo align(StrDist.SearchBorder left, StrDist.SearchBorder right) {
+        int m = superStr.length();
+        ColumnDp.State initial = columns.save();
+        int[] bounds = makeBounds(0, m);
+        int[] lastRow = new int[m + 1];
+        int[] lastRowPtrs = new int[m + 1];
+        lastRow[0] = columns.values()[n];
+        int[][][] savedPtrs = new int[bounds.length - 1][][];
+        pass(initial, bounds, savedPtrs, lastRow, lastRowPtrs);
+
+        int end = StrDist.DistResInfo.findMatchEnd(text, lastRow, left, right);
+        if (end > 0) {
+            int t = 1;
+            while (end > bounds[t]) {
+                t++;
+            }
+            solveSegments(initial, bounds, t, n, end, lastRowPtrs[end], savedPtrs);
+        }
+        return new StrDist.DistResInfo(subStr, superStr, lastRow[end], new Alignment(subToSuper), left, right);
+    }
+
+    /**
+     * @return borders of segments: [a, c1, c2, ..., b], where segment t is (bounds[t-1], bounds[t]].
+     * Each segment except the last one is at least 3 columns wide, so crossing is always inside previous segment.
+     */
+    private static int[] makeBounds(int a, int b) {
+        int k = Math.max(1, Math.min(MAX_SEGMENTS, (b - a) / 4));
+        int[] bounds = new int[k + 1];
+        for (int t = 0; t <= k; t++) {
+            bounds[t] = a + (int) ((long) (b - a) * t / k);
+        }
+        return bounds;
+    }
+
+    /**
+     * Calculates columns (bounds[0], bounds[last]] starting from state start,
+     * saving crossing pointers at inner borders of segments.
+     */
+    private void pass(ColumnDp.State start, int[] bounds, int[][][] savedPtrs, int[] lastRow, int[] lastRowPtrs) {
+        int k = bounds.length - 1;
+        columns.restore(start);
+        int t = 1;
+        for (int j = bounds[0] + 1; j <= bounds[k]; j++) {
+            if (j > bounds[t]) {
+                t++;
+            }
+            columns.nextColumn(superStr.charAt(j - 1), trivInsCosts[j - 1], costInsTwo[j - 1], stopHere[j]);
+            calcPointers(j, bounds[t - 1]);
+            if (lastRow != null) {
+                lastRow[j] = columns.values()[n];
+                lastRowPtrs[j] = ptr0[n];
+            }
+            if (t < k && j >= bounds[t] - 2) {
+                if (savedPtrs[t] == null) {
+                    savedPtrs[t] = new int[3][];
+                }
+                savedPtrs[t][bounds[t] - j] = ptr0.clone();
+            }
+        }
+    }
+
+    private void calcPointers(int j, int border) {
+        int[] t = ptr3;
+        ptr3 = ptr2;
+        ptr2 = ptr1;
+        ptr1 = ptr0;
+        ptr0 = t;
+        byte[] choices = columns.choices();
+        ptr0[0] = -1;
+        for (int i = 1; i <= n; i++) {
+            int prevRow, shift;
+            byte choice = choices[i];
+            if (choice == ColumnDp.REPLACE_OR_COPY) {
+                prevRow = i - 1;
+                shift = 1;
+            } else if (choice == ColumnDp.DEL) {
+                prevRow = i - 1;
+                shift = 0;
+            } else if (choice == ColumnDp.INS) {
+                prevRow = i;
+                shift = 1;
+            } else if (choice == ColumnDp.SWAP) {
+                prevRow = i - 2;
+                shift = 2;
+            } else {
+                prevRow = i - 3;
+                shift = 3;
+            }
+            int prevCol = j - shift;
+            if (prevCol <= border) {
+                ptr0[i] = prevRow << 2 | (border - prevCol);
+            } else if (prevRow == 0) {
+                ptr0[i] = -1;
+            } else {
+                ptr0[i] = (shift == 0 ? ptr0 : shift == 1 ? ptr1 : shift == 2 ? ptr2 : ptr3)[prevRow];
+            }
+        }
+    }
+
+    /**
+     * Follows crossing pointers from cell (endRow, endCol) of segment tEnd down to the first segment,
+     * then restores path inside each segment separately, calculating states at their begins again.
+     *
+     * @param start state of ColumnDp at column bounds[0]
+     */
+    private void solveSegments(ColumnDp.State start, int[] bounds, int tEnd, int endRow, int endCol, int endPtr,
+                               int[][][] savedPtrs) {
+        int[] crossRows = new int[tEnd + 1];
+        int[] crossCols = new int[tEnd + 1];
+        crossRows[tEnd] = endRow;
+        crossCols[tEnd] = endCol;
+        int tLast = tEnd;
+        int p = endPtr;
+        for (int t = tEnd; t >= 1; t--) {
+            if (p == -1) {
+                break;
+            }
+            int row = p >> 2;
+            int col = bounds[t - 1] - (p & 3);
+            crossRows[t - 1] = row;
+            crossCols[t - 1] = col;
+            if (row == 0 || col == 0 || t == 1) {
+                break;
+            }
+            p = savedPtrs[t - 1][p & 3][row];
+            tLast = t - 1;
+        }
+        Arrays.fill(savedPtrs, null);
+
+        columns.restore(start);
+        int j = bounds[0];
+        for (int t = tLast; t <= tEnd; t++) {
+            for (; j < bounds[t - 1]; j++) {
+                columns.nextColumn(superStr.charAt(j), trivInsCosts[j], costInsTwo[j], stopHere[j + 1]);
+            }
+            if (t == tEnd) {
+                solve(j == bounds[0] ? start : columns.save(), bounds[t - 1], crossCols[t], crossRows[t]);
+            } else {
+                // solving the segment uses the same columns, and the sweep resumes from here
+                ColumnDp.State resume = (j == bounds[0] ? start : columns.save());
+                solve(resume, bounds[t - 1], crossCols[t], crossRows[t]);
+                columns.restore(resume);
+            }
+        }
+    }
+
+    /**
+     * Restores path from cell (endRow, b) while its cells are to the right of column a.
+     *
+     * @param start state of ColumnDp at column a
+     */
+    private void solve(ColumnDp.State start, int a, int b, int endRow) {
+        if (endRow == 0 || b <= a) {
+            return;
+        }
+        if ((long) (b - a) * (n + 1) <= LEAF_CELLS || b - a < 8) {
+            solveWithTable(start, a, b, endRow);
+            return;
+        }
+        int[] bounds = makeBounds(a, b);
+        int k = bounds.length - 1;
+        int[][][] savedPtrs = new int[k][][];
+        pass(start, bounds, savedPtrs, null, null);
+        solveSegments(start, bounds, k, endRow, b, ptr0[endRow], savedPtrs);
+    }
+
+    private void solveWithTable(ColumnDp.State start, int a, int b, int endRow) {
+        columns.restore(start);
+        byte[] table = new byte[(b - a) * (n + 1)];
+        for (int j = a + 1; j <= b; j++) {
+            columns.nextColumn(superStr.charAt(j - 1), trivInsCosts[j - 1], costInsTwo[j - 1], stopHere[j]);
+            System.arraycopy(columns.choices(), 0, table, (j - a - 1) * (n + 1), n + 1);
+        }
+        ColumnDp.traceBack(table, a, endRow, b, subStr, superStr, subToSuper);
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * StreamSearch#findAllMapped: the mapped text is cut into regions which are searched in parallel.
+ * <p>
+ * Worker of each region starts fresh DP at its begin (@see StreamSearch.Sweep#resume), with stopHere flags restored
+ * from preceding chars. As in StrDistEngine#calcJustDistInRanges, its values below maxDist become exact
+ * after horizon not-free columns, so the region reports only ends after this warm-up;
+ * warm-up of the next region is covered by the worker of the previous one, which goes on until the same point
+ * (over several regions, if they are too short to warm up).
+ * Groups of ends which cross such points are joined when all regions are done,
+ * and then offsets of chars of regions are known too (they aren't known in advance for UTF-8).
+ */
+final class MappedSearch {
+    private final StreamSearch search;
+    private final StrDistEngine engine;
+    private final MappedText text;
+    private final int maxDist;
+    private final int chunkSize;
+    /**
+     * Number of not-free columns of warm-up (minInsCost of calcJustDistInRanges is taken as 1,
+     * because the text isn't known in advance)
+     */
+    private final long horizon;
+    private final long[] bounds;
+
+    /**
+     * Result of one region
+     */
+    private static final class Region {
+        final List<StreamSearch.Match> matches = new ArrayList<>();
+        /**
+         * Number of chars of the region
+         */
+        long chars;
+        /**
+         * Whether the region warmed up, otherwise it has no matches of its own
+         */
+        boolean warm;
+        boolean openAtFrom;
+        boolean openAtEnd;
+    }
+
+    MappedSearch(StreamSearch search, StrDistEngine engine, MappedText text, int maxDist, int chunkSize,
+                 int n, boolean doSubtractIfLongSameSeq, long regionSize) throws IOException {
+        this.search = search;
+        this.engine = engine;
+        this.text = text;
+        this.maxDist = maxDist;
+        this.chunkSize = chunkSize;
+        this.horizon = n + 3 + maxDist + 3L * n * ColumnDp.maxDiscount(n, doSubtractIfLongSameSeq);
+        this.bounds = text.regions(regionSize);
+    }
+
+    /**
+     * Passes matches to consumer in order of their ends, after all regions are done
+     */
+    void run(ForkJoinPool pool, Consumer<StreamSearch.Match> consumer) throws IOException {
+        if (text.from == text.to) {
+            return;
+        }
+        int count = bounds.length - 1;
+        List<ForkJoinTask<Region>> tasks = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            int region = k;
+            tasks.add(pool.submit(() -> {
+                try {
+                    return search(region);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        Region[] regions = new Region[count];
+        try {
+            for (int k = 0; k < count; k++) {
+                regions[k] = tasks.get(k).get();
+            }
+        } catch (InterruptedException e) {
+            tasks.forEach(task -> task.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("mapped search was interrupted");
+        } catch (ExecutionException e) {
+            tasks.forEach(task -> task.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        join(regions, consumer);
+    }
+
+    /**
+     * Passes matches of all regions with absolute offsets, joining groups which cross borders of regions
+     */
+    private void join(Region[] regions, Consumer<StreamSearch.Match> consumer) {
+        // leading blank chars are single bytes
+        long base = text.from;
+        StreamSearch.Match carry = null;
+        for (Region region : regions) {
+            List<StreamSearch.Match> matches = region.matches;
+            for (int k = 0; k < matches.size(); k++) {
+                StreamSearch.Match local = matches.get(k);
+                StreamSearch.Match match = new StreamSearch.Match(base + local.start, base + local.end, local.value, local.result);
+                if (k == 0 && carry != null) {
+                    if (region.openAtFrom) {
+                        // the same group: its best end is exact occurrence, otherwise the last one of equal ones
+                        match = (carry.value < match.value ? carry : match);
+                    } else {
+                        consumer.accept(carry);
+                    }
+                    carry = null;
+                }
+                if (k == matches.size() - 1 && region.openAtEnd) {
+                    carry = match;
+                } else {
+                    consumer.accept(match);
+                }
+            }
+            if (region.warm && matches.isEmpty() && carry != null) {
+                consumer.accept(carry);
+                carry = null;
+            }
+            base += region.chars;
+        }
+        if (carry != null) {
+            consumer.accept(carry);
+        }
+    }
+
+    private boolean isNotFree(char prev, char c) {
+        return Math.min(engine.trivCost(c), engine.costInsTwo(prev, c)) > 0;
+    }
+
+    /**
+     * Searches region k (with offsets from its begin), going on over warm-up of the next regions
+     */
+    private Region search(int k) throws IOException {
+        Region res = new Region();
+        StreamSearch.Groups groups = new StreamSearch.Groups(maxDist, res.matches::add);
+        StreamSearch.Sweep sweep = search.new Sweep(maxDist, groups);
+        char prev = 0;
+        res.warm = (k == 0);
+        if (k > 0) {
+            groups.from = Long.MAX_VALUE;
+            prev = resume(sweep, bounds[k]);
+        }
+        char[] buf = new char[chunkSize];
+        long notFree = 0;
+        MappedText.Cursor cursor = text.new Cursor(bounds[k], bounds[k + 1]);
+        for (int len; (len = cursor.read(buf)) != -1; ) {
+            for (int t = 0; t < len; t++) {
+                char c = buf[t];
+                if (!res.warm && isNotFree(prev, c)) {
+                    notFree++;
+                }
+                sweep.accept(c);
+                prev = c;
+                if (!res.warm && notFree >= horizon) {
+                    res.warm = true;
+                    groups.from = sweep.column();
+                }
+            }
+            res.chars += len;
+        }
+        if (!res.warm) {
+            // the whole region is covered by worker of some previous one
+            return res;
+        }
+        for (int r = k + 1; r < bounds.length - 1; r++) {
+            notFree = 0;
+            cursor = text.new Cursor(bounds[r], bounds[r + 1]);
+            for (int len; (len = cursor.read(buf)) != -1; ) {
+                for (int t = 0; t < len; t++) {
+                    char c = buf[t];
+                    if (isNotFree(prev, c)) {
+                        notFree++;
+                    }
+                    sweep.accept(c);
+                    prev = c;
+                    if (notFree >= horizon) {
+                        // region r reports ends from here
+                        sweep.stop();
+                        res.openAtFrom = groups.openAtFrom;
+                        res.openAtEnd = groups.isOpen();
+                        groups.finish();
+                        return res;
+                    }
+                }
+            }
+        }
+        sweep.finish();
+        res.openAtFrom = groups.openAtFrom;
+        return res;
+    }
+
+    /**
+     * Resumes sweep at pos, restoring flags of stopHere from preceding chars (@see IndexedText#calcStopHere)
+     *
+     * @return the char before pos
+     */
+    private char resume(StreamSearch.Sweep sweep, long pos) throws IOException {
+        MappedText.BackCursor back = text.new BackCursor(pos);
+        char prev = 0;
+        Boolean row = null;
+        Boolean word = null;
+        for (boolean last = true; (row == null || word == null) && back.hasPrevious(text.from); last = false) {
+            char c = back.previous();
+            if (last) {
+                prev = c;
+            }
+            // flags are kept after the first char of the text
+            boolean keep = !back.hasPrevious(text.from) || CharClass.is(c, CharClass.CAN_SKIP_AT_ROW_BEGIN);
+            boolean lineBreak = CharClass.is(c, CharClass.LINE_BREAK);
+            boolean opener = CharClass.is(c, CharClass.WORD_OPENER);
+            if (row == null && (lineBreak || !keep)) {
+                row = lineBreak;
+            }
+            if (word == null && (opener || !keep)) {
+                word = opener;
+            }
+        }
+        sweep.resume(prev, row == null || row, word == null || word);
+        return prev;
+    }
+}
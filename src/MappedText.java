@@ -0,0 +1,293 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Text file mapped into memory (@see FileChannel#map) for StreamSearch, so that nothing is copied into String:
+ * for single-byte charsets chars are taken directly from mapped bytes by table, UTF-8 is decoded window by window.
+ * Windows (and regions searched in parallel) are at most Integer.MAX_VALUE bytes and, for UTF-8, begin at first bytes of chars,
+ * so the file may be of any size and every window is decoded on its own.
+ * <p>
+ * Other charsets can't be cut into windows by bytes, so open returns null for them.
+ */
+final class MappedText implements Closeable {
+    /**
+     * Default size of mapped windows
+     */
+    static final int WINDOW_SIZE = 1 << 26;
+
+    private final FileChannel channel;
+    final long size;
+    /**
+     * Char of each byte, or null for UTF-8
+     */
+    private final char[] byteToChar;
+    /**
+     * Whether each byte is valid in the charset (only with byteToChar)
+     */
+    private final boolean[] validByte;
+    /**
+     * Range of bytes without leading and trailing blank chars (as after String.trim)
+     */
+    final long from;
+    final long to;
+    /**
+     * Small window for reading bytes backwards, starting at backPos
+     */
+    private ByteBuffer back;
+    private long backPos = -1;
+
+    private MappedText(FileChannel channel, char[] byteToChar, boolean[] validByte) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.byteToChar = byteToChar;
+        this.validByte = validByte;
+        // blank chars are single bytes both in UTF-8 and in single-byte charsets
+        long a = 0;
+        while (a < size && isBlankByte(byteAt(a))) {
+            a++;
+        }
+        long b = size;
+        while (b > a && isBlankByte(byteAt(b - 1))) {
+            b--;
+        }
+        this.from = a;
+        this.to = b;
+    }
+
+    /**
+     * @return mapped file, or null when charset is neither single-byte nor UTF-8
+     */
+    static MappedText open(Path file, Charset charset) throws IOException {
+        char[] byteToChar = null;
+        boolean[] validByte = null;
+        if (!charset.equals(StandardCharsets.UTF_8)) {
+            if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1 || charset.newDecoder().maxCharsPerByte() != 1) {
+                return null;
+            }
+            byteToChar = new char[256];
+            validByte = new boolean[256];
+            CharsetDecoder decoder = charset.newDecoder();
+            for (int b = 0; b < 256; b++) {
+                try {
+                    CharBuffer c = decoder.reset().decode(ByteBuffer.wrap(new byte[]{(byte) b}));
+                    if (c.length() == 1) {
+                        byteToChar[b] = c.get(0);
+                        validByte[b] = true;
+                    }
+                } catch (CharacterCodingException e) {
+                    // stays invalid, reading it throws as Reader would
+                }
+            }
+            if (!validByte[' '] || byteToChar[' '] != ' ') {
+                return null;
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedText(channel, byteToChar, validByte);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean isBlankByte(byte b) {
+        int u = b & 0xFF;
+        return byteToChar == null ? u <= ' ' : validByte[u] && byteToChar[u] <= ' ';
+    }
+
+    /**
+     * Single bytes are read only at borders of the text and of regions, so it's synchronized for workers of all regions
+     */
+    private synchronized byte byteAt(long pos) throws IOException {
+        if (back == null || pos < backPos || pos >= backPos + back.limit()) {
+            if (back == null) {
+                back = ByteBuffer.allocate(4096);
+            }
+            backPos = Math.max(0, pos - back.capacity() / 2);
+            back.clear();
+            while (back.hasRemaining() && channel.read(back, backPos + back.position()) > 0) {
+                // reads until buffer is full or the file ends
+            }
+            back.flip();
+        }
+        return back.get((int) (pos - backPos));
+    }
+
+    /**
+     * @return pos moved forward to the first byte of a char (in [from, to])
+     */
+    long align(long pos) throws IOException {
+        if (pos <= from) {
+            return from;
+        }
+        while (byteToChar == null && pos < to && (byteAt(pos) & 0xC0) == 0x80) {
+            pos++;
+        }
+        return Math.min(pos, to);
+    }
+
+    /**
+     * @return bounds of regions of about regionSize bytes: [res[k], res[k + 1]) for each k, covering [from, to)
+     */
+    long[] regions(long regionSize) throws IOException {
+        int count = (int) Math.max(1, Math.min(1 << 20, (to - from) / regionSize));
+        long[] res = new long[count + 1];
+        for (int k = 0; k < count; k++) {
+            res[k] = align(from + (to - from) / count * k);
+        }
+        res[count] = to;
+        return res;
+    }
+
+    /**
+     * Chars of bytes [start, end) which begin at chars, read window by window
+     */
+    final class Cursor {
+        private final long end;
+        private long pos;
+        private MappedByteBuffer window;
+        private final CharsetDecoder decoder = (byteToChar == null ? StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT) : null);
+        /**
+         * Decoded chars which didn't fit into buf of one char (supplementary char is two chars), the next ones to return
+         */
+        private final char[] pair = new char[2];
+        private int pairPos;
+        private int pairLen;
+
+        Cursor(long start, long end) {
+            this.pos = start;
+            this.end = end;
+        }
+
+        /**
+         * @return number of chars put to buf (at least 1), -1 at the end
+         */
+        int read(char[] buf) throws IOException {
+            if (pairPos < pairLen) {
+                buf[0] = pair[pairPos++];
+                return 1;
+            }
+            if (window == null || !window.hasRemaining()) {
+                if (pos >= end) {
+                    return -1;
+                }
+                long windowEnd = (end - pos <= WINDOW_SIZE ? end : align(pos + WINDOW_SIZE - 3));
+                window = channel.map(FileChannel.MapMode.READ_ONLY, pos, windowEnd - pos);
+                pos = windowEnd;
+                if (decoder != null) {
+                    decoder.reset();
+                }
+            }
+            if (decoder == null) {
+                int len = Math.min(buf.length, window.remaining());
+                for (int k = 0; k < len; k++) {
+                    int b = window.get() & 0xFF;
+                    if (!validByte[b]) {
+                        throw new MalformedInputException(1);
+                    }
+                    buf[k] = byteToChar[b];
+                }
+                return len;
+            }
+            // decoder doesn't split supplementary char, so buf of one char would never get it
+            CharBuffer out = CharBuffer.wrap(buf.length < 2 ? pair : buf);
+            CoderResult res = decoder.decode(window, out, true);
+            if (res.isError()) {
+                res.throwException();
+            }
+            if (!window.hasRemaining()) {
+                res = decoder.flush(out);
+                if (res.isError()) {
+                    res.throwException();
+                }
+            }
+            if (out.array() == pair) {
+                pairLen = out.position();
+                pairPos = 1;
+                buf[0] = pair[0];
+                return 1;
+            }
+            return out.position();
+        }
+    }
+
+    /**
+     * Backward reading of chars before some position (to restore context of region)
+     */
+    final class BackCursor {
+        private long pos;
+        /**
+         * Low surrogate of supplementary char which is already returned, its high surrogate is next
+         */
+        private char pendingHigh;
+
+        BackCursor(long pos) {
+            this.pos = pos;
+        }
+
+        /**
+         * @return whether there are chars before current position, not before limit
+         */
+        boolean hasPrevious(long limit) {
+            return pendingHigh != 0 || pos > limit;
+        }
+
+        /**
+         * @return previous char; malformed bytes give '\uFFFD' (forward reading of them throws anyway)
+         */
+        char previous() throws IOException {
+            if (pendingHigh != 0) {
+                char c = pendingHigh;
+                pendingHigh = 0;
+                return c;
+            }
+            pos--;
+            int b = byteAt(pos) & 0xFF;
+            if (byteToChar != null) {
+                return byteToChar[b];
+            }
+            if (b < 0x80) {
+                return (char) b;
+            }
+            int len = 1;
+            while ((b & 0xC0) == 0x80 && len < 4 && pos > 0) {
+                pos--;
+                b = byteAt(pos) & 0xFF;
+                len++;
+            }
+            int expected = (b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 0);
+            if (expected != len) {
+                return '\uFFFD';
+            }
+            int cp = b & (0x7F >> len);
+            for (int k = 1; k < len; k++) {
+                cp = cp << 6 | (byteAt(pos + k) & 0x3F);
+            }
+            if (Character.isSupplementaryCodePoint(cp)) {
+                pendingHigh = Character.highSurrogate(cp);
+                return Character.lowSurrogate(cp);
+            }
+            return (char) cp;
+        }
+    }
+}
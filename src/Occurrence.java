@@ -0,0 +1,27 @@
+/**
+ * One of matches found by StrDistEngine#findAll or StrDistEngine#findBestK.
+ * Offsets are indices in superStr as it was passed (before trimming);
+ * indices in result.commonSubToSuper are in the trimmed text, as for calcStrDist.
+ */
+public final class Occurrence {
+    /**
+     * Index of the first char of match
+     */
+    public final int start;
+    /**
+     * Index just after the last char of match
+     */
+    public final int end;
+    public final StrDist.DistResInfo result;
+
+    Occurrence(int start, int end, StrDist.DistResInfo result) {
+        this.start = start;
+        this.end = end;
+        this.result = result;
+    }
+
+    @Override
+    public String toString() {
+        return "Occurrence{start=" + start + ", end=" + end + ", dist=" + result.dist + '}';
+    }
+}
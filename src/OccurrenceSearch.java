@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Many matches of one pattern in one text from a single DP sweep (@see StrDistEngine#findAll, StrDistEngine#findBestK).
+ * <p>
+ * The sweep keeps the last row of DP table and, for each its cell, the column where its path begins
+ * (top-row STOP_HERE, as in StreamSearch.Sweep), so every column gives a match ending there.
+ * Ends are the columns which StrDist.DistResInfo#findMatchEnd considers (for WORD-ROW also some before trailing spaces of rows),
+ * so the best of them is the only match of calcStrDist. Then matches are taken greedily:
+ * the best one (the last one of equal ones), then the best one not overlapping it, and so on.
+ * Where the best path into a column is empty (the whole pattern deleted, as calcStrDist reports for short patterns),
+ * the column gives empty match; all of them are the same, so at most one is taken.
+ * <p>
+ * Ways are restored only for taken matches: DP is calculated again in the window of each match,
+ * beginning exactly where the match begins, with choices kept.
+ * Dists are those of DP, except exact occurrences which borders allow: as in calcStrDist (@see StrDistEngine#tryTrivialSearch),
+ * their dist is 0, and when there is one, dists below 0 (with doSubtractIfLongSameSeq) are raised to 0,
+ * so that no match is better than it; of equal ones, exact occurrences are taken first.
+ */
+final class OccurrenceSearch {
+    private final CharDistTable charsDist;
+    private final CompiledPattern pattern;
+    private final IndexedText text;
+    private final StrDist.SearchBorder left;
+    private final StrDist.SearchBorder right;
+    private final boolean doSubtractIfLongSameSeq;
+
+    OccurrenceSearch(CharDistTable charsDist, CompiledPattern pattern, IndexedText text,
+                     StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq) {
+        this.charsDist = charsDist;
+        this.pattern = pattern;
+        this.text = text;
+        this.left = left;
+        this.right = right;
+        this.doSubtractIfLongSameSeq = doSubtractIfLongSameSeq;
+    }
+
+    /**
+     * @param maxDist only matches with dist below it are taken (DP is bounded by it), or ColumnDp.UNBOUNDED
+     * @param k       max number of matches
+     * @return taken matches, in the order they were taken (the best first)
+     */
+    List<Occurrence> find(int maxDist, int k, boolean doRestoreWay) {
+        if (text.isBlank() || pattern.isBlank()) {
+            return new ArrayList<>();
+        }
+        int m = text.superStr.length();
+        int[] lastRow = new int[m + 1];
+        int[] startOf = new int[m + 1];
+        sweep(maxDist, lastRow, startOf);
+        boolean[] canEnd = new boolean[m + 1];
+        StrDist.DistResInfo.findMatchEnd(text, lastRow, left, right, canEnd);
+        boolean[] exact = new boolean[m + 1];
+        if (findExact(lastRow, startOf, canEnd, exact)) {
+            for (int t = 0; t <= m; t++) {
+                lastRow[t] = Math.max(lastRow[t], 0);
+            }
+        }
+
+        // (value, exact first, later end first) packed into one long, so that candidates are sorted as primitives
+        long[] order = new long[m];
+        int cnt = 0;
+        for (int t = 1; t <= m; t++) {
+            if (canEnd[t] && lastRow[t] < maxDist) {
+                order[cnt++] = (long) lastRow[t] << 32 | (exact[t] ? 0 : 1L << 31) | (Integer.MAX_VALUE - t);
+            }
+        }
+        Arrays.sort(order, 0, cnt);
+
+        int lead = 0;
+        while (text.original.charAt(lead) <= ' ') {
+            lead++;
+        }
+        // taken matches, start -> end; they don't overlap, so only the last one beginning before end may overlap [start, end)
+        // empty match takes no chars, so it isn't put there
+        TreeMap<Integer, Integer> taken = new TreeMap<>();
+        boolean emptyTaken = false;
+        List<Occurrence> res = new ArrayList<>();
+        for (int c = 0; c < cnt && res.size() < k; c++) {
+            int end = Integer.MAX_VALUE - (int) (order[c] & Integer.MAX_VALUE);
+            int start = startOf[end];
+            Map.Entry<Integer, Integer> before = taken.lowerEntry(end);
+            if (before != null && before.getValue() > start || start == end && emptyTaken) {
+                continue;
+            }
+            if (start == end) {
+                emptyTaken = true;
+            } else {
+                taken.put(start, end);
+            }
+            StrDist.DistResInfo result = (doRestoreWay ? restoreWay(start, end, lastRow[end]) : new StrDist.DistResInfo(lastRow[end]));
+            res.add(new Occurrence(lead + start, lead + end, result));
+        }
+        return res;
+    }
+
+    /**
+     * Marks exact occurrences which borders allow (the same which trivial search of calcStrDist takes) as matches with dist 0
+     *
+     * @param exact array of superStr.length() + 1 where ends of exact occurrences are set to true
+     * @return whether there is any
+     */
+    private boolean findExact(int[] lastRow, int[] startOf, boolean[] canEnd, boolean[] exact) {
+        String superStr = text.superStr;
+        int n = pattern.subStr.length();
+        int m = superStr.length();
+        ExactSearch search = pattern.exactSearch();
+        boolean found = false;
+        // occurrences at the last char of text are not taken, as trivial search never took them, unless subStr equals superStr
+        for (int pos = search.indexOf(superStr, 0); 0 <= pos && (pos < m - 1 || n == m); pos = search.indexOf(superStr, pos + 1)) {
+            if (StrDistEngine.isAllowedAt(text, pos, n, left, right)) {
+                lastRow[pos + n] = 0;
+                startOf[pos + n] = pos;
+                canEnd[pos + n] = true;
+                exact[pos + n] = true;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Calculates the last row of DP table and where the path to each its cell begins
+     */
+    private void sweep(int maxDist, int[] lastRow, int[] startOf) {
+        String subStr = pattern.subStr;
+        String superStr = text.superStr;
+        int n = subStr.length();
+        boolean[] stopHere = text.stopHere(left);
+        ColumnDp columns = new ColumnDp(charsDist, subStr, pattern.trivDelCosts, pattern.costDelTwo, doSubtractIfLongSameSeq, maxDist);
+        int[] origin0 = new int[n + 1];
+        int[] origin1 = new int[n + 1];
+        int[] origin2 = new int[n + 1];
+        int[] origin3 = new int[n + 1];
+        lastRow[0] = columns.values()[n];
+        for (int j = 1; j <= superStr.length(); j++) {
+            lastRow[j] = columns.nextColumn(superStr.charAt(j-1), text.trivInsCosts[j-1], text.costInsTwo[j-1], stopHere[j]);
+            int[] t = origin3;
+            origin3 = origin2;
+            origin2 = origin1;
+            origin1 = origin0;
+            origin0 = t;
+            byte[] choices = columns.choices();
+            origin0[0] = (choices[0] == ColumnDp.STOP_HERE ? j : origin1[0]);
+            int last = columns.lastCalculatedRow();
+            for (int i = 1; i <= last; i++) {
+                byte choice = choices[i];
+                if (choice == ColumnDp.REPLACE_OR_COPY) {
+                    origin0[i] = origin1[i - 1];
+                } else if (choice == ColumnDp.DEL) {
+                    origin0[i] = origin0[i - 1];
+                } else if (choice == ColumnDp.INS) {
+                    origin0[i] = origin1[i];
+                } else if (choice == ColumnDp.SWAP) {
+                    origin0[i] = origin2[i - 2];
+                } else {
+                    origin0[i] = origin3[i - 3];
+                }
+            }
+            startOf[j] = (last == n ? origin0[n] : j);
+        }
+    }
+
+    /**
+     * Calculates DP again in columns start..end, with the path beginning at start
+     */
+    private StrDist.DistResInfo restoreWay(int start, int end, int dist) {
+        String subStr = pattern.subStr;
+        String superStr = text.superStr;
+        int n = subStr.length();
+        ColumnDp columns = new ColumnDp(charsDist, subStr, pattern.trivDelCosts, pattern.costDelTwo, doSubtractIfLongSameSeq);
+        byte[] choices = new byte[(end - start) * (n + 1)];
+        for (int j = start + 1; j <= end; j++) {
+            columns.nextColumn(superStr.charAt(j-1), text.trivInsCosts[j-1], text.costInsTwo[j-1], false);
+            System.arraycopy(columns.choices(), 0, choices, (j - start - 1) * (n + 1), n + 1);
+        }
+        int[] subToSuper = Alignment.unmatched(n);
+        ColumnDp.traceBack(choices, start, n, end, subStr, superStr, subToSuper);
+        return new StrDist.DistResInfo(subStr, superStr, dist, new Alignment(subToSuper), left, right);
+    }
+}
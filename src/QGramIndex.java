@@ -0,0 +1,321 @@
+import java.util.Arrays;
+
+/**
+ * Inverted index of q-grams of one (usually long) text, for many bounded searches (@see StrDistEngine#calcStrDistBounded) in it.
+ * Built once by StrDistEngine#buildQGramIndex; immutable after that, so may be shared between threads.
+ * <p>
+ * Like in UnitCostPrefilter, chars which are cheap to insert/delete are folded out, and remaining chars are compared
+ * ignoring case (and, optionally, Latin/Cyrillic look-alikes), so that every unit edit costs at least minEditCost
+ * in generalized DP. By q-gram lemma, a match with at most k unit edits shares at least (n - q + 1 - k * q) q-grams
+ * with the pattern, and all of them lie inside window of (n + k) folded chars.
+ * So DP is needed only near such windows, and work per query depends on number of q-gram hits, not on text length.
+ * Results are the same as of calcStrDistBounded over the whole text.
+ */
+public final class QGramIndex {
+    private final StrDistEngine engine;
+    private final CharDistTable charsDist;
+    private final boolean[] folded;
+    private final boolean normalizeHomoglyphs;
+    private final int q;
+    private final IndexedText text;
+    /**
+     * Trimmed text
+     */
+    private final String superStr;
+    private final int minInsCost;
+    /**
+     * Min insertion cost of not-folded char of the text
+     */
+    private final int minFoldedInsCost;
+    /**
+     * Min distance between folded and not-folded chars
+     */
+    private final int minMixedDist;
+    /**
+     * foldedPos[f] is index in superStr of f-th not-folded char
+     */
+    private final int[] foldedPos;
+    /**
+     * Sorted distinct hashes of q-grams; positions of q-grams with hash keys[k] are positions[starts[k] .. starts[k+1]-1]
+     */
+    private final int[] keys;
+    private final int[] starts;
+    private final int[] positions;
+
+    QGramIndex(StrDistEngine engine, CharDistTable charsDist, boolean[] folded, IndexedText text, int q, boolean normalizeHomoglyphs) {
+        if (q < 1) {
+            throw new IllegalArgumentException("q (" + q + ") should be positive");
+        }
+        this.engine = engine;
+        this.charsDist = charsDist;
+        this.folded = folded;
+        this.normalizeHomoglyphs = normalizeHomoglyphs;
+        this.q = q;
+        this.text = text;
+        this.superStr = text.superStr;
+        int m = superStr.length();
+        int[] trivInsCosts = text.trivInsCosts;
+        int[] costInsTwo = text.costInsTwo;
+        minInsCost = StrDistEngine.minPositiveInsCost(trivInsCosts, costInsTwo);
+
+        int cnt = 0;
+        int minIns = StrDist.COMMON_DIFF;
+        for (int j = 0; j < m; j++) {
+            if (!folded[superStr.charAt(j)]) {
+                cnt++;
+                minIns = Math.min(minIns, Math.min(trivInsCosts[j], costInsTwo[j]));
+            }
+        }
+        minFoldedInsCost = minIns;
+        foldedPos = new int[cnt];
+        char[] normalized = new char[cnt];
+        cnt = 0;
+        for (int j = 0; j < m; j++) {
+            char c = superStr.charAt(j);
+            if (!folded[c]) {
+                foldedPos[cnt] = j;
+                normalized[cnt++] = normalize(c);
+            }
+        }
+
+        // chars which differ only by case are never closer than COMMON_DIFF / 2, other close pairs are special
+        int minMixed = StrDist.COMMON_DIFF / 2;
+        char[] specials = charsDist.getSpecials();
+        for (char a : specials) {
+            for (char b : specials) {
+                if (folded[a] && !folded[b]) {
+                    minMixed = Math.min(minMixed, charsDist.dist(a, b));
+                }
+            }
+        }
+        minMixedDist = minMixed;
+
+        int grams = Math.max(0, cnt - q + 1);
+        long[] sorted = new long[grams];
+        for (int f = 0; f < grams; f++) {
+            sorted[f] = (long) hash(normalized, f) << 32 | f;
+        }
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int k = 0; k < grams; k++) {
+            if (k == 0 || (int) (sorted[k] >> 32) != (int) (sorted[k - 1] >> 32)) {
+                distinct++;
+            }
+        }
+        keys = new int[distinct];
+        starts = new int[distinct + 1];
+        positions = new int[grams];
+        distinct = 0;
+        for (int k = 0; k < grams; k++) {
+            int key = (int) (sorted[k] >> 32);
+            if (k == 0 || key != keys[distinct - 1]) {
+                keys[distinct] = key;
+                starts[distinct++] = k;
+            }
+            positions[k] = (int) sorted[k];
+        }
+        starts[distinct] = grams;
+    }
+
+    private char normalize(char c) {
+        return normalizeHomoglyphs ? StrDistEngine.normalizeHomoglyphs(c) : Character.toUpperCase(c);
+    }
+
+    /**
+     * Hash of q-gram which begins at position from; different q-grams may (rarely) get the same hash,
+     * that only adds false candidates
+     */
+    private int hash(char[] normalized, int from) {
+        int h = 0;
+        for (int i = from; i < from + q; i++) {
+            h = h * 0x01000193 + normalized[i];
+        }
+        return h;
+    }
+
+    /**
+     * @return the text this index is built over
+     */
+    public IndexedText getText() {
+        return text;
+    }
+
+    public int getQ() {
+        return q;
+    }
+
+    /**
+     * The same as StrDistEngine#calcStrDistBounded(subStr, getText(), ...).
+     * Only ANYWHERE and WORD borders use the index, other borders fall back to search over the whole text.
+     */
+    public StrDist.DistResInfo calcStrDistBounded(String subStr, StrDist.SearchBorder left, StrDist.SearchBorder right,
+                                                  boolean doSubtractIfLongSameSeq, int maxDist) {
+        return calcStrDistBounded(engine.compile(subStr), left, right, doSubtractIfLongSameSeq, maxDist);
+    }
+
+    /**
+     * The same as calcStrDistBounded(pattern.getSubStr(), ...), without preparing the pattern again.
+     */
+    public StrDist.DistResInfo calcStrDistBounded(CompiledPattern pattern, StrDist.SearchBorder left, StrDist.SearchBorder right,
+                                                  boolean doSubtractIfLongSameSeq, int maxDist) {
+        if (pattern.isBlank() || pattern.engine != engine || text.isBlank() || maxDist <= 0 ||
+                !(left == StrDist.SearchBorder.ANYWHERE || left == StrDist.SearchBorder.WORD) ||
+                !(right == StrDist.SearchBorder.ANYWHERE || right == StrDist.SearchBorder.WORD))
+        {
+            return engine.calcStrDistBounded(pattern, text, left, right, doSubtractIfLongSameSeq, maxDist);
+        }
+        String subStr = pattern.subStr;
+        int n = subStr.length();
+        int m = superStr.length();
+        if (m < StrDistEngine.PREFILTER_MIN_TEXT_TO_PATTERN * n) {
+            return engine.calcStrDistBounded(pattern, text, left, right, doSubtractIfLongSameSeq, maxDist);
+        }
+        int[] trivDelCosts = pattern.trivDelCosts;
+        int[] costDelTwo = pattern.costDelTwo;
+
+        char[] normalized = new char[n];
+        int nFolded = 0;
+        int minEditCost = Math.min(minFoldedInsCost, minMixedDist / 2);
+        for (int i = 0; i < n; i++) {
+            char c = subStr.charAt(i);
+            if (!folded[c]) {
+                normalized[nFolded++] = normalize(c);
+                // swaps cost at least half of the differences they fix
+                minEditCost = Math.min(minEditCost, Math.min(Math.min(trivDelCosts[i], costDelTwo[i]), minReplaceCost(c) / 2));
+            }
+        }
+        int maxDiscount = ColumnDp.maxDiscount(n, doSubtractIfLongSameSeq);
+        int threshold = 0;
+        int maxEdits = 0;
+        if (minEditCost > 0) {
+            maxEdits = (maxDist - 1 + n * maxDiscount) / minEditCost;
+            threshold = nFolded - q + 1 - maxEdits * q;
+        }
+        if (threshold <= 0) {
+            return engine.calcStrDistBounded(pattern, text, left, right, doSubtractIfLongSameSeq, maxDist);
+        }
+        SearchStats stats = StrDistInstrumentation.begin(SearchStats.Operation.CALC_STR_DIST_BOUNDED, pattern, text, left, right, false, doSubtractIfLongSameSeq);
+
+        int[] hits = findHits(normalized, nFolded);
+        int window = nFolded + maxEdits;
+        int[] ranges = new int[16];
+        int rangesLen = 0;
+        for (int r = threshold - 1; r < hits.length; r++) {
+            int first = hits[r - threshold + 1];
+            if (hits[r] - first > window - q) {
+                continue;
+            }
+            // match consumes folded chars [end - window, end) or less, and q-grams [hit, hit + q) must be inside it
+            int from = toColumnFrom(hits[r] + q);
+            int to = toColumnTo(Math.min(foldedPos.length, first + window));
+            if (rangesLen > 0 && from <= ranges[rangesLen - 1] + 1) {
+                ranges[rangesLen - 1] = Math.max(ranges[rangesLen - 1], to);
+            } else {
+                if (rangesLen == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, 2 * rangesLen);
+                }
+                ranges[rangesLen++] = from;
+                ranges[rangesLen++] = to;
+            }
+        }
+
+        StrDist.DistResInfo exact = findExact(subStr, left, right, ranges, rangesLen);
+        if (exact != null) {
+            if (stats != null) {
+                stats.trivialHit(SearchStats.Stage.TRIVIAL);
+            }
+            return StrDistInstrumentation.end(stats, exact);
+        }
+        return StrDistInstrumentation.end(stats, engine.calcJustDistInRanges(subStr, text, right, trivDelCosts, costDelTwo,
+                left == StrDist.SearchBorder.WORD ? text.stopHere(left) : null, doSubtractIfLongSameSeq, maxDist,
+                ranges, rangesLen, minInsCost, stats));
+    }
+
+    /**
+     * @return min distance from not-folded c to not-folded chars which are not treated as the same
+     */
+    private int minReplaceCost(char c) {
+        if (!charsDist.isSpecial(c)) {
+            // differs from every not-special char which is not the same ignoring case by COMMON_DIFF
+            return StrDist.COMMON_DIFF;
+        }
+        int res = StrDist.COMMON_DIFF;
+        for (char x : charsDist.getSpecials()) {
+            if (!folded[x] && normalize(x) != normalize(c)) {
+                res = Math.min(res, charsDist.dist(c, x));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return sorted positions (in folded text) of q-grams which are also q-grams of the pattern
+     */
+    private int[] findHits(char[] pattern, int nFolded) {
+        int[] hashes = new int[nFolded - q + 1];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hash(pattern, i);
+        }
+        Arrays.sort(hashes);
+        int total = 0;
+        int[] found = new int[hashes.length];
+        int foundLen = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (i > 0 && hashes[i] == hashes[i - 1]) {
+                continue;
+            }
+            int k = Arrays.binarySearch(keys, hashes[i]);
+            if (k >= 0) {
+                found[foundLen++] = k;
+                total += starts[k + 1] - starts[k];
+            }
+        }
+        int[] hits = new int[total];
+        int len = 0;
+        for (int t = 0; t < foundLen; t++) {
+            int k = found[t];
+            System.arraycopy(positions, starts[k], hits, len, starts[k + 1] - starts[k]);
+            len += starts[k + 1] - starts[k];
+        }
+        Arrays.sort(hits);
+        return hits;
+    }
+
+    /**
+     * @return the first column of DP table where exactly f not-folded chars of the text are consumed
+     */
+    private int toColumnFrom(int f) {
+        return f == 0 ? 1 : foldedPos[f - 1] + 1;
+    }
+
+    /**
+     * @return the last column of DP table where exactly f not-folded chars of the text are consumed
+     */
+    private int toColumnTo(int f) {
+        return f < foldedPos.length ? foldedPos[f] : superStr.length();
+    }
+
+    /**
+     * The same as exact-substring part of trivial search, but only matches ending in given ranges are checked
+     * (every exact occurrence is inside some range).
+     */
+    private StrDist.DistResInfo findExact(String subStr, StrDist.SearchBorder left, StrDist.SearchBorder right, int[] ranges, int rangesLen) {
+        int n = subStr.length();
+        int m = superStr.length();
+        for (int r = 0; r < rangesLen; r += 2) {
+            for (int pos = Math.max(0, ranges[r] - n); pos <= ranges[r + 1] - n && pos < m - 1; pos++) {
+                if (superStr.startsWith(subStr, pos) &&
+                        (pos == 0 ||
+                                left == StrDist.SearchBorder.ANYWHERE ||
+                                text.isWordBegin(pos)) &&
+                        (pos + n == m ||
+                                right == StrDist.SearchBorder.ANYWHERE ||
+                                text.isWordEnd(pos + n - 1)))
+                {
+                    return new StrDist.DistResInfo(subStr, pos, false, "exact substring, pos = " + (pos + 1));
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,21 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of rendering one diff (@see StrDist.DistResInfo#renderDiff(Appendable, DiffFormat)).
+ */
+@Name("strdist.Render")
+@Label("StrDist Render Diff")
+@Category("StrDist")
+@Description("Rendering diff of one result, e.g. to HTML")
+@StackTrace(false)
+final class RenderEvent extends Event {
+    @Label("Diff Kind")
+    String kind;
+    @Label("Format")
+    String format;
+}
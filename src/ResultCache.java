@@ -0,0 +1,349 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of results of one StrDistEngine, for pipelines which compare the same (pattern, text) pairs again and again
+ * (re-runs, regrades, other borders over the same strings). Methods are the same as of the engine and give the same results.
+ * <p>
+ * Key is 128-bit fingerprint of trimmed pattern and text (engine trims them anyway), plus their lengths, operation, borders and flags;
+ * strings themselves aren't kept by keys. Fingerprints are seeded randomly per cache, so colliding pairs can't be prepared in advance,
+ * and chance of any collision is about (number of entries) * 2^-128.
+ * Results of distance only are kept as bare dist; others as DistResInfo, which keeps strings for rendering diff.
+ * <p>
+ * Entries are split into segments by hash, each is LRU under its own lock, and bound (number of entries
+ * or approximate bytes) is split evenly between segments. Lock is held only for lookup and insertion, not while calculating,
+ * so concurrent misses of the same key may calculate it twice. Results are immutable and shared by all callers.
+ */
+public final class ResultCache {
+    /**
+     * Snapshot of counters (@see #getStats)
+     */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long size;
+        public final long weight;
+
+        Stats(long hits, long misses, long evictions, long size, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        /**
+         * @return hits / (hits + misses), or 0 when nothing was requested
+         */
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", hitRate=" + String.format("%.3f", hitRate()) +
+                    ", evictions=" + evictions + ", size=" + size + ", weight=" + weight + '}';
+        }
+    }
+
+    /**
+     * Approximate bytes of key, value and node of map, besides what result keeps (@see StrDist.DistResInfo#retainedBytes)
+     */
+    static final int ENTRY_BYTES = 128;
+    private static final long MIX_1 = 0x9E3779B97F4A7C15L;
+    private static final long MIX_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final StrDistEngine engine;
+    private final Segment[] segments;
+    private final long seed1;
+    private final long seed2;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ResultCache(StrDistEngine engine, long maxEntries, long maxBytes) {
+        this.engine = engine;
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        long bound = (maxEntries > 0 ? maxEntries : maxBytes / ENTRY_BYTES);
+        while (n > 1 && bound / n < 16) {
+            n >>= 1;
+        }
+        segments = new Segment[n];
+        for (int k = 0; k < n; k++) {
+            segments[k] = new Segment(maxEntries > 0 ? Math.max(1, maxEntries / n) : Long.MAX_VALUE,
+                    maxBytes > 0 ? Math.max(ENTRY_BYTES, maxBytes / n) : Long.MAX_VALUE);
+        }
+        seed1 = ThreadLocalRandom.current().nextLong();
+        seed2 = ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * @return cache of results of engine holding at most maxEntries results
+     */
+    public static ResultCache withMaxEntries(StrDistEngine engine, long maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries (" + maxEntries + ") should be positive");
+        }
+        return new ResultCache(engine, maxEntries, 0);
+    }
+
+    /**
+     * @return cache of results of engine holding results of about maxBytes in total
+     * (distance-only results weigh ENTRY_BYTES, others also the strings and alignment they keep)
+     */
+    public static ResultCache withMaxBytes(StrDistEngine engine, long maxBytes) {
+        if (maxBytes < ENTRY_BYTES) {
+            throw new IllegalArgumentException("maxBytes (" + maxBytes + ") should be at least " + ENTRY_BYTES);
+        }
+        return new ResultCache(engine, 0, maxBytes);
+    }
+
+    public StrDistEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @see StrDistEngine#calcStrDist(String, String, StrDist.SearchBorder, StrDist.SearchBorder, boolean, boolean)
+     */
+    public StrDist.DistResInfo calcStrDist(String subStr, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) {
+        Key key = key(SearchStats.Operation.CALC_STR_DIST, subStr, superStr, left, right, doRestoreWay, doSubtractIfLongSameSeq, 0);
+        StrDist.DistResInfo res = lookup(key);
+        if (res == null) {
+            res = store(key, engine.calcStrDist(subStr, superStr, left, right, doRestoreWay, doSubtractIfLongSameSeq));
+        }
+        return res;
+    }
+
+    /**
+     * @see StrDistEngine#calcStrDistBounded(String, String, StrDist.SearchBorder, StrDist.SearchBorder, boolean, int)
+     */
+    public StrDist.DistResInfo calcStrDistBounded(String subStr, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq, int maxDist) {
+        Key key = key(SearchStats.Operation.CALC_STR_DIST_BOUNDED, subStr, superStr, left, right, false, doSubtractIfLongSameSeq, maxDist);
+        StrDist.DistResInfo res = lookup(key);
+        if (res == null) {
+            res = store(key, engine.calcStrDistBounded(subStr, superStr, left, right, doSubtractIfLongSameSeq, maxDist));
+        }
+        return res;
+    }
+
+    /**
+     * @see StrDistEngine#getBestMatch___(String, String, StrDist.SearchBorder, StrDist.SearchBorder, boolean)
+     */
+    public StrDist.DistResInfo getBestMatch___(String substr, String str, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        Key key = key(SearchStats.Operation.GET_BEST_MATCH, substr, str, left, right, doRestoreWay, false, 0);
+        StrDist.DistResInfo res = lookup(key);
+        if (res == null) {
+            res = store(key, engine.getBestMatch___(substr, str, left, right, doRestoreWay));
+        }
+        return res;
+    }
+
+    /**
+     * @see StrDistEngine#getBestMatchFused(String, String, StrDist.SearchBorder, StrDist.SearchBorder, boolean)
+     */
+    public StrDist.DistResInfo getBestMatchFused(String substr, String str, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        Key key = key(SearchStats.Operation.GET_BEST_MATCH_FUSED, substr, str, left, right, doRestoreWay, false, 0);
+        StrDist.DistResInfo res = lookup(key);
+        if (res == null) {
+            res = store(key, engine.getBestMatchFused(substr, str, left, right, doRestoreWay));
+        }
+        return res;
+    }
+
+    public Stats getStats() {
+        long size = 0;
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+                weight += segment.weight;
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, weight);
+    }
+
+    /**
+     * Removes all entries; counters are kept
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.map.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * Blank pattern or text isn't searched by engine at all, so such calls are neither cached nor counted
+     *
+     * @return key, or null when the call isn't cached
+     */
+    private Key key(SearchStats.Operation operation, String subStr, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right,
+                    boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int maxDist) {
+        if (subStr == null || superStr == null) {
+            return null;
+        }
+        int subBegin = trimBegin(subStr);
+        int subEnd = trimEnd(subStr, subBegin);
+        int superBegin = trimBegin(superStr);
+        int superEnd = trimEnd(superStr, superBegin);
+        if (subBegin == subEnd || superBegin == superEnd) {
+            return null;
+        }
+        long h1 = mix(seed1, subStr, subBegin, subEnd);
+        long h2 = mix(seed2, subStr, subBegin, subEnd);
+        h1 = mix(h1, superStr, superBegin, superEnd);
+        h2 = mix(h2, superStr, superBegin, superEnd);
+        int params = operation.ordinal() << 6 | left.ordinal() << 4 | right.ordinal() << 2 |
+                (doRestoreWay ? 2 : 0) | (doSubtractIfLongSameSeq ? 1 : 0);
+        return new Key(h1, h2, subEnd - subBegin, superEnd - superBegin, params, maxDist);
+    }
+
+    /**
+     * The same bounds as of String.trim
+     */
+    private static int trimBegin(String s) {
+        int k = 0;
+        while (k < s.length() && s.charAt(k) <= ' ') {
+            k++;
+        }
+        return k;
+    }
+
+    private static int trimEnd(String s, int begin) {
+        int k = s.length();
+        while (k > begin && s.charAt(k - 1) <= ' ') {
+            k--;
+        }
+        return k;
+    }
+
+    /**
+     * Non-linear mixing of chars (unlike polynomial hash, its collisions don't follow from structure of strings),
+     * finished by avalanche of the length
+     */
+    private static long mix(long h, String s, int begin, int end) {
+        for (int k = begin; k < end; k++) {
+            h = (h ^ s.charAt(k)) * MIX_1;
+            h ^= h >>> 29;
+        }
+        h = (h ^ (end - begin)) * MIX_2;
+        return h ^ h >>> 32;
+    }
+
+    private Segment segment(Key key) {
+        int h = key.hashCode();
+        return segments[(h ^ h >>> 16) & (segments.length - 1)];
+    }
+
+    private StrDist.DistResInfo lookup(Key key) {
+        if (key == null) {
+            return null;
+        }
+        Segment segment = segment(key);
+        Object value;
+        synchronized (segment) {
+            value = segment.map.get(key);
+        }
+        if (value == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return value instanceof Integer ? new StrDist.DistResInfo((Integer) value) : (StrDist.DistResInfo) value;
+    }
+
+    private StrDist.DistResInfo store(Key key, StrDist.DistResInfo res) {
+        if (key == null) {
+            return res;
+        }
+        Object value;
+        long weight;
+        if (res.isJustDist()) {
+            value = res.dist;
+            weight = ENTRY_BYTES;
+        } else {
+            value = res;
+            weight = ENTRY_BYTES + res.retainedBytes();
+        }
+        Segment segment = segment(key);
+        synchronized (segment) {
+            if (weight > segment.maxWeight) {
+                return res;
+            }
+            Object old = segment.map.put(key, value);
+            if (old != null) {
+                segment.weight -= weight(old);
+            }
+            segment.weight += weight;
+            Iterator<Map.Entry<Key, Object>> eldest = segment.map.entrySet().iterator();
+            while (segment.map.size() > segment.maxEntries || segment.weight > segment.maxWeight) {
+                segment.weight -= weight(eldest.next().getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+        return res;
+    }
+
+    private static long weight(Object value) {
+        return value instanceof Integer ? ENTRY_BYTES : ENTRY_BYTES + ((StrDist.DistResInfo) value).retainedBytes();
+    }
+
+    /**
+     * Values are Integer (dist of distance-only result) or StrDist.DistResInfo; map is in access order, so the eldest is LRU
+     */
+    private static final class Segment {
+        final LinkedHashMap<Key, Object> map = new LinkedHashMap<>(16, 0.75f, true);
+        final long maxEntries;
+        final long maxWeight;
+        long weight;
+
+        Segment(long maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+    }
+
+    private static final class Key {
+        final long h1;
+        final long h2;
+        final int subLength;
+        final int superLength;
+        /**
+         * Operation, borders and flags packed into bits
+         */
+        final int params;
+        final int maxDist;
+
+        Key(long h1, long h2, int subLength, int superLength, int params, int maxDist) {
+            this.h1 = h1;
+            this.h2 = h2;
+            this.subLength = subLength;
+            this.superLength = superLength;
+            this.params = params;
+            this.maxDist = maxDist;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return h1 == that.h1 && h2 == that.h2 && subLength == that.subLength && superLength == that.superLength &&
+                    params == that.params && maxDist == that.maxDist;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (h1 ^ h1 >>> 32) * 31 + params;
+        }
+    }
+}
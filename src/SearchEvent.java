@@ -0,0 +1,50 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of one search, with the same data as SearchStats (@see StrDistInstrumentation).
+ * Enabled by JFR settings, e.g. -XX:StartFlightRecording:settings=profile,+strdist.Search#enabled=true
+ */
+@Name("strdist.Search")
+@Label("StrDist Search")
+@Category("StrDist")
+@Description("One call of calcStrDist, calcStrDistBounded or getBestMatch*")
+@StackTrace(false)
+final class SearchEvent extends Event {
+    @Label("Operation")
+    String operation;
+    @Label("Pattern Length")
+    int patternLength;
+    @Label("Text Length")
+    int textLength;
+    @Label("Left Border")
+    String left;
+    @Label("Right Border")
+    String right;
+    @Label("Restore Way")
+    boolean doRestoreWay;
+    @Label("Subtract If Long Same Sequence")
+    boolean doSubtractIfLongSameSeq;
+    @Label("Trivial Hit")
+    boolean trivialHit;
+    @Label("DP Runs")
+    int dpRuns;
+    @Label("DP Cells")
+    long dpCells;
+    @Label("Table Bytes")
+    @DataAmount
+    long tableBytes;
+    @Label("Restore Time")
+    @Timespan
+    long restoreTime;
+    @Label("Winning Stage")
+    String winner;
+    @Label("Distance")
+    int dist;
+}
@@ -0,0 +1,219 @@
+/**
+ * What one search did and what it cost, collected only while instrumentation is on (@see StrDistInstrumentation).
+ * Filled by the thread which runs the search, then passed to StrDistListener#onSearch and never changed again.
+ */
+public final class SearchStats {
+    /**
+     * Which method of StrDistEngine was called (also by StrDist facade, BatchSearch, QGramIndex etc.)
+     */
+    public enum Operation {
+        CALC_STR_DIST,
+        CALC_STR_DIST_BOUNDED,
+        GET_BEST_MATCH,
+        GET_BEST_MATCH_FUSED
+    }
+
+    /**
+     * Which variant gave the result: trivial search, or DP with pattern as it is, upper-cased (penalty 25),
+     * with doSubtractIfLongSameSeq (penalty 40)
+     */
+    public enum Stage {
+        TRIVIAL,
+        PLAIN,
+        UPPER_CASE,
+        SUBTRACT
+    }
+
+    private final Operation operation;
+    private final int patternLength;
+    private final int textLength;
+    private final StrDist.SearchBorder left;
+    private final StrDist.SearchBorder right;
+    private final boolean doRestoreWay;
+    private final boolean doSubtractIfLongSameSeq;
+    private final long startNanos;
+    private final StrDistListener listener;
+    /**
+     * JFR event begun with the search, or null when it isn't recorded
+     */
+    private final SearchEvent event;
+
+    private boolean trivialHit;
+    private int dpRuns;
+    private long dpCells;
+    private long tableBytes;
+    private long restoreNanos;
+    private Stage winner;
+    private int dist;
+    private long totalNanos;
+
+    SearchStats(Operation operation, int patternLength, int textLength, StrDist.SearchBorder left, StrDist.SearchBorder right,
+                boolean doRestoreWay, boolean doSubtractIfLongSameSeq, StrDistListener listener, SearchEvent event) {
+        this.operation = operation;
+        this.patternLength = patternLength;
+        this.textLength = textLength;
+        this.left = left;
+        this.right = right;
+        this.doRestoreWay = doRestoreWay;
+        this.doSubtractIfLongSameSeq = doSubtractIfLongSameSeq;
+        this.listener = listener;
+        this.event = event;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Trivial search (exact or equal ignoring case) found the result of some stage, so its DP wasn't run
+     */
+    void trivialHit(Stage stage) {
+        trivialHit = true;
+        winner = stage;
+    }
+
+    /**
+     * One more DP over cells (rows of pattern times swept columns of text), with tables of given size allocated for it
+     */
+    void dp(long cells, long bytes) {
+        dpRuns++;
+        dpCells += cells;
+        tableBytes += bytes;
+    }
+
+    void restored(long nanos) {
+        restoreNanos += nanos;
+    }
+
+    void won(Stage stage) {
+        winner = stage;
+    }
+
+    /**
+     * Completes stats with the result, then records JFR event and notifies listener
+     */
+    void finish(StrDist.DistResInfo res) {
+        totalNanos = System.nanoTime() - startNanos;
+        dist = res.dist;
+        if (winner == null) {
+            winner = (doSubtractIfLongSameSeq ? Stage.SUBTRACT : Stage.PLAIN);
+        }
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation.name();
+                event.patternLength = patternLength;
+                event.textLength = textLength;
+                event.left = left.name();
+                event.right = right.name();
+                event.doRestoreWay = doRestoreWay;
+                event.doSubtractIfLongSameSeq = doSubtractIfLongSameSeq;
+                event.trivialHit = trivialHit;
+                event.dpRuns = dpRuns;
+                event.dpCells = dpCells;
+                event.tableBytes = tableBytes;
+                event.restoreTime = restoreNanos;
+                event.winner = winner.name();
+                event.dist = dist;
+                event.commit();
+            }
+        }
+        if (listener != null) {
+            listener.onSearch(this);
+        }
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public int getPatternLength() {
+        return patternLength;
+    }
+
+    public int getTextLength() {
+        return textLength;
+    }
+
+    public StrDist.SearchBorder getLeft() {
+        return left;
+    }
+
+    public StrDist.SearchBorder getRight() {
+        return right;
+    }
+
+    public boolean isDoRestoreWay() {
+        return doRestoreWay;
+    }
+
+    /**
+     * @return the flag as passed to calcStrDist or calcStrDistBounded; false for getBestMatch* (their stages decide it)
+     */
+    public boolean isDoSubtractIfLongSameSeq() {
+        return doSubtractIfLongSameSeq;
+    }
+
+    /**
+     * @return whether some stage was answered by trivial search instead of DP
+     */
+    public boolean isTrivialHit() {
+        return trivialHit;
+    }
+
+    /**
+     * @return number of DP runs: stages of the cascade, plus the run restoring way of getBestMatchFused;
+     * one sweep of getBestMatchFused is one run
+     */
+    public int getDpRuns() {
+        return dpRuns;
+    }
+
+    /**
+     * @return cells of DP tables in swept columns, summed over runs (lanes of getBestMatchFused counted separately);
+     * bounded DP skips some of them, and LinearSpaceAlignment revisits some, so it's the size of work, not exact count
+     */
+    public long getDpCells() {
+        return dpCells;
+    }
+
+    /**
+     * @return bytes of last rows and tables of choices allocated for DP (buffers reused by BatchSearch aren't counted)
+     */
+    public long getTableBytes() {
+        return tableBytes;
+    }
+
+    /**
+     * @return time of restoring way (tracing back choices), or of whole LinearSpaceAlignment, which restores it while calculating
+     */
+    public long getRestoreNanos() {
+        return restoreNanos;
+    }
+
+    public Stage getWinner() {
+        return winner;
+    }
+
+    public int getDist() {
+        return dist;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchStats{" +
+                operation + " " + patternLength + "x" + textLength + " " + left + "-" + right +
+                (doRestoreWay ? ", doRestoreWay" : "") +
+                (doSubtractIfLongSameSeq ? ", doSubtractIfLongSameSeq" : "") +
+                (trivialHit ? ", trivialHit" : "") +
+                ", dpRuns=" + dpRuns +
+                ", dpCells=" + dpCells +
+                ", tableBytes=" + tableBytes +
+                ", restoreNanos=" + restoreNanos +
+                ", winner=" + winner +
+                ", dist=" + dist +
+                ", totalNanos=" + totalNanos +
+                '}';
+    }
+}
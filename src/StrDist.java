@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -6,7 +8,9 @@ import java.util.*;
  * getBestMatchAnywhere, getBestMatchRow, getBestMatchWordRow, getBestMatchWord, getBestMatchAnywhere,
  * likelyContains, likelyContainsWords, likelyContainsRows,
  * highlyLikelyContains, highlyLikelyContainsWords, highlyLikelyContainsRows.
- * Direct using of @calcStrDist is allowed too, but may seem more complicated
+ * Direct using of @calcStrDist is allowed too, but may seem more complicated.
+ * All these static methods use the shared default StrDistEngine (@see StrDistEngine#getDefault);
+ * create own StrDistEngine instance when needed, it's immutable and can be shared between threads.
  */
 public class StrDist {
 
@@ -58,34 +62,28 @@ public class StrDist {
         STOP_HERE
     }
 
-    private static boolean isWordBegin(String s, int idx) {
-        return idx <= 0 || idx < s.length() &&
-                (SPACES.indexOf(s.charAt(idx - 1)) != -1 ||
-                        LINE_BREAKS.indexOf(s.charAt(idx - 1)) != -1 ||
-                        QUOTES_OPEN.indexOf(s.charAt(idx - 1)) != -1);
+    static boolean isWordBegin(String s, int idx) {
+        return idx <= 0 || idx < s.length() && CharClass.is(s.charAt(idx - 1), CharClass.WORD_OPENER);
     }
 
-    private static boolean isWordEnd(String s, int idx) {
+    static boolean isWordEnd(String s, int idx) {
         return isJustAfterWordEnd(s, idx + 1);
     }
 
-    private static boolean isJustAfterWordEnd(String s, int idx) {
-        return idx >= s.length() || idx >= 0 &&
-                (SPACES.indexOf(s.charAt(idx)) != -1 ||
-                        LINE_BREAKS.indexOf(s.charAt(idx)) != -1 ||
-                        QUOTES_CLOSE.indexOf(s.charAt(idx)) != -1);
+    static boolean isJustAfterWordEnd(String s, int idx) {
+        return idx >= s.length() || idx >= 0 && CharClass.is(s.charAt(idx), CharClass.WORD_CLOSER);
     }
 
-    private static boolean isRowBegin(String s, int idx) {
-        return idx <= 0 || idx < s.length() && LINE_BREAKS.indexOf(s.charAt(idx - 1)) != -1;
+    static boolean isRowBegin(String s, int idx) {
+        return idx <= 0 || idx < s.length() && CharClass.is(s.charAt(idx - 1), CharClass.LINE_BREAK);
     }
 
-    private static boolean isRowEnd(String s, int idx) {
+    static boolean isRowEnd(String s, int idx) {
         return isLineBreak(s, idx + 1);
     }
 
-    private static boolean isLineBreak(String s, int idx) {
-        return idx >= s.length() || idx >= 0 && LINE_BREAKS.indexOf(s.charAt(idx)) != -1;
+    static boolean isLineBreak(String s, int idx) {
+        return idx >= s.length() || idx >= 0 && CharClass.is(s.charAt(idx), CharClass.LINE_BREAK);
     }
 
     final static String SPACES = "\u0020\u00A0\u1680\u180E" +
@@ -103,171 +101,6 @@ public class StrDist {
     final static String[] keyboardUkrUpper = new String[] {"ЙЦУКЕНГШЩЗХЇ", "ФІВАПРОЛДЖЄ", "ЯЧСМИТЬБЮ,"};
 
 
-    private static void addNearlyLocatedKeysDiscounts(String[] layout) {
-        int costForNear = 7;
-        for(int i=0; i<layout.length; i++) {
-            for(int j=0; j<layout[i].length(); j++) {
-                if (i>1) {
-                    similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i-1].charAt(j), costForNear));
-                    similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i-1].charAt(j+1), costForNear));
-                }
-                if (j>0) {
-                    similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i].charAt(j-1), costForNear));
-                    if (i+1 < layout.length) {
-                        similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i+1].charAt(j-1), costForNear));
-                    }
-                }
-                if (j+1 < layout[i].length()) {
-                    similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i].charAt(j+1), costForNear));
-                    if (i+1 < layout.length) {
-                        similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i+1].charAt(j), costForNear));
-                    }
-                }
-            }
-        }
-    }
-
-    private static void initDistRules() {
-        initCheapToInsert();
-
-        similarCharsClasses.add(new SimilarChars(SPACES, 1));
-        similarCharsClasses.add(new SimilarChars(LINE_BREAKS, 1));
-        similarCharsClasses.add(new SimilarChars(SPACES + LINE_BREAKS + "_\t", 3));
-        similarCharsClasses.add(new SimilarChars(APOSTROPHES, 1));
-        similarCharsClasses.add(new SimilarChars(QUOTES_OPEN, 1));
-        similarCharsClasses.add(new SimilarChars(QUOTES_CLOSE, 1));
-        similarCharsClasses.add(new SimilarChars(APOSTROPHES + QUOTES_OPEN + QUOTES_CLOSE, 5));
-        similarCharsClasses.add(new SimilarChars(HYPHENS, 1));
-        similarCharsClasses.add(new SimilarChars(DASHES, 1));
-        similarCharsClasses.add(new SimilarChars(HYPHENS + DASHES, 4));
-        similarCharsClasses.add(new SimilarChars(HYPHENS + SPACES, 9));
-        similarCharsClasses.add(new SimilarChars(DOTS, 1));
-        // eng and ukr
-        similarCharsClasses.add(new SimilarChars("AА", 9));
-        similarCharsClasses.add(new SimilarChars("BВ", 9));
-        similarCharsClasses.add(new SimilarChars("CС", 6));
-        similarCharsClasses.add(new SimilarChars("EЕ", 9));
-        similarCharsClasses.add(new SimilarChars("HН", 9));
-        similarCharsClasses.add(new SimilarChars("IІ", 5));
-        similarCharsClasses.add(new SimilarChars("KК", 9));
-        similarCharsClasses.add(new SimilarChars("MМ", 9));
-        similarCharsClasses.add(new SimilarChars("OО", 9));
-        similarCharsClasses.add(new SimilarChars("PР", 9));
-        similarCharsClasses.add(new SimilarChars("TТ", 9));
-        similarCharsClasses.add(new SimilarChars("XХ", 9));
-        similarCharsClasses.add(new SimilarChars("aа", 9));
-        similarCharsClasses.add(new SimilarChars("cс", 6));
-        similarCharsClasses.add(new SimilarChars("eе", 9));
-        similarCharsClasses.add(new SimilarChars("iі", 5));
-        similarCharsClasses.add(new SimilarChars("oо", 9));
-        similarCharsClasses.add(new SimilarChars("pр", 9));
-        similarCharsClasses.add(new SimilarChars("xх", 9));
-        similarCharsClasses.add(new SimilarChars("yу", 9));
-        // similar ukr
-        similarCharsClasses.add(new SimilarChars("ГҐ", 3));
-        similarCharsClasses.add(new SimilarChars("ІЇ", 9));
-        similarCharsClasses.add(new SimilarChars("ІИ", 9));
-        similarCharsClasses.add(new SimilarChars("ЙИ", 9));
-        similarCharsClasses.add(new SimilarChars("ЕЄ", 9));
-        similarCharsClasses.add(new SimilarChars("ЕИ", 9));
-        similarCharsClasses.add(new SimilarChars("ОУ", 9));
-        similarCharsClasses.add(new SimilarChars("ОА", 11));
-        similarCharsClasses.add(new SimilarChars("ВУ", 9));
-        similarCharsClasses.add(new SimilarChars("гґ", 3));
-        similarCharsClasses.add(new SimilarChars("ії", 9));
-        similarCharsClasses.add(new SimilarChars("іи", 9));
-        similarCharsClasses.add(new SimilarChars("йи", 9));
-        similarCharsClasses.add(new SimilarChars("еє", 9));
-        similarCharsClasses.add(new SimilarChars("еи", 9));
-        similarCharsClasses.add(new SimilarChars("оу", 9));
-        similarCharsClasses.add(new SimilarChars("оа", 11));
-        similarCharsClasses.add(new SimilarChars("ву", 9));
-        // same key in diff layouts
-        for(int i=0; i<3; i++) {
-            for (int j = 0; j < keyboardUkrLow[i].length(); j++) {
-                similarCharsClasses.add(new SimilarChars("" + keyboardUkrLow[i].charAt(j) + keyboardEngLow[i].charAt(j), 9));
-                similarCharsClasses.add(new SimilarChars("" + keyboardUkrUpper[i].charAt(j) + keyboardEngUpper[i].charAt(j), 9));
-            }
-        }
-        // nearly-located keys
-        addNearlyLocatedKeysDiscounts(keyboardUkrLow);
-        addNearlyLocatedKeysDiscounts(keyboardUkrUpper);
-        addNearlyLocatedKeysDiscounts(keyboardEngLow);
-        addNearlyLocatedKeysDiscounts(keyboardEngUpper);
-    }
-
-    public static boolean canBeSpecial(char c) {
-        return charToSimClasses.containsKey(c);
-    }
-
-    /**
-     * Compares two chars (not strings), considering similarity.
-     *
-     * @param c1 One of chars to be compared.
-     * @param c2 Other of chars to be compared.
-     * @return 0 for the same,
-     * COMMON_DIFF for completely different,
-     * COMMON_DIFF / 2 for upper case and lower case of the same character,
-     * something between 0 and COMMON_DIFF for pairs treated as "similar"
-     */
-    public static int getCharsDist(char c1, char c2) {
-        if (c1 == c2)
-            return 0;
-        int cMax = (int) Math.max(c1, c2);
-        int cMin = (int) Math.min(c1, c2);
-        int code = cMin * 0x10000 + cMax;
-        Integer resFromSaved = distSaved.get(code);
-        if (resFromSaved != null)
-            return resFromSaved;
-        if (charToSimClasses.containsKey(c1) && charToSimClasses.containsKey(c2)) {
-            int resCalced = COMMON_DIFF;
-            for (int i : charToSimClasses.get(c1)) {
-                if (charToSimClasses.get(c2).contains(i)) {
-                    resCalced = Math.min(resCalced, similarCharsClasses.get(i).dist);
-                }
-            }
-            char c1Upper = Character.toUpperCase(c1);
-            char c2Upper = Character.toUpperCase(c2);
-            if (c1Upper != c1 || c2Upper != c2) {
-                int diffUpCased = getCharsDist(c1Upper, c2Upper);
-                if (diffUpCased < resCalced)
-                    resCalced = (resCalced + diffUpCased) / 2;
-            }
-            distSaved.put(code, resCalced);
-            return resCalced;
-        } else {
-            if (Character.toUpperCase(c1) == Character.toUpperCase(c2)) {
-                distSaved.put(code, COMMON_DIFF / 2);
-                return COMMON_DIFF / 2;
-            }
-            distSaved.put(code, COMMON_DIFF);
-            return COMMON_DIFF;
-        }
-    }
-
-    private static void initCheapToInsert() {
-        cheapToInsert = new HashMap<>();
-        for (char c : SPACES.toCharArray()) {
-            cheapToInsert.put(c, 3);
-        }
-        for (char c : LINE_BREAKS.toCharArray()) {
-            cheapToInsert.put(c, 3);
-        }
-        cheapToInsert.put('\r', 1);
-        for (char c : HYPHENS.toCharArray()) {
-            cheapToInsert.put(c, 9);
-        }
-        for (char c : DOTS.toCharArray()) {
-            cheapToInsert.put(c, 9);
-        }
-        for (char c : QUOTES_OPEN.toCharArray()) {
-            cheapToInsert.put(c, 9);
-        }
-        for (char c : QUOTES_CLOSE.toCharArray()) {
-            cheapToInsert.put(c, 9);
-        }
-    }
-
     /**
      * @author IlyaCk a.k.a. Ilya Porublyov
      */
@@ -281,130 +114,281 @@ public class StrDist {
         public final int dist;
 
         /**
-         * Stores characters treated as "matched".
-         * Keys are indices in substring, corresponding values are corresponding indices in superstring.
-         * Each used key maps to exactly one value, and each used value is mapped from exactly one key.
-         * Both keys and mapped values are ordered strictly ascending.
+         * Stores characters treated as "matched" (@see Alignment).
          */
-        final NavigableMap<Integer, Integer> commonSubToSuper;
+        final Alignment commonSubToSuper;
 
         /**
-         * html-format of detail explain how actually found substring differs from argument subStr
-         * style "ins" means that smth not present in subStr was inserted
-         * style ""
+         * What diff is rendered from on demand (@see #renderDiff): kind of diff, strings and borders of search,
+         * comment of trivial match
          */
-        public final String diffAsHtml;
+        private final DiffFormat.Kind diffKind;
+        private final String subStr;
+        private final String superStr;
+        private final SearchBorder left;
+        private final SearchBorder right;
+        private final String comment;
+
+        /**
+         * Result which this one adds penalty to (@see #DistResInfo(DistResInfo, int)), or null
+         */
+        private final DistResInfo penalized;
+        private final int penalty;
 
         public final MatchLevel matchLevel;
 
         @Override
         public String toString() {
+            String diffAsHtml = getDiffAsHtml();
             return "DistResInfo{" +
                     "dist=" + dist +
                     ", matchLevel=" + matchLevel +
                     (commonSubToSuper != null && commonSubToSuper.size() < 20 ? ", commonSubToSuper=" + commonSubToSuper : "") +
-                    (diffAsHtml != null && diffAsHtml.length() < 50 ? ", diffAsHtml=" + diffAsHtml : "") +
+                    (diffAsHtml.length() < 50 ? ", diffAsHtml=" + diffAsHtml : "") +
                     '}';
         }
 
+        /**
+         * html-format of detail explain how actually found substring differs from argument subStr
+         * style "ins" means that smth not present in subStr was inserted
+         * style "skip" means that smth present in subStr was not found.
+         * It's rendered on each call (@see #renderDiff).
+         * Replaces public field diffAsHtml, which every constructor used to build eagerly.
+         */
+        public String getDiffAsHtml() {
+            return renderDiff(DiffFormat.HTML);
+        }
+
+        /**
+         * @return whether nothing but dist is kept (so result can be restored as new DistResInfo(dist), @see ResultCache)
+         */
+        boolean isJustDist() {
+            return diffKind == DiffFormat.Kind.NOT_RESTORED && penalized == null && comment == null;
+        }
+
+        /**
+         * @return approximate bytes of strings and alignment kept for rendering diff (@see ResultCache)
+         */
+        long retainedBytes() {
+            long chars = (subStr == null ? 0 : subStr.length()) + (superStr == null ? 0 : superStr.length()) +
+                    (comment == null ? 0 : comment.length());
+            return 2 * chars + (commonSubToSuper == null ? 0 : 4L * commonSubToSuper.length());
+        }
+
+        /**
+         * @return diff rendered in format
+         */
+        public String renderDiff(DiffFormat format) {
+            StringBuilder sb = new StringBuilder();
+            try {
+                renderDiff(sb, format);
+            } catch (IOException e) {
+                // StringBuilder doesn't throw it
+                throw new UncheckedIOException(e);
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Renders detail explain how actually found substring differs from argument subStr, directly to out.
+         * Nothing is built until this is called, so results used only for dist cost nothing.
+         */
+        public void renderDiff(Appendable out, DiffFormat format) throws IOException {
+            RenderEvent event = StrDistInstrumentation.beginRender();
+            long start = (event == null ? 0 : System.nanoTime());
+            StringBuilder distText = new StringBuilder();
+            DistResInfo base = this;
+            for (; base.penalized != null; base = base.penalized) {
+                distText.append(formatJustDist(base.penalty)).append(" + ");
+            }
+            distText.append(diffKind == DiffFormat.Kind.TRIVIAL ? "0" : formatJustDist(base.dist));
+            format.begin(out, diffKind);
+            switch (diffKind) {
+                case ALIGNED -> renderAligned(out, format);
+                case UNALIGNED -> {
+                    format.span(out, diffKind, DiffFormat.Span.INS, 0, superStr, 0, superStr.length());
+                    format.span(out, diffKind, DiffFormat.Span.SKIP, 1, subStr, 0, subStr.length());
+                }
+                case TRIVIAL -> format.span(out, diffKind, DiffFormat.Span.GOOD, 0, subStr, 0, subStr.length());
+                case NOT_RESTORED -> {
+                }
+            }
+            format.end(out, diffKind, dist, distText.toString(), comment);
+            StrDistInstrumentation.endRender(event, diffKind, format, start);
+        }
+
         /**
          * Used when doRestoreWay is true; indices and mappings are generated here,
          * based on generalized-Levenshtein DP table.
          *
          * @param subStr   substring used in calcStrDist
-         * @param superStr superstring used in calcStrDist
-         * @param dp       generalized-Levenshtein DP table
-         * @param choices  choices for generalized-Levenshtein DP table
+         * @param text     superstring used in calcStrDist
+         * @param lastRow  last row of generalized-Levenshtein DP table
+         * @param choices  choices for columns 1..superStr.length() of generalized-Levenshtein DP table,
+         *                 flat column-major (@see ColumnDp#traceBack); may be null when doRestoreWay is false
          */
-        private DistResInfo(String subStr, String superStr, int[][] dp, KindOfEdit[][] choices, SearchBorder left, SearchBorder right, boolean doRestoreWay) {
+        DistResInfo(String subStr, IndexedText text, int[] lastRow, byte[] choices, SearchBorder left, SearchBorder right, boolean doRestoreWay) {
+            String superStr = text.superStr;
             int iii = subStr.length();
-            int minValue = dp[iii][superStr.length()];
+            int jjj = findMatchEnd(text, lastRow, left, right);
+            dist = lastRow[jjj];
+
+            if (doRestoreWay) {
+                int[] subToSuper = Alignment.unmatched(iii);
+                ColumnDp.traceBack(choices, 0, iii, jjj, subStr, superStr, subToSuper);
+                commonSubToSuper = new Alignment(subToSuper);
+                diffKind = (commonSubToSuper.isEmpty() ? DiffFormat.Kind.UNALIGNED : DiffFormat.Kind.ALIGNED);
+                this.subStr = subStr;
+                this.superStr = superStr;
+                this.left = left;
+                this.right = right;
+            } else {
+                commonSubToSuper = null;
+                diffKind = DiffFormat.Kind.NOT_RESTORED;
+                this.subStr = null;
+                this.superStr = null;
+                this.left = null;
+                this.right = null;
+            }
+            this.comment = null;
+            this.penalized = null;
+            this.penalty = 0;
+            this.matchLevel = (this.dist < 10 ? MatchLevel.HIGH :
+                    (this.dist < 30 ? MatchLevel.MEDIUM :
+                            (this.dist < 100 ? MatchLevel.LOW : MatchLevel.NOT_MATCHED)));
+        }
+
+        /**
+         * Used when only distance is calculated (doRestoreWay is false) and last row of DP table is not kept.
+         *
+         * @param dist found distance
+         */
+        DistResInfo(int dist) {
+            this.dist = dist;
+            this.commonSubToSuper = null;
+            this.diffKind = DiffFormat.Kind.NOT_RESTORED;
+            this.subStr = null;
+            this.superStr = null;
+            this.left = null;
+            this.right = null;
+            this.comment = null;
+            this.penalized = null;
+            this.penalty = 0;
+            this.matchLevel = (this.dist < 10 ? MatchLevel.HIGH :
+                    (this.dist < 30 ? MatchLevel.MEDIUM :
+                            (this.dist < 100 ? MatchLevel.LOW : MatchLevel.NOT_MATCHED)));
+        }
+
+        /**
+         * Used when alignment is already restored by other means (@see LinearSpaceAlignment).
+         *
+         * @param subStr           substring used in calcStrDist
+         * @param superStr         superstring used in calcStrDist
+         * @param dist             found distance
+         * @param commonSubToSuper restored mapping of matched chars
+         */
+        DistResInfo(String subStr, String superStr, int dist, Alignment commonSubToSuper, SearchBorder left, SearchBorder right) {
+            this.dist = dist;
+            this.commonSubToSuper = commonSubToSuper;
+            this.diffKind = (commonSubToSuper.isEmpty() ? DiffFormat.Kind.UNALIGNED : DiffFormat.Kind.ALIGNED);
+            this.subStr = subStr;
+            this.superStr = superStr;
+            this.left = left;
+            this.right = right;
+            this.comment = null;
+            this.penalized = null;
+            this.penalty = 0;
+            this.matchLevel = (this.dist < 10 ? MatchLevel.HIGH :
+                    (this.dist < 30 ? MatchLevel.MEDIUM :
+                            (this.dist < 100 ? MatchLevel.LOW : MatchLevel.NOT_MATCHED)));
+        }
+
+        /**
+         * Finds where the best match ends, considering right border (and, for WORD-ROW, trailing spaces of row).
+         *
+         * @param text     superstring used in calcStrDist
+         * @param lastRow  last row of generalized-Levenshtein DP table
+         * @return index j such that lastRow[j] is the found distance
+         */
+        static int findMatchEnd(IndexedText text, int[] lastRow, SearchBorder left, SearchBorder right) {
+            return findMatchEnd(text, lastRow, left, right, null);
+        }
+
+        /**
+         * The same, also marking every column which is considered as the end (@see OccurrenceSearch):
+         * the best match ends at one of them, and has the least value of lastRow among them.
+         *
+         * @param considered array of superStr.length() + 1 where considered columns are set to true, or null
+         */
+        static int findMatchEnd(IndexedText text, int[] lastRow, SearchBorder left, SearchBorder right, boolean[] considered) {
+            String superStr = text.superStr;
+            int minValue = lastRow[superStr.length()];
             int minIdx = superStr.length();
+            if (considered != null) {
+                considered[superStr.length()] = true;
+            }
 
             if (right != SearchBorder.WHOLE_TEXT) {
                 for (int j = 0; j < superStr.length(); j++) {
-                    if (dp[iii][j + 1] <= minValue &&
-                            (right == SearchBorder.ANYWHERE ||
-                                    right == SearchBorder.WORD && isWordEnd(superStr, j) ||
-                                    right == SearchBorder.ROW && isRowEnd(superStr, j)))
-                    {
-                        minValue = dp[iii][j + 1];
+                    boolean allowed = right == SearchBorder.ANYWHERE ||
+                            right == SearchBorder.WORD && text.isWordEnd(j) ||
+                            right == SearchBorder.ROW && text.isRowEnd(j);
+                    if (allowed && considered != null) {
+                        considered[j + 1] = true;
+                    }
+                    if (allowed && lastRow[j + 1] <= minValue) {
+                        minValue = lastRow[j + 1];
                         minIdx = j + 1;
                     }
                 }
             }
             if (left == SearchBorder.WORD && right == SearchBorder.ROW) {
-                String SPACES_EXTENDED_END = "_\t"+SPACES+DOTS+QUOTES_CLOSE;
                 int minThisRowValue = Integer.MAX_VALUE / 2;
                 for (int j = 0; j+1 < superStr.length(); j++) {
-                    if (isRowEnd(superStr,j)) {
+                    if (text.isRowEnd(j)) {
                         if (minThisRowValue < minValue) {
                             for (int jjj = j;
-                                 jjj > 0 && dp[iii][jjj] <= dp[iii][jjj + 1] && minThisRowValue < minValue && !(isLineBreak(superStr, jjj)) &&
-                                         SPACES_EXTENDED_END.indexOf(superStr.charAt(jjj)) != -1;
+                                 jjj > 0 && lastRow[jjj] <= lastRow[jjj + 1] && minThisRowValue < minValue && !(text.isLineBreak(jjj)) &&
+                                         CharClass.is(superStr.charAt(jjj), CharClass.SPACES_EXTENDED_END);
                                  jjj--) {
-                                if (dp[iii][jjj] < minValue) {
-                                    minValue = dp[iii][jjj];
+                                if (considered != null) {
+                                    considered[jjj] = true;
+                                }
+                                if (lastRow[jjj] < minValue) {
+                                    minValue = lastRow[jjj];
                                     minIdx = jjj;
                                 }
                             }
                         }
                     }
-                    if (isLineBreak(superStr, j)) {
+                    if (text.isLineBreak(j)) {
                         minThisRowValue = Integer.MAX_VALUE / 2;
                     } else {
-                        if (dp[iii][j] < minThisRowValue) {
-                            minThisRowValue = dp[iii][j];
-                        }
-                    }
-                }
-            }
-
-            dist = minValue;
-            int jjj = minIdx;
-
-            if (doRestoreWay) {
-                commonSubToSuper = new TreeMap<>();
-                while (iii > 0 && jjj > 0) {
-                    switch (choices[iii][jjj]) {
-                        case REPLACE_OR_COPY -> {
-                            if (subStr.charAt(iii - 1) == superStr.charAt(jjj - 1)) {
-                                commonSubToSuper.put(iii - 1, jjj - 1);
-                            }
-                            iii--;
-                            jjj--;
-                        }
-                        case DEL -> { iii--; }
-                        case INS -> { jjj--; }
-                        case SWAP -> {
-                            iii -= 2;
-                            jjj -= 2;
-                        }
-                        case SWAP_THREE -> {
-                            iii -= 3;
-                            jjj -= 3;
+                        if (lastRow[j] < minThisRowValue) {
+                            minThisRowValue = lastRow[j];
                         }
                     }
                 }
-                diffAsHtml = buildDiffAsHtml(superStr, subStr, left, right);
-            } else {
-                commonSubToSuper = null;
-                diffAsHtml = "cmp not restored because you didn't pass such option";
             }
-            this.matchLevel = (this.dist < 10 ? MatchLevel.HIGH :
-                    (this.dist < 30 ? MatchLevel.MEDIUM :
-                            (this.dist < 100 ? MatchLevel.LOW : MatchLevel.NOT_MATCHED)));
+            return minIdx;
         }
 
         /**
          * @param additionalPenalty additional penalty to be added to dist of oldRes
          */
-        private DistResInfo(DistResInfo oldRes, int additionalPenalty) {
+        DistResInfo(DistResInfo oldRes, int additionalPenalty) {
             if (additionalPenalty < 0)
                 throw new IllegalArgumentException("additionalPenalty < 0");
             this.dist = oldRes.dist + additionalPenalty;
-            this.diffAsHtml = oldRes.diffAsHtml.replace("dist =", "dist = " + formatJustDist(additionalPenalty) + " +");
             this.commonSubToSuper = oldRes.commonSubToSuper;
+            this.diffKind = oldRes.diffKind;
+            this.subStr = oldRes.subStr;
+            this.superStr = oldRes.superStr;
+            this.left = oldRes.left;
+            this.right = oldRes.right;
+            this.comment = oldRes.comment;
+            this.penalized = oldRes;
+            this.penalty = additionalPenalty;
             this.matchLevel = (this.dist < 30 ? MatchLevel.MEDIUM :
                     (this.dist < 100 ? MatchLevel.LOW : MatchLevel.NOT_MATCHED));
         }
@@ -416,16 +400,19 @@ public class StrDist {
          * @param subStr substring used in calcStrDist
          * @param start  index in superStr where trivial occurrence of subStr starts
          */
-        private DistResInfo(String subStr, int start, boolean doRestoreWay, String additionalComment) {
+        DistResInfo(String subStr, int start, boolean doRestoreWay, String additionalComment) {
             this.dist = 0;
             this.matchLevel = MatchLevel.HIGH;
-            this.diffAsHtml = "<html>\n<span class=\"good\">\n" + subStr + "\n</span>\n(dist = 0, found trivially" +
-                    ((additionalComment == null || additionalComment.isBlank()) ? "" : (" &mdash; " + additionalComment)) +
-                    ")\n</html>";
+            this.diffKind = DiffFormat.Kind.TRIVIAL;
+            this.subStr = subStr;
+            this.superStr = null;
+            this.left = null;
+            this.right = null;
+            this.comment = additionalComment;
+            this.penalized = null;
+            this.penalty = 0;
             if (doRestoreWay) {
-                this.commonSubToSuper = new TreeMap<>();
-                for (int i = 0; i < subStr.length(); i++)
-                    this.commonSubToSuper.put(i, i + start);
+                this.commonSubToSuper = Alignment.exact(subStr.length(), start);
             } else {
                 this.commonSubToSuper = null;
             }
@@ -436,23 +423,13 @@ public class StrDist {
         }
 
         /**
-         * Should be called from constructor ONLY!
-         * Depends on commonSubToSuper which SHOULD be already set
+         * Renders spans of ALIGNED diff; depends on commonSubToSuper, which is not empty
          */
-        private String buildDiffAsHtml(String superStr, String subStr, SearchBorder left, SearchBorder right) {
-            if (commonSubToSuper == null || commonSubToSuper.isEmpty()) {
-                return "<html>\n<span class=\"skip\">" + superStr + "</span>\n<span class=\"ins\">" + subStr + "</span>\n(dist = " + formatJustDist(dist) + "(?))</html>";
-            }
-//                if (superStr.length() < 30)
-//                    System.out.println("superStr = " + superStr + " // length = " + superStr.length());
-//                else
-//                    System.out.println("superStr.length = " + superStr.length());
-//                System.out.println("subStr = " + subStr + " // length = " + subStr.length());
-//                System.out.println("commonSubToSuper: size = " + commonSubToSuper.size() + " ,  " + commonSubToSuper);
-
-            StringBuilder sb = new StringBuilder("<html>\n<p>\n");
-            int minInSuper = commonSubToSuper.firstEntry().getValue();
-            int maxInSuper = commonSubToSuper.lastEntry().getValue();
+        private void renderAligned(Appendable out, DiffFormat format) throws IOException {
+            DiffFormat.Kind kind = DiffFormat.Kind.ALIGNED;
+            int index = 0;
+            int minInSuper = commonSubToSuper.minInSuper();
+            int maxInSuper = commonSubToSuper.maxInSuper();
             int idx = 0;
             switch (left) {
                 case ANYWHERE -> idx = minInSuper;
@@ -469,51 +446,46 @@ public class StrDist {
                 case WHOLE_TEXT -> idx = 0;
             }
 
-            String SPACES_EXTENDED_BEGIN = "_\t" + SPACES + DOTS + QUOTES_OPEN;
             if (right == SearchBorder.WORD || right == SearchBorder.ROW) {
-                while (idx < minInSuper && SPACES_EXTENDED_BEGIN.indexOf(superStr.charAt(idx)) != -1) { idx++; }
+                while (idx < minInSuper && CharClass.is(superStr.charAt(idx), CharClass.SPACES_EXTENDED_BEGIN)) { idx++; }
             }
 
             if (idx < minInSuper) {
-                sb.append("<span class=\"ins\">");
-                while (idx < minInSuper) {
-                    sb.append(superStr.charAt(idx));
-                    idx++;
-                }
-                sb.append("</span>");
+                format.span(out, kind, DiffFormat.Span.INS, index++, superStr, idx, minInSuper);
+                idx = minInSuper;
             }
 
             for (int i = 0; i < subStr.length(); ) {
-                int prevJ, nextJ = commonSubToSuper.getOrDefault(i, -1);
+                int prevJ, nextJ = commonSubToSuper.superOf(i);
                 if (nextJ > -1 && superStr.charAt(nextJ) == subStr.charAt(i)) {
-                    sb.append("<span class=\"good\">");
+                    int from = i;
+                    int insFrom = -1;
+                    int insTo = -1;
                     while (i < subStr.length() && 0 <= nextJ && nextJ < superStr.length() && superStr.charAt(nextJ) == subStr.charAt(i)) {
-                        sb.append(subStr.charAt(i));
                         prevJ = nextJ;
                         i++;
-                        nextJ = commonSubToSuper.getOrDefault(i, -1);
+                        nextJ = commonSubToSuper.superOf(i);
                         if (nextJ > prevJ + 1) {
-                            insertInsertedRange(superStr, commonSubToSuper.get(i - 1), commonSubToSuper.get(i), sb);
+                            insFrom = prevJ + 1;
+                            insTo = nextJ;
                             break;
                         }
                     }
-                    sb.append("</span>");
+                    format.span(out, kind, DiffFormat.Span.GOOD, index++, subStr, from, i);
+                    if (insFrom >= 0) {
+                        format.span(out, kind, DiffFormat.Span.INS, index++, superStr, insFrom, insTo);
+                    }
                 } else {
-                    sb.append("<span class=\"skip\">");
-                    while (i < subStr.length() && !(commonSubToSuper.containsKey(i))) {
-                        sb.append(subStr.charAt(i));
+                    int from = i;
+                    while (i < subStr.length() && !(commonSubToSuper.isMatched(i))) {
                         i++;
                     }
-                    Map.Entry<Integer, Integer> lowerEntry = commonSubToSuper.lowerEntry(i);
-                    Map.Entry<Integer, Integer> ceilingEntry = commonSubToSuper.ceilingEntry(i);
-                    if (lowerEntry != null && ceilingEntry != null) {
-                        int lowerValue = (int) lowerEntry.getValue();
-                        int ceilingValue = (int) ceilingEntry.getValue();
-                        if (ceilingValue > lowerValue + 1) {
-                            insertInsertedRange(superStr, lowerValue, ceilingValue, sb);
-                        }
+                    format.span(out, kind, DiffFormat.Span.SKIP, index++, subStr, from, i);
+                    int lowerValue = commonSubToSuper.lowerSuper(i);
+                    int ceilingValue = commonSubToSuper.ceilingSuper(i);
+                    if (lowerValue >= 0 && ceilingValue > lowerValue + 1) {
+                        format.span(out, kind, DiffFormat.Span.INS, index++, superStr, lowerValue + 1, ceilingValue);
                     }
-                    sb.append("</span>");
                 }
             }
 
@@ -522,388 +494,302 @@ public class StrDist {
                 if (right == SearchBorder.WORD || right == SearchBorder.ROW) {
                     int jjj = idx;
                     while (!(right == SearchBorder.WORD && isWordEnd(superStr, jjj) || right == SearchBorder.ROW && isRowEnd(superStr, jjj))) { jjj++; }
-                    String SPACES_EXTENDED_END = "_\t" + SPACES + DOTS + QUOTES_CLOSE;
-                    while (jjj > maxInSuper && SPACES_EXTENDED_END.indexOf(superStr.charAt(jjj)) != -1) { jjj--; }
+                    while (jjj > maxInSuper && CharClass.is(superStr.charAt(jjj), CharClass.SPACES_EXTENDED_END)) { jjj--; }
                     if (jjj == maxInSuper) { doSkip = true; }
                 }
                 if (!doSkip) {
-                    boolean spanStarted = false;
                     for (idx = maxInSuper + 1; idx < superStr.length(); idx++) {
                         if (right == SearchBorder.WORD && isJustAfterWordEnd(superStr, idx))
                             break;
                         if (right == SearchBorder.ROW && isLineBreak(superStr, idx))
                             break;
-                        if (!spanStarted)
-                            sb.append("<span class=\"ins\">");
-                        spanStarted = true;
-                        sb.append(superStr.charAt(idx));
                     }
-                    if (spanStarted)
-                        sb.append("</span>");
+                    if (idx > maxInSuper + 1) {
+                        format.span(out, kind, DiffFormat.Span.INS, index, superStr, maxInSuper + 1, idx);
+                    }
                 }
             }
-            sb.append("\n</p>\n(dist = ");
-            sb.append(formatJustDist(this.dist));
-            sb.append(")\n</html>\n");
-            return sb.toString();
         }
+    }
 
-        private void insertInsertedRange(String superStr, int jBeforeStart, int jAfterEnd, StringBuilder sb) {
-            sb.append("</span>");
-            sb.append("<span class=\"ins\">");
-            for (int j = jBeforeStart + 1; j < jAfterEnd; j++) {
-                sb.append(superStr.charAt(j));
-            }
-        }
+    static final int COMMON_DIFF = 16;
 
+    public static boolean canBeSpecial(char c) {
+        return StrDistEngine.getDefault().canBeSpecial(c);
     }
 
-    private static class SimilarChars {
-        /**
-         * All chars which are treated as similar.
-         * The same char (and even the same pair of chars) MAY appear in different instances of SimilarChars
-         */
-        final String chars;
-        /**
-         * Distance between similar chars from the list. Normally should be less than COMMON_DIFF.
-         */
-        final int dist;
+    /**
+     * @see StrDistEngine#getCharsDist
+     */
+    public static int getCharsDist(char c1, char c2) {
+        return StrDistEngine.getDefault().getCharsDist(c1, c2);
+    }
 
-        SimilarChars(String chars, int dist) {
-            this.chars = chars;
-            this.dist = dist;
-            if (this.dist >= COMMON_DIFF)
-                throw new IllegalArgumentException("SimilarChars (" + dist + ") dist exceeds COMMON_DIFF (" + COMMON_DIFF + "). " +
-                        "It's abnormal and contradicts sense of similar characters.");
-            for (char c : chars.toCharArray()) {
-                if (!(charToSimClasses.containsKey(c))) {
-                    charToSimClasses.put(c, new HashSet<>());
-                }
-                charToSimClasses.get(c).add(similarCharsClasses.size());
-            }
-            similarCharsClasses.add(this);
-        }
+    /**
+     * @see StrDistEngine#calcStrDist
+     */
+    public static DistResInfo calcStrDist(String subStr, String superStr, SearchBorder left, SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) {
+        return StrDistEngine.getDefault().calcStrDist(subStr, superStr, left, right, doRestoreWay, doSubtractIfLongSameSeq);
     }
 
-    static Map<Character, Integer> cheapToInsert = null;
-    static List<SimilarChars> similarCharsClasses = new ArrayList<>();
-    static Map<Character, Set<Integer>> charToSimClasses = new HashMap<>();
-    static Map<Integer, Integer> distSaved = new HashMap<>();
-    static final int COMMON_DIFF = 16;
+    /**
+     * @see StrDistEngine#calcStrDist(CompiledPattern, String, SearchBorder, SearchBorder, boolean, boolean)
+     */
+    public static DistResInfo calcStrDist(CompiledPattern pattern, String superStr, SearchBorder left, SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) {
+        return StrDistEngine.getDefault().calcStrDist(pattern, superStr, left, right, doRestoreWay, doSubtractIfLongSameSeq);
+    }
 
     /**
-     * @param subStr   Substring which should be searched in superStr.
-     *                 Penalty doesn't depend significantly on place of differences.
-     * @param superStr Superstring where to search substring.
-     * @return If trivial search founds res,  Found distance between subStr and superStr; distance-as-number is returned always,
-     * indices and mapping are omitted when doRestoreWay is false.
-     * @see DistResInfo
+     * @see StrDistEngine#calcStrDist(CompiledPattern, IndexedText, SearchBorder, SearchBorder, boolean, boolean)
      */
-    private static DistResInfo tryTrivialSearch(String subStr, String superStr, SearchBorder left, SearchBorder right, int[] trivDelCosts, int[] trivInsCosts, boolean doRestoreWay) {
-        if (subStr.isBlank() && superStr.isBlank()) {
-            return new DistResInfo(subStr, 0, true, "both are blank; this <b><i>needs</i></b> check if it's ok");
-        }
-        if (subStr.equals(superStr)) {
-            return new DistResInfo(subStr, 0, true, "exactly equal");
-        }
-        if (subStr.equalsIgnoreCase(superStr)) {
-            int diff = 0;
-            for(int i=0; i < subStr.length() && diff < 25; i++) {
-                diff += getCharsDist(subStr.charAt(i), superStr.charAt(i));
-            }
-            return new DistResInfo(new DistResInfo(subStr, 0, true, "equal <b><i>ignoring case</i></b>"), Math.min(25, diff));
-        }
-        if (subStr.isBlank()) {  // && !(superStr.isBlank())
-            int diff = 0;
-            return new DistResInfo(new DistResInfo(subStr, 0, true, "substring is blank; this <b><i>needs</i></b> check if it's ok"), 25);
-        }
-        if (left != SearchBorder.WHOLE_TEXT || right != SearchBorder.WHOLE_TEXT) {
-            int pos = superStr.indexOf(subStr);
-            while(0 <= pos && pos < superStr.length() - 1) {
-                if ((pos == 0 ||
-                        left == SearchBorder.ANYWHERE ||
-                        left == SearchBorder.ROW && isRowBegin(superStr, pos) ||
-                        left == SearchBorder.WORD && isWordBegin(superStr, pos))
-                        &&
-                        (pos + subStr.length() == superStr.length() ||
-                                right == SearchBorder.ANYWHERE ||
-                                right == SearchBorder.ROW && isRowEnd(superStr, pos + subStr.length() - 1) ||
-                                right == SearchBorder.WORD && isWordEnd(superStr, pos + subStr.length() - 1))
-                ) {
-                    return new DistResInfo(subStr, pos, doRestoreWay, "exact substring, pos = " + (pos+1));
-                }
-                pos = superStr.indexOf(subStr, pos+1);
-            }
-        }
-        return null;
+    public static DistResInfo calcStrDist(CompiledPattern pattern, IndexedText text, SearchBorder left, SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) {
+        return StrDistEngine.getDefault().calcStrDist(pattern, text, left, right, doRestoreWay, doSubtractIfLongSameSeq);
     }
 
     /**
-     * @param subStr   Substring which should be searched in superStr.
-     * @param superStr Superstring where to search substring.
-     * @param left  Should begin of match be at begin of text, begin of row, begin of word or anywhere
-     * @param right Should end of match be at end of text, end of row, end of word or anywhere
-     * @return Found distance between subStr and superStr; distance-as-number and match quality (@see {@link MatchLevel}) are returned always,
-     * indices, mapping and html-form of diff are omitted when doRestoreWay is false.
-     * @see DistResInfo
+     * @see StrDistEngine#calcStrDistBounded
      */
-    public static DistResInfo calcStrDist(String subStr, String superStr, SearchBorder left, SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) {
-//            if (superStr.length() < 30)
-//                System.out.println("superStr = " + superStr + " // length = " + superStr.length());
-//            else
-//                for (int i = 0; i < superStr.length(); i++)
-//                    System.out.println("superStr[" + i + "] = " + superStr.charAt(i) + " (" + (int) (superStr.charAt(i)) + ")");
-//            System.out.println("subStr = " + subStr + " // length = " + subStr.length());
-
-        if (superStr==null || superStr.isBlank()) {
-            return new DistResInfo(new DistResInfo("", -1, true, "text where to search was EMPTY!"), 100500);
-        }
+    public static DistResInfo calcStrDistBounded(String subStr, String superStr, SearchBorder left, SearchBorder right, boolean doSubtractIfLongSameSeq, int maxDist) {
+        return StrDistEngine.getDefault().calcStrDistBounded(subStr, superStr, left, right, doSubtractIfLongSameSeq, maxDist);
+    }
 
-        if (subStr==null || subStr.isBlank()) {
-            return new DistResInfo(new DistResInfo("", -1, true, "pattern to be searched was EMPTY!"), 100500);
-        }
+    /**
+     * @see StrDistEngine#calcStrDistBounded(CompiledPattern, String, SearchBorder, SearchBorder, boolean, int)
+     */
+    public static DistResInfo calcStrDistBounded(CompiledPattern pattern, String superStr, SearchBorder left, SearchBorder right, boolean doSubtractIfLongSameSeq, int maxDist) {
+        return StrDistEngine.getDefault().calcStrDistBounded(pattern, superStr, left, right, doSubtractIfLongSameSeq, maxDist);
+    }
 
-        if (cheapToInsert == null) {
-            initDistRules();
-        }
+    /**
+     * @see StrDistEngine#calcStrDistBounded(CompiledPattern, IndexedText, SearchBorder, SearchBorder, boolean, int)
+     */
+    public static DistResInfo calcStrDistBounded(CompiledPattern pattern, IndexedText text, SearchBorder left, SearchBorder right, boolean doSubtractIfLongSameSeq, int maxDist) {
+        return StrDistEngine.getDefault().calcStrDistBounded(pattern, text, left, right, doSubtractIfLongSameSeq, maxDist);
+    }
 
-        subStr = subStr.trim();
-        superStr = superStr.trim();
+    /**
+     * @see StrDistEngine#findAll
+     */
+    public static List<Occurrence> findAll(String subStr, String superStr, SearchBorder left, SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int maxDist) {
+        return StrDistEngine.getDefault().findAll(subStr, superStr, left, right, doRestoreWay, doSubtractIfLongSameSeq, maxDist);
+    }
 
-        int[] trivDelCosts = new int[subStr.length()];
-        for (int i = 0; i < subStr.length(); i++) {
-            Integer cost = cheapToInsert.get(subStr.charAt(i));
-            trivDelCosts[i] = (cost != null ? cost : COMMON_DIFF);
-        }
-        int[] trivInsCosts = new int[superStr.length()];
-        for (int j = 0; j < superStr.length(); j++) {
-            Integer cost = cheapToInsert.get(superStr.charAt(j));
-            trivInsCosts[j] = (cost != null ? cost : COMMON_DIFF);
-        }
+    /**
+     * @see StrDistEngine#findBestK
+     */
+    public static List<Occurrence> findBestK(String subStr, String superStr, SearchBorder left, SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int k) {
+        return StrDistEngine.getDefault().findBestK(subStr, superStr, left, right, doRestoreWay, doSubtractIfLongSameSeq, k);
+    }
 
-        DistResInfo trivSrchRes = tryTrivialSearch(subStr, superStr, left, right, trivDelCosts, trivInsCosts, doRestoreWay);
-        if (trivSrchRes != null) {
-            return trivSrchRes;
-        }
+    /**
+     * @see StrDistEngine#compile
+     */
+    public static CompiledPattern compile(String subStr) {
+        return StrDistEngine.getDefault().compile(subStr);
+    }
 
-        int[][] dp = new int[subStr.length() + 1][superStr.length() + 1];
-        KindOfEdit[][] choices = new KindOfEdit[subStr.length() + 1][superStr.length() + 1];
+    /**
+     * @see StrDistEngine#indexText
+     */
+    public static IndexedText indexText(String superStr) {
+        return StrDistEngine.getDefault().indexText(superStr);
+    }
 
-        int[] costDelTwo = new int[subStr.length()];
-        costDelTwo[0] = Integer.MAX_VALUE / 2;
-        for(int i=1; i<subStr.length(); i++) {
-            costDelTwo[i] = (2*getCharsDist(subStr.charAt(i-1), subStr.charAt(i)) + trivDelCosts[i-1]) / 3;
-        }
-        int[] costInsTwo = new int[superStr.length()];
-        costInsTwo[0] = Integer.MAX_VALUE / 2;
-        for(int j=1; j<superStr.length(); j++) {
-            costInsTwo[j] = (2*getCharsDist(superStr.charAt(j-1), superStr.charAt(j)) + trivInsCosts[j]) / 3;
-        }
+    /**
+     * @see StrDistEngine#buildQGramIndex
+     */
+    public static QGramIndex buildQGramIndex(String superStr, int q, boolean normalizeHomoglyphs) {
+        return StrDistEngine.getDefault().buildQGramIndex(superStr, q, normalizeHomoglyphs);
+    }
 
-        dp[0][0] = 0;
+    /**
+     * @see StrDistEngine#buildQGramIndex(IndexedText, int, boolean)
+     */
+    public static QGramIndex buildQGramIndex(IndexedText text, int q, boolean normalizeHomoglyphs) {
+        return StrDistEngine.getDefault().buildQGramIndex(text, q, normalizeHomoglyphs);
+    }
 
-        boolean allSpacesSinceRowBegin = true;
-        boolean allSpacesSinceWordBegin = true;
-        final String CAN_SKIP_AT_ROW_BEGIN = "_\t"+SPACES+QUOTES_OPEN+DOTS;
-        for (int j = 1; j <= superStr.length(); j++) {
-            if (isLineBreak(superStr, j-1))
-                allSpacesSinceRowBegin = true;
-            else if (j > 1 && CAN_SKIP_AT_ROW_BEGIN.indexOf(superStr.charAt(j-1)) == -1) {
-                allSpacesSinceRowBegin = false;
-            }
-            if (isWordBegin(superStr, j))
-                allSpacesSinceWordBegin = true;
-            else if (j>1 && CAN_SKIP_AT_ROW_BEGIN.indexOf(superStr.charAt(j-1)) == -1) {
-                allSpacesSinceWordBegin = false;
-            }
+    public static boolean likelyContains(String subStr, String superStr) {
+        return StrDistEngine.getDefault().likelyContains(subStr, superStr);
+    }
 
-            if (left != SearchBorder.WHOLE_TEXT) {
-                if (left == SearchBorder.ANYWHERE ||
-                        left == SearchBorder.WORD && (isWordBegin(superStr, j)  || allSpacesSinceWordBegin) ||
-                        left == SearchBorder.ROW && (isRowBegin(superStr, j) || allSpacesSinceRowBegin))
-                {
-                    choices[0][j] = KindOfEdit.STOP_HERE;
-                    dp[0][j] = 0;
-                    continue;
-                }
-            }
-            dp[0][j] = dp[0][j-1] + trivInsCosts[j-1];
-            choices[0][j] = KindOfEdit.INS;
-        }
+    public static boolean likelyContains(CompiledPattern pattern, String superStr) {
+        return StrDistEngine.getDefault().likelyContains(pattern, superStr);
+    }
 
-        for(int i=1; i <= subStr.length(); i++) {
-            dp[i][0] = dp[i-1][0] + trivDelCosts[i-1];
-            choices[i][0] = KindOfEdit.DEL;
-        }
+    public static boolean likelyContains(CompiledPattern pattern, IndexedText text) {
+        return StrDistEngine.getDefault().likelyContains(pattern, text);
+    }
 
-        for (int i = 1; i <= subStr.length(); i++) {
-            for (int j = 1; j <= superStr.length(); j++) {
-                int costIns = trivInsCosts[j-1];
-                if (choices[i][j-1] != KindOfEdit.DEL && costInsTwo[j-1] < trivInsCosts[j-1]) {
-                    costIns = costInsTwo[j-1];
-                }
-                int minDist = dp[i][j - 1] + costIns;
-                KindOfEdit minEdit = KindOfEdit.INS;
+    public static boolean likelyContainsRows(String subStr, String superStr) {
+        return StrDistEngine.getDefault().likelyContainsRows(subStr, superStr);
+    }
 
-                int costDel = trivDelCosts[i-1];
-                if (choices[i-1][j] != KindOfEdit.INS && costDelTwo[i-1] < trivDelCosts[i-1]) {
-                    costDel = costDelTwo[i-1];
-                }
-                int distDel = dp[i - 1][j] + costDel;
-                if (distDel < minDist) {
-                    minDist = distDel;
-                    minEdit = KindOfEdit.DEL;
-                }
+    public static boolean likelyContainsRows(CompiledPattern pattern, String superStr) {
+        return StrDistEngine.getDefault().likelyContainsRows(pattern, superStr);
+    }
 
-                int replCost = getCharsDist(subStr.charAt(i - 1), superStr.charAt(j - 1));
-                if (doSubtractIfLongSameSeq && replCost <= 3 && i>1 && j>1) {
-                    int sumReplCost = replCost;
-                    int numExtraSimilar = 2;
-                    int costBefore;
-                    while (numExtraSimilar < i && numExtraSimilar < j &&
-                            choices[i-numExtraSimilar+1][j-numExtraSimilar+1] == KindOfEdit.REPLACE_OR_COPY &&
-                            (costBefore = getCharsDist(subStr.charAt(i - numExtraSimilar - 1), superStr.charAt(j - numExtraSimilar - 1))) <= 3 &&
-                            (sumReplCost += costBefore) <= COMMON_DIFF / 2)
-                    {
-                        numExtraSimilar++;
-                    }
-                    if (numExtraSimilar > 2) {
-                        replCost -= 1;
-                        if (numExtraSimilar > 8) {
-                            replCost -= (int)Math.sqrt(Math.sqrt(numExtraSimilar / 8));
-                        }
-                    }
-                }
-                int distReplace = dp[i-1][j-1] + replCost;
-                if (distReplace <= minDist) {
-                    minDist = distReplace;
-                    minEdit = KindOfEdit.REPLACE_OR_COPY;
-                }
-                if (i > 1 && j > 1 && dp[i-2][j-2] < minDist) {
-                    int commonOrderCost = replCost + getCharsDist(subStr.charAt(i - 2), superStr.charAt(j - 2));
-                    int swappedOrderCost = getCharsDist(subStr.charAt(i - 1), superStr.charAt(j - 2)) + getCharsDist(subStr.charAt(i - 2), superStr.charAt(j - 1));
-                    if (swappedOrderCost < commonOrderCost) {
-                        int distForSwapped = dp[i - 2][j - 2] + (swappedOrderCost + commonOrderCost) / 2;
-                        if (distForSwapped < minDist) {
-                            minDist = distForSwapped;
-                            minEdit = KindOfEdit.SWAP;
-                        }
-                        if (i > 2 && j > 2 && dp[i-3][j-3] < minDist) {
-                            commonOrderCost += getCharsDist(subStr.charAt(i - 3), superStr.charAt(j - 3));
-                            int swappedOrderCostTwo = getCharsDist(subStr.charAt(i - 1), superStr.charAt(j - 3)) +
-                                    getCharsDist(subStr.charAt(i - 2), superStr.charAt(j - 1)) +
-                                    getCharsDist(subStr.charAt(i - 3), superStr.charAt(j - 2));
-                            int swappedOrderCostThree = getCharsDist(subStr.charAt(i - 3), superStr.charAt(j - 1)) +
-                                    getCharsDist(subStr.charAt(i - 1), superStr.charAt(j - 2)) +
-                                    getCharsDist(subStr.charAt(i - 2), superStr.charAt(j - 3));
-                            swappedOrderCost = Math.min(swappedOrderCostTwo, swappedOrderCostThree);
-                            if (swappedOrderCost < commonOrderCost) {
-                                distForSwapped = dp[i - 3][j - 3] + (swappedOrderCost + 2 * commonOrderCost) / 3;
-                                if (distForSwapped < minDist) {
-                                    minDist = distForSwapped;
-                                    minEdit = KindOfEdit.SWAP_THREE;
-                                }
-                            }
-                        }
-                    }
-                }
-                dp[i][j] = minDist;
-                choices[i][j] = minEdit;
-            }
-        }
-        return new DistResInfo(subStr, superStr, dp, choices, left, right, doRestoreWay);
+    public static boolean likelyContainsRows(CompiledPattern pattern, IndexedText text) {
+        return StrDistEngine.getDefault().likelyContainsRows(pattern, text);
     }
 
-    public static boolean likelyContains(String subStr, String superStr) {
-        return calcStrDist(subStr, superStr, SearchBorder.ANYWHERE, SearchBorder.ANYWHERE, false, true).matchLevel.betterOrEqual(MatchLevel.MEDIUM);
+    public static boolean likelyContainsWords(String subStr, String superStr) {
+        return StrDistEngine.getDefault().likelyContainsWords(subStr, superStr);
     }
 
-    public static boolean likelyContainsRows(String subStr, String superStr) {
-        return calcStrDist(subStr, superStr, SearchBorder.ROW, SearchBorder.ROW, false,true).matchLevel.betterOrEqual(MatchLevel.MEDIUM);
+    public static boolean likelyContainsWords(CompiledPattern pattern, String superStr) {
+        return StrDistEngine.getDefault().likelyContainsWords(pattern, superStr);
     }
 
-    public static boolean likelyContainsWords(String subStr, String superStr) {
-        return calcStrDist(subStr, superStr, SearchBorder.WORD, SearchBorder.WORD, false, true).matchLevel.betterOrEqual(MatchLevel.MEDIUM);
+    public static boolean likelyContainsWords(CompiledPattern pattern, IndexedText text) {
+        return StrDistEngine.getDefault().likelyContainsWords(pattern, text);
     }
 
     public static boolean likelyMatches(String subStr, String superStr) {
-        return calcStrDist(subStr, superStr, SearchBorder.WHOLE_TEXT, SearchBorder.WHOLE_TEXT, false, true).matchLevel.betterOrEqual(MatchLevel.MEDIUM);
+        return StrDistEngine.getDefault().likelyMatches(subStr, superStr);
+    }
+
+    public static boolean likelyMatches(CompiledPattern pattern, String superStr) {
+        return StrDistEngine.getDefault().likelyMatches(pattern, superStr);
+    }
+
+    public static boolean likelyMatches(CompiledPattern pattern, IndexedText text) {
+        return StrDistEngine.getDefault().likelyMatches(pattern, text);
     }
 
     public static boolean highlyLikelyContains(String subStr, String superStr) {
-        return calcStrDist(subStr, superStr, SearchBorder.ANYWHERE, SearchBorder.ANYWHERE, false, false).matchLevel == MatchLevel.HIGH;
+        return StrDistEngine.getDefault().highlyLikelyContains(subStr, superStr);
+    }
+
+    public static boolean highlyLikelyContains(CompiledPattern pattern, String superStr) {
+        return StrDistEngine.getDefault().highlyLikelyContains(pattern, superStr);
+    }
+
+    public static boolean highlyLikelyContains(CompiledPattern pattern, IndexedText text) {
+        return StrDistEngine.getDefault().highlyLikelyContains(pattern, text);
     }
 
     public static boolean highlyLikelyContainsRows(String subStr, String superStr) {
-        return calcStrDist(subStr, superStr, SearchBorder.ROW, SearchBorder.ROW, false, false).matchLevel == MatchLevel.HIGH;
+        return StrDistEngine.getDefault().highlyLikelyContainsRows(subStr, superStr);
+    }
+
+    public static boolean highlyLikelyContainsRows(CompiledPattern pattern, String superStr) {
+        return StrDistEngine.getDefault().highlyLikelyContainsRows(pattern, superStr);
+    }
+
+    public static boolean highlyLikelyContainsRows(CompiledPattern pattern, IndexedText text) {
+        return StrDistEngine.getDefault().highlyLikelyContainsRows(pattern, text);
     }
 
     public static boolean highlyLikelyContainsWords(String subStr, String superStr) {
-        return calcStrDist(subStr, superStr, SearchBorder.WORD, SearchBorder.WORD, false, false).matchLevel == MatchLevel.HIGH;
+        return StrDistEngine.getDefault().highlyLikelyContainsWords(subStr, superStr);
+    }
+
+    public static boolean highlyLikelyContainsWords(CompiledPattern pattern, String superStr) {
+        return StrDistEngine.getDefault().highlyLikelyContainsWords(pattern, superStr);
+    }
+
+    public static boolean highlyLikelyContainsWords(CompiledPattern pattern, IndexedText text) {
+        return StrDistEngine.getDefault().highlyLikelyContainsWords(pattern, text);
     }
 
     public static boolean highlyLikelyMatches(String subStr, String superStr) {
-        return calcStrDist(subStr, superStr, SearchBorder.WHOLE_TEXT, SearchBorder.WHOLE_TEXT, false, false).matchLevel == MatchLevel.HIGH;
+        return StrDistEngine.getDefault().highlyLikelyMatches(subStr, superStr);
+    }
+
+    public static boolean highlyLikelyMatches(CompiledPattern pattern, String superStr) {
+        return StrDistEngine.getDefault().highlyLikelyMatches(pattern, superStr);
+    }
+
+    public static boolean highlyLikelyMatches(CompiledPattern pattern, IndexedText text) {
+        return StrDistEngine.getDefault().highlyLikelyMatches(pattern, text);
     }
 
     public static DistResInfo getBestMatch___(String substr, String str, SearchBorder left, SearchBorder right, boolean doRestoreWay) {
-        if (substr == null || substr.isBlank() || str == null || str.isBlank()) {
-            return new DistResInfo(new DistResInfo("", -1, true, "pattern to be searched was EMPTY!"), 100500);
-        }
-        DistResInfo distInfo = calcStrDist(substr, str, left, right, doRestoreWay, false);
-        if (distInfo.matchLevel.betterOrEqual(MatchLevel.MEDIUM)) {
-            return distInfo;
-        }
-        String substrUpper = substr.toUpperCase(Locale.ROOT);
-        if (!substr.equals(substrUpper)) {
-            DistResInfo distInfoUpperCase = new DistResInfo(
-                    calcStrDist(substrUpper, str.toUpperCase(Locale.ROOT), left, right, doRestoreWay, false),
-                    25);
-            if (distInfoUpperCase.dist < distInfo.dist) {
-                distInfo = distInfoUpperCase;
-                if (distInfo.matchLevel.betterOrEqual(MatchLevel.MEDIUM)) {
-                    return distInfo;
-                }
-            }
-        }
-        DistResInfo distInfoSubtractIfCommonSeq = new DistResInfo(
-                calcStrDist(substr, str, left, right, doRestoreWay, true),
-                40);
-        if (distInfoSubtractIfCommonSeq.dist < distInfo.dist) {
-            distInfo = distInfoSubtractIfCommonSeq;
-            if (distInfo.matchLevel.betterOrEqual(MatchLevel.MEDIUM)) {
-                return distInfo;
-            }
-        }
-        if (!substr.equals(substrUpper)) {
-            DistResInfo distInfoUpperCaseSubtractIfCommonSeq = new DistResInfo(
-                    calcStrDist(substrUpper, str.toUpperCase(Locale.ROOT), left, right, doRestoreWay, false),
-                    75);
-            if (distInfoUpperCaseSubtractIfCommonSeq.dist < distInfo.dist) {
-                distInfo = distInfoUpperCaseSubtractIfCommonSeq;
-            }
-        }
-        return distInfo;
+        return StrDistEngine.getDefault().getBestMatch___(substr, str, left, right, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatch___(CompiledPattern pattern, String str, SearchBorder left, SearchBorder right, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatch___(pattern, str, left, right, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatch___(CompiledPattern pattern, IndexedText text, SearchBorder left, SearchBorder right, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatch___(pattern, text, left, right, doRestoreWay);
+    }
+
+    /**
+     * @see StrDistEngine#getBestMatchFused(CompiledPattern, IndexedText, SearchBorder, SearchBorder, boolean)
+     */
+    public static DistResInfo getBestMatchFused(String substr, String str, SearchBorder left, SearchBorder right, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchFused(substr, str, left, right, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchFused(CompiledPattern pattern, String str, SearchBorder left, SearchBorder right, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchFused(pattern, str, left, right, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchFused(CompiledPattern pattern, IndexedText text, SearchBorder left, SearchBorder right, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchFused(pattern, text, left, right, doRestoreWay);
     }
 
     public static DistResInfo getBestMatchAnywhere(String substr, String str, boolean doRestoreWay) {
-        return getBestMatch___(substr, str, SearchBorder.ANYWHERE, SearchBorder.ANYWHERE, doRestoreWay);
+        return StrDistEngine.getDefault().getBestMatchAnywhere(substr, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchAnywhere(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchAnywhere(pattern, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchAnywhere(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchAnywhere(pattern, text, doRestoreWay);
     }
 
     public static DistResInfo getBestMatchWord(String substr, String str, boolean doRestoreWay) {
-        return getBestMatch___(substr, str, SearchBorder.WORD, SearchBorder.WORD, doRestoreWay);
+        return StrDistEngine.getDefault().getBestMatchWord(substr, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchWord(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchWord(pattern, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchWord(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchWord(pattern, text, doRestoreWay);
     }
 
     public static DistResInfo getBestMatchWordRow(String substr, String str, boolean doRestoreWay) {
-        return getBestMatch___(substr, str, SearchBorder.WORD, SearchBorder.ROW, doRestoreWay);
+        return StrDistEngine.getDefault().getBestMatchWordRow(substr, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchWordRow(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchWordRow(pattern, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchWordRow(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchWordRow(pattern, text, doRestoreWay);
     }
 
     public static DistResInfo getBestMatchRow(String substr, String str, boolean doRestoreWay) {
-        return getBestMatch___(substr, str, SearchBorder.ROW, SearchBorder.ROW, doRestoreWay);
+        return StrDistEngine.getDefault().getBestMatchRow(substr, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchRow(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchRow(pattern, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchRow(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchRow(pattern, text, doRestoreWay);
     }
 
     public static DistResInfo getBestMatchWhole(String substr, String str, boolean doRestoreWay) {
-        return getBestMatch___(substr, str, SearchBorder.WHOLE_TEXT, SearchBorder.WHOLE_TEXT, doRestoreWay);
+        return StrDistEngine.getDefault().getBestMatchWhole(substr, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchWhole(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchWhole(pattern, str, doRestoreWay);
+    }
+
+    public static DistResInfo getBestMatchWhole(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return StrDistEngine.getDefault().getBestMatchWhole(pattern, text, doRestoreWay);
     }
 
 }
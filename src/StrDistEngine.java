@@ -0,0 +1,1304 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Engine which calculates generalized-Levenshtein distances (@see StrDist for the meaning of methods).
+ * All cost rules (similar chars, cheap insertions and deletions) are built once in constructor and never change later,
+ * so one instance can be shared between any number of threads without synchronization.
+ * Static methods of StrDist are just a facade over getDefault().
+ */
+public class StrDistEngine {
+
+    private static class DefaultHolder {
+        static final StrDistEngine INSTANCE = new StrDistEngine();
+    }
+
+    /**
+     * @return engine with default cost rules, shared by static methods of StrDist
+     */
+    public static StrDistEngine getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static class SimilarChars {
+        /**
+         * All chars which are treated as similar.
+         * The same char (and even the same pair of chars) MAY appear in different instances of SimilarChars
+         */
+        final String chars;
+        /**
+         * Distance between similar chars from the list. Normally should be less than StrDist.COMMON_DIFF.
+         */
+        final int dist;
+
+        SimilarChars(String chars, int dist) {
+            this.chars = chars;
+            this.dist = dist;
+            if (this.dist >= StrDist.COMMON_DIFF)
+                throw new IllegalArgumentException("SimilarChars (" + dist + ") dist exceeds StrDist.COMMON_DIFF (" + StrDist.COMMON_DIFF + "). " +
+                        "It's abnormal and contradicts sense of similar characters.");
+        }
+    }
+
+    /**
+     * Buffers which are reused by consecutive searches in one thread (@see BatchSearch), instead of allocating them for each search.
+     * Contents are never kept between searches; arrays may be longer than requested.
+     */
+    static final class Scratch {
+        private int[] lastRow = new int[0];
+        private byte[] choices = new byte[0];
+
+        int[] lastRow(int size) {
+            if (lastRow.length < size) {
+                lastRow = new int[Math.max(size, lastRow.length * 3 / 2)];
+            }
+            return lastRow;
+        }
+
+        byte[] choices(int size) {
+            if (choices.length < size) {
+                choices = new byte[Math.max(size, choices.length * 3 / 2)];
+            }
+            return choices;
+        }
+    }
+
+    /**
+     * Latin and Cyrillic chars which look the same (first char of each class is Latin)
+     */
+    private static final SimilarChars[] ENG_UKR_LOOKALIKES = {
+            new SimilarChars("AА", 9), new SimilarChars("BВ", 9), new SimilarChars("CС", 6), new SimilarChars("EЕ", 9),
+            new SimilarChars("HН", 9), new SimilarChars("IІ", 5), new SimilarChars("KК", 9), new SimilarChars("MМ", 9),
+            new SimilarChars("OО", 9), new SimilarChars("PР", 9), new SimilarChars("TТ", 9), new SimilarChars("XХ", 9),
+            new SimilarChars("aа", 9), new SimilarChars("cс", 6), new SimilarChars("eе", 9), new SimilarChars("iі", 5),
+            new SimilarChars("oо", 9), new SimilarChars("pр", 9), new SimilarChars("xх", 9), new SimilarChars("yу", 9)
+    };
+    /**
+     * HOMOGLYPHS[c] is Latin look-alike of upper case of char c, or that upper case itself (@see #normalizeHomoglyphs)
+     */
+    private static final char[] HOMOGLYPHS = initHomoglyphs();
+
+    /**
+     * When doRestoreWay is true and DP table has more cells than this, LinearSpaceAlignment is used instead of full table.
+     */
+    static final long FULL_TABLE_MAX_CELLS = 1L << 24;
+    /**
+     * Bounded search uses UnitCostPrefilter only when superStr is at least this times longer than subStr
+     */
+    static final int PREFILTER_MIN_TEXT_TO_PATTERN = 4;
+    /**
+     * Default min number of cells of DP table which is calculated on several cores (@see #StrDistEngine(long))
+     */
+    public static final long DEFAULT_PARALLEL_MIN_CELLS = 1L << 24;
+
+    /**
+     * Costs of inserting/deleting single chars, indexed by char itself.
+     */
+    private final byte[] cheapToInsert;
+    private final CharDistTable charsDist;
+    /**
+     * Chars folded out by UnitCostPrefilter, indexed by char itself.
+     */
+    private final boolean[] foldedByPrefilter;
+    private final long parallelMinCells;
+    private final int parallelTileSize;
+
+    public StrDistEngine() {
+        this(DEFAULT_PARALLEL_MIN_CELLS);
+    }
+
+    /**
+     * @param parallelMinCells DP tables (not bounded by maxDist) with at least this many cells are calculated
+     *                         on ForkJoinPool.commonPool() by anti-diagonal wavefront (@see WavefrontDp),
+     *                         results are the same; Long.MAX_VALUE means never
+     */
+    public StrDistEngine(long parallelMinCells) {
+        this(parallelMinCells, WavefrontDp.DEFAULT_TILE_SIZE);
+    }
+
+    StrDistEngine(long parallelMinCells, int parallelTileSize) {
+        if (parallelTileSize < 3) {
+            throw new IllegalArgumentException("parallelTileSize (" + parallelTileSize + ") should be at least 3");
+        }
+        this.parallelMinCells = parallelMinCells;
+        this.parallelTileSize = parallelTileSize;
+        cheapToInsert = initCheapToInsert();
+        List<SimilarChars> similarCharsClasses = new ArrayList<>();
+        initSimilarChars(similarCharsClasses);
+        Map<Character, Set<Integer>> charToSimClasses = new HashMap<>();
+        int[] classDists = new int[similarCharsClasses.size()];
+        for (int k = 0; k < classDists.length; k++) {
+            for (char c : similarCharsClasses.get(k).chars.toCharArray()) {
+                charToSimClasses.computeIfAbsent(c, key -> new HashSet<>()).add(k);
+            }
+            classDists[k] = similarCharsClasses.get(k).dist;
+        }
+        charsDist = new CharDistTable(charToSimClasses, classDists);
+        foldedByPrefilter = UnitCostPrefilter.foldableChars(charsDist, cheapToInsert);
+    }
+
+    private static void addNearlyLocatedKeysDiscounts(List<SimilarChars> similarCharsClasses, String[] layout) {
+        int costForNear = 7;
+        for(int i=0; i<layout.length; i++) {
+            for(int j=0; j<layout[i].length(); j++) {
+                if (i>1) {
+                    similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i-1].charAt(j), costForNear));
+                    similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i-1].charAt(j+1), costForNear));
+                }
+                if (j>0) {
+                    similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i].charAt(j-1), costForNear));
+                    if (i+1 < layout.length) {
+                        similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i+1].charAt(j-1), costForNear));
+                    }
+                }
+                if (j+1 < layout[i].length()) {
+                    similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i].charAt(j+1), costForNear));
+                    if (i+1 < layout.length) {
+                        similarCharsClasses.add(new SimilarChars("" + layout[i].charAt(j) + layout[i+1].charAt(j), costForNear));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void initSimilarChars(List<SimilarChars> similarCharsClasses) {
+        similarCharsClasses.add(new SimilarChars(StrDist.SPACES, 1));
+        similarCharsClasses.add(new SimilarChars(StrDist.LINE_BREAKS, 1));
+        similarCharsClasses.add(new SimilarChars(StrDist.SPACES + StrDist.LINE_BREAKS + "_\t", 3));
+        similarCharsClasses.add(new SimilarChars(StrDist.APOSTROPHES, 1));
+        similarCharsClasses.add(new SimilarChars(StrDist.QUOTES_OPEN, 1));
+        similarCharsClasses.add(new SimilarChars(StrDist.QUOTES_CLOSE, 1));
+        similarCharsClasses.add(new SimilarChars(StrDist.APOSTROPHES + StrDist.QUOTES_OPEN + StrDist.QUOTES_CLOSE, 5));
+        similarCharsClasses.add(new SimilarChars(StrDist.HYPHENS, 1));
+        similarCharsClasses.add(new SimilarChars(StrDist.DASHES, 1));
+        similarCharsClasses.add(new SimilarChars(StrDist.HYPHENS + StrDist.DASHES, 4));
+        similarCharsClasses.add(new SimilarChars(StrDist.HYPHENS + StrDist.SPACES, 9));
+        similarCharsClasses.add(new SimilarChars(StrDist.DOTS, 1));
+        // eng and ukr
+        similarCharsClasses.addAll(Arrays.asList(ENG_UKR_LOOKALIKES));
+        // similar ukr
+        similarCharsClasses.add(new SimilarChars("ГҐ", 3));
+        similarCharsClasses.add(new SimilarChars("ІЇ", 9));
+        similarCharsClasses.add(new SimilarChars("ІИ", 9));
+        similarCharsClasses.add(new SimilarChars("ЙИ", 9));
+        similarCharsClasses.add(new SimilarChars("ЕЄ", 9));
+        similarCharsClasses.add(new SimilarChars("ЕИ", 9));
+        similarCharsClasses.add(new SimilarChars("ОУ", 9));
+        similarCharsClasses.add(new SimilarChars("ОА", 11));
+        similarCharsClasses.add(new SimilarChars("ВУ", 9));
+        similarCharsClasses.add(new SimilarChars("гґ", 3));
+        similarCharsClasses.add(new SimilarChars("ії", 9));
+        similarCharsClasses.add(new SimilarChars("іи", 9));
+        similarCharsClasses.add(new SimilarChars("йи", 9));
+        similarCharsClasses.add(new SimilarChars("еє", 9));
+        similarCharsClasses.add(new SimilarChars("еи", 9));
+        similarCharsClasses.add(new SimilarChars("оу", 9));
+        similarCharsClasses.add(new SimilarChars("оа", 11));
+        similarCharsClasses.add(new SimilarChars("ву", 9));
+        // same key in diff layouts
+        for(int i=0; i<3; i++) {
+            for (int j = 0; j < StrDist.keyboardUkrLow[i].length(); j++) {
+                similarCharsClasses.add(new SimilarChars("" + StrDist.keyboardUkrLow[i].charAt(j) + StrDist.keyboardEngLow[i].charAt(j), 9));
+                similarCharsClasses.add(new SimilarChars("" + StrDist.keyboardUkrUpper[i].charAt(j) + StrDist.keyboardEngUpper[i].charAt(j), 9));
+            }
+        }
+        // nearly-located keys
+        addNearlyLocatedKeysDiscounts(similarCharsClasses, StrDist.keyboardUkrLow);
+        addNearlyLocatedKeysDiscounts(similarCharsClasses, StrDist.keyboardUkrUpper);
+        addNearlyLocatedKeysDiscounts(similarCharsClasses, StrDist.keyboardEngLow);
+        addNearlyLocatedKeysDiscounts(similarCharsClasses, StrDist.keyboardEngUpper);
+    }
+
+    private static byte[] initCheapToInsert() {
+        byte[] cheapToInsert = new byte[0x10000];
+        Arrays.fill(cheapToInsert, (byte) StrDist.COMMON_DIFF);
+        for (char c : StrDist.SPACES.toCharArray()) {
+            cheapToInsert[c] = 3;
+        }
+        for (char c : StrDist.LINE_BREAKS.toCharArray()) {
+            cheapToInsert[c] = 3;
+        }
+        cheapToInsert['\r'] = 1;
+        for (char c : StrDist.HYPHENS.toCharArray()) {
+            cheapToInsert[c] = 9;
+        }
+        for (char c : StrDist.DOTS.toCharArray()) {
+            cheapToInsert[c] = 9;
+        }
+        for (char c : StrDist.QUOTES_OPEN.toCharArray()) {
+            cheapToInsert[c] = 9;
+        }
+        for (char c : StrDist.QUOTES_CLOSE.toCharArray()) {
+            cheapToInsert[c] = 9;
+        }
+        return cheapToInsert;
+    }
+
+    private static char[] initHomoglyphs() {
+        char[] homoglyphs = new char[0x10000];
+        for (int c = 0; c < homoglyphs.length; c++) {
+            homoglyphs[c] = (char) c;
+        }
+        for (SimilarChars lookalikes : ENG_UKR_LOOKALIKES) {
+            char latin = Character.toUpperCase(lookalikes.chars.charAt(0));
+            homoglyphs[Character.toUpperCase(lookalikes.chars.charAt(1))] = latin;
+        }
+        char[] res = new char[0x10000];
+        for (int c = 0; c < res.length; c++) {
+            res[c] = homoglyphs[Character.toUpperCase((char) c)];
+        }
+        return res;
+    }
+
+    /**
+     * @return the same char for all chars which differ only by case or by Latin/Cyrillic look (e.g. 'a', 'A', 'а' and 'А')
+     */
+    static char normalizeHomoglyphs(char c) {
+        return HOMOGLYPHS[c];
+    }
+
+    private static class UpperCaseHolder {
+        /**
+         * Marks chars which can't be upper-cased char by char (@see #TABLE)
+         */
+        static final char NOT_FOLDABLE = '\uFFFF';
+        /**
+         * TABLE[c] is c upper-cased exactly as String.toUpperCase(Locale.ROOT) does it inside any text,
+         * or NOT_FOLDABLE when that changes length (e.g. 'ß' becomes "SS"), c is a surrogate,
+         * or c and its upper case differ in being space, line break, quote or dot (then borders of words and rows would move)
+         */
+        static final char[] TABLE = initUpperCase();
+
+        private static char[] initUpperCase() {
+            char[] table = new char[0x10000];
+            for (int c = 0; c < table.length; c++) {
+                String upper = String.valueOf((char) c).toUpperCase(Locale.ROOT);
+                char u = upper.charAt(0);
+                boolean foldable = upper.length() == 1 && !Character.isSurrogate((char) c) && c != NOT_FOLDABLE &&
+                        (c <= ' ') == (u <= ' ') && CharClass.is((char) c, CharClass.BORDER) == CharClass.is(u, CharClass.BORDER);
+                table[c] = (foldable ? u : NOT_FOLDABLE);
+            }
+            return table;
+        }
+    }
+
+    public boolean canBeSpecial(char c) {
+        return charsDist.isSpecial(c);
+    }
+
+    /**
+     * Compares two chars (not strings), considering similarity.
+     *
+     * @param c1 One of chars to be compared.
+     * @param c2 Other of chars to be compared.
+     * @return 0 for the same,
+     * COMMON_DIFF for completely different,
+     * COMMON_DIFF / 2 for upper case and lower case of the same character,
+     * something between 0 and COMMON_DIFF for pairs treated as "similar"
+     */
+    public int getCharsDist(char c1, char c2) {
+        return charsDist.dist(c1, c2);
+    }
+
+    /**
+     * @return table of distances between chars which all DP implementations of this engine share
+     */
+    CharDistTable charsDist() {
+        return charsDist;
+    }
+
+    /**
+     * @param subStr   Substring which should be searched in superStr.
+     *                 Penalty doesn't depend significantly on place of differences.
+     * @param superStr Superstring where to search substring.
+     * @return If trivial search founds res,  Found distance between subStr and superStr; distance-as-number is returned always,
+     * indices and mapping are omitted when doRestoreWay is false.
+     * @see StrDist.DistResInfo
+     */
+    private StrDist.DistResInfo tryTrivialSearch(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        String subStr = pattern.subStr;
+        String superStr = text.superStr;
+        if (subStr.isBlank() && superStr.isBlank()) {
+            return new StrDist.DistResInfo(subStr, 0, true, "both are blank; this <b><i>needs</i></b> check if it's ok");
+        }
+        if (subStr.equals(superStr)) {
+            return new StrDist.DistResInfo(subStr, 0, true, "exactly equal");
+        }
+        if (subStr.equalsIgnoreCase(superStr)) {
+            int diff = 0;
+            for(int i=0; i < subStr.length() && diff < 25; i++) {
+                diff += charsDist.dist(subStr.charAt(i), superStr.charAt(i));
+            }
+            return new StrDist.DistResInfo(new StrDist.DistResInfo(subStr, 0, true, "equal <b><i>ignoring case</i></b>"), Math.min(25, diff));
+        }
+        if (subStr.isBlank()) {  // && !(superStr.isBlank())
+            return new StrDist.DistResInfo(new StrDist.DistResInfo(subStr, 0, true, "substring is blank; this <b><i>needs</i></b> check if it's ok"), 25);
+        }
+        if (left != StrDist.SearchBorder.WHOLE_TEXT || right != StrDist.SearchBorder.WHOLE_TEXT) {
+            int pos = findTrivialHit(pattern.exactSearch(), text, left, right);
+            if (pos >= 0) {
+                return new StrDist.DistResInfo(subStr, pos, doRestoreWay, "exact substring, pos = " + (pos+1));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether borders allow match of n chars beginning at pos of text
+     * (the same as STOP_HERE of DP (@see IndexedText#stopHere) and StrDist.DistResInfo#findMatchEnd allow for such match)
+     */
+    static boolean isAllowedAt(IndexedText text, int pos, int n, StrDist.SearchBorder left, StrDist.SearchBorder right) {
+        return (pos == 0 ||
+                left == StrDist.SearchBorder.ANYWHERE ||
+                left == StrDist.SearchBorder.ROW && text.isRowBegin(pos) ||
+                left == StrDist.SearchBorder.WORD && text.isWordBegin(pos))
+                &&
+                (pos + n == text.length() ||
+                        right == StrDist.SearchBorder.ANYWHERE ||
+                        right == StrDist.SearchBorder.ROW && text.isRowEnd(pos + n - 1) ||
+                        right == StrDist.SearchBorder.WORD && text.isWordEnd(pos + n - 1));
+    }
+
+    /**
+     * @return the first occurrence found by search which borders allow, or -1;
+     * occurrences at the last char of text are not taken, as trivial search never took them
+     */
+    private static int findTrivialHit(ExactSearch search, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right) {
+        String superStr = text.superStr;
+        for (int pos = search.indexOf(superStr, 0); 0 <= pos && pos < superStr.length() - 1; pos = search.indexOf(superStr, pos + 1)) {
+            if (isAllowedAt(text, pos, search.length(), left, right)) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Near-exact occurrence is where subStr equals text up to case and homoglyphs (@see #normalizeHomoglyphs)
+     * and borders allow match. Replacing its chars one by one is a path of DP, so sum of their charsDist
+     * bounds distance from above (also with doSubtractIfLongSameSeq, which only lowers costs).
+     *
+     * @return that sum for the first near-exact occurrence plus 1, as maxDist for which bounded DP gives exact distance;
+     * ColumnDp.UNBOUNDED when there's no near-exact occurrence
+     */
+    private int nearExactMaxDist(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right) {
+        ExactSearch search = pattern.homoglyphSearch(HOMOGLYPHS);
+        String subStr = pattern.subStr;
+        String superStr = text.superStr;
+        int n = subStr.length();
+        for (int pos = search.indexOf(superStr, 0); pos >= 0; pos = search.indexOf(superStr, pos + 1)) {
+            if (isAllowedAt(text, pos, n, left, right)) {
+                int sum = 0;
+                for (int i = 0; i < n; i++) {
+                    sum += charsDist.dist(subStr.charAt(i), superStr.charAt(pos + i));
+                }
+                return sum + 1;
+            }
+        }
+        return ColumnDp.UNBOUNDED;
+    }
+
+    /**
+     * @param subStr   Substring which should be searched in superStr.
+     * @param superStr Superstring where to search substring.
+     * @param left  Should begin of match be at begin of text, begin of row, begin of word or anywhere
+     * @param right Should end of match be at end of text, end of row, end of word or anywhere
+     * @return Found distance between subStr and superStr; distance-as-number and match quality (@see {@link StrDist.MatchLevel}) are returned always,
+     * indices, mapping and html-form of diff are omitted when doRestoreWay is false.
+     * @see StrDist.DistResInfo
+     */
+    public StrDist.DistResInfo calcStrDist(String subStr, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) {
+        return calcStrDist(compile(subStr), indexText(superStr), left, right, doRestoreWay, doSubtractIfLongSameSeq, ColumnDp.UNBOUNDED, null);
+    }
+
+    /**
+     * The same as calcStrDist(pattern.getSubStr(), superStr, ...), without preparing the pattern again.
+     */
+    public StrDist.DistResInfo calcStrDist(CompiledPattern pattern, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) {
+        return calcStrDist(checkOwn(pattern), indexText(superStr), left, right, doRestoreWay, doSubtractIfLongSameSeq, ColumnDp.UNBOUNDED, null);
+    }
+
+    /**
+     * The same as calcStrDist(pattern.getSubStr(), text.getSuperStr(), ...), without preparing the pattern and the text again.
+     */
+    public StrDist.DistResInfo calcStrDist(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) {
+        return calcStrDist(checkOwn(pattern), checkOwn(text), left, right, doRestoreWay, doSubtractIfLongSameSeq, ColumnDp.UNBOUNDED, null);
+    }
+
+    /**
+     * The same as calcStrDist with doRestoreWay == false, for callers which only need to know whether distance is below maxDist
+     * (e.g. maxDist 30 for MatchLevel.MEDIUM, 10 for MatchLevel.HIGH).
+     * DP cells which provably can't lead to distance below maxDist are skipped, and calculation stops
+     * when no cell below maxDist remains and match can't begin later; so for mismatches it's about O(maxDist * superStr.length()).
+     *
+     * @return the same as calcStrDist when distance is below maxDist;
+     * otherwise dist is some value not less than maxDist (so matchLevel is not better than what maxDist would give)
+     */
+    public StrDist.DistResInfo calcStrDistBounded(String subStr, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq, int maxDist) {
+        return calcStrDistBounded(compile(subStr), indexText(superStr), left, right, doSubtractIfLongSameSeq, maxDist);
+    }
+
+    /**
+     * The same as calcStrDistBounded(pattern.getSubStr(), superStr, ...), without preparing the pattern again.
+     */
+    public StrDist.DistResInfo calcStrDistBounded(CompiledPattern pattern, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq, int maxDist) {
+        return calcStrDistBounded(pattern, indexText(superStr), left, right, doSubtractIfLongSameSeq, maxDist);
+    }
+
+    /**
+     * The same as calcStrDistBounded(pattern.getSubStr(), text.getSuperStr(), ...), without preparing the pattern and the text again.
+     */
+    public StrDist.DistResInfo calcStrDistBounded(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq, int maxDist) {
+        return calcStrDistBounded(checkOwn(pattern), checkOwn(text), left, right, doSubtractIfLongSameSeq, maxDist, null);
+    }
+
+    StrDist.DistResInfo calcStrDistBounded(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq, int maxDist, Scratch scratch) {
+        SearchStats stats = StrDistInstrumentation.begin(SearchStats.Operation.CALC_STR_DIST_BOUNDED, pattern, text, left, right, false, doSubtractIfLongSameSeq);
+        if (left == StrDist.SearchBorder.WORD && right == StrDist.SearchBorder.ROW) {
+            // trailing-spaces adjustment of WORD-ROW compares last row values which are above maxDist too
+            maxDist = ColumnDp.UNBOUNDED;
+        }
+        return StrDistInstrumentation.end(stats, calcStrDist(pattern, text, left, right, false, doSubtractIfLongSameSeq, maxDist, scratch, stats));
+    }
+
+    /**
+     * Prepares subStr for searching in many texts (@see CompiledPattern).
+     */
+    public CompiledPattern compile(String subStr) {
+        return new CompiledPattern(this, subStr);
+    }
+
+    /**
+     * Prepares superStr for searching many patterns in it (@see IndexedText).
+     */
+    public IndexedText indexText(String superStr) {
+        return new IndexedText(this, superStr);
+    }
+
+    private CompiledPattern checkOwn(CompiledPattern pattern) {
+        if (pattern.engine != this) {
+            throw new IllegalArgumentException("pattern was compiled by other StrDistEngine, its costs may differ");
+        }
+        return pattern;
+    }
+
+    private IndexedText checkOwn(IndexedText text) {
+        if (text.engine != this) {
+            throw new IllegalArgumentException("text was indexed by other StrDistEngine, its costs may differ");
+        }
+        return text;
+    }
+
+    /**
+     * Builds index for many calcStrDistBounded searches in the same superStr (@see QGramIndex).
+     *
+     * @param q                   length of indexed q-grams (in chars which are not cheap to insert); 3 or 4 is typical,
+     *                            longer q-grams give fewer candidates but can't filter patterns with many allowed edits
+     * @param normalizeHomoglyphs whether Latin and Cyrillic look-alikes (e.g. 'A' and 'А') get the same q-grams
+     */
+    public QGramIndex buildQGramIndex(String superStr, int q, boolean normalizeHomoglyphs) {
+        return buildQGramIndex(indexText(superStr), q, normalizeHomoglyphs);
+    }
+
+    /**
+     * The same as buildQGramIndex(text.getSuperStr(), ...), without preparing the text again.
+     */
+    public QGramIndex buildQGramIndex(IndexedText text, int q, boolean normalizeHomoglyphs) {
+        return new QGramIndex(this, charsDist, foldedByPrefilter, checkOwn(text), q, normalizeHomoglyphs);
+    }
+
+    /**
+     * Finds all non-overlapping matches of subStr in superStr with dist below maxDist, by one DP sweep (@see OccurrenceSearch);
+     * each of them follows the borders the same way as the only match of calcStrDist.
+     *
+     * @return matches in order of their position
+     */
+    public List<Occurrence> findAll(String subStr, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int maxDist) {
+        return findAll(compile(subStr), indexText(superStr), left, right, doRestoreWay, doSubtractIfLongSameSeq, maxDist);
+    }
+
+    /**
+     * The same as findAll(pattern.getSubStr(), text.getSuperStr(), ...), without preparing the pattern and the text again.
+     */
+    public List<Occurrence> findAll(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int maxDist) {
+        List<Occurrence> res = new OccurrenceSearch(charsDist, checkOwn(pattern), checkOwn(text), left, right, doSubtractIfLongSameSeq)
+                .find(maxDist, Integer.MAX_VALUE, doRestoreWay);
+        res.sort(Comparator.comparingInt(occurrence -> occurrence.start));
+        return res;
+    }
+
+    /**
+     * Finds at most k best non-overlapping matches of subStr in superStr, by one DP sweep (@see OccurrenceSearch).
+     *
+     * @return matches ordered by dist (the best first)
+     */
+    public List<Occurrence> findBestK(String subStr, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int k) {
+        return findBestK(compile(subStr), indexText(superStr), left, right, doRestoreWay, doSubtractIfLongSameSeq, k);
+    }
+
+    /**
+     * The same as findBestK(pattern.getSubStr(), text.getSuperStr(), ...), without preparing the pattern and the text again.
+     */
+    public List<Occurrence> findBestK(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k (" + k + ") should be positive");
+        }
+        return new OccurrenceSearch(charsDist, checkOwn(pattern), checkOwn(text), left, right, doSubtractIfLongSameSeq)
+                .find(ColumnDp.UNBOUNDED, k, doRestoreWay);
+    }
+
+    /**
+     * Prepares search of subStr in texts read from Reader, InputStream or file chunk by chunk (@see StreamSearch).
+     */
+    public StreamSearch streamSearch(String subStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq) {
+        return streamSearch(compile(subStr), left, right, doSubtractIfLongSameSeq);
+    }
+
+    /**
+     * The same as streamSearch(pattern.getSubStr(), ...), without compiling the pattern again.
+     */
+    public StreamSearch streamSearch(CompiledPattern pattern, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq) {
+        return new StreamSearch(this, charsDist, checkOwn(pattern), left, right, doSubtractIfLongSameSeq);
+    }
+
+    /**
+     * @param scratch buffers to reuse, or null
+     */
+    StrDist.DistResInfo calcStrDist(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int maxDist, Scratch scratch) {
+        SearchStats stats = StrDistInstrumentation.begin(SearchStats.Operation.CALC_STR_DIST, pattern, text, left, right, doRestoreWay, doSubtractIfLongSameSeq);
+        return StrDistInstrumentation.end(stats, calcStrDist(pattern, text, left, right, doRestoreWay, doSubtractIfLongSameSeq, maxDist, scratch, stats));
+    }
+
+    /**
+     * @param stats where the search is recorded as part of some other search, or null (@see StrDistInstrumentation)
+     */
+    private StrDist.DistResInfo calcStrDist(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int maxDist, Scratch scratch, SearchStats stats) {
+        if (text.isBlank()) {
+            return new StrDist.DistResInfo(new StrDist.DistResInfo("", -1, true, "text where to search was EMPTY!"), 100500);
+        }
+
+        if (pattern.isBlank()) {
+            return new StrDist.DistResInfo(new StrDist.DistResInfo("", -1, true, "pattern to be searched was EMPTY!"), 100500);
+        }
+
+        StrDist.DistResInfo trivSrchRes = tryTrivialSearch(pattern, text, left, right, doRestoreWay);
+        if (trivSrchRes != null) {
+            if (stats != null) {
+                stats.trivialHit(SearchStats.Stage.TRIVIAL);
+            }
+            return trivSrchRes;
+        }
+        return calcDp(pattern, text, left, right, doRestoreWay, doSubtractIfLongSameSeq, maxDist, scratch, stats);
+    }
+
+    /**
+     * Main part of calcStrDist, after trivial search failed
+     */
+    private StrDist.DistResInfo calcDp(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq, int maxDist, Scratch scratch, SearchStats stats) {
+        String subStr = pattern.subStr;
+        String superStr = text.superStr;
+        int[] trivDelCosts = pattern.trivDelCosts;
+        int[] trivInsCosts = text.trivInsCosts;
+        int[] costDelTwo = pattern.costDelTwo;
+        int[] costInsTwo = text.costInsTwo;
+
+        boolean[] stopHere = text.stopHere(left);
+        if (!doRestoreWay) {
+            if (maxDist != ColumnDp.UNBOUNDED && superStr.length() >= PREFILTER_MIN_TEXT_TO_PATTERN * subStr.length() &&
+                    (left == StrDist.SearchBorder.ANYWHERE || left == StrDist.SearchBorder.WORD) &&
+                    (right == StrDist.SearchBorder.ANYWHERE || right == StrDist.SearchBorder.WORD))
+            {
+                int maxDiscount = ColumnDp.maxDiscount(subStr.length(), doSubtractIfLongSameSeq);
+                boolean[] candidates = UnitCostPrefilter.findCandidateEnds(charsDist, foldedByPrefilter, subStr, superStr,
+                        trivDelCosts, trivInsCosts, costDelTwo, costInsTwo, maxDist + subStr.length() * maxDiscount);
+                if (candidates != null) {
+                    return calcJustDistNearCandidates(subStr, text, right, trivDelCosts, costDelTwo,
+                            stopHere, doSubtractIfLongSameSeq, maxDist, candidates, stats);
+                }
+            }
+            return calcJustDist(subStr, text, left, right, trivDelCosts, costDelTwo, stopHere, doSubtractIfLongSameSeq, maxDist, scratch, stats);
+        }
+        if ((long) (subStr.length() + 1) * (superStr.length() + 1) > FULL_TABLE_MAX_CELLS) {
+            long start = (stats == null ? 0 : System.nanoTime());
+            StrDist.DistResInfo res = new LinearSpaceAlignment(charsDist, subStr, text, trivDelCosts, costDelTwo,
+                    stopHere, doSubtractIfLongSameSeq).align(left, right);
+            if (stats != null) {
+                stats.dp((long) subStr.length() * superStr.length(), 8L * (superStr.length() + 1));
+                stats.restored(System.nanoTime() - start);
+            }
+            return res;
+        }
+
+        // whole table of choices is kept as one flat column-major byte array (see ColumnDp#traceBack),
+        // but dp values are kept only for last 4 columns (inside ColumnDp) and for the last row
+        int n = subStr.length();
+        byte[] choices = (scratch == null ? new byte[superStr.length() * (n + 1)] : scratch.choices(superStr.length() * (n + 1)));
+        int[] lastRow = (scratch == null ? new int[superStr.length() + 1] : scratch.lastRow(superStr.length() + 1));
+        if (isParallel(n, superStr.length())) {
+            new WavefrontDp(charsDist, subStr, superStr, trivDelCosts, costDelTwo, trivInsCosts, costInsTwo,
+                    stopHere, doSubtractIfLongSameSeq, parallelTileSize).calc(ForkJoinPool.commonPool(), lastRow, choices);
+        } else if (isVectorized(n, superStr.length())) {
+            DpKernel.VECTORIZED.calc(charsDist, subStr, superStr, trivDelCosts, costDelTwo, trivInsCosts, costInsTwo,
+                    stopHere, doSubtractIfLongSameSeq, lastRow, choices);
+        } else {
+            ColumnDp columns = new ColumnDp(charsDist, subStr, trivDelCosts, costDelTwo, doSubtractIfLongSameSeq);
+            lastRow[0] = columns.values()[n];
+            for (int j = 1; j <= superStr.length(); j++) {
+                lastRow[j] = columns.nextColumn(superStr.charAt(j-1), trivInsCosts[j-1], costInsTwo[j-1], stopHere[j]);
+                System.arraycopy(columns.choices(), 0, choices, (j - 1) * (n + 1), n + 1);
+            }
+        }
+        if (stats == null) {
+            return new StrDist.DistResInfo(subStr, text, lastRow, choices, left, right, true);
+        }
+        stats.dp((long) n * superStr.length(), scratch == null ? choices.length + 4L * lastRow.length : 0);
+        long start = System.nanoTime();
+        StrDist.DistResInfo res = new StrDist.DistResInfo(subStr, text, lastRow, choices, left, right, true);
+        stats.restored(System.nanoTime() - start);
+        return res;
+    }
+
+    /**
+     * @return costs of inserting (or deleting) each single char of s
+     */
+    int[] calcTrivCosts(String s) {
+        int[] costs = new int[s.length()];
+        for (int i = 0; i < s.length(); i++) {
+            costs[i] = trivCost(s.charAt(i));
+        }
+        return costs;
+    }
+
+    /**
+     * @return cost of inserting (or deleting) single char c
+     */
+    int trivCost(char c) {
+        return cheapToInsert[c];
+    }
+
+    /**
+     * @return cost of inserting c just after prev (@see #calcCostInsTwo)
+     */
+    int costInsTwo(char prev, char c) {
+        return (2*charsDist.dist(prev, c) + cheapToInsert[c]) / 3;
+    }
+
+    /**
+     * @return costs of deleting each char of subStr just after previous one (first is never cheaper)
+     */
+    int[] calcCostDelTwo(String subStr, int[] trivDelCosts) {
+        int[] costDelTwo = new int[subStr.length()];
+        costDelTwo[0] = Integer.MAX_VALUE / 2;
+        for(int i=1; i<subStr.length(); i++) {
+            costDelTwo[i] = (2*charsDist.dist(subStr.charAt(i-1), subStr.charAt(i)) + trivDelCosts[i-1]) / 3;
+        }
+        return costDelTwo;
+    }
+
+    /**
+     * @return costs of inserting each char of superStr just after previous one (first is never cheaper)
+     */
+    int[] calcCostInsTwo(String superStr, int[] trivInsCosts) {
+        int[] costInsTwo = new int[superStr.length()];
+        costInsTwo[0] = Integer.MAX_VALUE / 2;
+        for(int j=1; j<superStr.length(); j++) {
+            costInsTwo[j] = costInsTwo(superStr.charAt(j-1), superStr.charAt(j));
+        }
+        return costInsTwo;
+    }
+
+    /**
+     * Used when doRestoreWay is false: the same as main part of calcStrDist,
+     * but only the last row of DP table is kept in full, other rows are calculated by ColumnDp.
+     * So memory is O(subStr.length() + superStr.length()) instead of O(subStr.length() * superStr.length()).
+     *
+     * @param maxDist only distances below it are needed (@see ColumnDp), or ColumnDp.UNBOUNDED
+     * @param scratch buffers to reuse, or null
+     * @param stats   (@see StrDistInstrumentation), or null
+     */
+    private StrDist.DistResInfo calcJustDist(String subStr, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right,
+                                             int[] trivDelCosts, int[] costDelTwo,
+                                             boolean[] stopHere, boolean doSubtractIfLongSameSeq, int maxDist, Scratch scratch,
+                                             SearchStats stats) {
+        String superStr = text.superStr;
+        int[] trivInsCosts = text.trivInsCosts;
+        int[] costInsTwo = text.costInsTwo;
+        int[] lastRow = (scratch == null ? new int[superStr.length() + 1] : scratch.lastRow(superStr.length() + 1));
+        long bytes = (scratch == null ? 4L * lastRow.length : 0);
+        if (maxDist == ColumnDp.UNBOUNDED && isParallel(subStr.length(), superStr.length())) {
+            new WavefrontDp(charsDist, subStr, superStr, trivDelCosts, costDelTwo, trivInsCosts, costInsTwo,
+                    stopHere, doSubtractIfLongSameSeq, parallelTileSize).calc(ForkJoinPool.commonPool(), lastRow, null);
+            if (stats != null) {
+                stats.dp((long) subStr.length() * superStr.length(), bytes);
+            }
+            return new StrDist.DistResInfo(subStr, text, lastRow, null, left, right, false);
+        }
+        if (maxDist == ColumnDp.UNBOUNDED && isVectorized(subStr.length(), superStr.length())) {
+            DpKernel.VECTORIZED.calc(charsDist, subStr, superStr, trivDelCosts, costDelTwo, trivInsCosts, costInsTwo,
+                    stopHere, doSubtractIfLongSameSeq, lastRow, null);
+            if (stats != null) {
+                stats.dp((long) subStr.length() * superStr.length(), bytes);
+            }
+            return new StrDist.DistResInfo(subStr, text, lastRow, null, left, right, false);
+        }
+        ColumnDp columns = new ColumnDp(charsDist, subStr, trivDelCosts, costDelTwo, doSubtractIfLongSameSeq, maxDist);
+        lastRow[0] = columns.values()[subStr.length()];
+        int lastStopHere = 0;
+        for (int j = superStr.length(); j > 0 && lastStopHere == 0; j--) {
+            if (stopHere[j]) {
+                lastStopHere = j;
+            }
+        }
+        int j = 1;
+        for (; j <= superStr.length(); j++) {
+            if (j > lastStopHere && !columns.hasLiveCells()) {
+                Arrays.fill(lastRow, j, superStr.length() + 1, ColumnDp.INF);
+                break;
+            }
+            lastRow[j] = columns.nextColumn(superStr.charAt(j-1), trivInsCosts[j-1], costInsTwo[j-1], stopHere[j]);
+        }
+        if (stats != null) {
+            stats.dp((long) subStr.length() * (j - 1), bytes);
+        }
+        return new StrDist.DistResInfo(subStr, text, lastRow, null, left, right, false);
+    }
+
+    /**
+     * The same as calcJustDist, but DP is calculated only in windows around candidates found by UnitCostPrefilter.
+     */
+    private StrDist.DistResInfo calcJustDistNearCandidates(String subStr, IndexedText text, StrDist.SearchBorder right,
+                                                           int[] trivDelCosts, int[] costDelTwo,
+                                                           boolean[] stopHere, boolean doSubtractIfLongSameSeq, int maxDist, boolean[] candidates,
+                                                           SearchStats stats) {
+        int[] ranges = new int[16];
+        int rangesLen = 0;
+        for (int j = 1; j <= text.length(); j++) {
+            if (!candidates[j]) {
+                continue;
+            }
+            if (rangesLen > 0 && ranges[rangesLen - 1] == j - 1) {
+                ranges[rangesLen - 1] = j;
+            } else {
+                if (rangesLen == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, 2 * rangesLen);
+                }
+                ranges[rangesLen++] = j;
+                ranges[rangesLen++] = j;
+            }
+        }
+        return calcJustDistInRanges(subStr, text, right, trivDelCosts, costDelTwo, stopHere,
+                doSubtractIfLongSameSeq, maxDist, ranges, rangesLen, minPositiveInsCost(text.trivInsCosts, text.costInsTwo), stats);
+    }
+
+    /**
+     * @return whether DP table of n+1 rows and m+1 columns is calculated by WavefrontDp
+     * (both strings must be long enough for at least two tiles, otherwise tiles can't run concurrently)
+     */
+    private boolean isParallel(int n, int m) {
+        return (long) (n + 1) * (m + 1) >= parallelMinCells && n >= 2 * parallelTileSize && m >= 2 * parallelTileSize;
+    }
+
+    /**
+     * @return whether DP table of n+1 rows and m+1 columns is calculated by vectorized kernel (@see DpKernel#VECTORIZED),
+     * which is used only when available and when anti-diagonals are long enough to fill several vectors
+     */
+    private static boolean isVectorized(int n, int m) {
+        return DpKernel.VECTORIZED != null && Math.min(n, m) >= DpKernel.VECTORIZED.minLength();
+    }
+
+    /**
+     * @return min cost of inserting any char of superStr, not counting zero costs
+     */
+    static int minPositiveInsCost(int[] trivInsCosts, int[] costInsTwo) {
+        int minInsCost = Integer.MAX_VALUE;
+        for (int j = 0; j < trivInsCosts.length; j++) {
+            int insCost = Math.min(trivInsCosts[j], costInsTwo[j]);
+            if (insCost > 0) {
+                minInsCost = Math.min(minInsCost, insCost);
+            }
+        }
+        return minInsCost;
+    }
+
+    /**
+     * Used when doRestoreWay is false, right border is ANYWHERE or WORD, and some filter already proved
+     * that last row of DP table is not below maxDist outside of given ranges of columns.
+     * DP is calculated only in windows which start "horizon" columns before the ranges, each with fresh ColumnDp,
+     * so work depends on total length of the ranges, not on superStr.length().
+     * <p>
+     * It's exact: difference of DP states at window start can reach cell (i, j) only along chain of live cells,
+     * chain advances column only by consuming a row (REPLACE_OR_COPY, swaps) or by INS,
+     * INS costs at least minInsCost except in "free" columns (e.g. second of two '\r'),
+     * and chain can't gain more than maxDist + 3 * n * maxDiscount while staying live.
+     * So horizon is counted in not-free columns.
+     *
+     * @param stopHere  (@see IndexedText#stopHere), or null when match may begin anywhere
+     * @param ranges    sorted disjoint ranges of columns [from0, to0, from1, to1, ...], bounds included
+     * @param minInsCost (@see #minPositiveInsCost)
+     * @param stats     (@see StrDistInstrumentation), or null
+     */
+    StrDist.DistResInfo calcJustDistInRanges(String subStr, IndexedText text, StrDist.SearchBorder right,
+                                             int[] trivDelCosts, int[] costDelTwo,
+                                             boolean[] stopHere, boolean doSubtractIfLongSameSeq, int maxDist,
+                                             int[] ranges, int rangesLen, int minInsCost, SearchStats stats) {
+        String superStr = text.superStr;
+        int[] trivInsCosts = text.trivInsCosts;
+        int[] costInsTwo = text.costInsTwo;
+        int n = subStr.length();
+        int m = superStr.length();
+        long horizon = n + 3 + (maxDist + 3L * n * ColumnDp.maxDiscount(n, doSubtractIfLongSameSeq)) / minInsCost;
+        int dist = ColumnDp.INF;
+        long columnsSwept = 0;
+        int r = 0;
+        while (r < rangesLen) {
+            int last = r;
+            while (last + 2 < rangesLen && ranges[last + 2] - ranges[last + 1] <= horizon) {
+                last += 2;
+            }
+            int start = ranges[r];
+            for (int notFree = 0; start > 0 && notFree < horizon; start--) {
+                if (Math.min(trivInsCosts[start-1], costInsTwo[start-1]) > 0) {
+                    notFree++;
+                }
+            }
+            ColumnDp columns = new ColumnDp(charsDist, subStr, trivDelCosts, costDelTwo, doSubtractIfLongSameSeq, maxDist);
+            int next = r;
+            for (int t = start + 1; t <= ranges[last + 1]; t++) {
+                int value = columns.nextColumn(superStr.charAt(t-1), trivInsCosts[t-1], costInsTwo[t-1], stopHere == null || stopHere[t]);
+                if (t > ranges[next + 1]) {
+                    next += 2;
+                }
+                // the same choice of end as in StrDist.DistResInfo.findMatchEnd
+                if (t >= ranges[next] && value < dist &&
+                        (t == m || right == StrDist.SearchBorder.ANYWHERE || text.isWordEnd(t-1)))
+                {
+                    dist = value;
+                }
+            }
+            columnsSwept += ranges[last + 1] - start;
+            r = last + 2;
+        }
+        if (stats != null) {
+            stats.dp(n * columnsSwept, 0);
+        }
+        return new StrDist.DistResInfo(dist);
+    }
+
+    public boolean likelyContains(String subStr, String superStr) {
+        return likelyContains(compile(subStr), superStr);
+    }
+
+    public boolean likelyContains(CompiledPattern pattern, String superStr) {
+        return likelyContains(pattern, indexText(superStr));
+    }
+
+    public boolean likelyContains(CompiledPattern pattern, IndexedText text) {
+        return calcStrDistBounded(pattern, text, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE, true, 30).matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM);
+    }
+
+    public boolean likelyContainsRows(String subStr, String superStr) {
+        return likelyContainsRows(compile(subStr), superStr);
+    }
+
+    public boolean likelyContainsRows(CompiledPattern pattern, String superStr) {
+        return likelyContainsRows(pattern, indexText(superStr));
+    }
+
+    public boolean likelyContainsRows(CompiledPattern pattern, IndexedText text) {
+        return calcStrDistBounded(pattern, text, StrDist.SearchBorder.ROW, StrDist.SearchBorder.ROW, true, 30).matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM);
+    }
+
+    public boolean likelyContainsWords(String subStr, String superStr) {
+        return likelyContainsWords(compile(subStr), superStr);
+    }
+
+    public boolean likelyContainsWords(CompiledPattern pattern, String superStr) {
+        return likelyContainsWords(pattern, indexText(superStr));
+    }
+
+    public boolean likelyContainsWords(CompiledPattern pattern, IndexedText text) {
+        return calcStrDistBounded(pattern, text, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, true, 30).matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM);
+    }
+
+    public boolean likelyMatches(String subStr, String superStr) {
+        return likelyMatches(compile(subStr), superStr);
+    }
+
+    public boolean likelyMatches(CompiledPattern pattern, String superStr) {
+        return likelyMatches(pattern, indexText(superStr));
+    }
+
+    public boolean likelyMatches(CompiledPattern pattern, IndexedText text) {
+        return calcStrDistBounded(pattern, text, StrDist.SearchBorder.WHOLE_TEXT, StrDist.SearchBorder.WHOLE_TEXT, true, 30).matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM);
+    }
+
+    public boolean highlyLikelyContains(String subStr, String superStr) {
+        return highlyLikelyContains(compile(subStr), superStr);
+    }
+
+    public boolean highlyLikelyContains(CompiledPattern pattern, String superStr) {
+        return highlyLikelyContains(pattern, indexText(superStr));
+    }
+
+    public boolean highlyLikelyContains(CompiledPattern pattern, IndexedText text) {
+        return calcStrDistBounded(pattern, text, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE, false, 10).matchLevel == StrDist.MatchLevel.HIGH;
+    }
+
+    public boolean highlyLikelyContainsRows(String subStr, String superStr) {
+        return highlyLikelyContainsRows(compile(subStr), superStr);
+    }
+
+    public boolean highlyLikelyContainsRows(CompiledPattern pattern, String superStr) {
+        return highlyLikelyContainsRows(pattern, indexText(superStr));
+    }
+
+    public boolean highlyLikelyContainsRows(CompiledPattern pattern, IndexedText text) {
+        return calcStrDistBounded(pattern, text, StrDist.SearchBorder.ROW, StrDist.SearchBorder.ROW, false, 10).matchLevel == StrDist.MatchLevel.HIGH;
+    }
+
+    public boolean highlyLikelyContainsWords(String subStr, String superStr) {
+        return highlyLikelyContainsWords(compile(subStr), superStr);
+    }
+
+    public boolean highlyLikelyContainsWords(CompiledPattern pattern, String superStr) {
+        return highlyLikelyContainsWords(pattern, indexText(superStr));
+    }
+
+    public boolean highlyLikelyContainsWords(CompiledPattern pattern, IndexedText text) {
+        return calcStrDistBounded(pattern, text, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false, 10).matchLevel == StrDist.MatchLevel.HIGH;
+    }
+
+    public boolean highlyLikelyMatches(String subStr, String superStr) {
+        return highlyLikelyMatches(compile(subStr), superStr);
+    }
+
+    public boolean highlyLikelyMatches(CompiledPattern pattern, String superStr) {
+        return highlyLikelyMatches(pattern, indexText(superStr));
+    }
+
+    public boolean highlyLikelyMatches(CompiledPattern pattern, IndexedText text) {
+        return calcStrDistBounded(pattern, text, StrDist.SearchBorder.WHOLE_TEXT, StrDist.SearchBorder.WHOLE_TEXT, false, 10).matchLevel == StrDist.MatchLevel.HIGH;
+    }
+
+    public StrDist.DistResInfo getBestMatch___(String substr, String str, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        return getBestMatch___(compile(substr), str, left, right, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatch___(CompiledPattern pattern, String str, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        return getBestMatch___(pattern, indexText(str), left, right, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatch___(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        return getBestMatch___(checkOwn(pattern), checkOwn(text), left, right, doRestoreWay, null);
+    }
+
+    StrDist.DistResInfo getBestMatch___(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, Scratch scratch) {
+        SearchStats stats = StrDistInstrumentation.begin(SearchStats.Operation.GET_BEST_MATCH, pattern, text, left, right, doRestoreWay, false);
+        return StrDistInstrumentation.end(stats, getBestMatch___(pattern, text, left, right, doRestoreWay, scratch, stats));
+    }
+
+    private StrDist.DistResInfo getBestMatch___(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, Scratch scratch, SearchStats stats) {
+        if (pattern.isBlank() || text.isBlank()) {
+            return new StrDist.DistResInfo(new StrDist.DistResInfo("", -1, true, "pattern to be searched was EMPTY!"), 100500);
+        }
+        StrDist.DistResInfo distInfo = tryTrivialSearch(pattern, text, left, right, doRestoreWay);
+        if (distInfo != null) {
+            if (stats != null) {
+                stats.trivialHit(SearchStats.Stage.TRIVIAL);
+            }
+            // trivial matches are at least MEDIUM, so the cascade stops at them
+            return distInfo;
+        }
+        // near-exact occurrence bounds distances of both variants with pattern as it is, so their DP is bounded
+        // (not for WORD-ROW, @see #calcStrDistBounded; bounded DP doesn't restore way)
+        int maxDist = (doRestoreWay || left == StrDist.SearchBorder.WORD && right == StrDist.SearchBorder.ROW ?
+                ColumnDp.UNBOUNDED : nearExactMaxDist(pattern, text, left, right));
+        distInfo = calcDp(pattern, text, left, right, doRestoreWay, false, maxDist, scratch, stats);
+        SearchStats.Stage winner = SearchStats.Stage.PLAIN;
+        if (distInfo.matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM)) {
+            return won(stats, winner, distInfo);
+        }
+        CompiledPattern patternUpper = pattern.upperCase();
+        if (patternUpper != pattern) {
+            StrDist.DistResInfo distInfoUpperCase = new StrDist.DistResInfo(
+                    calcStrDist(patternUpper, text.upperCase(), left, right, doRestoreWay, false, ColumnDp.UNBOUNDED, scratch, stats),
+                    25);
+            if (distInfoUpperCase.dist < distInfo.dist) {
+                distInfo = distInfoUpperCase;
+                winner = SearchStats.Stage.UPPER_CASE;
+                if (distInfo.matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM)) {
+                    return won(stats, winner, distInfo);
+                }
+            }
+        }
+        StrDist.DistResInfo distInfoSubtractIfCommonSeq = new StrDist.DistResInfo(
+                calcDp(pattern, text, left, right, doRestoreWay, true, maxDist, scratch, stats),
+                40);
+        if (distInfoSubtractIfCommonSeq.dist < distInfo.dist) {
+            distInfo = distInfoSubtractIfCommonSeq;
+            winner = SearchStats.Stage.SUBTRACT;
+        }
+        // the last step used to be upper case again with penalty 75, but also without doSubtractIfLongSameSeq:
+        // that's the same distance as of the second step plus bigger penalty, so it could never win and is not calculated
+        return won(stats, winner, distInfo);
+    }
+
+    /**
+     * @return res, after stage which gave it is recorded to stats (if any)
+     */
+    private static StrDist.DistResInfo won(SearchStats stats, SearchStats.Stage stage, StrDist.DistResInfo res) {
+        if (stats != null) {
+            stats.won(stage);
+        }
+        return res;
+    }
+
+    /**
+     * The same result as getBestMatch___(substr, str, ...), but all variants of its cascade are calculated in one sweep
+     * (@see #getBestMatchFused(CompiledPattern, IndexedText, StrDist.SearchBorder, StrDist.SearchBorder, boolean)).
+     */
+    public StrDist.DistResInfo getBestMatchFused(String substr, String str, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        return getBestMatchFused(compile(substr), str, left, right, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchFused(CompiledPattern pattern, String str, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        return getBestMatchFused(pattern, indexText(str), left, right, doRestoreWay);
+    }
+
+    /**
+     * The same result as getBestMatch___(pattern, text, ...), with variants of its cascade calculated as lanes of one DP sweep
+     * (@see FusedColumnDp): as is, with both strings upper-cased (penalty 25), with doSubtractIfLongSameSeq (penalty 40).
+     * Text is upper-cased char by char while sweeping, no upper-case copy of it is built.
+     * The winner is chosen by the same rules as in the cascade, including its early stops at MEDIUM match level.
+     * The cascade's last step (upper case again with penalty 75) passes false as doSubtractIfLongSameSeq,
+     * so it's the second step with bigger penalty and never wins; it has no lane here.
+     * <p>
+     * Faster than getBestMatch___ for weak matches (where the cascade runs DP three times),
+     * slower for good non-trivial matches (where the cascade stops after the first DP).
+     * When doRestoreWay is true, alignment is restored by one more DP of the winning variant only.
+     */
+    public StrDist.DistResInfo getBestMatchFused(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        return getBestMatchFused(checkOwn(pattern), checkOwn(text), left, right, doRestoreWay, null);
+    }
+
+    StrDist.DistResInfo getBestMatchFused(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, Scratch scratch) {
+        SearchStats stats = StrDistInstrumentation.begin(SearchStats.Operation.GET_BEST_MATCH_FUSED, pattern, text, left, right, doRestoreWay, false);
+        return StrDistInstrumentation.end(stats, getBestMatchFused(pattern, text, left, right, doRestoreWay, scratch, stats));
+    }
+
+    private StrDist.DistResInfo getBestMatchFused(CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, Scratch scratch, SearchStats stats) {
+        if (pattern.isBlank() || text.isBlank()) {
+            return new StrDist.DistResInfo(new StrDist.DistResInfo("", -1, true, "pattern to be searched was EMPTY!"), 100500);
+        }
+        String subStr = pattern.subStr;
+        String superStr = text.superStr;
+        int n = subStr.length();
+        int m = superStr.length();
+        CompiledPattern patternUpper = pattern.upperCase();
+        char[] upperCase = UpperCaseHolder.TABLE;
+        if (patternUpper != pattern) {
+            boolean foldable = (patternUpper.subStr.length() == n);
+            for (int j = 0; j < m && foldable; j++) {
+                foldable = (upperCase[superStr.charAt(j)] != UpperCaseHolder.NOT_FOLDABLE);
+            }
+            if (!foldable) {
+                return getBestMatch___(pattern, text, left, right, doRestoreWay, scratch, stats);
+            }
+        }
+
+        StrDist.DistResInfo trivSrchRes = tryTrivialSearch(pattern, text, left, right, doRestoreWay);
+        if (trivSrchRes != null) {
+            if (stats != null) {
+                stats.trivialHit(SearchStats.Stage.TRIVIAL);
+            }
+            // trivial matches are at least MEDIUM, so the cascade stops at them
+            return trivSrchRes;
+        }
+        StrDist.DistResInfo trivSrchResUpper = null;
+        if (patternUpper != pattern) {
+            trivSrchResUpper = tryTrivialSearchUpperCase(patternUpper, text, left, right, doRestoreWay);
+            if (trivSrchResUpper != null && stats != null) {
+                stats.trivialHit(SearchStats.Stage.UPPER_CASE);
+            }
+        }
+
+        boolean withUpperCase = (patternUpper != pattern && trivSrchResUpper == null);
+        FusedColumnDp lanes = new FusedColumnDp(charsDist, pattern, withUpperCase ? patternUpper : null);
+        int[] trivInsCosts = text.trivInsCosts;
+        int[] costInsTwo = text.costInsTwo;
+        boolean[] stopHere = text.stopHere(left);
+        int[] lastRowPlain = new int[m + 1];
+        int[] lastRowSubtract = new int[m + 1];
+        int[] lastRowUpper = (withUpperCase ? new int[m + 1] : null);
+        lastRowPlain[0] = lanes.value(FusedColumnDp.PLAIN);
+        lastRowSubtract[0] = lanes.value(FusedColumnDp.SUBTRACT);
+        if (withUpperCase) {
+            lastRowUpper[0] = lanes.value(FusedColumnDp.UPPER_CASE);
+        }
+        char prevUpper = 0;
+        for (int j = 1; j <= m; j++) {
+            char c = superStr.charAt(j-1);
+            char cUpper = upperCase[c];
+            int insCostUpper = 0;
+            int insTwoCostUpper = 0;
+            if (withUpperCase) {
+                // the same as calcTrivCosts and calcCostInsTwo of upper-cased superStr
+                insCostUpper = cheapToInsert[cUpper];
+                insTwoCostUpper = (j == 1 ? Integer.MAX_VALUE / 2 : (2*charsDist.dist(prevUpper, cUpper) + insCostUpper) / 3);
+                prevUpper = cUpper;
+            }
+            lanes.nextColumn(c, trivInsCosts[j-1], costInsTwo[j-1], cUpper, insCostUpper, insTwoCostUpper, stopHere[j]);
+            lastRowPlain[j] = lanes.value(FusedColumnDp.PLAIN);
+            lastRowSubtract[j] = lanes.value(FusedColumnDp.SUBTRACT);
+            if (withUpperCase) {
+                lastRowUpper[j] = lanes.value(FusedColumnDp.UPPER_CASE);
+            }
+        }
+        if (stats != null) {
+            int laneCount = (withUpperCase ? 3 : 2);
+            stats.dp((long) laneCount * n * m, 4L * laneCount * (m + 1));
+        }
+
+        // upper-cased text has the same borders of words and rows (@see UpperCaseHolder), so text itself is used for them
+        StrDist.DistResInfo distInfo = new StrDist.DistResInfo(subStr, text, lastRowPlain, null, left, right, false);
+        int winner = FusedColumnDp.PLAIN;
+        if (!distInfo.matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM)) {
+            if (patternUpper != pattern) {
+                StrDist.DistResInfo distInfoUpperCase = new StrDist.DistResInfo(trivSrchResUpper != null ? trivSrchResUpper :
+                        new StrDist.DistResInfo(patternUpper.subStr, text, lastRowUpper, null, left, right, false), 25);
+                if (distInfoUpperCase.dist < distInfo.dist) {
+                    distInfo = distInfoUpperCase;
+                    winner = FusedColumnDp.UPPER_CASE;
+                }
+            }
+            if (!distInfo.matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM)) {
+                StrDist.DistResInfo distInfoSubtractIfCommonSeq = new StrDist.DistResInfo(
+                        new StrDist.DistResInfo(subStr, text, lastRowSubtract, null, left, right, false), 40);
+                if (distInfoSubtractIfCommonSeq.dist < distInfo.dist) {
+                    distInfo = distInfoSubtractIfCommonSeq;
+                    winner = FusedColumnDp.SUBTRACT;
+                }
+            }
+        }
+        if (stats != null) {
+            stats.won(winner == FusedColumnDp.PLAIN ? SearchStats.Stage.PLAIN :
+                    (winner == FusedColumnDp.UPPER_CASE ? SearchStats.Stage.UPPER_CASE : SearchStats.Stage.SUBTRACT));
+        }
+        if (!doRestoreWay || winner == FusedColumnDp.UPPER_CASE && trivSrchResUpper != null) {
+            return distInfo;
+        }
+        if (winner == FusedColumnDp.PLAIN) {
+            return calcStrDist(pattern, text, left, right, true, false, ColumnDp.UNBOUNDED, scratch, stats);
+        } else if (winner == FusedColumnDp.UPPER_CASE) {
+            return new StrDist.DistResInfo(calcStrDist(patternUpper, text.upperCase(), left, right, true, false, ColumnDp.UNBOUNDED, scratch, stats), 25);
+        } else {
+            return new StrDist.DistResInfo(calcStrDist(pattern, text, left, right, true, true, ColumnDp.UNBOUNDED, scratch, stats), 40);
+        }
+    }
+
+    /**
+     * The same as tryTrivialSearch(subStrUpper, text.upperCase(), ...), but text is upper-cased char by char while searching
+     *
+     * @param patternUpper pattern upper-cased with Locale.ROOT
+     * @param text         text whose chars are all foldable (@see UpperCaseHolder)
+     */
+    private StrDist.DistResInfo tryTrivialSearchUpperCase(CompiledPattern patternUpper, IndexedText text, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+        char[] upperCase = UpperCaseHolder.TABLE;
+        String subStrUpper = patternUpper.subStr;
+        String superStr = text.superStr;
+        int n = subStrUpper.length();
+        int m = superStr.length();
+        if (n == m) {
+            boolean equal = true;
+            boolean equalIgnoreCase = true;
+            for (int i = 0; i < n && equalIgnoreCase; i++) {
+                char a = subStrUpper.charAt(i);
+                char b = upperCase[superStr.charAt(i)];
+                if (a != b) {
+                    equal = false;
+                    // the same comparison as in String.equalsIgnoreCase
+                    char aUpper = Character.toUpperCase(a);
+                    char bUpper = Character.toUpperCase(b);
+                    equalIgnoreCase = (aUpper == bUpper || Character.toLowerCase(aUpper) == Character.toLowerCase(bUpper));
+                }
+            }
+            if (equal) {
+                return new StrDist.DistResInfo(subStrUpper, 0, true, "exactly equal");
+            }
+            if (equalIgnoreCase) {
+                int diff = 0;
+                for(int i=0; i < n && diff < 25; i++) {
+                    diff += charsDist.dist(subStrUpper.charAt(i), upperCase[superStr.charAt(i)]);
+                }
+                return new StrDist.DistResInfo(new StrDist.DistResInfo(subStrUpper, 0, true, "equal <b><i>ignoring case</i></b>"), Math.min(25, diff));
+            }
+        }
+        if (left != StrDist.SearchBorder.WHOLE_TEXT || right != StrDist.SearchBorder.WHOLE_TEXT) {
+            int pos = findTrivialHit(patternUpper.upperCaseSearch(upperCase), text, left, right);
+            if (pos >= 0) {
+                return new StrDist.DistResInfo(subStrUpper, pos, doRestoreWay, "exact substring, pos = " + (pos+1));
+            }
+        }
+        return null;
+    }
+
+    public StrDist.DistResInfo getBestMatchAnywhere(String substr, String str, boolean doRestoreWay) {
+        return getBestMatch___(substr, str, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchAnywhere(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return getBestMatch___(pattern, str, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchAnywhere(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return getBestMatch___(pattern, text, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchWord(String substr, String str, boolean doRestoreWay) {
+        return getBestMatch___(substr, str, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchWord(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return getBestMatch___(pattern, str, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchWord(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return getBestMatch___(pattern, text, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchWordRow(String substr, String str, boolean doRestoreWay) {
+        return getBestMatch___(substr, str, StrDist.SearchBorder.WORD, StrDist.SearchBorder.ROW, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchWordRow(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return getBestMatch___(pattern, str, StrDist.SearchBorder.WORD, StrDist.SearchBorder.ROW, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchWordRow(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return getBestMatch___(pattern, text, StrDist.SearchBorder.WORD, StrDist.SearchBorder.ROW, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchRow(String substr, String str, boolean doRestoreWay) {
+        return getBestMatch___(substr, str, StrDist.SearchBorder.ROW, StrDist.SearchBorder.ROW, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchRow(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return getBestMatch___(pattern, str, StrDist.SearchBorder.ROW, StrDist.SearchBorder.ROW, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchRow(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return getBestMatch___(pattern, text, StrDist.SearchBorder.ROW, StrDist.SearchBorder.ROW, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchWhole(String substr, String str, boolean doRestoreWay) {
+        return getBestMatch___(substr, str, StrDist.SearchBorder.WHOLE_TEXT, StrDist.SearchBorder.WHOLE_TEXT, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchWhole(CompiledPattern pattern, String str, boolean doRestoreWay) {
+        return getBestMatch___(pattern, str, StrDist.SearchBorder.WHOLE_TEXT, StrDist.SearchBorder.WHOLE_TEXT, doRestoreWay);
+    }
+
+    public StrDist.DistResInfo getBestMatchWhole(CompiledPattern pattern, IndexedText text, boolean doRestoreWay) {
+        return getBestMatch___(pattern, text, StrDist.SearchBorder.WHOLE_TEXT, StrDist.SearchBorder.WHOLE_TEXT, doRestoreWay);
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Opt-in instrumentation of searches: stats go to StrDistListener set here and to JFR events
+ * strdist.Search and strdist.Render (@see SearchEvent, RenderEvent) when JFR records them.
+ * When neither is on, each search only checks a volatile field and creates a JFR event which JIT proves unused,
+ * and nothing is measured or allocated inside DP.
+ */
+public final class StrDistInstrumentation {
+    private static volatile StrDistListener listener;
+
+    private StrDistInstrumentation() {
+    }
+
+    /**
+     * @param listener receives stats of all searches of all engines, or null to stop that
+     */
+    public static void setListener(StrDistListener listener) {
+        StrDistInstrumentation.listener = listener;
+    }
+
+    public static StrDistListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @return stats for the search to fill, or null when nobody listens (then nothing is to be recorded)
+     */
+    static SearchStats begin(SearchStats.Operation operation, CompiledPattern pattern, IndexedText text,
+                             StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay, boolean doSubtractIfLongSameSeq) {
+        StrDistListener l = listener;
+        SearchEvent event = new SearchEvent();
+        boolean recorded = event.isEnabled();
+        if (l == null && !recorded) {
+            return null;
+        }
+        event.begin();
+        return new SearchStats(operation, pattern.subStr.length(), text.length(), left, right,
+                doRestoreWay, doSubtractIfLongSameSeq, l, recorded ? event : null);
+    }
+
+    /**
+     * @return res, after stats (if any) are completed with it and reported
+     */
+    static StrDist.DistResInfo end(SearchStats stats, StrDist.DistResInfo res) {
+        if (stats != null) {
+            stats.finish(res);
+        }
+        return res;
+    }
+
+    /**
+     * @return begun event for rendering, or null when nobody listens
+     */
+    static RenderEvent beginRender() {
+        RenderEvent event = new RenderEvent();
+        if (listener == null && !event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param event      as returned by beginRender
+     * @param startNanos System.nanoTime() when rendering began
+     */
+    static void endRender(RenderEvent event, DiffFormat.Kind kind, DiffFormat format, long startNanos) {
+        if (event == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind.name();
+            event.format = format.getClass().getName();
+            event.commit();
+        }
+        StrDistListener l = listener;
+        if (l != null) {
+            l.onRender(kind, format, nanos);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * Receives stats of searches and renderings while instrumentation is on (@see StrDistInstrumentation#setListener).
+ * Called synchronously from threads which search (e.g. workers of BatchSearch), so it must be thread-safe and fast.
+ */
+public interface StrDistListener {
+    /**
+     * Called when a search returns its result
+     */
+    void onSearch(SearchStats stats);
+
+    /**
+     * Called when diff of a result is rendered (@see StrDist.DistResInfo#renderDiff(Appendable, DiffFormat))
+     */
+    default void onRender(DiffFormat.Kind kind, DiffFormat format, long nanos) {
+    }
+}
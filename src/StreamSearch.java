@@ -0,0 +1,855 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Search of one pattern in text which is read chunk by chunk from Reader, InputStream or file,
+ * so the text may be larger than memory: only the last columns of DP table are kept (@see ColumnDp),
+ * and memory depends on length of pattern, not of text.
+ * <p>
+ * Text is treated the same as superStr of calcStrDist: leading and trailing blank chars are trimmed,
+ * and match may begin and end where left and right borders allow.
+ * Offsets of matches are absolute indices of chars in the whole text as it was read (before trimming).
+ * The only combination of borders which isn't supported is left WORD with right ROW: its rule for trailing spaces of row
+ * (@see StrDist.DistResInfo#findMatchEnd) depends on the best match in the whole text.
+ * <p>
+ * Exact occurrences of pattern which borders allow get dist 0 and are preferred to other matches,
+ * as calcStrDist finds them trivially (@see StrDistEngine#tryTrivialSearch); they are found while reading,
+ * by Knuth-Morris-Pratt automaton over the chars of the trimmed text.
+ * <p>
+ * Instance keeps only settings, so it may be used for many texts, also concurrently.
+ */
+public final class StreamSearch {
+    /**
+     * Match found in the text
+     */
+    public static final class Match {
+        /**
+         * Offset of the first char of match
+         */
+        public final long start;
+        /**
+         * Offset just after the last char of match
+         */
+        public final long end;
+        public final StrDist.DistResInfo result;
+        /**
+         * Value offered to Sink (EXACT for exact occurrence), by which matches of one group are compared
+         */
+        final int value;
+
+        Match(long start, long end, int value) {
+            this(start, end, value, new StrDist.DistResInfo(dist(value)));
+        }
+
+        Match(long start, long end, int value, StrDist.DistResInfo result) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.result = result;
+        }
+
+        @Override
+        public String toString() {
+            return "Match{start=" + start + ", end=" + end + ", dist=" + result.dist + '}';
+        }
+    }
+
+    /**
+     * Default number of chars read at once
+     */
+    static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+    /**
+     * Default number of bytes of regions searched in parallel by findAllMapped
+     */
+    static final long DEFAULT_REGION_SIZE = 1 << 24;
+    /**
+     * Value offered to Sink for exact occurrence: it's better than any value of DP, which may be below 0
+     * with doSubtractIfLongSameSeq, and its dist is 0
+     */
+    static final int EXACT = Integer.MIN_VALUE;
+
+    private final StrDistEngine engine;
+    private final CharDistTable charsDist;
+    private final CompiledPattern pattern;
+    private final StrDist.SearchBorder left;
+    private final StrDist.SearchBorder right;
+    private final boolean doSubtractIfLongSameSeq;
+    /**
+     * Failure function of KMP: length of the longest proper border of each prefix of pattern (prefix of k + 1 chars at k)
+     */
+    private final int[] failure;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private long regionSize = DEFAULT_REGION_SIZE;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    StreamSearch(StrDistEngine engine, CharDistTable charsDist, CompiledPattern pattern,
+                 StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq) {
+        if (pattern.isBlank()) {
+            throw new IllegalArgumentException("pattern to be searched is empty");
+        }
+        if (left == StrDist.SearchBorder.WORD && right == StrDist.SearchBorder.ROW) {
+            throw new IllegalArgumentException("left WORD with right ROW is not supported by streaming search");
+        }
+        this.engine = engine;
+        this.charsDist = charsDist;
+        this.pattern = pattern;
+        this.left = left;
+        this.right = right;
+        this.doSubtractIfLongSameSeq = doSubtractIfLongSameSeq;
+        String subStr = pattern.subStr;
+        failure = new int[subStr.length()];
+        for (int k = 1, len = 0; k < subStr.length(); k++) {
+            while (len > 0 && subStr.charAt(k) != subStr.charAt(len)) {
+                len = failure[len - 1];
+            }
+            if (subStr.charAt(k) == subStr.charAt(len)) {
+                len++;
+            }
+            failure[k] = len;
+        }
+    }
+
+    /**
+     * @return dist of match with value offered to Sink
+     */
+    static int dist(int value) {
+        return (value == EXACT ? 0 : value);
+    }
+
+    /**
+     * @param chunkSize number of chars read at once; DEFAULT_CHUNK_SIZE by default
+     */
+    public StreamSearch setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize (" + chunkSize + ") should be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * @param regionSize number of bytes of regions searched in parallel by findAllMapped; DEFAULT_REGION_SIZE by default
+     */
+    public StreamSearch setRegionSize(long regionSize) {
+        if (regionSize <= 0) {
+            throw new IllegalArgumentException("regionSize (" + regionSize + ") should be positive");
+        }
+        this.regionSize = regionSize;
+        return this;
+    }
+
+    /**
+     * @param pool where regions of findAllMapped are searched; common pool by default
+     */
+    public StreamSearch setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Reads reader to the end (it's not closed).
+     *
+     * @return the best match, with the same dist as calcStrDist(pattern, text, left, right, false, doSubtractIfLongSameSeq)
+     * (for exact occurrence it's 0 and the match is the first one, as in calcStrDist); null when the text is blank
+     */
+    public Match findBest(Reader reader) throws IOException {
+        Best best = new Best();
+        Sweep sweep = new Sweep(ColumnDp.UNBOUNDED, best);
+        read(reader, sweep);
+        return best(sweep, best);
+    }
+
+    private Match best(Sweep sweep, Best best) {
+        if (!sweep.finish()) {
+            return null;
+        }
+        if (sweep.isWholeTextLikePattern()) {
+            return sweep.wholeTextMatch();
+        }
+        return new Match(best.start, best.end, best.value);
+    }
+
+    /**
+     * The same as findBest(Reader) for bytes decoded with charset (stream is not closed)
+     */
+    public Match findBest(InputStream in, Charset charset) throws IOException {
+        return findBest(new InputStreamReader(in, charset));
+    }
+
+    /**
+     * The same as findBest(Reader) for text of file
+     */
+    public Match findBest(Path file, Charset charset) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, charset)) {
+            return findBest(reader);
+        }
+    }
+
+    /**
+     * The same as findBest(Path, Charset), with the file mapped into memory instead of being read by Reader (@see MappedText):
+     * chars are taken directly from mapped bytes (or decoded from them for UTF-8), nothing is copied into String,
+     * and only pages which are reached are read from disk.
+     * Charsets other than single-byte ones and UTF-8 are read by Reader.
+     */
+    public Match findBestMapped(Path file, Charset charset) throws IOException {
+        try (MappedText text = MappedText.open(file, charset)) {
+            if (text == null) {
+                return findBest(file, charset);
+            }
+            Best best = new Best();
+            Sweep sweep = new Sweep(ColumnDp.UNBOUNDED, best);
+            // leading blank chars are single bytes
+            sweep.skipped = text.from;
+            read(text.new Cursor(text.from, text.to), sweep);
+            return best(sweep, best);
+        }
+    }
+
+    /**
+     * @return new session for text which is appended piece by piece
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * Search in text which grows (e.g. typed by user or tailed log): each append costs
+     * only its length times pattern length, as superStr is on the column axis of DP and appended chars are just new columns.
+     * <p>
+     * Result is available after each append, the same as of findBest(Reader) for all text appended so far;
+     * trailing blank chars and ends of match which depend on the next char are decided again by each append.
+     * Not thread-safe.
+     */
+    public final class Session {
+        private final Best best = new Best();
+        private final Sweep sweep = new Sweep(ColumnDp.UNBOUNDED, best);
+        private long length;
+
+        private Session() {
+        }
+
+        public Session append(char c) {
+            sweep.accept(c);
+            length++;
+            return this;
+        }
+
+        public Session append(CharSequence s) {
+            for (int k = 0; k < s.length(); k++) {
+                sweep.accept(s.charAt(k));
+            }
+            length += s.length();
+            return this;
+        }
+
+        public Session append(char[] buf, int off, int len) {
+            sweep.accept(buf, off, len);
+            length += len;
+            return this;
+        }
+
+        /**
+         * @return number of chars appended so far
+         */
+        public long length() {
+            return length;
+        }
+
+        /**
+         * @return the best match if the text ended now (dist and matchLevel are in its result), null while the text is blank
+         */
+        public Match best() {
+            return sweep.peekBest(best);
+        }
+    }
+
+    /**
+     * Finds all matches with dist below maxDist. Consecutive positions where match below maxDist may end
+     * are one match, and only its best end is reported (exact occurrence, otherwise the last one of equal ones).
+     * Reads reader to the end (it's not closed).
+     *
+     * @param consumer receives matches in order of their ends, as soon as they are found
+     */
+    public void findAll(Reader reader, int maxDist, Consumer<Match> consumer) throws IOException {
+        Sweep sweep = new Sweep(maxDist, new Groups(maxDist, consumer));
+        read(reader, sweep);
+        sweep.finish();
+    }
+
+    /**
+     * The same as findAll(Reader, ...) for bytes decoded with charset (stream is not closed)
+     */
+    public void findAll(InputStream in, Charset charset, int maxDist, Consumer<Match> consumer) throws IOException {
+        findAll(new InputStreamReader(in, charset), maxDist, consumer);
+    }
+
+    /**
+     * The same as findAll(Reader, ...) for text of file
+     */
+    public void findAll(Path file, Charset charset, int maxDist, Consumer<Match> consumer) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, charset)) {
+            findAll(reader, maxDist, consumer);
+        }
+    }
+
+    /**
+     * The same as findAll(Path, ...), with the file mapped into memory (@see #findBestMapped)
+     * and cut into regions of about regionSize bytes which are searched in parallel on pool (@see MappedSearch).
+     * Charsets other than single-byte ones and UTF-8 are read by Reader.
+     *
+     * @param consumer receives matches in order of their ends, when all regions are done
+     */
+    public void findAllMapped(Path file, Charset charset, int maxDist, Consumer<Match> consumer) throws IOException {
+        try (MappedText text = MappedText.open(file, charset)) {
+            if (text == null) {
+                findAll(file, charset, maxDist, consumer);
+                return;
+            }
+            new MappedSearch(this, engine, text, maxDist, chunkSize, pattern.subStr.length(), doSubtractIfLongSameSeq, regionSize)
+                    .run(pool, consumer);
+        }
+    }
+
+    private void read(MappedText.Cursor cursor, Sweep sweep) throws IOException {
+        char[] buf = new char[chunkSize];
+        for (int len; (len = cursor.read(buf)) != -1; ) {
+            sweep.accept(buf, 0, len);
+        }
+    }
+
+    private void read(Reader reader, Sweep sweep) throws IOException {
+        char[] buf = new char[chunkSize];
+        for (int len; (len = reader.read(buf)) != -1; ) {
+            sweep.accept(buf, 0, len);
+        }
+    }
+
+    /**
+     * Receives positions where match may end, in increasing order.
+     * While the text might end before them (they follow the last non-blank char), they are offered speculatively:
+     * when the text goes on, they are committed, otherwise they are rolled back.
+     */
+    interface Sink {
+        /**
+         * @param end   offset just after the last char of match
+         * @param value dist of the best match ending here, or EXACT
+         * @param start offset of the first char of that match
+         */
+        void offer(long end, int value, long start);
+
+        /**
+         * Match can't end at end
+         */
+        void gap(long end);
+
+        void beginSpeculation();
+
+        void commit();
+
+        void rollback();
+
+        /**
+         * The text has ended
+         */
+        void finish();
+    }
+
+    /**
+     * Keeps the best offered match (the first exact occurrence, otherwise the last one of equal ones)
+     */
+    private static final class Best implements Sink {
+        int value = Integer.MAX_VALUE;
+        long end = -1;
+        long start = -1;
+        private int savedValue;
+        private long savedEnd;
+        private long savedStart;
+
+        @Override
+        public void offer(long end, int value, long start) {
+            if (isBetter(value, this.value)) {
+                this.value = value;
+                this.end = end;
+                this.start = start;
+            }
+        }
+
+        @Override
+        public void gap(long end) {
+        }
+
+        @Override
+        public void beginSpeculation() {
+            savedValue = value;
+            savedEnd = end;
+            savedStart = start;
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public void rollback() {
+            value = savedValue;
+            end = savedEnd;
+            start = savedStart;
+        }
+
+        /**
+         * @param speculating whether offers since beginSpeculation are to be rolled back
+         * @return the best match if the last one were offered now (state isn't changed)
+         */
+        Match peek(long lastEnd, int lastValue, long lastStart, boolean speculating) {
+            int value = (speculating ? savedValue : this.value);
+            if (isBetter(lastValue, value)) {
+                return new Match(lastStart, lastEnd, lastValue);
+            }
+            return (speculating ? new Match(savedStart, savedEnd, value) : new Match(start, end, value));
+        }
+
+        private static boolean isBetter(int value, int bestValue) {
+            return value <= bestValue && bestValue != EXACT;
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * Reports the best end of each group of consecutive offered positions with values below maxDist;
+     * matches found while speculating are held back until commit.
+     */
+    static final class Groups implements Sink {
+        private final int maxDist;
+        private final Consumer<Match> consumer;
+        private final List<Match> heldBack = new ArrayList<>();
+        /**
+         * Positions before it are ignored (@see MappedSearch)
+         */
+        long from;
+        /**
+         * Whether position from was offered with value below maxDist
+         */
+        boolean openAtFrom;
+        private boolean speculating;
+        private boolean open;
+        private int value;
+        private long end;
+        private long start;
+        private boolean savedOpen;
+        private int savedValue;
+        private long savedEnd;
+        private long savedStart;
+
+        Groups(int maxDist, Consumer<Match> consumer) {
+            this.maxDist = maxDist;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void offer(long end, int value, long start) {
+            if (end < from) {
+                return;
+            }
+            if (end == from) {
+                openAtFrom = dist(value) < maxDist;
+            }
+            if (dist(value) >= maxDist) {
+                gap(end);
+            } else if (!open || value <= this.value) {
+                open = true;
+                this.value = value;
+                this.end = end;
+                this.start = start;
+            }
+        }
+
+        @Override
+        public void gap(long end) {
+            if (end >= from) {
+                close();
+            }
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        private void close() {
+            if (open) {
+                open = false;
+                Match match = new Match(start, end, value);
+                if (speculating) {
+                    heldBack.add(match);
+                } else {
+                    consumer.accept(match);
+                }
+            }
+        }
+
+        @Override
+        public void beginSpeculation() {
+            speculating = true;
+            savedOpen = open;
+            savedValue = value;
+            savedEnd = end;
+            savedStart = start;
+        }
+
+        @Override
+        public void commit() {
+            speculating = false;
+            heldBack.forEach(consumer);
+            heldBack.clear();
+        }
+
+        @Override
+        public void rollback() {
+            speculating = false;
+            heldBack.clear();
+            open = savedOpen;
+            value = savedValue;
+            end = savedEnd;
+            start = savedStart;
+        }
+
+        @Override
+        public void finish() {
+            close();
+        }
+    }
+
+    /**
+     * DP over the text, fed char by char; the same as calcJustDist over IndexedText of the whole text,
+     * with stopHere (@see IndexedText#calcStopHere) and ends of match (@see StrDist.DistResInfo#findMatchEnd)
+     * decided from the current char and the next one.
+     * <p>
+     * Whether a column is the last one of the trimmed text is known only when the next non-blank char (or the end) comes,
+     * and in the last column top row and the right border follow other rules.
+     * So the column of each non-blank char which may be the last one (only for WORD left border and only after opening quote)
+     * is also calculated as the last one, and candidates after it are offered to Sink speculatively.
+     */
+    final class Sweep {
+        private final ColumnDp columns;
+        private final int n;
+        private final Sink sink;
+        /**
+         * Column where the path to each cell begins (i.e. offset of the first char of match in the trimmed text),
+         * for current column and three previous ones
+         */
+        private long[] origin0, origin1, origin2, origin3;
+        /**
+         * The first n chars of the trimmed text
+         */
+        final StringBuilder head;
+        /**
+         * Number of leading blank chars which were trimmed
+         */
+        long skipped;
+        private boolean started;
+        /**
+         * Whether the text was read not from its beginning (@see #resume)
+         */
+        private boolean resumed;
+        /**
+         * Index of current column (number of chars of the trimmed text read so far)
+         */
+        private long j;
+        private char prev;
+        private boolean allSpacesSinceRowBegin = true;
+        private boolean allSpacesSinceWordBegin = true;
+        /**
+         * Value in bottom row of current column and where its path begins, when the text goes on and when it ends here
+         */
+        private int value;
+        private long origin;
+        private int lastValue;
+        private long lastOrigin;
+        private boolean speculating;
+        /**
+         * While speculating: the column of the last non-blank char, calculated as the last one
+         */
+        private long endColumn;
+        private int endValue;
+        private long endOrigin;
+        private boolean endExact;
+        /**
+         * Number of chars of pattern matched exactly by the last chars of the text (state of KMP automaton)
+         */
+        private int matched;
+        /**
+         * Whether exact occurrence may begin at each of the last n + 1 columns, by index of column modulo n + 1
+         * (the same as StrDistEngine#isAllowedAt, which unlike stopHere doesn't skip chars at the begin of row or word)
+         */
+        private final boolean[] canBegin;
+        /**
+         * Whether exact occurrence of pattern which left border allows ends at current column
+         */
+        private boolean exact;
+
+        /**
+         * @param maxDist only distances below it are needed (@see ColumnDp), or ColumnDp.UNBOUNDED
+         */
+        Sweep(int maxDist, Sink sink) {
+            this.columns = new ColumnDp(charsDist, pattern.subStr, pattern.trivDelCosts, pattern.costDelTwo,
+                    doSubtractIfLongSameSeq, maxDist);
+            this.n = pattern.subStr.length();
+            this.sink = sink;
+            origin0 = new long[n + 1];
+            origin1 = new long[n + 1];
+            origin2 = new long[n + 1];
+            origin3 = new long[n + 1];
+            head = new StringBuilder(n);
+            canBegin = new boolean[n + 1];
+            canBegin[0] = true;
+        }
+
+        void accept(char[] buf, int off, int len) {
+            for (int k = off; k < off + len; k++) {
+                accept(buf[k]);
+            }
+        }
+
+        void accept(char c) {
+            if (!started) {
+                if (c <= ' ') {
+                    skipped++;
+                    return;
+                }
+                started = true;
+            } else {
+                offerCurrent(c);
+            }
+            j++;
+            if (head.length() < n) {
+                head.append(c);
+            }
+            int insCost = engine.trivCost(c);
+            boolean first = (j == 1 && !resumed);
+            int insTwoCost = (first ? Integer.MAX_VALUE / 2 : engine.costInsTwo(prev, c));
+            prev = c;
+
+            boolean lineBreak = CharClass.is(c, CharClass.LINE_BREAK);
+            boolean opener = CharClass.is(c, CharClass.WORD_OPENER);
+            boolean keepFlags = first || CharClass.is(c, CharClass.CAN_SKIP_AT_ROW_BEGIN);
+            allSpacesSinceRowBegin = lineBreak || keepFlags && allSpacesSinceRowBegin;
+            boolean allSpacesIfLast = keepFlags && allSpacesSinceWordBegin;
+            allSpacesSinceWordBegin = opener || allSpacesIfLast;
+            boolean stopHere = isStopHere(opener, lineBreak, allSpacesSinceWordBegin);
+            // in the last column, word and row don't begin after c (@see IndexedText#isWordBegin)
+            boolean stopHereIfLast = isStopHere(false, false, allSpacesIfLast);
+
+            if (stopHereIfLast != stopHere && c > ' ') {
+                ColumnDp.State state = columns.save();
+                long[] o0 = origin0, o1 = origin1, o2 = origin2, o3 = origin3;
+                nextColumn(c, insCost, insTwoCost, stopHereIfLast);
+                lastValue = value;
+                lastOrigin = origin;
+                columns.restore(state);
+                // only the array which became origin0 was written
+                origin0 = o0;
+                origin1 = o1;
+                origin2 = o2;
+                origin3 = o3;
+                nextColumn(c, insCost, insTwoCost, stopHere);
+            } else {
+                nextColumn(c, insCost, insTwoCost, stopHere);
+                lastValue = value;
+                lastOrigin = origin;
+            }
+            matchExactly(c, left == StrDist.SearchBorder.ANYWHERE ||
+                    left == StrDist.SearchBorder.WORD && opener ||
+                    left == StrDist.SearchBorder.ROW && lineBreak);
+        }
+
+        /**
+         * Steps KMP automaton by c, the char of current column
+         *
+         * @param canBegin whether exact occurrence may begin just after c
+         */
+        private void matchExactly(char c, boolean canBegin) {
+            String subStr = pattern.subStr;
+            while (matched > 0 && (matched == n || subStr.charAt(matched) != c)) {
+                matched = failure[matched - 1];
+            }
+            if (subStr.charAt(matched) == c) {
+                matched++;
+            }
+            this.canBegin[(int) (j % (n + 1))] = canBegin;
+            exact = matched == n && this.canBegin[(int) ((j - n) % (n + 1))];
+        }
+
+        private boolean isStopHere(boolean wordBegin, boolean rowBegin, boolean allSpacesSinceWordBegin) {
+            return left == StrDist.SearchBorder.ANYWHERE ||
+                    left == StrDist.SearchBorder.WORD && (wordBegin || allSpacesSinceWordBegin) ||
+                    left == StrDist.SearchBorder.ROW && (rowBegin || allSpacesSinceRowBegin);
+        }
+
+        private void nextColumn(char c, int insCost, int insTwoCost, boolean stopHere) {
+            value = columns.nextColumn(c, insCost, insTwoCost, stopHere);
+            long[] t = origin3;
+            origin3 = origin2;
+            origin2 = origin1;
+            origin1 = origin0;
+            origin0 = t;
+            byte[] choices = columns.choices();
+            origin0[0] = (choices[0] == ColumnDp.STOP_HERE ? j : origin1[0]);
+            int last = columns.lastCalculatedRow();
+            for (int i = 1; i <= last; i++) {
+                byte choice = choices[i];
+                if (choice == ColumnDp.REPLACE_OR_COPY) {
+                    origin0[i] = origin1[i - 1];
+                } else if (choice == ColumnDp.DEL) {
+                    origin0[i] = origin0[i - 1];
+                } else if (choice == ColumnDp.INS) {
+                    origin0[i] = origin1[i];
+                } else if (choice == ColumnDp.SWAP) {
+                    origin0[i] = origin2[i - 2];
+                } else {
+                    origin0[i] = origin3[i - 3];
+                }
+            }
+            origin = origin0[n];
+        }
+
+        /**
+         * Offers current column as the end of match, when next char of the text is c
+         */
+        private void offerCurrent(char c) {
+            if (c > ' ') {
+                if (speculating) {
+                    speculating = false;
+                    sink.commit();
+                }
+            } else if (!speculating) {
+                // current column is the last non-blank one, unless something non-blank follows
+                speculating = true;
+                endColumn = j;
+                endValue = lastValue;
+                endOrigin = lastOrigin;
+                endExact = exact;
+                sink.beginSpeculation();
+            }
+            boolean canEnd = right == StrDist.SearchBorder.ANYWHERE ||
+                    right == StrDist.SearchBorder.WORD && CharClass.is(c, CharClass.WORD_CLOSER) ||
+                    right == StrDist.SearchBorder.ROW && CharClass.is(c, CharClass.LINE_BREAK);
+            if (canEnd && exact) {
+                sink.offer(skipped + j, EXACT, skipped + j - n);
+            } else if (canEnd) {
+                sink.offer(skipped + j, value, skipped + origin);
+            } else {
+                sink.gap(skipped + j);
+            }
+        }
+
+        /**
+         * Starts reading in the middle of the trimmed text, just after char prev, with fresh DP
+         * (as a window of StrDistEngine#calcJustDistInRanges); columns are counted from here.
+         * Flags are as after prev (@see #restoredFlags).
+         */
+        void resume(char prev, boolean allSpacesSinceRowBegin, boolean allSpacesSinceWordBegin) {
+            started = true;
+            resumed = true;
+            this.prev = prev;
+            this.allSpacesSinceRowBegin = allSpacesSinceRowBegin;
+            this.allSpacesSinceWordBegin = allSpacesSinceWordBegin;
+        }
+
+        /**
+         * @return index of current column
+         */
+        long column() {
+            return j;
+        }
+
+        /**
+         * Stops reading before the end of the text: held back matches are committed, as the text goes on
+         */
+        void stop() {
+            if (speculating) {
+                speculating = false;
+                sink.commit();
+            }
+        }
+
+        /**
+         * Offers the last column of the trimmed text (match may always end there)
+         *
+         * @return false when the text is blank
+         */
+        boolean finish() {
+            if (!started) {
+                return false;
+            }
+            if (speculating) {
+                speculating = false;
+                sink.rollback();
+                j = endColumn;
+                offerLast(sink, endColumn, endValue, endOrigin, endExact);
+            } else {
+                offerLast(sink, j, lastValue, lastOrigin, exact);
+            }
+            sink.finish();
+            return true;
+        }
+
+        /**
+         * Offers the last column; exact occurrence of one char there isn't taken, as trivial search never took it
+         */
+        private void offerLast(Sink sink, long column, int value, long origin, boolean exact) {
+            if (exact && n > 1) {
+                sink.offer(skipped + column, EXACT, skipped + column - n);
+            } else {
+                sink.offer(skipped + column, value, skipped + origin);
+            }
+        }
+
+        /**
+         * The same as finish with sink Best, but the text may go on
+         *
+         * @return null when the text is blank so far
+         */
+        Match peekBest(Best best) {
+            if (!started) {
+                return null;
+            }
+            if (isWholeTextLikePattern()) {
+                return wholeTextMatch();
+            }
+            if (speculating) {
+                return (endExact && n > 1 ? best.peek(skipped + endColumn, EXACT, skipped + endColumn - n, true)
+                        : best.peek(skipped + endColumn, endValue, skipped + endOrigin, true));
+            }
+            return (exact && n > 1 ? best.peek(skipped + j, EXACT, skipped + j - n, false)
+                    : best.peek(skipped + j, lastValue, skipped + lastOrigin, false));
+        }
+
+        /**
+         * @return whether the trimmed text (as if it ended now) has the same length as pattern and equals it ignoring case
+         */
+        boolean isWholeTextLikePattern() {
+            return (speculating ? endColumn : j) == n && head.toString().equalsIgnoreCase(pattern.subStr);
+        }
+
+        /**
+         * @return result of calcStrDist for the trimmed text when it's like pattern (@see #isWholeTextLikePattern)
+         */
+        Match wholeTextMatch() {
+            // calcStrDist has special rules for text equal to pattern (e.g. ignoring case), text is short here
+            StrDist.DistResInfo res = engine.calcStrDist(pattern, engine.indexText(head.toString()), left, right,
+                    false, doSubtractIfLongSameSeq, ColumnDp.UNBOUNDED, null);
+            return new Match(skipped, skipped + n, res.dist, res);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Cheap first pass of bounded search (@see StrDistEngine#calcStrDistBounded) of short subStr in long superStr:
+ * Myers' bit-vector algorithm over plain unit-cost edit distance marks columns where a match below maxDist may end,
+ * so that generalized-Levenshtein DP is needed only around them.
+ * <p>
+ * The pass never drops a real match. Chars which are cheap to insert/delete (spaces, line breaks, dots, quotes...)
+ * and chars very similar to them (@see #foldableChars) are folded out of both strings, chars closer than SAME_BELOW are treated as same,
+ * and every remaining unit edit costs at least minEditCost in generalized DP,
+ * so distance below maxDist means at most (maxDist - 1 + n * maxDiscount) / minEditCost unit edits.
+ */
+final class UnitCostPrefilter {
+    /**
+     * Chars with distance below this are treated as same by unit-cost pass (so case differences are ignored)
+     */
+    private static final int SAME_BELOW = StrDist.COMMON_DIFF * 5 / 8;
+    /**
+     * Chars with distance below this to folded char are folded too
+     */
+    private static final int FOLD_BELOW = StrDist.COMMON_DIFF * 3 / 8;
+
+    private final CharDistTable charsDist;
+    private final boolean[] folded;
+    private final char[] sub;
+    /**
+     * Number of not-folded chars of subStr
+     */
+    private final int m;
+    private final int words;
+    /**
+     * Lazily built match masks: pages[c >>> 8][(c & 0xFF) * words + w] has bit b set
+     * when not-folded char (64 * w + b) of subStr is treated as same as c
+     */
+    private final long[][] pages = new long[256][];
+    /**
+     * Min distance between folded and not-folded chars among seen pages and subStr
+     */
+    private int minMixedDist = SAME_BELOW;
+
+    private UnitCostPrefilter(CharDistTable charsDist, boolean[] folded, String subStr) {
+        this.charsDist = charsDist;
+        this.folded = folded;
+        this.sub = subStr.toCharArray();
+        int cnt = 0;
+        for (char c : sub) {
+            if (!isFolded(c)) {
+                cnt++;
+            }
+        }
+        this.m = cnt;
+        this.words = (m + 63) / 64;
+    }
+
+    private boolean isFolded(char c) {
+        return folded[c];
+    }
+
+    /**
+     * Chars which are folded out by unit-cost pass: ones cheaper to insert/delete than COMMON_DIFF,
+     * and (transitively) ones closer than FOLD_BELOW to them, so that typical pairs like space and tab,
+     * hyphen and dash, or different quotes are either both folded or both kept.
+     * Only special chars can be that close to other chars.
+     *
+     * @return flags for all BMP chars
+     */
+    static boolean[] foldableChars(CharDistTable charsDist, byte[] cheapToInsert) {
+        boolean[] folded = new boolean[0x10000];
+        Deque<Character> queue = new ArrayDeque<>();
+        for (int c = 0; c < folded.length; c++) {
+            if (cheapToInsert[c] < StrDist.COMMON_DIFF) {
+                folded[c] = true;
+                queue.add((char) c);
+            }
+        }
+        char[] specials = charsDist.getSpecials();
+        while (!queue.isEmpty()) {
+            char c = queue.poll();
+            for (char x : specials) {
+                if (!folded[x] && charsDist.dist(c, x) < FOLD_BELOW) {
+                    folded[x] = true;
+                    queue.add(x);
+                }
+            }
+        }
+        return folded;
+    }
+
+    private long[] page(char c) {
+        long[] page = pages[c >>> 8];
+        if (page != null) {
+            return page;
+        }
+        page = new long[256 * words];
+        int hi = c & 0xFF00;
+        for (int lo = 0; lo < 256; lo++) {
+            char tc = (char) (hi | lo);
+            boolean textFolded = isFolded(tc);
+            int k = 0;
+            for (char pc : sub) {
+                boolean subFolded = isFolded(pc);
+                if (subFolded != textFolded) {
+                    minMixedDist = Math.min(minMixedDist, charsDist.dist(pc, tc));
+                } else if (!subFolded && charsDist.dist(pc, tc) < SAME_BELOW) {
+                    page[lo * words + (k >>> 6)] |= 1L << k;
+                }
+                if (!subFolded) {
+                    k++;
+                }
+            }
+        }
+        pages[c >>> 8] = page;
+        return page;
+    }
+
+    /**
+     * @param maxDist only distances below it are needed (already increased by n * maxDiscount when doSubtractIfLongSameSeq)
+     * @return flags for columns 0..superStr.length() (the same indices as last row of DP table):
+     * true where a match with distance below maxDist may end;
+     * or null when unit-cost pass can't exclude anything
+     */
+    static boolean[] findCandidateEnds(CharDistTable charsDist, boolean[] folded, String subStr, String superStr,
+                                       int[] trivDelCosts, int[] trivInsCosts, int[] costDelTwo, int[] costInsTwo, int maxDist) {
+        UnitCostPrefilter filter = new UnitCostPrefilter(charsDist, folded, subStr);
+        if (filter.m == 0) {
+            return null;
+        }
+        int minEditCost = StrDist.COMMON_DIFF;
+        for (int i = 0; i < subStr.length(); i++) {
+            if (!filter.isFolded(subStr.charAt(i))) {
+                minEditCost = Math.min(minEditCost, Math.min(trivDelCosts[i], costDelTwo[i]));
+            }
+        }
+        for (int j = 0; j < superStr.length(); j++) {
+            if (!filter.isFolded(superStr.charAt(j))) {
+                minEditCost = Math.min(minEditCost, Math.min(trivInsCosts[j], costInsTwo[j]));
+            }
+        }
+        // scores are calculated before maxEdits is known, because minMixedDist depends on chars seen by scan
+        byte[] scores = filter.scan(superStr);
+        // swaps cost at least half of the differences they fix
+        minEditCost = Math.min(minEditCost, filter.minMixedDist / 2);
+        if (minEditCost <= 0) {
+            return null;
+        }
+        int maxEdits = (maxDist - 1) / minEditCost;
+        if (maxEdits >= filter.m || maxEdits >= Byte.MAX_VALUE) {
+            return null;
+        }
+        boolean[] candidates = new boolean[scores.length];
+        for (int j = 0; j < scores.length; j++) {
+            candidates[j] = (scores[j] <= maxEdits);
+        }
+        return candidates;
+    }
+
+    /**
+     * Myers' algorithm (multi-word variant by Hyyro) for search of folded subStr in folded superStr
+     *
+     * @return for each column of DP table, min unit-cost distance of match ending there (capped by Byte.MAX_VALUE)
+     */
+    private byte[] scan(String superStr) {
+        byte[] scores = new byte[superStr.length() + 1];
+        long[] pv = new long[words];
+        long[] mv = new long[words];
+        Arrays.fill(pv, -1L);
+        int lastBit = (m - 1) & 63;
+        int score = m;
+        scores[0] = (byte) Math.min(score, Byte.MAX_VALUE);
+        for (int j = 1; j <= superStr.length(); j++) {
+            char c = superStr.charAt(j - 1);
+            if (!isFolded(c)) {
+                long[] page = page(c);
+                int eqBase = (c & 0xFF) * words;
+                int hin = 0;
+                for (int w = 0; w < words; w++) {
+                    long eq = page[eqBase + w];
+                    long pvw = pv[w];
+                    long mvw = mv[w];
+                    long hinNeg = (hin < 0 ? 1L : 0L);
+                    long hinPos = (hin > 0 ? 1L : 0L);
+                    long xv = eq | mvw;
+                    eq |= hinNeg;
+                    long xh = (((eq & pvw) + pvw) ^ pvw) | eq;
+                    long ph = mvw | ~(xh | pvw);
+                    long mh = pvw & xh;
+                    int topBit = (w == words - 1 ? lastBit : 63);
+                    hin = (int) ((ph >>> topBit) & 1L) - (int) ((mh >>> topBit) & 1L);
+                    // top row of unit-cost table is all zeros (match may begin anywhere), so first word gets hin == 0
+                    ph = ph << 1 | hinPos;
+                    mh = mh << 1 | hinNeg;
+                    pv[w] = mh | ~(xv | ph);
+                    mv[w] = ph & xv;
+                }
+                score += hin;
+            }
+            scores[j] = (byte) Math.min(score, Byte.MAX_VALUE);
+        }
+        return scores;
+    }
+}
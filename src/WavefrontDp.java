@@ -0,0 +1,436 @@
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The same generalized-Levenshtein DP table as calculated by ColumnDp (not bounded), calculated on several cores
+ * for very large tables: the table is cut into tiles, and each tile is started on ForkJoinPool as soon as its left
+ * and upper neighbours are done, so tiles of the same anti-diagonal are calculated concurrently.
+ * <p>
+ * Cell (i, j) depends on cells up to three rows and columns back (SWAP_THREE), on choices of cells to the left and above
+ * (two-char INS and DEL) and on run of cell (i-1, j-1) (doSubtractIfLongSameSeq, @see ColumnDp#updateRun).
+ * So each tile passes to its neighbours its last three rows (columns) of values, and choices and runs of the last one;
+ * tiles are never smaller than 3x3, so these "edges" always come from the left, upper and upper-left tiles.
+ * Inside tile, cells are calculated column by column with the same arithmetic as in ColumnDp,
+ * so values and choices are bit-identical to sequential calculation.
+ */
+final class WavefrontDp {
+    /**
+     * Default height and width of tiles
+     */
+    static final int DEFAULT_TILE_SIZE = 256;
+    /**
+     * Number of rows (columns) of neighbour tiles which cell may depend on
+     */
+    private static final int HALO = 3;
+
+    private final CharDistTable charsDist;
+    private final char[] sub;
+    private final char[] sup;
+    private final int[] trivDelCosts;
+    private final int[] costDelTwo;
+    private final int[] trivInsCosts;
+    private final int[] costInsTwo;
+    private final boolean[] stopHere;
+    private final boolean doSubtractIfLongSameSeq;
+    private final int n;
+    private final int m;
+    private final int tileRows;
+    private final int tileCols;
+    /**
+     * Rows of k-th row of tiles are [rowFrom[k], rowFrom[k + 1]); row 0 is not in any tile
+     */
+    private final int[] rowFrom;
+    /**
+     * Columns of k-th column of tiles are [colFrom[k], colFrom[k + 1]); column 0 is not in any tile
+     */
+    private final int[] colFrom;
+    /**
+     * Values and choices of row 0
+     */
+    private final int[] topValues;
+    private final byte[] topChoices;
+    /**
+     * Values of column 0
+     */
+    private final int[] leftValues;
+    /**
+     * Last rows of tile (bi, bj) at [bi * tileCols + bj], kept until both tiles which need them are done
+     */
+    private final Edge[] bottomEdges;
+    /**
+     * Last columns of tile (bi, bj) at [bi * tileCols + bj], kept until the tile to the right is done
+     */
+    private final Edge[] rightEdges;
+    /**
+     * Number of not yet calculated left and upper neighbours of each tile
+     */
+    private final AtomicIntegerArray pending;
+
+    private int[] lastRow;
+    private byte[] choices;
+
+    /**
+     * Last HALO rows (or columns) of a tile
+     */
+    private static final class Edge {
+        /**
+         * Index of the first column (or row) of the tile
+         */
+        final int from;
+        final int len;
+        /**
+         * Value of k-th of the last rows (columns) at [k * len + index - from]
+         */
+        final int[] values;
+        /**
+         * Choices of the last row (column)
+         */
+        final byte[] choices;
+        /**
+         * Runs of the last row (column), RUN_STRIDE for each cell; null without doSubtractIfLongSameSeq
+         */
+        final int[] runs;
+
+        Edge(int from, int len, boolean withRuns) {
+            this.from = from;
+            this.len = len;
+            values = new int[HALO * len];
+            choices = new byte[len];
+            runs = (withRuns ? new int[len * ColumnDp.RUN_STRIDE] : null);
+        }
+    }
+
+    /**
+     * @param tileSize min height and width of tiles, at least 3
+     */
+    WavefrontDp(CharDistTable charsDist, String subStr, String superStr, int[] trivDelCosts, int[] costDelTwo,
+                int[] trivInsCosts, int[] costInsTwo, boolean[] stopHere, boolean doSubtractIfLongSameSeq, int tileSize) {
+        if (tileSize < HALO) {
+            throw new IllegalArgumentException("tileSize (" + tileSize + ") should be at least " + HALO);
+        }
+        this.charsDist = charsDist;
+        this.sub = subStr.toCharArray();
+        this.sup = superStr.toCharArray();
+        this.trivDelCosts = trivDelCosts;
+        this.costDelTwo = costDelTwo;
+        this.trivInsCosts = trivInsCosts;
+        this.costInsTwo = costInsTwo;
+        this.stopHere = stopHere;
+        this.doSubtractIfLongSameSeq = doSubtractIfLongSameSeq;
+        this.n = sub.length;
+        this.m = sup.length;
+        tileRows = Math.max(1, n / tileSize);
+        tileCols = Math.max(1, m / tileSize);
+        rowFrom = split(n, tileRows);
+        colFrom = split(m, tileCols);
+        if (rowFrom[1] - rowFrom[0] < HALO || colFrom[1] - colFrom[0] < HALO) {
+            throw new IllegalArgumentException("table " + n + "x" + m + " is too small for tiles");
+        }
+
+        topValues = new int[m + 1];
+        topChoices = new byte[m + 1];
+        topChoices[0] = ColumnDp.STOP_HERE;
+        for (int j = 1; j <= m; j++) {
+            if (stopHere[j]) {
+                topValues[j] = 0;
+                topChoices[j] = ColumnDp.STOP_HERE;
+            } else {
+                topValues[j] = topValues[j - 1] + trivInsCosts[j - 1];
+                topChoices[j] = ColumnDp.INS;
+            }
+        }
+        leftValues = new int[n + 1];
+        for (int i = 1; i <= n; i++) {
+            leftValues[i] = leftValues[i - 1] + trivDelCosts[i - 1];
+        }
+        bottomEdges = new Edge[tileRows * tileCols];
+        rightEdges = new Edge[tileRows * tileCols];
+        pending = new AtomicIntegerArray(tileRows * tileCols);
+        for (int bi = 0; bi < tileRows; bi++) {
+            for (int bj = 0; bj < tileCols; bj++) {
+                pending.set(bi * tileCols + bj, (bi > 0 ? 1 : 0) + (bj > 0 ? 1 : 0));
+            }
+        }
+    }
+
+    /**
+     * @return bounds of cnt nearly equal parts of [1, len]
+     */
+    private static int[] split(int len, int cnt) {
+        int[] from = new int[cnt + 1];
+        for (int k = 0; k <= cnt; k++) {
+            from[k] = 1 + (int) ((long) k * len / cnt);
+        }
+        return from;
+    }
+
+    /**
+     * Calculates the whole table; may be called only once.
+     *
+     * @param lastRow array of superStr.length() + 1 to be filled with last row of the table, or null
+     * @param choices array of superStr.length() * (subStr.length() + 1) to be filled with choices,
+     *                flat column-major (@see ColumnDp#traceBack), or null
+     */
+    void calc(ForkJoinPool pool, int[] lastRow, byte[] choices) {
+        this.lastRow = lastRow;
+        this.choices = choices;
+        if (lastRow != null) {
+            lastRow[0] = leftValues[n];
+        }
+        pool.invoke(new TileTask(null, 0, 0));
+    }
+
+    private final class TileTask extends CountedCompleter<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final int bi;
+        private final int bj;
+
+        TileTask(CountedCompleter<?> completer, int bi, int bj) {
+            super(completer);
+            this.bi = bi;
+            this.bj = bj;
+        }
+
+        @Override
+        public void compute() {
+            calcTile(bi, bj);
+            if (bj + 1 < tileCols && pending.decrementAndGet(bi * tileCols + bj + 1) == 0) {
+                addToPendingCount(1);
+                new TileTask(this, bi, bj + 1).fork();
+            }
+            if (bi + 1 < tileRows && pending.decrementAndGet((bi + 1) * tileCols + bj) == 0) {
+                addToPendingCount(1);
+                new TileTask(this, bi + 1, bj).fork();
+            }
+            tryComplete();
+        }
+    }
+
+    private int pair(int i, int j) {
+        return i >= 1 && j >= 1 ? charsDist.dist(sub[i - 1], sup[j - 1]) : 0;
+    }
+
+    /**
+     * @return value of cell (i, j) which is in row 0, column 0 or in given edges of neighbour tiles
+     * (cells with negative indices are never used, 0 is returned for them)
+     */
+    private int haloValue(int i, int j, int i0, int j0, Edge top, Edge left, Edge corner) {
+        if (i < 0 || j < 0) {
+            return 0;
+        } else if (i == 0) {
+            return topValues[j];
+        } else if (j == 0) {
+            return leftValues[i];
+        } else if (j >= j0) {
+            return top.values[(i - (i0 - HALO)) * top.len + j - top.from];
+        } else if (i >= i0) {
+            return left.values[(j - (j0 - HALO)) * left.len + i - left.from];
+        } else {
+            return corner.values[(i - (i0 - HALO)) * corner.len + j - corner.from];
+        }
+    }
+
+    /**
+     * Copies run of cell (i, j), which is in row 0, column 0, or in last row (column) of given edge, to given slot
+     */
+    private static void copyHaloRun(int i, int j, Edge edge, int index, int[] dest, int slot) {
+        int base = slot * ColumnDp.RUN_STRIDE;
+        if (i == 0 || j == 0) {
+            // the same as initial runs of ColumnDp
+            dest[base] = i + 1;
+            dest[base + 1] = 0;
+        } else {
+            System.arraycopy(edge.runs, (index - edge.from) * ColumnDp.RUN_STRIDE, dest, base, ColumnDp.RUN_STRIDE);
+        }
+    }
+
+    private void calcTile(int bi, int bj) {
+        int i0 = rowFrom[bi];
+        int i1 = rowFrom[bi + 1];
+        int j0 = colFrom[bj];
+        int j1 = colFrom[bj + 1];
+        int h = i1 - i0;
+        Edge top = (bi > 0 ? bottomEdges[(bi - 1) * tileCols + bj] : null);
+        Edge left = (bj > 0 ? rightEdges[bi * tileCols + bj - 1] : null);
+        Edge corner = (bi > 0 && bj > 0 ? bottomEdges[(bi - 1) * tileCols + bj - 1] : null);
+        Edge bottom = (bi + 1 < tileRows ? new Edge(j0, j1 - j0, doSubtractIfLongSameSeq) : null);
+        Edge right = (bj + 1 < tileCols ? new Edge(i0, h, doSubtractIfLongSameSeq) : null);
+        boolean doSub = doSubtractIfLongSameSeq;
+
+        // local row r is row i0 - HALO + r of the table; rows above i0 are copied from neighbours
+        int size = h + HALO;
+        int[] dp0 = new int[size];
+        int[] dp1 = new int[size];
+        int[] dp2 = new int[size];
+        int[] dp3 = new int[size];
+        int[] pair0 = new int[size];
+        int[] pair1 = new int[size];
+        int[] pair2 = new int[size];
+        byte[] choiceCur = new byte[size];
+        byte[] choicePrev = new byte[size];
+        int[] runCur = (doSub ? new int[size * ColumnDp.RUN_STRIDE] : null);
+        int[] runPrev = (doSub ? new int[size * ColumnDp.RUN_STRIDE] : null);
+
+        // the current column is j0 - 1 here
+        for (int r = 0; r < size; r++) {
+            int i = i0 - HALO + r;
+            dp0[r] = haloValue(i, j0 - 1, i0, j0, top, left, corner);
+            dp1[r] = haloValue(i, j0 - 2, i0, j0, top, left, corner);
+            dp2[r] = haloValue(i, j0 - 3, i0, j0, top, left, corner);
+            pair0[r] = pair(i, j0 - 1);
+            pair1[r] = pair(i, j0 - 2);
+            if (r >= HALO) {
+                choiceCur[r] = (j0 == 1 ? ColumnDp.DEL : left.choices[i - left.from]);
+            }
+            if (doSub && r >= HALO - 1) {
+                if (r == HALO - 1) {
+                    copyHaloRun(i, j0 - 1, corner, j0 - 1, runCur, r);
+                } else {
+                    copyHaloRun(i, j0 - 1, left, i, runCur, r);
+                }
+            }
+        }
+
+        for (int j = j0; j < j1; j++) {
+            int[] t = dp3;
+            dp3 = dp2;
+            dp2 = dp1;
+            dp1 = dp0;
+            dp0 = t;
+            t = pair2;
+            pair2 = pair1;
+            pair1 = pair0;
+            pair0 = t;
+            byte[] tc = choicePrev;
+            choicePrev = choiceCur;
+            choiceCur = tc;
+            if (doSub) {
+                t = runPrev;
+                runPrev = runCur;
+                runCur = t;
+            }
+            for (int r = 0; r < HALO; r++) {
+                int i = i0 - HALO + r;
+                dp0[r] = haloValue(i, j, i0, j0, top, left, corner);
+                pair0[r] = pair(i, j);
+            }
+            choiceCur[HALO - 1] = (i0 == 1 ? topChoices[j] : top.choices[j - top.from]);
+            if (doSub) {
+                copyHaloRun(i0 - 1, j, top, j, runCur, HALO - 1);
+            }
+
+            char c = sup[j - 1];
+            int insCost = trivInsCosts[j - 1];
+            int costInsCheaper = Math.min(costInsTwo[j - 1], insCost);
+            for (int r = HALO; r < size; r++) {
+                int i = i0 - HALO + r;
+                // the same as body of row loop of ColumnDp#nextColumn
+                int pairCost = charsDist.dist(sub[i - 1], c);
+                pair0[r] = pairCost;
+
+                int minDist = dp1[r] + (choicePrev[r] != ColumnDp.DEL ? costInsCheaper : insCost);
+                byte minEdit = ColumnDp.INS;
+
+                int costDel = trivDelCosts[i - 1];
+                if (choiceCur[r - 1] != ColumnDp.INS && costDelTwo[i - 1] < costDel) {
+                    costDel = costDelTwo[i - 1];
+                }
+                int distDel = dp0[r - 1] + costDel;
+                if (distDel < minDist) {
+                    minDist = distDel;
+                    minEdit = ColumnDp.DEL;
+                }
+
+                int replCost = pairCost;
+                if (doSub && replCost <= 3 && i > 1 && j > 1) {
+                    int numExtraSimilar = 2 + ColumnDp.longSameSeqLength(runPrev, r - 1, i - 1, ColumnDp.LONG_SEQ_BUDGET - replCost);
+                    if (numExtraSimilar > 2) {
+                        replCost -= 1;
+                        if (numExtraSimilar > 8) {
+                            replCost -= (int) Math.sqrt(Math.sqrt(numExtraSimilar / 8));
+                        }
+                    }
+                }
+                int distReplace = dp1[r - 1] + replCost;
+                if (distReplace <= minDist) {
+                    minDist = distReplace;
+                    minEdit = ColumnDp.REPLACE_OR_COPY;
+                }
+                if (i > 1 && j > 1 && dp2[r - 2] < minDist) {
+                    int commonOrderCost = replCost + pair1[r - 1];
+                    int swappedOrderCost = pair1[r] + pair0[r - 1];
+                    if (swappedOrderCost < commonOrderCost) {
+                        int distForSwapped = dp2[r - 2] + (swappedOrderCost + commonOrderCost) / 2;
+                        if (distForSwapped < minDist) {
+                            minDist = distForSwapped;
+                            minEdit = ColumnDp.SWAP;
+                        }
+                        if (i > 2 && j > 2 && dp3[r - 3] < minDist) {
+                            commonOrderCost += pair2[r - 2];
+                            int swappedOrderCostTwo = pair2[r] + pair0[r - 1] + pair1[r - 2];
+                            int swappedOrderCostThree = pair0[r - 2] + pair1[r] + pair2[r - 1];
+                            swappedOrderCost = Math.min(swappedOrderCostTwo, swappedOrderCostThree);
+                            if (swappedOrderCost < commonOrderCost) {
+                                distForSwapped = dp3[r - 3] + (swappedOrderCost + 2 * commonOrderCost) / 3;
+                                if (distForSwapped < minDist) {
+                                    minDist = distForSwapped;
+                                    minEdit = ColumnDp.SWAP_THREE;
+                                }
+                            }
+                        }
+                    }
+                }
+                dp0[r] = minDist;
+                choiceCur[r] = minEdit;
+                if (doSub) {
+                    ColumnDp.updateRun(runCur, runPrev, r, i,
+                            minEdit == ColumnDp.REPLACE_OR_COPY && i > 1 && j > 1 && pair1[r - 1] <= 3, pair1[r - 1]);
+                }
+            }
+
+            if (lastRow != null && i1 == n + 1) {
+                lastRow[j] = dp0[size - 1];
+            }
+            if (choices != null) {
+                int base = (j - 1) * (n + 1);
+                if (i0 == 1) {
+                    choices[base] = topChoices[j];
+                }
+                System.arraycopy(choiceCur, HALO, choices, base + i0, h);
+            }
+            if (bottom != null) {
+                for (int k = 0; k < HALO; k++) {
+                    bottom.values[k * bottom.len + j - j0] = dp0[size - HALO + k];
+                }
+                bottom.choices[j - j0] = choiceCur[size - 1];
+                if (doSub) {
+                    System.arraycopy(runCur, (size - 1) * ColumnDp.RUN_STRIDE, bottom.runs, (j - j0) * ColumnDp.RUN_STRIDE, ColumnDp.RUN_STRIDE);
+                }
+            }
+            if (right != null && j >= j1 - HALO) {
+                System.arraycopy(dp0, HALO, right.values, (j - (j1 - HALO)) * h, h);
+                if (j == j1 - 1) {
+                    System.arraycopy(choiceCur, HALO, right.choices, 0, h);
+                    if (doSub) {
+                        System.arraycopy(runCur, HALO * ColumnDp.RUN_STRIDE, right.runs, 0, h * ColumnDp.RUN_STRIDE);
+                    }
+                }
+            }
+        }
+
+        bottomEdges[bi * tileCols + bj] = bottom;
+        rightEdges[bi * tileCols + bj] = right;
+        // edges which are not needed any more (upper-left is needed by this tile and the one to the left of it only)
+        if (bj > 0) {
+            rightEdges[bi * tileCols + bj - 1] = null;
+            if (bi > 0) {
+                bottomEdges[(bi - 1) * tileCols + bj - 1] = null;
+            }
+        }
+        if (bi > 0 && bj + 1 == tileCols) {
+            bottomEdges[(bi - 1) * tileCols + bj] = null;
+        }
+    }
+}
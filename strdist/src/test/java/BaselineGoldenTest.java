@@ -0,0 +1,144 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Results of the original StrDist (baseline commit fafd5ae), captured once for a fixed corpus into baseline-golden.tsv:
+ * edge cases (empty and blank strings, look-alike letters, apostrophes, quotes, dashes, line breaks, sub.txt in super.txt)
+ * with all pairs of borders, and random texts of TestTexts with one pair of borders each.
+ * Unlike the differential tests, nothing here is calculated by new code of the library.
+ */
+class BaselineGoldenTest {
+
+    @Test
+    void facadeHasBaselineResults() throws IOException {
+        for (Golden golden : load()) {
+            StrDist.DistResInfo res = golden.bestMatch ?
+                    StrDist.getBestMatch___(golden.subStr, golden.superStr, golden.left, golden.right, golden.doRestoreWay) :
+                    StrDist.calcStrDist(golden.subStr, golden.superStr, golden.left, golden.right, golden.doRestoreWay, golden.doSubtract);
+            golden.check(res, true);
+        }
+    }
+
+    @Test
+    void sequentialAndFusedHaveBaselineResults() throws IOException {
+        StrDistEngine engine = FullTable.sequentialEngine();
+        for (Golden golden : load()) {
+            if (golden.bestMatch) {
+                golden.check(engine.getBestMatch___(golden.subStr, golden.superStr, golden.left, golden.right, golden.doRestoreWay), true);
+                golden.check(engine.getBestMatchFused(golden.subStr, golden.superStr, golden.left, golden.right, golden.doRestoreWay), true);
+            } else {
+                golden.check(engine.calcStrDist(golden.subStr, golden.superStr, golden.left, golden.right, golden.doRestoreWay, golden.doSubtract), true);
+            }
+        }
+    }
+
+    /**
+     * Bounded search has the baseline dist whenever it's below maxDist, and a dist not less than maxDist otherwise
+     */
+    @Test
+    void boundedHasBaselineDist() throws IOException {
+        StrDistEngine engine = new StrDistEngine();
+        for (Golden golden : load()) {
+            if (golden.bestMatch || !golden.doRestoreWay) {
+                continue;
+            }
+            for (int maxDist : new int[]{0, 16, 40, golden.dist, golden.dist + 1}) {
+                StrDist.DistResInfo res = engine.calcStrDistBounded(golden.subStr, golden.superStr, golden.left, golden.right, golden.doSubtract, maxDist);
+                if (golden.dist < maxDist) {
+                    golden.check(res, false);
+                } else {
+                    assertTrue(res.dist >= maxDist, golden + ", maxDist = " + maxDist);
+                }
+            }
+        }
+    }
+
+    private static List<Golden> load() throws IOException {
+        List<Golden> res = new ArrayList<>();
+        InputStream in = BaselineGoldenTest.class.getResourceAsStream("baseline-golden.tsv");
+        assertNotNull(in);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    res.add(new Golden(line.split("\t", -1)));
+                }
+            }
+        }
+        assertTrue(res.size() > 1000);
+        return res;
+    }
+
+    private static final class Golden {
+        final boolean bestMatch;
+        final boolean doRestoreWay;
+        final boolean doSubtract;
+        final StrDist.SearchBorder left;
+        final StrDist.SearchBorder right;
+        final String subStr;
+        final String superStr;
+        final int dist;
+        final StrDist.MatchLevel matchLevel;
+        final String diffAsHtml;
+
+        Golden(String[] fields) {
+            assertEquals(10, fields.length);
+            bestMatch = fields[0].equals("BEST_MATCH");
+            doRestoreWay = Boolean.parseBoolean(fields[1]);
+            doSubtract = Boolean.parseBoolean(fields[2]);
+            left = StrDist.SearchBorder.valueOf(fields[3]);
+            right = StrDist.SearchBorder.valueOf(fields[4]);
+            subStr = unescape(fields[5]);
+            superStr = unescape(fields[6]);
+            dist = Integer.parseInt(fields[7]);
+            matchLevel = StrDist.MatchLevel.valueOf(fields[8]);
+            diffAsHtml = unescape(fields[9]);
+        }
+
+        void check(StrDist.DistResInfo res, boolean withDiff) {
+            String where = toString();
+            assertEquals(dist, res.dist, where);
+            assertEquals(matchLevel, res.matchLevel, where);
+            if (withDiff && doRestoreWay) {
+                assertEquals(diffAsHtml, res.getDiffAsHtml(), where);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (bestMatch ? "getBestMatch___ " : "calcStrDist ") + subStr + " in " + superStr + ", " + left + "-" + right +
+                    ", " + doRestoreWay + ", " + doSubtract;
+        }
+
+        private static String unescape(String s) {
+            if (s.equals("\\N")) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '\\') {
+                    c = switch (s.charAt(++i)) {
+                        case 't' -> '\t';
+                        case 'n' -> '\n';
+                        case 'r' -> '\r';
+                        default -> s.charAt(i);
+                    };
+                }
+                sb.append(c);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BatchSearch (matrix, topK, cancel, progress) against single calls of the engine
+ */
+class BatchSearchTest {
+    private final StrDistEngine engine = new StrDistEngine();
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void matrixHasResultsOfSingleCalls() {
+        Random rnd = new Random(11);
+        List<String> texts = texts(rnd, 30);
+        List<String> patterns = patterns(rnd, texts, 5);
+        StrDist.SearchBorder left = StrDist.SearchBorder.WORD;
+        StrDist.SearchBorder right = StrDist.SearchBorder.ANYWHERE;
+        for (BatchSearch.Kind kind : BatchSearch.Kind.values()) {
+            for (boolean doRestoreWay : new boolean[]{false, true}) {
+                StrDist.DistResInfo[][] results = new BatchSearch(engine, left, right).setPool(pool).setKind(kind)
+                        .setDoRestoreWay(doRestoreWay).setDoSubtractIfLongSameSeq(true).setMaxDist(40)
+                        .matrix(patterns, texts);
+                assertEquals(patterns.size(), results.length);
+                for (int p = 0; p < patterns.size(); p++) {
+                    assertEquals(texts.size(), results[p].length);
+                    for (int t = 0; t < texts.size(); t++) {
+                        String subStr = patterns.get(p);
+                        String superStr = texts.get(t);
+                        StrDist.DistResInfo expected = switch (kind) {
+                            case BEST_MATCH -> engine.getBestMatch___(subStr, superStr, left, right, doRestoreWay);
+                            case BEST_MATCH_FUSED -> engine.getBestMatchFused(subStr, superStr, left, right, doRestoreWay);
+                            case DIST -> engine.calcStrDist(subStr, superStr, left, right, doRestoreWay, true);
+                            case DIST_BOUNDED -> engine.calcStrDistBounded(subStr, superStr, left, right, true, 40);
+                        };
+                        String where = subStr + " in " + superStr + ", " + kind + ", " + doRestoreWay;
+                        assertEquals(expected.dist, results[p][t].dist, where);
+                        assertEquals(expected.matchLevel, results[p][t].matchLevel, where);
+                        assertEquals(expected.getDiffAsHtml(), results[p][t].getDiffAsHtml(), where);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Texts repeat, so that equal dists are ordered by index of text, also when they are found by different tasks
+     * (pairs of one pattern are cut into several ranges whose local tops are merged)
+     */
+    @Test
+    void topKIsOrderedByDistThenByTextIndex() {
+        Random rnd = new Random(111);
+        List<String> texts = texts(rnd, 20);
+        texts.addAll(new ArrayList<>(texts));
+        Collections.shuffle(texts, rnd);
+        List<String> patterns = patterns(rnd, texts, 4);
+        BatchSearch batch = new BatchSearch(engine, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE).setPool(pool);
+        StrDist.DistResInfo[][] results = batch.matrix(patterns, texts);
+        for (int k : new int[]{1, 3, 17, 100}) {
+            List<List<BatchSearch.Hit>> tops = batch.topK(patterns, texts, k);
+            assertEquals(patterns.size(), tops.size());
+            for (int p = 0; p < patterns.size(); p++) {
+                StrDist.DistResInfo[] row = results[p];
+                List<Integer> expected = new ArrayList<>();
+                for (int t = 0; t < texts.size(); t++) {
+                    expected.add(t);
+                }
+                expected.sort(Comparator.<Integer>comparingInt(t -> row[t].dist).thenComparingInt(t -> t));
+                expected = expected.subList(0, Math.min(k, expected.size()));
+                List<Integer> actual = new ArrayList<>();
+                for (BatchSearch.Hit hit : tops.get(p)) {
+                    actual.add(hit.textIndex);
+                    assertEquals(row[hit.textIndex].dist, hit.result.dist);
+                }
+                assertEquals(expected, actual, patterns.get(p) + ", k = " + k);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> batch.topK(patterns, texts, 0));
+    }
+
+    @Test
+    void cancelBeforeRunIsNotLost() {
+        Random rnd = new Random(112);
+        List<String> texts = texts(rnd, 10);
+        List<String> patterns = patterns(rnd, texts, 3);
+        BatchSearch batch = new BatchSearch(engine, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE).setPool(pool);
+        batch.cancel();
+        assertTrue(batch.isCancelled());
+        assertThrows(CancellationException.class, () -> batch.matrix(patterns, texts));
+        assertFalse(batch.isCancelled());
+        // the next run is not cancelled
+        assertEquals(patterns.size(), batch.matrix(patterns, texts).length);
+        batch.cancel();
+        assertThrows(CancellationException.class, () -> batch.topK(patterns, texts, 2));
+        assertEquals(patterns.size(), batch.topK(patterns, texts, 2).size());
+    }
+
+    @Test
+    void cancelDuringRunStopsIt() {
+        Random rnd = new Random(113);
+        List<String> texts = texts(rnd, 200);
+        List<String> patterns = patterns(rnd, texts, 20);
+        BatchSearch batch = new BatchSearch(engine, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE).setPool(pool);
+        long[] last = {0};
+        batch.setProgressListener((done, total) -> {
+            synchronized (last) {
+                last[0] = done;
+            }
+            batch.cancel();
+        });
+        assertThrows(CancellationException.class, () -> batch.matrix(patterns, texts));
+        synchronized (last) {
+            assertTrue(0 < last[0] && last[0] < (long) patterns.size() * texts.size(), "progress " + last[0]);
+        }
+    }
+
+    @Test
+    void progressGrowsToTotal() {
+        Random rnd = new Random(114);
+        List<String> texts = texts(rnd, 150);
+        List<String> patterns = patterns(rnd, texts, 7);
+        long total = (long) patterns.size() * texts.size();
+        List<long[]> reports = Collections.synchronizedList(new ArrayList<>());
+        BatchSearch batch = new BatchSearch(engine, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD).setPool(pool)
+                .setProgressListener((done, totalPairs) -> reports.add(new long[]{done, totalPairs}));
+        for (int run = 0; run < 2; run++) {
+            reports.clear();
+            if (run == 0) {
+                batch.matrix(patterns, texts);
+            } else {
+                batch.topK(patterns, texts, 5);
+            }
+            assertTrue(reports.size() > 1);
+            long prev = 0;
+            for (long[] report : reports) {
+                assertEquals(total, report[1]);
+                assertTrue(report[0] > prev, report[0] + " after " + prev);
+                prev = report[0];
+            }
+            assertEquals(total, prev);
+        }
+    }
+
+    private static List<String> texts(Random rnd, int count) {
+        List<String> res = new ArrayList<>();
+        for (int t = 0; t < count; t++) {
+            res.add(TestTexts.text(rnd, 1 + rnd.nextInt(15)));
+        }
+        return res;
+    }
+
+    private static List<String> patterns(Random rnd, List<String> texts, int count) {
+        List<String> res = new ArrayList<>();
+        for (int p = 0; p < count; p++) {
+            res.add(TestTexts.pattern(rnd, texts.get(rnd.nextInt(texts.size())), 15));
+        }
+        return res;
+    }
+}
@@ -0,0 +1,179 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * calcStrDistBounded (Ukkonen's cutoff, UnitCostPrefilter, early stop) against the baseline full-table calcStrDist
+ */
+class CalcStrDistBoundedTest {
+    private static final int[] MAX_DISTS = {1, 10, 30, 60, 100};
+
+    private final StrDistEngine engine = FullTable.sequentialEngine();
+
+    @Test
+    void sameDistanceBelowMaxDist() {
+        Random rnd = new Random(6);
+        for (int t = 0; t < 300; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(t % 3 == 0 ? 200 : 20));
+            String subStr = TestTexts.pattern(rnd, superStr, 15);
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    for (boolean doSubtract : new boolean[]{false, true}) {
+                        StrDist.DistResInfo full = FullTable.calcStrDist(engine, subStr, superStr, left, right, doSubtract);
+                        for (int maxDist : MAX_DISTS) {
+                            StrDist.DistResInfo bounded = engine.calcStrDistBounded(subStr, superStr, left, right, doSubtract, maxDist);
+                            String where = subStr + " in " + superStr + ", " + left + "-" + right + ", " + doSubtract + ", maxDist " + maxDist;
+                            if (full.dist < maxDist) {
+                                assertEquals(full.dist, bounded.dist, where);
+                                assertEquals(full.matchLevel, bounded.matchLevel, where);
+                            } else {
+                                assertTrue(bounded.dist >= maxDist, where);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void predicatesFollowDistance() {
+        Random rnd = new Random(61);
+        for (int t = 0; t < 200; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(60));
+            String subStr = TestTexts.pattern(rnd, superStr, 15);
+            StrDist.DistResInfo anywhere = FullTable.calcStrDist(engine, subStr, superStr,
+                    StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE, true);
+            assertEquals(anywhere.matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM), engine.likelyContains(subStr, superStr), subStr + " in " + superStr);
+            StrDist.DistResInfo words = FullTable.calcStrDist(engine, subStr, superStr,
+                    StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false);
+            assertEquals(words.matchLevel == StrDist.MatchLevel.HIGH, engine.highlyLikelyContainsWords(subStr, superStr), subStr + " in " + superStr);
+        }
+    }
+
+    /**
+     * maxDist just at the distance isn't enough to get it, maxDist one above is
+     */
+    @Test
+    void maxDistAtDistance() {
+        Random rnd = new Random(62);
+        for (int t = 0; t < 200; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(30));
+            String subStr = TestTexts.pattern(rnd, superStr, 15);
+            StrDist.SearchBorder left = TestTexts.BORDERS[t % 4];
+            StrDist.SearchBorder right = TestTexts.BORDERS[t / 4 % 4];
+            boolean doSubtract = t % 3 == 0;
+            StrDist.DistResInfo full = FullTable.calcStrDist(engine, subStr, superStr, left, right, doSubtract);
+            String where = subStr + " in " + superStr + ", " + left + "-" + right + ", " + doSubtract;
+            assertTrue(engine.calcStrDistBounded(subStr, superStr, left, right, doSubtract, full.dist).dist >= full.dist, where);
+            assertEquals(full.dist, engine.calcStrDistBounded(subStr, superStr, left, right, doSubtract, full.dist + 1).dist, where);
+        }
+    }
+
+    /**
+     * With doSubtractIfLongSameSeq long common runs cost below zero, so rows which look dead by their value
+     * can still come below maxDist; typos at the begin of the pattern make the prefix of the path expensive
+     */
+    @Test
+    void longSameSeqAfterExpensivePrefix() {
+        Random rnd = new Random(63);
+        for (int t = 0; t < 40; t++) {
+            String superStr = TestTexts.text(rnd, 40 + rnd.nextInt(40));
+            int from = rnd.nextInt(superStr.length() / 2);
+            String subStr = "ХАТА" + TestTexts.mistype(rnd, superStr.substring(from, from + 4), 3) + superStr.substring(from + 4, from + 60);
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                StrDist.SearchBorder right = left == StrDist.SearchBorder.WHOLE_TEXT ? StrDist.SearchBorder.ANYWHERE : left;
+                // too long for FullTable.calcStrDist, and never found trivially
+                StrDist.DistResInfo full = new FullTable(engine, subStr, superStr, left, true).result(left, right);
+                for (int maxDist : new int[]{10, 30, full.dist + 1}) {
+                    StrDist.DistResInfo bounded = engine.calcStrDistBounded(subStr, superStr, left, right, true, maxDist);
+                    String where = subStr + " in " + superStr + ", " + left + "-" + right + ", maxDist " + maxDist;
+                    if (full.dist < maxDist) {
+                        assertEquals(full.dist, bounded.dist, where);
+                    } else {
+                        assertTrue(bounded.dist >= maxDist, where);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * WORD-ROW compares values of the last row above the bound, so it isn't pruned; the other pairs are
+     */
+    @Test
+    void wordRowPairIsExact() {
+        String superStr = "the quick brown\nfox jumps over\nthe lazy dog";
+        for (String subStr : new String[]{"quick brown", "fox jumps over", "lazy dоg", "brown\nfox", "cat"}) {
+            for (boolean doSubtract : new boolean[]{false, true}) {
+                StrDist.DistResInfo full = FullTable.calcStrDist(engine, subStr, superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.ROW, doSubtract);
+                for (int maxDist : MAX_DISTS) {
+                    StrDist.DistResInfo bounded = engine.calcStrDistBounded(subStr, superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.ROW, doSubtract, maxDist);
+                    if (full.dist < maxDist) {
+                        assertEquals(full.dist, bounded.dist, subStr + ", maxDist " + maxDist);
+                    } else {
+                        assertTrue(bounded.dist >= maxDist, subStr + ", maxDist " + maxDist);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A match which must begin at the begin of the text is given up after about maxDist columns
+     */
+    @Test
+    void wholeTextMismatchStopsEarly() {
+        String superStr = "xyz " + TestTexts.text(new Random(64), 3000);
+        String subStr = "the quick brown fox";
+        List<SearchStats> searches = new ArrayList<>();
+        StrDistInstrumentation.setListener(searches::add);
+        try {
+            StrDist.DistResInfo bounded = engine.calcStrDistBounded(subStr, superStr, StrDist.SearchBorder.WHOLE_TEXT, StrDist.SearchBorder.ANYWHERE, false, 30);
+            assertTrue(bounded.dist >= 30);
+            assertFalse(bounded.matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM));
+        } finally {
+            StrDistInstrumentation.setListener(null);
+        }
+        assertEquals(1, searches.size());
+        long cells = (long) subStr.length() * superStr.length();
+        assertTrue(searches.get(0).getDpCells() < cells / 100, searches.get(0).getDpCells() + " of " + cells);
+    }
+
+    /**
+     * Each predicate against its definition by the baseline calcStrDist
+     */
+    @Test
+    void allPredicatesFollowDistance() {
+        Random rnd = new Random(65);
+        StrDist.SearchBorder[] pairs = {StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ROW, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WHOLE_TEXT};
+        int[] likely = new int[2];
+        for (int t = 0; t < 150; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(t % 2 == 0 ? 3 : 30));
+            String subStr = t % 5 == 0 && superStr.length() < 16 ? superStr : TestTexts.pattern(rnd, superStr, 15);
+            boolean[] medium = new boolean[4];
+            boolean[] high = new boolean[4];
+            for (int k = 0; k < 4; k++) {
+                medium[k] = FullTable.calcStrDist(engine, subStr, superStr, pairs[k], pairs[k], true).matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM);
+                high[k] = FullTable.calcStrDist(engine, subStr, superStr, pairs[k], pairs[k], false).matchLevel == StrDist.MatchLevel.HIGH;
+                likely[medium[k] ? 1 : 0]++;
+            }
+            String where = subStr + " in " + superStr;
+            assertEquals(medium[0], engine.likelyContains(subStr, superStr), where);
+            assertEquals(medium[1], engine.likelyContainsRows(subStr, superStr), where);
+            assertEquals(medium[2], engine.likelyContainsWords(subStr, superStr), where);
+            assertEquals(medium[3], engine.likelyMatches(subStr, superStr), where);
+            assertEquals(high[0], engine.highlyLikelyContains(subStr, superStr), where);
+            assertEquals(high[1], engine.highlyLikelyContainsRows(subStr, superStr), where);
+            assertEquals(high[2], engine.highlyLikelyContainsWords(subStr, superStr), where);
+            assertEquals(high[3], engine.highlyLikelyMatches(subStr, superStr), where);
+        }
+        assertTrue(likely[0] > 0 && likely[1] > 0);
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * The baseline path of calcStrDist which other implementations are compared with:
+ * the whole table of choices, calculated by ColumnDp column by column.
+ */
+final class FullTable {
+    final CompiledPattern pattern;
+    final IndexedText text;
+    final int[] lastRow;
+    final byte[] choices;
+
+    FullTable(StrDistEngine engine, String subStr, String superStr, StrDist.SearchBorder left, boolean doSubtractIfLongSameSeq) {
+        this(engine, engine.compile(subStr), engine.indexText(superStr), left, doSubtractIfLongSameSeq);
+    }
+
+    FullTable(StrDistEngine engine, CompiledPattern pattern, IndexedText text, StrDist.SearchBorder left, boolean doSubtractIfLongSameSeq) {
+        this.pattern = pattern;
+        this.text = text;
+        String subStr = pattern.subStr;
+        String superStr = text.superStr;
+        int n = subStr.length();
+        boolean[] stopHere = text.stopHere(left);
+        lastRow = new int[superStr.length() + 1];
+        choices = new byte[superStr.length() * (n + 1)];
+        ColumnDp columns = new ColumnDp(engine.charsDist(), subStr, pattern.trivDelCosts, pattern.costDelTwo, doSubtractIfLongSameSeq);
+        lastRow[0] = columns.values()[n];
+        for (int j = 1; j <= superStr.length(); j++) {
+            lastRow[j] = columns.nextColumn(superStr.charAt(j-1), text.trivInsCosts[j-1], text.costInsTwo[j-1], stopHere[j]);
+            System.arraycopy(columns.choices(), 0, choices, (j - 1) * (n + 1), n + 1);
+        }
+    }
+
+    /**
+     * @return the same as calcStrDist with doRestoreWay, when its trivial search fails
+     */
+    StrDist.DistResInfo result(StrDist.SearchBorder left, StrDist.SearchBorder right) {
+        return new StrDist.DistResInfo(pattern.subStr, text, lastRow, choices, left, right, true);
+    }
+
+    /**
+     * @return calcStrDist by the baseline path (trivial search, then the whole table by ColumnDp);
+     * engine never runs WavefrontDp and pattern is shorter than vector kernel needs, so the engine itself takes that path
+     */
+    static StrDist.DistResInfo calcStrDist(StrDistEngine engine, String subStr, String superStr,
+                                          StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtractIfLongSameSeq) {
+        if (DpKernel.VECTORIZED != null && subStr.length() >= DpKernel.VECTORIZED.minLength()) {
+            throw new IllegalArgumentException("pattern is too long for the baseline path");
+        }
+        return engine.calcStrDist(subStr, superStr, left, right, true, doSubtractIfLongSameSeq);
+    }
+
+    /**
+     * @return engine which never calculates DP by WavefrontDp
+     */
+    static StrDistEngine sequentialEngine() {
+        return new StrDistEngine(Long.MAX_VALUE);
+    }
+}
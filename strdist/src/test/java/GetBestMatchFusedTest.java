@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * getBestMatchFused and getBestMatch___ against the original cascade of four calcStrDist calls
+ */
+class GetBestMatchFusedTest {
+    private final StrDistEngine engine = new StrDistEngine();
+
+    @Test
+    void fusedHasResultOfCascade() {
+        Random rnd = new Random(12);
+        int upperCaseSteps = 0;
+        for (int t = 0; t < 200; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(t % 4 == 0 ? 80 : 12));
+            String subStr = TestTexts.pattern(rnd, superStr, 15);
+            if (t % 3 == 0) {
+                subStr = TestTexts.mistype(rnd, subStr.toLowerCase(Locale.ROOT), 1 + rnd.nextInt(3));
+            }
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    for (boolean doRestoreWay : new boolean[]{false, true}) {
+                        String where = subStr + " in " + superStr + ", " + left + "-" + right + ", " + doRestoreWay;
+                        Cascade cascade = new Cascade(subStr, superStr, left, right, doRestoreWay);
+                        if (cascade.lastStepReached) {
+                            upperCaseSteps++;
+                        }
+                        assertSameResult(cascade.result, engine.getBestMatch___(subStr, superStr, left, right, doRestoreWay), where);
+                        assertSameResult(cascade.result, engine.getBestMatchFused(subStr, superStr, left, right, doRestoreWay), where);
+                    }
+                }
+            }
+        }
+        assertTrue(upperCaseSteps > 0);
+    }
+
+    /**
+     * The last step (upper case with penalty 75) calculates the same DP as the second one (upper case with penalty 25),
+     * so it's 50 worse than the second step, and the cascade keeps the best of the steps before it
+     */
+    @Test
+    void lastStepOfCascadeNeverWins() {
+        Random rnd = new Random(120);
+        int checked = 0;
+        for (int t = 0; t < 300; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(20));
+            String subStr = TestTexts.mistype(rnd, TestTexts.pattern(rnd, superStr, 15).toLowerCase(Locale.ROOT), rnd.nextInt(4));
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    Cascade cascade = new Cascade(subStr, superStr, left, right, false);
+                    if (cascade.lastStepReached) {
+                        String where = subStr + " in " + superStr + ", " + left + "-" + right;
+                        assertEquals(cascade.upperCase.dist + 50, cascade.lastStep.dist, where);
+                        assertTrue(cascade.lastStep.dist >= cascade.result.dist, where);
+                        checked++;
+                    }
+                }
+            }
+        }
+        assertTrue(checked > 0);
+    }
+
+    private static void assertSameResult(StrDist.DistResInfo expected, StrDist.DistResInfo actual, String where) {
+        assertEquals(expected.dist, actual.dist, where);
+        assertEquals(expected.matchLevel, actual.matchLevel, where);
+        assertEquals(expected.getDiffAsHtml(), actual.getDiffAsHtml(), where);
+    }
+
+    /**
+     * getBestMatch___ as it was before the last step was dropped, with results of its steps kept
+     */
+    private final class Cascade {
+        StrDist.DistResInfo result;
+        StrDist.DistResInfo upperCase;
+        StrDist.DistResInfo lastStep;
+        boolean lastStepReached;
+
+        Cascade(String substr, String str, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doRestoreWay) {
+            result = engine.calcStrDist(substr, str, left, right, doRestoreWay, false);
+            if (result.matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM)) {
+                return;
+            }
+            String substrUpper = substr.toUpperCase(Locale.ROOT);
+            String strUpper = str.toUpperCase(Locale.ROOT);
+            if (!substr.equals(substrUpper)) {
+                upperCase = new StrDist.DistResInfo(engine.calcStrDist(substrUpper, strUpper, left, right, doRestoreWay, false), 25);
+                if (upperCase.dist < result.dist) {
+                    result = upperCase;
+                    if (result.matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM)) {
+                        return;
+                    }
+                }
+            }
+            StrDist.DistResInfo subtract = new StrDist.DistResInfo(engine.calcStrDist(substr, str, left, right, doRestoreWay, true), 40);
+            if (subtract.dist < result.dist) {
+                result = subtract;
+                if (result.matchLevel.betterOrEqual(StrDist.MatchLevel.MEDIUM)) {
+                    return;
+                }
+            }
+            if (!substr.equals(substrUpper)) {
+                lastStepReached = true;
+                lastStep = new StrDist.DistResInfo(engine.calcStrDist(substrUpper, strUpper, left, right, doRestoreWay, false), 75);
+                if (lastStep.dist < result.dist) {
+                    result = lastStep;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * LinearSpaceAlignment against the baseline full table: the same distance and the same alignment
+ */
+class LinearSpaceAlignmentTest {
+    private final StrDistEngine engine = FullTable.sequentialEngine();
+
+    @Test
+    void sameAlignmentAsFullTable() {
+        Random rnd = new Random(4);
+        for (int t = 0; t < 100; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(100));
+            String subStr = TestTexts.pattern(rnd, superStr, 40);
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    check(subStr, superStr, left, right, rnd.nextBoolean());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tables larger than LEAF_CELLS, so the path is restored through crossing points of several levels of segments
+     */
+    @Test
+    void sameAlignmentAsFullTableOverSegments() {
+        Random rnd = new Random(44);
+        String superStr = TestTexts.text(rnd, 25_000);
+        for (int t = 0; t < 3; t++) {
+            String subStr = TestTexts.pattern(rnd, superStr, 45) + " " + TestTexts.pattern(rnd, superStr, 20);
+            check(subStr, superStr, TestTexts.BORDERS[rnd.nextInt(4)], TestTexts.BORDERS[rnd.nextInt(4)], t == 1);
+        }
+    }
+
+    /**
+     * Segments of the first level are wider than LEAF_CELLS too, so they are split again, and the sweeps of
+     * the inner level restore the columns which the outer level shares
+     */
+    @Test
+    void sameAlignmentAsFullTableOverTwoLevels() {
+        Random rnd = new Random(444);
+        String superStr = TestTexts.text(rnd, 40_000);
+        StringBuilder subStr = new StringBuilder();
+        while (subStr.length() < 400) {
+            subStr.append(TestTexts.mistype(rnd, TestTexts.pattern(rnd, superStr, 40), 2)).append(' ');
+        }
+        check(subStr.toString(), superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.ANYWHERE, false);
+    }
+
+    /**
+     * Only ties: every end and every path through the segments has the same cost, so the choice of crossing points
+     * must follow the same preferences as the full table
+     */
+    @Test
+    void sameTiesAsFullTable() {
+        String superStr = "a".repeat(300_000);
+        for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+            check("a".repeat(20), superStr, StrDist.SearchBorder.ANYWHERE, right, false);
+            check("aab".repeat(7), superStr, StrDist.SearchBorder.WHOLE_TEXT, right, false);
+        }
+    }
+
+    /**
+     * Pattern longer than the text, so most of it is deleted; and pattern which has nothing in common with the text
+     */
+    @Test
+    void deletionsAndMismatchesOverSegments() {
+        Random rnd = new Random(404);
+        String superStr = TestTexts.text(rnd, 350);
+        String longSubStr = superStr.substring(100) + TestTexts.text(rnd, 300);
+        check(longSubStr, superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false);
+        String digits = "0123456789 ".repeat(40_000);
+        for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+            check("ХАТА рядок", digits, left, StrDist.SearchBorder.ANYWHERE, left == StrDist.SearchBorder.ROW);
+        }
+    }
+
+    @Test
+    void singleCharPattern() {
+        for (String superStr : new String[]{"a", "b", "ba", "b a b", "\n"}) {
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    check("a", superStr, left, right, false);
+                }
+            }
+        }
+    }
+
+    private void check(String subStr, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right, boolean doSubtract) {
+        CompiledPattern pattern = engine.compile(subStr);
+        IndexedText text = engine.indexText(superStr);
+        StrDist.DistResInfo full = new FullTable(engine, pattern, text, left, doSubtract).result(left, right);
+        StrDist.DistResInfo res = new LinearSpaceAlignment(engine.charsDist(), pattern.subStr, text, pattern.trivDelCosts, pattern.costDelTwo,
+                text.stopHere(left), doSubtract).align(left, right);
+        String where = subStr + " in text of " + superStr.length() + ", " + left + "-" + right + ", " + doSubtract;
+        assertEquals(full.dist, res.dist, where);
+        assertEquals(full.commonSubToSuper, res.commonSubToSuper, where);
+        assertEquals(full.getDiffAsHtml(), res.getDiffAsHtml(), where);
+    }
+}
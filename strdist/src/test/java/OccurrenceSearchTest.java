@@ -0,0 +1,79 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * findBestK and findAll (@see OccurrenceSearch) against the baseline full-table calcStrDist
+ */
+class OccurrenceSearchTest {
+    private final StrDistEngine engine = FullTable.sequentialEngine();
+
+    @Test
+    void bestOfOneHasDistanceOfCalcStrDist() {
+        Random rnd = new Random(18);
+        for (int t = 0; t < 300; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(t % 3 == 0 ? 100 : 15));
+            String subStr = TestTexts.pattern(rnd, superStr, 15);
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    check(subStr, superStr, left, right, false, t % 2 == 0);
+                    check(subStr, superStr, left, right, true, t % 2 == 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * For short patterns the best path may be empty (the whole pattern deleted)
+     */
+    @Test
+    void emptyMatchIsReportedAsCalcStrDistDoes() {
+        String superStr = "the quick\nbrown fox\njumps";
+        for (String subStr : new String[]{".", ".«.", "x", "«"}) {
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    check(subStr, superStr, left, right, false, true);
+                }
+            }
+        }
+        List<Occurrence> all = engine.findAll(".", "fox", StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.WHOLE_TEXT, false, false, 100);
+        assertEquals(1, all.size(), all.toString());
+        assertEquals(9, all.get(0).result.dist);
+        assertEquals(all.get(0).start, all.get(0).end);
+    }
+
+    /**
+     * With doSubtractIfLongSameSeq DP gives exact occurrences dist below 0, while calcStrDist finds them trivially with 0
+     */
+    @Test
+    void exactOccurrenceHasZeroDistance() {
+        String superStr = "a quick brown fox, the quick brown fox";
+        List<Occurrence> best = engine.findBestK("quick brown", superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, true, true, 2);
+        assertEquals(2, best.size(), best.toString());
+        for (Occurrence occurrence : best) {
+            assertEquals(0, occurrence.result.dist);
+            assertEquals("quick brown", superStr.substring(occurrence.start, occurrence.end));
+        }
+        check("quick brown", superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, true, true);
+        check("quick brovn", superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, true, true);
+    }
+
+    private void check(String subStr, String superStr, StrDist.SearchBorder left, StrDist.SearchBorder right,
+                       boolean doSubtract, boolean doRestoreWay) {
+        StrDist.DistResInfo expected = FullTable.calcStrDist(engine, subStr, superStr, left, right, doSubtract);
+        List<Occurrence> best = engine.findBestK(subStr, superStr, left, right, doRestoreWay, doSubtract, 1);
+        String where = subStr + " in " + superStr + ", " + left + "-" + right + ", " + doSubtract;
+        assertEquals(1, best.size(), where);
+        assertEquals(expected.dist, best.get(0).result.dist, where);
+        List<Occurrence> all = engine.findAll(subStr, superStr, left, right, false, doSubtract, expected.dist + 1);
+        assertFalse(all.isEmpty(), where);
+        for (Occurrence occurrence : all) {
+            assertTrue(occurrence.result.dist <= expected.dist, where);
+        }
+    }
+}
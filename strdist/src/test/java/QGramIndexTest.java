@@ -0,0 +1,167 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * QGramIndex#calcStrDistBounded against the baseline full-table calcStrDist
+ */
+class QGramIndexTest {
+    private static final int[] MAX_DISTS = {10, 30, 60};
+
+    private final StrDistEngine engine = FullTable.sequentialEngine();
+
+    @Test
+    void sameDistanceBelowMaxDist() {
+        Random rnd = new Random(8);
+        for (int t = 0; t < 4; t++) {
+            String superStr = TestTexts.text(rnd, 300 + rnd.nextInt(700));
+            QGramIndex index = engine.buildQGramIndex(superStr, 3 + t % 2, t >= 2);
+            for (int p = 0; p < 60; p++) {
+                String subStr = TestTexts.pattern(rnd, superStr, 15);
+                for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                    for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                        boolean doSubtract = rnd.nextBoolean();
+                        StrDist.DistResInfo full = FullTable.calcStrDist(engine, subStr, superStr, left, right, doSubtract);
+                        for (int maxDist : MAX_DISTS) {
+                            StrDist.DistResInfo res = index.calcStrDistBounded(subStr, left, right, doSubtract, maxDist);
+                            String where = subStr + ", " + left + "-" + right + ", " + doSubtract + ", maxDist " + maxDist + ", q " + index.getQ();
+                            if (full.dist < maxDist) {
+                                assertEquals(full.dist, res.dist, where);
+                            } else {
+                                assertTrue(res.dist >= maxDist, where);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Matches at the very begin and the very end of the text, where windows of hits are cut by the text
+     */
+    @Test
+    void matchesAtEdgesOfText() {
+        Random rnd = new Random(81);
+        String superStr = "Hello, the quick brown fox " + TestTexts.text(rnd, 100) + " over the lazy dog";
+        for (boolean normalizeHomoglyphs : new boolean[]{false, true}) {
+            QGramIndex index = engine.buildQGramIndex(superStr, 3, normalizeHomoglyphs);
+            for (String subStr : new String[]{"Hello", "Helo, the", "hello the quick", "lazy dog", "the lazy dgo", "dog", "g", "H"}) {
+                checkAllBorders(index, subStr, superStr);
+            }
+        }
+    }
+
+    /**
+     * Texts with fewer than q chars which aren't folded out have no q-grams at all; patterns like that can't use the index
+     */
+    @Test
+    void textsAndPatternsWithoutQGrams() {
+        String[] texts = {
+                "- - -, ... (\"\") -- " + " . ".repeat(40),
+                "ab" + " , ".repeat(40),
+                "the quick brown fox jumps over the lazy dog ".repeat(3)
+        };
+        for (String superStr : texts) {
+            QGramIndex index = engine.buildQGramIndex(superStr, 4, false);
+            for (String subStr : new String[]{"ab", "fox", "- -", "a b", "the"}) {
+                checkAllBorders(index, subStr, superStr);
+            }
+        }
+    }
+
+    /**
+     * Latin and Cyrillic look-alikes get the same q-grams only with normalizeHomoglyphs; the results are the same either way
+     */
+    @Test
+    void homoglyphsWithAndWithoutNormalization() {
+        Random rnd = new Random(82);
+        String superStr = TestTexts.text(rnd, 150) + " сolor ВВС Color hellо ";
+        for (boolean normalizeHomoglyphs : new boolean[]{false, true}) {
+            QGramIndex index = engine.buildQGramIndex(superStr, 3, normalizeHomoglyphs);
+            for (String subStr : new String[]{"color", "COLOR", "ВВС Соlor", "BBC Color", "hello"}) {
+                checkAllBorders(index, subStr, superStr);
+            }
+        }
+    }
+
+    /**
+     * Many hits of the same q-grams, so that windows overlap and ranges are merged
+     */
+    @Test
+    void repeatedTextAndUnrelatedPatterns() {
+        String superStr = "Hello quick fox, ".repeat(60) + "the lazy dog";
+        QGramIndex index = engine.buildQGramIndex(superStr, 3, false);
+        for (String subStr : new String[]{"quick fox, Hello", "ox, Hel", "lazy dog", "рядок слово", "xyzxyzxyz"}) {
+            checkAllBorders(index, subStr, superStr);
+        }
+    }
+
+    @Test
+    void badArguments() {
+        assertThrows(IllegalArgumentException.class, () -> engine.buildQGramIndex("the quick brown fox", 0, false));
+        QGramIndex index = engine.buildQGramIndex("the quick brown fox", 3, false);
+        StrDistEngine other = new StrDistEngine();
+        // costs of the other engine may differ, so neither its texts nor its patterns are accepted
+        assertThrows(IllegalArgumentException.class, () -> other.buildQGramIndex(index.getText(), 3, false));
+        String superStr = "the quick brown fox ".repeat(10);
+        QGramIndex longIndex = engine.buildQGramIndex(superStr, 3, false);
+        CompiledPattern pattern = other.compile("quick brovn");
+        assertThrows(IllegalArgumentException.class, () ->
+                longIndex.calcStrDistBounded(pattern, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE, false, 30));
+    }
+
+    /**
+     * Only columns near windows of hits are calculated
+     */
+    @Test
+    void dpOnlyNearHits() {
+        Random rnd = new Random(83);
+        String superStr = TestTexts.text(rnd, 3000);
+        QGramIndex index = engine.buildQGramIndex(superStr, 4, false);
+        String subStr = "ХАТА quick рядок";
+        List<SearchStats> searches = new ArrayList<>();
+        StrDistInstrumentation.setListener(searches::add);
+        StrDist.DistResInfo res;
+        try {
+            res = index.calcStrDistBounded(subStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false, 10);
+        } finally {
+            StrDistInstrumentation.setListener(null);
+        }
+        StrDist.DistResInfo full = FullTable.calcStrDist(engine, subStr, superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false);
+        if (full.dist < 10) {
+            assertEquals(full.dist, res.dist);
+        } else {
+            assertTrue(res.dist >= 10);
+        }
+        assertEquals(1, searches.size());
+        long cells = (long) subStr.length() * superStr.length();
+        assertTrue(searches.get(0).getDpCells() < cells / 10, searches.get(0).getDpCells() + " of " + cells);
+    }
+
+    private void checkAllBorders(QGramIndex index, String subStr, String superStr) {
+        for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+            for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                for (boolean doSubtract : new boolean[]{false, true}) {
+                    StrDist.DistResInfo full = FullTable.calcStrDist(engine, subStr, superStr, left, right, doSubtract);
+                    for (int maxDist : MAX_DISTS) {
+                        StrDist.DistResInfo res = index.calcStrDistBounded(subStr, left, right, doSubtract, maxDist);
+                        String where = subStr + " in " + superStr + ", " + left + "-" + right + ", " + doSubtract + ", maxDist " + maxDist;
+                        if (full.dist < maxDist) {
+                            assertEquals(full.dist, res.dist, where);
+                            assertEquals(full.matchLevel, res.matchLevel, where);
+                        } else {
+                            assertTrue(res.dist >= maxDist, where);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ResultCache against the baseline full-table calcStrDist and the engine it wraps
+ */
+class ResultCacheTest {
+    private final StrDistEngine engine = FullTable.sequentialEngine();
+
+    @Test
+    void sameResultsAsEngine() {
+        Random rnd = new Random(25);
+        ResultCache cache = ResultCache.withMaxEntries(engine, 10_000);
+        List<String[]> pairs = new ArrayList<>();
+        for (int t = 0; t < 40; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(40));
+            pairs.add(new String[]{TestTexts.pattern(rnd, superStr, 15), superStr});
+        }
+        for (int round = 0; round < 2; round++) {
+            for (String[] pair : pairs) {
+                // blanks around strings are trimmed by engine, so they don't make other keys
+                String subStr = (round == 0 ? pair[0] : " " + pair[0] + "\n");
+                String superStr = pair[1];
+                for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                    for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                        String where = subStr + " in " + superStr + ", " + left + "-" + right;
+                        for (boolean doSubtract : new boolean[]{false, true}) {
+                            StrDist.DistResInfo full = FullTable.calcStrDist(engine, pair[0], superStr, left, right, doSubtract);
+                            assertSameResult(full, cache.calcStrDist(subStr, superStr, left, right, true, doSubtract), where);
+                            assertEquals(full.dist, cache.calcStrDist(subStr, superStr, left, right, false, doSubtract).dist, where);
+                            StrDist.DistResInfo bounded = cache.calcStrDistBounded(subStr, superStr, left, right, doSubtract, 30);
+                            assertTrue(full.dist < 30 ? bounded.dist == full.dist : bounded.dist >= 30, where);
+                        }
+                        assertSameResult(engine.getBestMatch___(pair[0], superStr, left, right, true),
+                                cache.getBestMatch___(subStr, superStr, left, right, true), where);
+                        assertSameResult(engine.getBestMatchFused(pair[0], superStr, left, right, false),
+                                cache.getBestMatchFused(subStr, superStr, left, right, false), where);
+                    }
+                }
+            }
+        }
+        ResultCache.Stats stats = cache.getStats();
+        assertEquals(stats.misses, stats.hits);
+        assertEquals(0, stats.evictions);
+    }
+
+    @Test
+    void boundsAreKept() {
+        Random rnd = new Random(251);
+        ResultCache byEntries = ResultCache.withMaxEntries(engine, 100);
+        ResultCache byBytes = ResultCache.withMaxBytes(engine, 50_000);
+        for (int t = 0; t < 1000; t++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(40));
+            String subStr = TestTexts.pattern(rnd, superStr, 15);
+            byEntries.calcStrDist(subStr, superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false, false);
+            byBytes.calcStrDist(subStr, superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, true, false);
+        }
+        ResultCache.Stats entries = byEntries.getStats();
+        assertTrue(entries.size <= 100 && entries.evictions > 0, entries.toString());
+        ResultCache.Stats bytes = byBytes.getStats();
+        assertTrue(bytes.weight <= 50_000 && bytes.evictions > 0, bytes.toString());
+        byBytes.clear();
+        assertEquals(0, byBytes.getStats().size);
+    }
+
+    @Test
+    void concurrentReadersGetResultsOfEngine() throws Exception {
+        Random rnd = new Random(252);
+        ResultCache cache = ResultCache.withMaxEntries(engine, 64);
+        String[][] pairs = new String[100][];
+        int[] expected = new int[pairs.length];
+        for (int k = 0; k < pairs.length; k++) {
+            String superStr = TestTexts.text(rnd, 1 + rnd.nextInt(30));
+            pairs[k] = new String[]{TestTexts.pattern(rnd, superStr, 15), superStr};
+            expected[k] = engine.calcStrDist(pairs[k][0], superStr, StrDist.SearchBorder.ROW, StrDist.SearchBorder.ANYWHERE, false, true).dist;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                long seed = w;
+                futures.add(pool.submit(() -> {
+                    Random r = new Random(seed);
+                    for (int t = 0; t < 5000; t++) {
+                        int k = r.nextInt(pairs.length);
+                        assertEquals(expected[k], cache.calcStrDist(pairs[k][0], pairs[k][1],
+                                StrDist.SearchBorder.ROW, StrDist.SearchBorder.ANYWHERE, false, true).dist);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        ResultCache.Stats stats = cache.getStats();
+        assertEquals(20_000, stats.hits + stats.misses);
+        assertTrue(stats.size <= 64, stats.toString());
+    }
+
+    /**
+     * Operation, borders, flags and maxDist are parts of the key, and so is the split of chars between pattern and text
+     */
+    @Test
+    void keysDoNotMixCalls() {
+        ResultCache cache = ResultCache.withMaxEntries(engine, 1000);
+        StrDist.SearchBorder word = StrDist.SearchBorder.WORD;
+        StrDist.SearchBorder anywhere = StrDist.SearchBorder.ANYWHERE;
+        for (int round = 0; round < 2; round++) {
+            String[][] pairs = {{"ab", "c quick fox"}, {"abc", "quick fox"}, {"ab c", "quick fox"}};
+            for (String[] pair : pairs) {
+                String where = pair[0] + " in " + pair[1];
+                assertSameResult(engine.calcStrDist(pair[0], pair[1], word, word, true, false), cache.calcStrDist(pair[0], pair[1], word, word, true, false), where);
+                assertEquals(engine.calcStrDist(pair[0], pair[1], word, anywhere, true, false).dist, cache.calcStrDist(pair[0], pair[1], word, anywhere, true, false).dist, where);
+                assertEquals(engine.calcStrDist(pair[0], pair[1], word, word, false, true).dist, cache.calcStrDist(pair[0], pair[1], word, word, false, true).dist, where);
+                for (int maxDist : new int[]{1, 30}) {
+                    assertEquals(engine.calcStrDistBounded(pair[0], pair[1], word, word, false, maxDist).dist,
+                            cache.calcStrDistBounded(pair[0], pair[1], word, word, false, maxDist).dist, where);
+                }
+                assertSameResult(engine.getBestMatch___(pair[0], pair[1], word, word, true), cache.getBestMatch___(pair[0], pair[1], word, word, true), where);
+                assertSameResult(engine.getBestMatchFused(pair[0], pair[1], word, word, true), cache.getBestMatchFused(pair[0], pair[1], word, word, true), where);
+            }
+            ResultCache.Stats stats = cache.getStats();
+            assertEquals(3 * 7, stats.size, stats.toString());
+            assertEquals(3 * 7, stats.misses, stats.toString());
+            assertEquals(round * 3 * 7, stats.hits, stats.toString());
+        }
+    }
+
+    /**
+     * Engine doesn't search blank pattern or text, so such calls are neither cached nor counted
+     */
+    @Test
+    void blankCallsAreNotCached() {
+        ResultCache cache = ResultCache.withMaxEntries(engine, 100);
+        StrDist.SearchBorder anywhere = StrDist.SearchBorder.ANYWHERE;
+        for (String[] pair : new String[][]{{" ", "fox"}, {"fox", ""}, {"", " \n "}}) {
+            assertEquals(engine.calcStrDist(pair[0], pair[1], anywhere, anywhere, true, false).dist,
+                    cache.calcStrDist(pair[0], pair[1], anywhere, anywhere, true, false).dist);
+            assertEquals(engine.getBestMatch___(pair[0], pair[1], anywhere, anywhere, false).dist,
+                    cache.getBestMatch___(pair[0], pair[1], anywhere, anywhere, false).dist);
+        }
+        ResultCache.Stats stats = cache.getStats();
+        assertEquals(0, stats.size + stats.hits + stats.misses, stats.toString());
+    }
+
+    /**
+     * With 16 entries there is only one segment, so the least recently used entry is the one evicted
+     */
+    @Test
+    void leastRecentlyUsedIsEvicted() {
+        ResultCache cache = ResultCache.withMaxEntries(engine, 16);
+        StrDist.SearchBorder anywhere = StrDist.SearchBorder.ANYWHERE;
+        for (int k = 0; k < 16; k++) {
+            cache.calcStrDist("fox" + k, "the quick brown fox", anywhere, anywhere, false, false);
+        }
+        cache.calcStrDist("fox0", "the quick brown fox", anywhere, anywhere, false, false);
+        cache.calcStrDist("fox16", "the quick brown fox", anywhere, anywhere, false, false);
+        ResultCache.Stats stats = cache.getStats();
+        assertEquals(16, stats.size);
+        assertEquals(1, stats.evictions);
+        assertEquals(1, stats.hits);
+        // fox0 was used later than fox1, so fox1 is gone
+        cache.calcStrDist("fox0", "the quick brown fox", anywhere, anywhere, false, false);
+        assertEquals(2, cache.getStats().hits);
+        cache.calcStrDist("fox1", "the quick brown fox", anywhere, anywhere, false, false);
+        assertEquals(2, cache.getStats().hits);
+    }
+
+    /**
+     * Distance-only results weigh ENTRY_BYTES; result heavier than the whole bound is returned but not kept
+     */
+    @Test
+    void weightsOfResults() {
+        ResultCache cache = ResultCache.withMaxBytes(engine, ResultCache.ENTRY_BYTES * 16);
+        StrDist.SearchBorder anywhere = StrDist.SearchBorder.ANYWHERE;
+        String superStr = "the quick brown fox ".repeat(200);
+        StrDist.DistResInfo restored = cache.calcStrDist("quick brovn", superStr, anywhere, anywhere, true, false);
+        assertSameResult(engine.calcStrDist("quick brovn", superStr, anywhere, anywhere, true, false), restored, "restored");
+        assertEquals(0, cache.getStats().size);
+        for (int k = 0; k < 4; k++) {
+            cache.calcStrDist("quick brovn" + k, superStr, anywhere, anywhere, false, false);
+        }
+        ResultCache.Stats stats = cache.getStats();
+        assertEquals(4, stats.size);
+        assertEquals(4L * ResultCache.ENTRY_BYTES, stats.weight);
+        assertEquals(0, stats.evictions);
+        StrDist.DistResInfo hit = cache.calcStrDist("quick brovn0", superStr, anywhere, anywhere, false, false);
+        StrDist.DistResInfo expected = engine.calcStrDist("quick brovn0", superStr, anywhere, anywhere, false, false);
+        assertEquals(expected.dist, hit.dist);
+        assertEquals(expected.matchLevel, hit.matchLevel);
+        cache.clear();
+        stats = cache.getStats();
+        assertEquals(0, stats.size + stats.weight);
+        assertEquals(1, stats.hits);
+    }
+
+    @Test
+    void badBounds() {
+        assertThrows(IllegalArgumentException.class, () -> ResultCache.withMaxEntries(engine, 0));
+        assertThrows(IllegalArgumentException.class, () -> ResultCache.withMaxBytes(engine, ResultCache.ENTRY_BYTES - 1));
+    }
+
+    private static void assertSameResult(StrDist.DistResInfo expected, StrDist.DistResInfo actual, String where) {
+        assertEquals(expected.dist, actual.dist, where);
+        assertEquals(expected.matchLevel, actual.matchLevel, where);
+        assertEquals(expected.getDiffAsHtml(), actual.getDiffAsHtml(), where);
+    }
+}
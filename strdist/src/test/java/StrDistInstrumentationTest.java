@@ -0,0 +1,159 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stats which StrDistListener receives (@see StrDistInstrumentation); JFR doesn't record while tests run
+ */
+class StrDistInstrumentationTest {
+    private final StrDistEngine engine = FullTable.sequentialEngine();
+    private final List<SearchStats> searches = new ArrayList<>();
+    private final List<DiffFormat> renders = new ArrayList<>();
+    private final StrDistListener listener = new StrDistListener() {
+        @Override
+        public void onSearch(SearchStats stats) {
+            searches.add(stats);
+        }
+
+        @Override
+        public void onRender(DiffFormat.Kind kind, DiffFormat format, long nanos) {
+            assertEquals(DiffFormat.Kind.ALIGNED, kind);
+            assertTrue(nanos >= 0);
+            renders.add(format);
+        }
+    };
+
+    @AfterEach
+    void removeListener() {
+        StrDistInstrumentation.setListener(null);
+    }
+
+    @Test
+    void calcStrDistRunsOneDp() {
+        StrDistInstrumentation.setListener(listener);
+        StrDist.DistResInfo res = engine.calcStrDist("quick brovn", "the quick brown fox", StrDist.SearchBorder.WORD, StrDist.SearchBorder.ANYWHERE, true, false);
+        SearchStats stats = single();
+        assertEquals(SearchStats.Operation.CALC_STR_DIST, stats.getOperation());
+        assertEquals(11, stats.getPatternLength());
+        assertEquals(19, stats.getTextLength());
+        assertEquals(StrDist.SearchBorder.WORD, stats.getLeft());
+        assertEquals(StrDist.SearchBorder.ANYWHERE, stats.getRight());
+        assertTrue(stats.isDoRestoreWay());
+        assertFalse(stats.isDoSubtractIfLongSameSeq());
+        assertFalse(stats.isTrivialHit());
+        assertEquals(1, stats.getDpRuns());
+        assertEquals(11 * 19, stats.getDpCells());
+        assertTrue(stats.getTableBytes() > 0);
+        assertEquals(SearchStats.Stage.PLAIN, stats.getWinner());
+        assertEquals(res.dist, stats.getDist());
+        assertTrue(stats.getTotalNanos() >= stats.getRestoreNanos());
+
+        assertTrue(renders.isEmpty());
+        res.getDiffAsHtml();
+        assertEquals(1, renders.size());
+        assertSame(DiffFormat.HTML, renders.get(0));
+    }
+
+    @Test
+    void exactOccurrenceIsTrivialHit() {
+        StrDistInstrumentation.setListener(listener);
+        StrDist.DistResInfo res = engine.calcStrDistBounded("brown", "the quick brown fox", StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, true, 30);
+        SearchStats stats = single();
+        assertEquals(SearchStats.Operation.CALC_STR_DIST_BOUNDED, stats.getOperation());
+        assertTrue(stats.isDoSubtractIfLongSameSeq());
+        assertTrue(stats.isTrivialHit());
+        assertEquals(0, stats.getDpRuns());
+        assertEquals(0, stats.getDpCells());
+        assertEquals(SearchStats.Stage.TRIVIAL, stats.getWinner());
+        assertEquals(0, res.dist);
+        assertEquals(0, stats.getDist());
+    }
+
+    /**
+     * Plain DP isn't good enough, and upper-cased pattern occurs in upper-cased text exactly
+     */
+    @Test
+    void cascadeWonByUpperCase() {
+        StrDistInstrumentation.setListener(listener);
+        StrDist.SearchBorder anywhere = StrDist.SearchBorder.ANYWHERE;
+        StrDist.DistResInfo res = engine.getBestMatch___("quick brown fox", "THE QUICK BROWN FOX JUMPS", anywhere, anywhere, false);
+        SearchStats stats = single();
+        assertEquals(SearchStats.Operation.GET_BEST_MATCH, stats.getOperation());
+        assertTrue(stats.isTrivialHit());
+        assertEquals(1, stats.getDpRuns());
+        assertEquals(15 * 25, stats.getDpCells());
+        assertEquals(SearchStats.Stage.UPPER_CASE, stats.getWinner());
+        assertEquals(25, res.dist);
+        assertEquals(25, stats.getDist());
+
+        res = engine.getBestMatchFused("quick brown fox", "THE QUICK BROWN FOX JUMPS", anywhere, anywhere, false);
+        stats = single();
+        assertEquals(SearchStats.Operation.GET_BEST_MATCH_FUSED, stats.getOperation());
+        assertTrue(stats.isTrivialHit());
+        // one sweep with lanes as it is and with doSubtractIfLongSameSeq, as upper case is answered trivially
+        assertEquals(1, stats.getDpRuns());
+        assertEquals(2 * 15 * 25, stats.getDpCells());
+        assertEquals(SearchStats.Stage.UPPER_CASE, stats.getWinner());
+        assertEquals(25, res.dist);
+    }
+
+    /**
+     * Long common sequence after a typo at the begin: only doSubtractIfLongSameSeq makes it good enough
+     */
+    @Test
+    void cascadeWonBySubtract() {
+        String subStr = "the quick brown fox jumps over";
+        String superStr = "hquick brown fox jumps over";
+        StrDist.SearchBorder whole = StrDist.SearchBorder.WHOLE_TEXT;
+        int subtract = engine.calcStrDist(subStr, superStr, whole, whole, false, true).dist;
+        StrDistInstrumentation.setListener(listener);
+        StrDist.DistResInfo res = engine.getBestMatch___(subStr, superStr, whole, whole, false);
+        SearchStats stats = single();
+        assertEquals(SearchStats.Operation.GET_BEST_MATCH, stats.getOperation());
+        assertFalse(stats.isTrivialHit());
+        assertFalse(stats.isDoSubtractIfLongSameSeq());
+        assertEquals(3, stats.getDpRuns());
+        assertEquals(3 * 30 * 27, stats.getDpCells());
+        assertEquals(SearchStats.Stage.SUBTRACT, stats.getWinner());
+        assertEquals(res.dist, stats.getDist());
+        assertEquals(subtract + 40, res.dist);
+
+        engine.getBestMatchFused(subStr, superStr, whole, whole, false);
+        stats = single();
+        assertEquals(SearchStats.Operation.GET_BEST_MATCH_FUSED, stats.getOperation());
+        assertEquals(1, stats.getDpRuns());
+        assertEquals(3 * 30 * 27, stats.getDpCells());
+        assertEquals(SearchStats.Stage.SUBTRACT, stats.getWinner());
+        assertEquals(res.dist, stats.getDist());
+    }
+
+    @Test
+    void nothingIsRecordedWithoutListener() {
+        StrDistInstrumentation.setListener(null);
+        CompiledPattern pattern = engine.compile("quick");
+        IndexedText text = engine.indexText("the quick brown fox");
+        assertNull(StrDistInstrumentation.begin(SearchStats.Operation.CALC_STR_DIST, pattern, text,
+                StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE, true, false));
+        assertNull(StrDistInstrumentation.beginRender());
+
+        // listener which is set later doesn't get searches which were done before
+        StrDist.DistResInfo res = engine.getBestMatch___("quick brovn", "the quick brown fox", StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, true);
+        StrDistInstrumentation.setListener(listener);
+        assertTrue(searches.isEmpty());
+        res.getDiffAsHtml();
+        assertEquals(List.of(DiffFormat.HTML), renders);
+    }
+
+    private SearchStats single() {
+        assertEquals(1, searches.size(), searches.toString());
+        return searches.remove(0);
+    }
+}
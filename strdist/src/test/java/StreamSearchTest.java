@@ -0,0 +1,370 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * StreamSearch (by Reader, by session, over mapped file) against the baseline full-table calcStrDist
+ */
+class StreamSearchTest {
+    private final StrDistEngine engine = FullTable.sequentialEngine();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findBestHasDistanceOfCalcStrDist() throws IOException {
+        Random rnd = new Random(15);
+        for (int t = 0; t < 150; t++) {
+            String superStr = blanks(rnd) + TestTexts.text(rnd, 1 + rnd.nextInt(60)) + blanks(rnd);
+            String subStr = TestTexts.pattern(rnd, superStr.trim(), 15);
+            Path file = dir.resolve("text" + t + ".txt");
+            Files.writeString(file, superStr, StandardCharsets.UTF_8);
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    if (left == StrDist.SearchBorder.WORD && right == StrDist.SearchBorder.ROW) {
+                        continue;
+                    }
+                    boolean doSubtract = (t % 2 == 1);
+                    int expected = FullTable.calcStrDist(engine, subStr, superStr, left, right, doSubtract).dist;
+                    StreamSearch search = engine.streamSearch(subStr, left, right, doSubtract).setChunkSize(1 + rnd.nextInt(40));
+                    String where = subStr + " in " + superStr + ", " + left + "-" + right + ", " + doSubtract;
+                    assertEquals(expected, search.findBest(new StringReader(superStr)).result.dist, where);
+                    assertEquals(expected, search.findBestMapped(file, StandardCharsets.UTF_8).result.dist, where);
+
+                    StreamSearch.Session session = search.newSession();
+                    for (int from = 0; from < superStr.length(); ) {
+                        int to = Math.min(superStr.length(), from + 1 + rnd.nextInt(10));
+                        session.append(superStr.substring(from, to));
+                        from = to;
+                    }
+                    assertEquals(expected, session.best().result.dist, where);
+                }
+            }
+        }
+    }
+
+    @Test
+    void findAllHasTheBestMatchAndDoesNotDependOnRegions() throws IOException {
+        Random rnd = new Random(16);
+        for (int t = 0; t < 40; t++) {
+            String superStr = TestTexts.text(rnd, 100 + rnd.nextInt(300));
+            String subStr = TestTexts.pattern(rnd, superStr, 15);
+            Path file = dir.resolve("all" + t + ".txt");
+            Files.writeString(file, superStr, StandardCharsets.UTF_8);
+            int maxDist = 30;
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    if (left == StrDist.SearchBorder.WORD && right == StrDist.SearchBorder.ROW) {
+                        continue;
+                    }
+                    boolean doSubtract = (t % 2 == 1);
+                    StreamSearch search = engine.streamSearch(subStr, left, right, doSubtract).setChunkSize(1 + rnd.nextInt(100));
+                    List<String> read = new ArrayList<>();
+                    int min = Integer.MAX_VALUE;
+                    List<StreamSearch.Match> matches = new ArrayList<>();
+                    search.findAll(new StringReader(superStr), maxDist, matches::add);
+                    for (StreamSearch.Match match : matches) {
+                        assertTrue(match.result.dist < maxDist);
+                        min = Math.min(min, match.result.dist);
+                        read.add(match.toString());
+                    }
+                    List<String> mapped = new ArrayList<>();
+                    search.setRegionSize(200 + rnd.nextInt(300))
+                            .findAllMapped(file, StandardCharsets.UTF_8, maxDist, match -> mapped.add(match.toString()));
+                    String where = subStr + " in " + superStr + ", " + left + "-" + right + ", " + doSubtract;
+                    assertEquals(read, mapped, where);
+                    int best = FullTable.calcStrDist(engine, subStr, superStr, left, right, doSubtract).dist;
+                    if (best < maxDist) {
+                        assertEquals(best, min, where);
+                    } else {
+                        assertTrue(matches.isEmpty(), where);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * With doSubtractIfLongSameSeq DP gives exact occurrences dist below 0, while calcStrDist finds them trivially with 0
+     */
+    @Test
+    void exactOccurrenceHasZeroDistance() throws IOException {
+        String superStr = "a quick brown fox, the quick brown fox";
+        StreamSearch search = engine.streamSearch("quick brown", StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, true);
+        StreamSearch.Match best = search.findBest(new StringReader(superStr));
+        assertEquals(0, best.result.dist);
+        assertEquals(2, best.start);
+        assertEquals(13, best.end);
+        List<StreamSearch.Match> matches = new ArrayList<>();
+        search.findAll(new StringReader(superStr), 30, matches::add);
+        assertEquals(2, matches.size(), matches.toString());
+        for (StreamSearch.Match match : matches) {
+            assertEquals(0, match.result.dist);
+            assertEquals("quick brown", superStr.substring((int) match.start, (int) match.end));
+        }
+    }
+
+    /**
+     * Buffer of one char can't hold supplementary char, which the decoder of mapped UTF-8 text never splits
+     */
+    @Test
+    void mappedSearchReadsSupplementaryCharsByOneChar() throws IOException {
+        String superStr = "ab \uD83D\uDE00 fox \uD83D\uDE00";
+        Path file = dir.resolve("emoji.txt");
+        Files.writeString(file, superStr, StandardCharsets.UTF_8);
+        StreamSearch search = engine.streamSearch("fox", StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false).setChunkSize(1);
+        StreamSearch.Match expected = search.findBest(new StringReader(superStr));
+        StreamSearch.Match mapped = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> search.findBestMapped(file, StandardCharsets.UTF_8));
+        assertEquals(expected.toString(), mapped.toString());
+        assertEquals("fox", superStr.substring((int) mapped.start, (int) mapped.end));
+        List<StreamSearch.Match> matches = new ArrayList<>();
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> search.setRegionSize(2).findAllMapped(file, StandardCharsets.UTF_8, 30, matches::add));
+        assertEquals(List.of(expected.toString()), matches.stream().map(StreamSearch.Match::toString).toList());
+    }
+
+    /**
+     * Exact occurrences cut by chunks at every position, and patterns which overlap themselves (failure function of KMP)
+     */
+    @Test
+    void exactOccurrenceAcrossChunks() throws IOException {
+        String[][] cases = {
+                {"abab", "xx abababab ab"}, {"aab", "aaaab aab"}, {"quick brown", "the quick  quick brown fox"}, {"fox", "fox"}
+        };
+        for (String[] c : cases) {
+            for (StrDist.SearchBorder left : new StrDist.SearchBorder[]{StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.WORD}) {
+                StrDist.SearchBorder right = left;
+                int expected = FullTable.calcStrDist(engine, c[0], c[1], left, right, false).dist;
+                StreamSearch.Match first = null;
+                for (int chunkSize = 1; chunkSize <= c[1].length(); chunkSize++) {
+                    StreamSearch.Match best = engine.streamSearch(c[0], left, right, false).setChunkSize(chunkSize)
+                            .findBest(new StringReader(c[1]));
+                    String where = c[0] + " in " + c[1] + ", " + left + ", chunk " + chunkSize;
+                    assertEquals(expected, best.result.dist, where);
+                    if (first == null) {
+                        first = best;
+                    }
+                    assertEquals(first.toString(), best.toString(), where);
+                }
+                if (expected == 0 && left == StrDist.SearchBorder.ANYWHERE) {
+                    // the first occurrence, as found by calcStrDist
+                    assertEquals(c[1].indexOf(c[0]), first.start, c[0] + " in " + c[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Offsets count the blank chars which are trimmed; blank text has no match
+     */
+    @Test
+    void blankCharsAroundText() throws IOException {
+        StreamSearch search = engine.streamSearch("brown fox", StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false);
+        StreamSearch.Match best = search.findBest(new StringReader(" \n\t quick brown fox \r\n "));
+        assertEquals(10, best.start);
+        assertEquals(19, best.end);
+        assertNull(search.findBest(new StringReader("")));
+        assertNull(search.findBest(new StringReader(" \n\t ")));
+        List<StreamSearch.Match> matches = new ArrayList<>();
+        search.findAll(new StringReader(" \n "), 30, matches::add);
+        assertTrue(matches.isEmpty());
+    }
+
+    /**
+     * Whole text which is like the pattern (e.g. differs by case) gets dist by special rules of calcStrDist
+     */
+    @Test
+    void wholeTextLikePattern() throws IOException {
+        for (String superStr : new String[]{"FOX", "Fox", " fox ", "fox.", "fo x"}) {
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    if (left == StrDist.SearchBorder.WORD && right == StrDist.SearchBorder.ROW) {
+                        continue;
+                    }
+                    int expected = FullTable.calcStrDist(engine, "fox", superStr, left, right, false).dist;
+                    StreamSearch.Match best = engine.streamSearch("fox", left, right, false).setChunkSize(2)
+                            .findBest(new StringReader(superStr));
+                    assertEquals(expected, best.result.dist, superStr + ", " + left + "-" + right);
+                }
+            }
+        }
+    }
+
+    /**
+     * InputStream and file are decoded by charset; results are the same as of Reader over the decoded text
+     */
+    @Test
+    void inputStreamAndFileHaveResultsOfReader() throws IOException {
+        Random rnd = new Random(151);
+        String superStr = TestTexts.text(rnd, 300);
+        String subStr = TestTexts.pattern(rnd, superStr, 15);
+        Path file = dir.resolve("cp1251.txt");
+        Charset cp1251 = Charset.forName("windows-1251");
+        Files.writeString(file, superStr, cp1251);
+        StreamSearch search = engine.streamSearch(subStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.ANYWHERE, true).setChunkSize(7);
+        String expected = search.findBest(new StringReader(superStr)).toString();
+        assertEquals(expected, search.findBest(new ByteArrayInputStream(superStr.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8).toString());
+        assertEquals(expected, search.findBest(file, cp1251).toString());
+        List<String> all = new ArrayList<>();
+        search.findAll(new StringReader(superStr), 40, match -> all.add(match.toString()));
+        List<String> fromStream = new ArrayList<>();
+        search.findAll(new ByteArrayInputStream(superStr.getBytes(StandardCharsets.UTF_16)), StandardCharsets.UTF_16, 40,
+                match -> fromStream.add(match.toString()));
+        assertEquals(all, fromStream);
+    }
+
+    @Test
+    void badArguments() {
+        StrDist.SearchBorder word = StrDist.SearchBorder.WORD;
+        assertThrows(IllegalArgumentException.class, () -> engine.streamSearch(" \n", word, word, false));
+        assertThrows(IllegalArgumentException.class, () -> engine.streamSearch("fox", word, StrDist.SearchBorder.ROW, false));
+        StreamSearch search = engine.streamSearch("fox", word, word, false);
+        assertThrows(IllegalArgumentException.class, () -> search.setChunkSize(0));
+        assertThrows(IllegalArgumentException.class, () -> search.setRegionSize(0));
+    }
+
+    /**
+     * Regions of a few bytes cut multi-byte chars of UTF-8 and matches; every match is still reported once
+     */
+    @Test
+    void mappedRegionsCutCharsAndMatches() throws IOException {
+        Random rnd = new Random(161);
+        String superStr = "слово рядок " + TestTexts.text(rnd, 60) + " Текст пошук";
+        Path file = dir.resolve("regions.txt");
+        Files.writeString(file, superStr, StandardCharsets.UTF_8);
+        for (String subStr : new String[]{"рядок", "Текст пошук", "слово", "quick brown", "ХАТА"}) {
+            StreamSearch search = engine.streamSearch(subStr, StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.WORD, false).setChunkSize(3);
+            List<String> expected = new ArrayList<>();
+            search.findAll(new StringReader(superStr), 40, match -> expected.add(match.toString()));
+            for (int regionSize = 1; regionSize <= 9; regionSize++) {
+                List<String> mapped = new ArrayList<>();
+                search.setRegionSize(regionSize).findAllMapped(file, StandardCharsets.UTF_8, 40, match -> mapped.add(match.toString()));
+                assertEquals(expected, mapped, subStr + ", region " + regionSize);
+            }
+            assertEquals(search.findBest(new StringReader(superStr)).toString(), search.findBestMapped(file, StandardCharsets.UTF_8).toString());
+        }
+    }
+
+    /**
+     * Single-byte charsets are mapped by table, charsets with several bytes per char other than UTF-8 are read by Reader
+     */
+    @Test
+    void mappedSingleByteAndOtherCharsets() throws IOException {
+        Random rnd = new Random(162);
+        String superStr = " \n" + TestTexts.text(rnd, 200) + "\n ";
+        String subStr = TestTexts.pattern(rnd, superStr.trim(), 15);
+        StreamSearch search = engine.streamSearch(subStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, true).setRegionSize(50);
+        String expected = search.findBest(new StringReader(superStr)).toString();
+        List<String> expectedAll = new ArrayList<>();
+        search.findAll(new StringReader(superStr), 40, match -> expectedAll.add(match.toString()));
+        for (Charset charset : new Charset[]{Charset.forName("windows-1251"), Charset.forName("KOI8-U"), StandardCharsets.UTF_16}) {
+            Path file = dir.resolve("text-" + charset.name() + ".txt");
+            Files.writeString(file, superStr, charset);
+            assertEquals(expected, search.findBestMapped(file, charset).toString(), charset.name());
+            List<String> mapped = new ArrayList<>();
+            search.findAllMapped(file, charset, 40, match -> mapped.add(match.toString()));
+            assertEquals(expectedAll, mapped, charset.name());
+        }
+    }
+
+    @Test
+    void mappedBlankAndMalformedFiles() throws IOException {
+        StreamSearch search = engine.streamSearch("fox", StrDist.SearchBorder.ANYWHERE, StrDist.SearchBorder.ANYWHERE, false);
+        for (String blank : new String[]{"", " \r\n\t "}) {
+            Path file = dir.resolve("blank.txt");
+            Files.writeString(file, blank, StandardCharsets.UTF_8);
+            assertNull(search.findBestMapped(file, StandardCharsets.UTF_8));
+            List<StreamSearch.Match> matches = new ArrayList<>();
+            search.findAllMapped(file, StandardCharsets.UTF_8, 30, matches::add);
+            assertTrue(matches.isEmpty());
+        }
+        // malformed UTF-8 throws as it does when read by Reader
+        Path file = dir.resolve("malformed.txt");
+        Files.write(file, new byte[]{'a', ' ', 'f', 'o', 'x', ' ', (byte) 0xC3, ' ', 'b'});
+        assertThrows(CharacterCodingException.class, () -> search.findBest(file, StandardCharsets.UTF_8));
+        assertThrows(CharacterCodingException.class, () -> search.findBestMapped(file, StandardCharsets.UTF_8));
+        assertThrows(CharacterCodingException.class, () -> search.findAllMapped(file, StandardCharsets.UTF_8, 30, match -> { }));
+    }
+
+    /**
+     * best() after every single char is the result for the text so far: trailing blank chars and right borders
+     * which the next char decides (end of word or row) are speculative, and best() itself changes nothing
+     */
+    @Test
+    void sessionAfterEveryChar() throws IOException {
+        String superStr = "  fox\r\nfoxes fo x\n\nthe  fox. ";
+        for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+            for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                if (left == StrDist.SearchBorder.WORD && right == StrDist.SearchBorder.ROW) {
+                    continue;
+                }
+                for (boolean doSubtract : new boolean[]{false, true}) {
+                    StreamSearch search = engine.streamSearch("fox", left, right, doSubtract);
+                    StreamSearch.Session session = search.newSession();
+                    for (int k = 0; k < superStr.length(); k++) {
+                        session.append(superStr.charAt(k));
+                        String prefix = superStr.substring(0, k + 1);
+                        String where = prefix + ", " + left + "-" + right + ", " + doSubtract;
+                        StreamSearch.Match expected = search.findBest(new StringReader(prefix));
+                        StreamSearch.Match best = session.best();
+                        if (expected == null) {
+                            assertNull(best, where);
+                        } else {
+                            assertEquals(expected.toString(), best.toString(), where);
+                            assertEquals(expected.result.matchLevel, best.result.matchLevel, where);
+                            assertEquals(expected.toString(), session.best().toString(), where);
+                        }
+                        assertEquals(k + 1, session.length());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void sessionAppendsAreTheSame() {
+        String superStr = "the quick brown fox jumps over the lazy dog";
+        StreamSearch search = engine.streamSearch("lazy dgo", StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false);
+        StreamSearch.Session bySequence = search.newSession();
+        assertNull(bySequence.best());
+        StreamSearch.Session byChars = search.newSession();
+        StreamSearch.Session byArray = search.newSession();
+        char[] buf = ("<<" + superStr + ">>").toCharArray();
+        for (int from = 0; from < superStr.length(); from += 5) {
+            int to = Math.min(superStr.length(), from + 5);
+            bySequence.append(new StringBuilder(superStr.substring(from, to)));
+            for (int k = from; k < to; k++) {
+                byChars.append(superStr.charAt(k));
+            }
+            byArray.append(buf, from + 2, to - from);
+            assertEquals(String.valueOf(bySequence.best()), String.valueOf(byChars.best()));
+            assertEquals(String.valueOf(bySequence.best()), String.valueOf(byArray.best()));
+        }
+        assertEquals(superStr.length(), byArray.length());
+        assertEquals(FullTable.calcStrDist(engine, "lazy dgo", superStr, StrDist.SearchBorder.WORD, StrDist.SearchBorder.WORD, false).dist,
+                byArray.best().result.dist);
+    }
+
+    private static String blanks(Random rnd) {
+        return " \n\t".substring(0, rnd.nextInt(4));
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.Random;
+
+/**
+ * Random texts and patterns for differential tests: words of Latin and Cyrillic letters (with look-alikes of each other),
+ * separated by spaces, punctuation, quotes and line breaks; patterns are mostly cut from the text and then mistyped.
+ */
+final class TestTexts {
+    static final StrDist.SearchBorder[] BORDERS = StrDist.SearchBorder.values();
+
+    private static final String[] WORDS = {
+            "the", "quick", "brown", "fox", "Jumps", "over", "lazy", "dog", "a", "I", "x_y", "a.b", "3.14",
+            "рядок", "слово", "Текст", "пошук", "ХАТА", "сolor", "Color", "COLOR", "Hello", "hellо", "ВВС", "BBC"
+    };
+    private static final String[] SEPARATORS = {
+            " ", " ", " ", " ", ", ", ". ", "\n", "\r\n", "  \n ", "\t", " (", ") ", " \"", "\" ", " - ", "_", ".."
+    };
+    private static final String TYPOS = "abcdefoxyzАБВабвгоі .,\n";
+
+    private TestTexts() {
+    }
+
+    static String text(Random rnd, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < words; k++) {
+            if (k > 0) {
+                sb.append(SEPARATORS[rnd.nextInt(SEPARATORS.length)]);
+            }
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return piece of text (at most maxLength chars) with a few typos, or sometimes unrelated words
+     */
+    static String pattern(Random rnd, String text, int maxLength) {
+        String res;
+        if (rnd.nextInt(5) == 0) {
+            res = text(rnd, 1 + rnd.nextInt(3));
+        } else {
+            int len = 1 + rnd.nextInt(Math.min(maxLength, text.length()));
+            int from = rnd.nextInt(text.length() - len + 1);
+            res = mistype(rnd, text.substring(from, from + len), rnd.nextInt(4));
+        }
+        res = res.trim();
+        if (res.length() > maxLength) {
+            res = res.substring(0, maxLength).trim();
+        }
+        return res.isEmpty() ? "fox" : res;
+    }
+
+    /**
+     * @return s with edits random replacements, insertions, deletions, swaps or case changes
+     */
+    static String mistype(Random rnd, String s, int edits) {
+        StringBuilder sb = new StringBuilder(s);
+        for (int k = 0; k < edits && sb.length() > 1; k++) {
+            int i = rnd.nextInt(sb.length());
+            char c = TYPOS.charAt(rnd.nextInt(TYPOS.length()));
+            switch (rnd.nextInt(5)) {
+                case 0 -> sb.setCharAt(i, c);
+                case 1 -> sb.insert(i, c);
+                case 2 -> sb.deleteCharAt(i);
+                case 3 -> {
+                    if (i + 1 < sb.length()) {
+                        char t = sb.charAt(i);
+                        sb.setCharAt(i, sb.charAt(i + 1));
+                        sb.setCharAt(i + 1, t);
+                    }
+                }
+                default -> sb.setCharAt(i, Character.isUpperCase(sb.charAt(i)) ?
+                        Character.toLowerCase(sb.charAt(i)) : Character.toUpperCase(sb.charAt(i)));
+            }
+        }
+        return sb.toString();
+    }
+}
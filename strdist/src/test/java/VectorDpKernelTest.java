@@ -0,0 +1,140 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Vectorized kernel (@see DpKernel#VECTORIZED) against the baseline table calculated by ColumnDp:
+ * values and choices are bit-identical. Skipped when the kernel isn't available in this JVM.
+ */
+class VectorDpKernelTest {
+    private final StrDistEngine engine = FullTable.sequentialEngine();
+
+    @Test
+    void sameTableAsColumnDp() {
+        DpKernel kernel = DpKernel.VECTORIZED;
+        assumeTrue(kernel != null, "vectorized kernel isn't available");
+        Random rnd = new Random(14);
+        int checked = 0;
+        for (int t = 0; t < 150; t++) {
+            String superStr = TestTexts.text(rnd, 10 + rnd.nextInt(80));
+            String subStr = TestTexts.mistype(rnd, TestTexts.text(rnd, 5 + rnd.nextInt(20)), rnd.nextInt(8));
+            CompiledPattern pattern = engine.compile(subStr);
+            IndexedText text = engine.indexText(superStr);
+            int n = pattern.subStr.length();
+            int m = text.superStr.length();
+            if (Math.min(n, m) < kernel.minLength()) {
+                continue;
+            }
+            checked++;
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (boolean doSubtract : new boolean[]{false, true}) {
+                    FullTable full = new FullTable(engine, pattern, text, left, doSubtract);
+                    int[] lastRow = new int[m + 1];
+                    byte[] choices = new byte[m * (n + 1)];
+                    kernel.calc(engine.charsDist(), pattern.subStr, text.superStr, pattern.trivDelCosts, pattern.costDelTwo,
+                            text.trivInsCosts, text.costInsTwo, text.stopHere(left), doSubtract, lastRow, choices);
+                    String where = subStr + " in " + superStr + ", " + left + ", " + doSubtract;
+                    assertArrayEquals(full.lastRow, lastRow, where);
+                    assertArrayEquals(full.choices, choices, where);
+
+                    int[] lastRowOnly = new int[m + 1];
+                    kernel.calc(engine.charsDist(), pattern.subStr, text.superStr, pattern.trivDelCosts, pattern.costDelTwo,
+                            text.trivInsCosts, text.costInsTwo, text.stopHere(left), doSubtract, lastRowOnly, null);
+                    assertArrayEquals(full.lastRow, lastRowOnly, where);
+                }
+            }
+        }
+        assertTrue(checked > 0);
+    }
+
+    /**
+     * Lengths around multiples of the number of lanes, where anti-diagonals end with partial vectors,
+     * and tables much longer than high or much higher than long
+     */
+    @Test
+    void lengthsAroundLanes() {
+        DpKernel kernel = DpKernel.VECTORIZED;
+        assumeTrue(kernel != null, "vectorized kernel isn't available");
+        int lanes = kernel.minLength() / 4;
+        Random rnd = new Random(141);
+        // no whitespace, which patterns and texts are trimmed of
+        String superStr = TestTexts.text(rnd, 200).replaceAll("\\s", "_");
+        String subStr = TestTexts.mistype(rnd, superStr.substring(50), 30).replaceAll("\\s", "_");
+        for (int n = kernel.minLength(); n <= kernel.minLength() + 2 * lanes + 1; n++) {
+            for (int m : new int[]{kernel.minLength(), kernel.minLength() + lanes - 1, kernel.minLength() + lanes + 1, 500}) {
+                checkTable(kernel, subStr.substring(0, n), superStr.substring(0, m));
+                checkTable(kernel, superStr.substring(0, m), subStr.substring(0, n));
+            }
+        }
+    }
+
+    /**
+     * Chars with special distances (look-alikes, quotes, dashes) and chars which are cheap to insert (spaces, punctuation),
+     * where costs of cells differ by lane; and long common runs with doSubtractIfLongSameSeq
+     */
+    @Test
+    void specialCharsAndLongRuns() {
+        DpKernel kernel = DpKernel.VECTORIZED;
+        assumeTrue(kernel != null, "vectorized kernel isn't available");
+        String specials = "«It’s a “well–known” fact» — сolor, ВВС; 'it's' \"well-known\"... ,,  \n\t-- ";
+        String spaces = " .,;:!? \n\r\n\t-_\"'()".repeat(8);
+        checkTable(kernel, specials, specials.toUpperCase());
+        checkTable(kernel, specials.replace('’', '\''), specials + specials);
+        checkTable(kernel, spaces, specials);
+        checkTable(kernel, specials, spaces);
+        String same = "the quick brown fox jumps over the lazy dog ".repeat(4);
+        checkTable(kernel, same, "xx" + same + "yy");
+        checkTable(kernel, same.substring(3) + same.substring(0, 40), same);
+    }
+
+    /**
+     * The engine takes the kernel for long enough patterns and texts; results are the same as of the full table by ColumnDp
+     */
+    @Test
+    void engineResultsWithKernel() {
+        DpKernel kernel = DpKernel.VECTORIZED;
+        assumeTrue(kernel != null, "vectorized kernel isn't available");
+        Random rnd = new Random(142);
+        for (int t = 0; t < 20; t++) {
+            String superStr = TestTexts.text(rnd, 30 + rnd.nextInt(60));
+            // never found trivially, so the full table is the whole calculation
+            String subStr = "ХАТА " + TestTexts.mistype(rnd, TestTexts.text(rnd, 8), 4);
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    boolean doSubtract = rnd.nextBoolean();
+                    StrDist.DistResInfo full = new FullTable(engine, subStr, superStr, left, doSubtract).result(left, right);
+                    StrDist.DistResInfo res = engine.calcStrDist(subStr, superStr, left, right, true, doSubtract);
+                    String where = subStr + " in " + superStr + ", " + left + "-" + right + ", " + doSubtract;
+                    assertEquals(full.dist, res.dist, where);
+                    assertEquals(full.getDiffAsHtml(), res.getDiffAsHtml(), where);
+                    assertEquals(full.dist, engine.calcStrDist(subStr, superStr, left, right, false, doSubtract).dist, where);
+                }
+            }
+        }
+    }
+
+    private void checkTable(DpKernel kernel, String subStr, String superStr) {
+        CompiledPattern pattern = engine.compile(subStr);
+        IndexedText text = engine.indexText(superStr);
+        int n = pattern.subStr.length();
+        int m = text.superStr.length();
+        assertTrue(Math.min(n, m) >= kernel.minLength(), n + "x" + m);
+        for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+            for (boolean doSubtract : new boolean[]{false, true}) {
+                FullTable full = new FullTable(engine, pattern, text, left, doSubtract);
+                int[] lastRow = new int[m + 1];
+                byte[] choices = new byte[m * (n + 1)];
+                kernel.calc(engine.charsDist(), pattern.subStr, text.superStr, pattern.trivDelCosts, pattern.costDelTwo,
+                        text.trivInsCosts, text.costInsTwo, text.stopHere(left), doSubtract, lastRow, choices);
+                String where = subStr + " in " + superStr + ", " + left + ", " + doSubtract;
+                assertArrayEquals(full.lastRow, lastRow, where);
+                assertArrayEquals(full.choices, choices, where);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * WavefrontDp against the baseline table calculated by ColumnDp column by column: values and choices are bit-identical
+ */
+class WavefrontDpTest {
+    private final StrDistEngine engine = FullTable.sequentialEngine();
+
+    @Test
+    void sameTableAsColumnDp() {
+        Random rnd = new Random(13);
+        int checked = 0;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int t = 0; t < 200; t++) {
+                String superStr = TestTexts.text(rnd, 2 + rnd.nextInt(60));
+                String subStr = TestTexts.mistype(rnd, TestTexts.text(rnd, 2 + rnd.nextInt(10)), rnd.nextInt(6));
+                int tileSize = 3 + rnd.nextInt(8);
+                CompiledPattern pattern = engine.compile(subStr);
+                IndexedText text = engine.indexText(superStr);
+                int n = pattern.subStr.length();
+                int m = text.superStr.length();
+                if (n < 2 * tileSize || m < 2 * tileSize) {
+                    continue;
+                }
+                checked++;
+                for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                    for (boolean doSubtract : new boolean[]{false, true}) {
+                        FullTable full = new FullTable(engine, pattern, text, left, doSubtract);
+                        int[] lastRow = new int[m + 1];
+                        byte[] choices = new byte[m * (n + 1)];
+                        new WavefrontDp(engine.charsDist(), pattern.subStr, text.superStr, pattern.trivDelCosts, pattern.costDelTwo,
+                                text.trivInsCosts, text.costInsTwo, text.stopHere(left), doSubtract, tileSize)
+                                .calc(pool, lastRow, choices);
+                        String where = subStr + " in " + superStr + ", " + left + ", " + doSubtract + ", tile " + tileSize;
+                        assertArrayEquals(full.lastRow, lastRow, where);
+                        assertArrayEquals(full.choices, choices, where);
+
+                        int[] lastRowOnly = new int[m + 1];
+                        new WavefrontDp(engine.charsDist(), pattern.subStr, text.superStr, pattern.trivDelCosts, pattern.costDelTwo,
+                                text.trivInsCosts, text.costInsTwo, text.stopHere(left), doSubtract, tileSize)
+                                .calc(pool, lastRowOnly, null);
+                        assertArrayEquals(full.lastRow, lastRowOnly, where);
+                    }
+                }
+            }
+            assertTrue(checked > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void sameResultsOfEngine() {
+        Random rnd = new Random(131);
+        StrDistEngine parallel = new StrDistEngine(0, 3);
+        for (int t = 0; t < 100; t++) {
+            String superStr = TestTexts.text(rnd, 3 + rnd.nextInt(40));
+            String subStr = TestTexts.pattern(rnd, superStr, 15);
+            for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+                for (StrDist.SearchBorder right : TestTexts.BORDERS) {
+                    boolean doSubtract = rnd.nextBoolean();
+                    StrDist.DistResInfo full = FullTable.calcStrDist(engine, subStr, superStr, left, right, doSubtract);
+                    StrDist.DistResInfo res = parallel.calcStrDist(subStr, superStr, left, right, true, doSubtract);
+                    String where = subStr + " in " + superStr + ", " + left + "-" + right + ", " + doSubtract;
+                    assertEquals(full.dist, res.dist, where);
+                    assertEquals(full.getDiffAsHtml(), res.getDiffAsHtml(), where);
+                    assertEquals(full.dist, parallel.calcStrDist(subStr, superStr, left, right, false, doSubtract).dist, where);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tiles of the least size (3x3), and tables of one row or one column of tiles
+     */
+    @Test
+    void smallestTilesAndSingleRowOfTiles() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            String[][] pairs = {
+                    {"abc", "abc"}, {"abc", "xyzabcxyz"}, {"quick", "the quick brown fox"},
+                    {"the quick brown fox", "quick"}, {"ab c de fg", "abc"}, {"fox jumps", "fox jumps"}
+            };
+            for (String[] pair : pairs) {
+                for (int tileSize = 3; tileSize <= 6; tileSize++) {
+                    if (pair[0].length() >= tileSize && pair[1].length() >= tileSize) {
+                        checkTable(pool, pair[0], pair[1], tileSize);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Swaps of two and three chars and two-char edits read cells of up to three rows and columns back,
+     * and long common runs (doSubtractIfLongSameSeq) pass their length across tiles; both placed at every offset to borders
+     */
+    @Test
+    void swapsAndRunsAcrossTileBorders() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String superStr = "the quick brown fox jumps over the lazy dog";
+            for (int pos = 0; pos + 3 <= superStr.length(); pos += 2) {
+                StringBuilder sb = new StringBuilder(superStr);
+                char c = sb.charAt(pos);
+                sb.setCharAt(pos, sb.charAt(pos + 2));
+                sb.setCharAt(pos + 2, c);
+                sb.insert(pos / 2, "..");
+                checkTable(pool, sb.toString(), superStr, 3 + pos % 3);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The same table however tiles are scheduled: one thread, many threads, the common pool
+     */
+    @Test
+    void sameTableOnAnyPool() {
+        Random rnd = new Random(132);
+        String superStr = TestTexts.text(rnd, 150);
+        String subStr = TestTexts.mistype(rnd, superStr.substring(100, 300), 20);
+        for (ForkJoinPool pool : new ForkJoinPool[]{new ForkJoinPool(1), new ForkJoinPool(8), ForkJoinPool.commonPool()}) {
+            try {
+                for (int run = 0; run < 5; run++) {
+                    checkTable(pool, subStr, superStr, 3 + run);
+                }
+            } finally {
+                if (pool != ForkJoinPool.commonPool()) {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    void badTileSize() {
+        IndexedText text = engine.indexText("the quick brown fox");
+        CompiledPattern pattern = engine.compile("quick");
+        assertThrows(IllegalArgumentException.class, () -> new WavefrontDp(engine.charsDist(), pattern.subStr, text.superStr,
+                pattern.trivDelCosts, pattern.costDelTwo, text.trivInsCosts, text.costInsTwo,
+                text.stopHere(StrDist.SearchBorder.ANYWHERE), false, 2));
+        CompiledPattern shortPattern = engine.compile("ab");
+        assertThrows(IllegalArgumentException.class, () -> new WavefrontDp(engine.charsDist(), shortPattern.subStr, text.superStr,
+                shortPattern.trivDelCosts, shortPattern.costDelTwo, text.trivInsCosts, text.costInsTwo,
+                text.stopHere(StrDist.SearchBorder.ANYWHERE), false, 3));
+        assertThrows(IllegalArgumentException.class, () -> new StrDistEngine(0, 2));
+    }
+
+    private void checkTable(ForkJoinPool pool, String subStr, String superStr, int tileSize) {
+        CompiledPattern pattern = engine.compile(subStr);
+        IndexedText text = engine.indexText(superStr);
+        int n = pattern.subStr.length();
+        int m = text.superStr.length();
+        for (StrDist.SearchBorder left : TestTexts.BORDERS) {
+            for (boolean doSubtract : new boolean[]{false, true}) {
+                FullTable full = new FullTable(engine, pattern, text, left, doSubtract);
+                int[] lastRow = new int[m + 1];
+                byte[] choices = new byte[m * (n + 1)];
+                new WavefrontDp(engine.charsDist(), pattern.subStr, text.superStr, pattern.trivDelCosts, pattern.costDelTwo,
+                        text.trivInsCosts, text.costInsTwo, text.stopHere(left), doSubtract, tileSize)
+                        .calc(pool, lastRow, choices);
+                String where = subStr + " in " + superStr + ", " + left + ", " + doSubtract + ", tile " + tileSize;
+                assertArrayEquals(full.lastRow, lastRow, where);
+                assertArrayEquals(full.choices, choices, where);
+            }
+        }
+    }
+}